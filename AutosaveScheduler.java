@@ -0,0 +1,196 @@
+/*
+ * Class Name and Description:
+ *    AutosaveScheduler.java saves the system's data to a file in the
+ *    background, a short while after it changes.
+ *
+ *    Each change restarts a timer, so a burst of changes is saved in a
+ *    single write once things have been quiet for the quiet period. If
+ *    changes keep coming, a save is still made once the oldest unsaved
+ *    change is MAX_DELAY_FACTOR quiet periods old.
+ *
+ *    When the timer runs out, the pets and doctors are copied into a
+ *    HospitalSnapshot, which always falls between changes: HospitalService
+ *    copies its latest view without any lock, or holds its read lock just
+ *    long enough to copy the data if views aren't kept. The copy is then
+ *    written on the autosave thread, while clients carry on.
+ *
+ *    Every write to the file should go through the scheduler (see
+ *    saveNow()), so that two saves are never written at the same time.
+ */
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+public class AutosaveScheduler {
+    public static final long DEFAULT_QUIET_PERIOD = 2000; // ms
+    private static final long MAX_DELAY_FACTOR = 10;
+
+    private final String filename;
+    private final long quietPeriod;               // ms
+    private final Supplier<HospitalSnapshot> capture; // Copies the data as it was between two changes
+    private final ScheduledThreadPoolExecutor timer;
+    private final Object writing = new Object();  // Held while a save is being written
+
+    // The following are guarded by 'this'
+    private long changes = 0;                     // Number of changes so far
+    private long firstUnsavedChange = 0;          // Time of the oldest change which hasn't been captured (ms), or 0
+    private ScheduledFuture<?> pending;           // The next save, or null if none is scheduled
+
+    private volatile long savedChanges = 0;       // Changes included in the last save (changed with 'writing' held)
+    private volatile IOException error;           // Error from the last background save, or null
+
+    /**
+     * Creates a scheduler and starts its autosave thread
+     *
+     * @param filename  name of file which data should be saved to
+     * @param quietPeriod  time to wait after the last change before saving (ms)
+     * @param capture  copies the pets and doctors in the system, as they were between two changes
+     *                 The copy must include every change which had been passed to changed()
+     *                 before it was called; it may also include later ones.
+     */
+    public AutosaveScheduler(String filename, long quietPeriod, Supplier<HospitalSnapshot> capture) {
+        this.filename = filename;
+        this.quietPeriod = Math.max(quietPeriod, 0);
+        this.capture = capture;
+
+        timer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true); // Don't keep cancelled timers around during a long burst
+    }
+
+    /**
+     * Records that the data has changed, and restarts the timer
+     * Must be called once the change can be copied, but before the change
+     * has finished (e.g. with the write lock still held), so that every
+     * copy made after counting it includes it.
+     *
+     * No inputs/preconditions
+     * Returns nothing; the change will be saved in the background
+     */
+    public synchronized void changed() {
+        long now = System.currentTimeMillis();
+        changes++;
+        if (firstUnsavedChange == 0) {
+            firstUnsavedChange = now;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+
+        long delay = Math.min(quietPeriod, firstUnsavedChange + quietPeriod * MAX_DELAY_FACTOR - now);
+        pending = timer.schedule(this::saveInBackground, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves any changes which haven't been saved yet, straight away,
+     * and waits until they have been written
+     *
+     * No inputs/preconditions
+     * @return  whether anything needed saving (boolean value)
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public boolean flush() throws IOException {
+        return save(false);
+    }
+
+    /**
+     * Saves all of the data straight away, even if it hasn't changed, and
+     * waits until it has been written
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public void saveNow() throws IOException {
+        save(true);
+    }
+
+    /**
+     * Gets the name of the file which data is saved to
+     *
+     * No inputs/preconditions
+     * @return  the file name
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Gets the error from the last background save, and clears it, so that
+     * it is only reported once
+     *
+     * No inputs/preconditions
+     * @return  the error, or null if there wasn't one
+     */
+    public IOException takeError() {
+        IOException lastError = error;
+        error = null;
+        return lastError;
+    }
+
+    /**
+     * Stops the autosave thread. Any changes which haven't been saved are
+     * not saved, so flush() should be called first.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void close() {
+        timer.shutdownNow();
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Runs when the timer runs out, on the autosave thread
+     * Errors are kept for takeError(), and the changes are left unsaved,
+     * so the next change or flush() will try again.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void saveInBackground() {
+        try {
+            save(false);
+        }
+        catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Copies the data (if it has changed since the last save), then writes
+     * the copy to the file
+     *
+     * @param force  whether to save even if nothing has changed
+     * @return  whether anything was saved (boolean value)
+     * @throws IOException  if an error occurs while writing the file
+     */
+    private boolean save(boolean force) throws IOException {
+        long captured;
+        synchronized (this) {
+            if (!force && changes == savedChanges) {
+                return false;
+            }
+            if (pending != null) {
+                pending.cancel(false); // This save will include everything the pending one would have
+                pending = null;
+            }
+            captured = changes;
+            firstUnsavedChange = 0;
+        }
+        HospitalSnapshot snapshot = capture.get(); // Includes at least the 'captured' changes
+
+        synchronized (writing) {
+            if (captured < savedChanges || (!force && captured == savedChanges)) {
+                return false; // A newer copy has already been written by another save
+            }
+            HospitalFileWriter.write(filename, snapshot);
+            savedChanges = captured;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Class Name and Description:
+ *    BasicDoctor.java is a doctor who keeps their own copy of each of
+ *    their attributes, along with the pets assigned to them. It is what
+ *    the system uses for doctors.
+ *
+ *    Please note that bad inputs will simply be rejected if they
+ *    are invalid (see Doctor).
+ */
+
+import java.util.*;
+
+public class BasicDoctor extends Doctor {
+    private String name;
+    private Specialisation specialisation;
+    private long lastModified; // Time (ms since the epoch) that the name/specialisation was last changed
+    private long version;      // ModificationCounter version of the last change
+    private Set<Pet> pets = new LinkedHashSet<>(); // Pets assigned to this doctor, in order of assignment.
+                                                   // Pet doesn't override equals(Object)/hashCode(), so
+                                                   // pets are compared by reference.
+
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * All instance variables will be initialised as null
+     */
+    public BasicDoctor() {} // Initialise as null rather than blank, as
+                            // that is more semantically correct
+
+    /**
+     * Detailed constructor
+     *
+     * @param name  doctor name to be assigned
+     * @param specialisation  specialisation to be assigned
+     * All instance variables will be initialised to the specified values
+     */
+    public BasicDoctor(String name, String specialisation) {
+        setName(name);                         // Use setters rather than direct assignment
+        setSpecialisation(specialisation);     // so that inputs are checked
+    }
+
+    // The getters/setters below are described in Doctor
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        if (name.trim().length() > 0) {
+            this.name = name;
+            touch();
+        }
+    }
+
+    public Specialisation getSpecialisationValue() {
+        return specialisation;
+    }
+
+    public void setSpecialisationValue(Specialisation specialisation) {
+        if (specialisation != null) {
+            this.specialisation = specialisation;
+            touch();
+        }
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<Pet> getPets() {
+        return Collections.unmodifiableSet(pets);
+    }
+
+    void addPet(Pet pet) {
+        pets.add(pet);
+    }
+
+    void removePet(Pet pet) {
+        pets.remove(pet);
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Records that the doctor's name/specialisation has just been changed
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void touch() {
+        lastModified = System.currentTimeMillis();
+        version = ModificationCounter.next();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Class Name and Description:
+ *    BasicPet.java is a pet which keeps its own copy of each of its
+ *    attributes. It is what the system uses for pets, unless they are
+ *    stored in a PetColumns instead.
+ *
+ *    Please note that bad inputs will simply be rejected if they
+ *    are invalid (see Pet).
+ */
+
+public class BasicPet extends Pet {
+    private String name;
+    private PetSize size;
+    private PetType type;
+    private int age;
+    private double weight;
+    private Doctor doctor; // Define as class rather than simply a name so that doctor
+                           // name changes will not dissassociate pets from their assigned
+                           // doctors. Everything will point to a central memory location.
+    private long lastModified; // Time (ms since the epoch) that any attribute was last changed
+    private long version;      // ModificationCounter version of the last change
+
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * All instance variables will be initialised as null
+     */
+    public BasicPet() {} // Initialise as null rather than blank, as
+                         // that is more semantically correct
+
+    /**
+     * Detailed constructor
+     *
+     * @param name  pet name to be assigned
+     * @param size  pet size to be assigned
+     * @param type  pet type to be assigned
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned as the pet's doctor
+     * All instance variables will be initialised to the specified values
+     */
+    public BasicPet(String name, String size, String type, int age, double weight, Doctor doctor) {
+        setName(name);     // Use setters rather than direct assignment
+        setSize(size);     // so that inputs are checked
+        setType(type);
+        setAge(age);
+        setWeight(weight);
+        setDoctor(doctor);
+    }
+
+    /**
+     * Detailed constructor, for a type and size which have already been parsed
+     *
+     * @param name  pet name to be assigned
+     * @param size  pet size to be assigned
+     * @param type  pet type to be assigned
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned as the pet's doctor
+     * All instance variables will be initialised to the specified values
+     */
+    public BasicPet(String name, PetSize size, PetType type, int age, double weight, Doctor doctor) {
+        setName(name);
+        setPetSize(size);
+        setPetType(type);
+        setAge(age);
+        setWeight(weight);
+        setDoctor(doctor);
+    }
+
+    // The getters/setters below are described in Pet
+
+    public PetType getPetType() {
+        return type;
+    }
+
+    public void setPetType(PetType type) {
+        if (type != null) {
+            this.type = type;
+            touch();
+        }
+    }
+
+    public PetSize getPetSize() {
+        return size;
+    }
+
+    public void setPetSize(PetSize size) {
+        if (size != null) {
+            this.size = size;
+            touch();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        if (name.trim().length() > 0) {
+            this.name = name;
+            touch();
+        }
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        if (weight > 0) {
+            this.weight = weight;
+            touch();
+        }
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        if (age >= 0) {
+            this.age = age;
+            touch();
+        }
+    }
+
+    public Doctor getDoctor() {
+        return doctor;
+    }
+
+    public void setDoctor(Doctor doctor) {
+        if (this.doctor != null) {
+            this.doctor.removePet(this);
+        }
+        this.doctor = doctor;
+        if (doctor != null) {
+            doctor.addPet(this);
+        }
+        touch();
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Records that one of the pet's attributes has just been changed
+     * Called by every setter once the new value has been accepted.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void touch() {
+        lastModified = System.currentTimeMillis();
+        version = ModificationCounter.next();
+    }
+}
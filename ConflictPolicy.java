@@ -0,0 +1,50 @@
+/*
+ * Enum Name and Description:
+ *    ConflictPolicy.java lists the ways in which an import can handle
+ *    a pet or doctor which is already in the system.
+ *
+ *    ASK is the original interactive behaviour. The other policies never
+ *    prompt, so a whole file can be imported without any user input.
+ */
+
+public enum ConflictPolicy {
+    ASK("ask"),             // Ask the user what to do for each existing pet/doctor
+    OVERWRITE("overwrite"), // Always replace existing details with the file's details
+    SKIP("skip"),           // Always keep existing details
+    KEEP_NEWEST("newest");  // Use the file's details only if the file was saved after
+                            // the existing pet/doctor was last changed
+
+    private final String label;
+
+    /**
+     * @param label  name of the policy, as typed at the prompt
+     */
+    ConflictPolicy(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Converts an input string into a conflict policy (ignoring case)
+     *
+     * @param input  string to be converted, e.g. "Skip"
+     * @return  the matching policy, or null if the input isn't valid
+     */
+    public static ConflictPolicy parse(String input) {
+        for (ConflictPolicy policy : values()) {
+            if (policy.label.equalsIgnoreCase(input)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the policy
+     *
+     * No inputs/preconditions
+     * @return  'ask', 'overwrite', 'skip' or 'newest'
+     */
+    public String toString() {
+        return label;
+    }
+}
@@ -10,32 +10,18 @@
  *    Please note that bad inputs will simply be rejected if they
  *    are invalid. It is the responsibility of the primary class
  *    (e.g. Hospital) to ask for new inputs if invalid.
+ *
+ *    Each doctor keeps track of the pets which are assigned to them.
+ *    This is kept up to date automatically by BasicPet.setDoctor().
+ *
+ *    Doctor only defines what a doctor can do; it has no fields, as with
+ *    Pet. BasicDoctor keeps its own copy of each attribute (and its list
+ *    of pets), while the doctors in a HospitalView are read-only copies.
  */
 
-public class Doctor {
-    private String name;
-    private String specialisation;
-
-    /**
-     * Default constructor
-     *
-     * No inputs/preconditions
-     * All instance variables will be initialised as null
-     */
-    public Doctor() {} // Initialise as null rather than blank, as
-                       // that is more semantically correct
+import java.util.*;
 
-    /**
-     * Detailed constructor
-     *
-     * @param name  doctor name to be assigned
-     * @param specialisation  specialisation to be assigned
-     * All instance variables will be initialised to the specified values
-     */
-    public Doctor(String name, String specialisation) {
-        setName(name);                         // Use setters rather than direct assignment
-        setSpecialisation(specialisation);     // so that inputs are checked
-    }
+public abstract class Doctor implements Named {
 
     /**
      * Prints all of the doctor's properties (name and specialisation)
@@ -55,9 +41,7 @@ public class Doctor {
      * No inputs/preconditions
      * @return doctor name (exactly as it was inputted into the system)
      */
-    public String getName() {
-        return name;
-    }
+    public abstract String getName();
 
     /**
      * Sets the doctor's name to the value specified
@@ -65,37 +49,89 @@ public class Doctor {
      * @param name  doctor name to be assigned - any format will be accepted - must not be empty
      * Returns nothing; 'name' attribute will be set to input
      */
-    public void setName(String name) {
-        if (name.trim().length() > 0) {
-            this.name = name;
-        }
-    }
+    public abstract void setName(String name);
 
     /**
-     * Gets the pet's type
+     * Gets the doctor's specialisation
      *
      * No inputs/preconditions
-     * @return pet type (dog or cat)
+     * @return doctor specialisation (dog or cat), in lowercase
      */
     public String getSpecialisation() {
-        return specialisation;
+        Specialisation specialisation = getSpecialisationValue();
+        return specialisation == null ? null : specialisation.toString();
     }
 
+    /**
+     * Gets the doctor's specialisation as a Specialisation
+     *
+     * No inputs/preconditions
+     * @return doctor specialisation, or null if it hasn't been set
+     */
+    public abstract Specialisation getSpecialisationValue();
+
     /**
      * Sets the doctor's specialisation to the value specified
      *
-     * @param specialisation  doctor specialisation to be assigned - should be either 'dog' or 'cat'
+     * @param specialisation  doctor specialisation to be assigned - should be either 'dog' or 'cat' (any case)
      * Returns nothing; 'specialisation' attribute will be set to input
      */
     public void setSpecialisation(String specialisation) {
-        if (specialisation.equalsIgnoreCase("dog") ||
-            specialisation.equalsIgnoreCase("cat")) {
-            this.specialisation = specialisation;
-        }
+        setSpecialisationValue(Specialisation.parse(specialisation));
     }
 
+    /**
+     * Sets the doctor's specialisation to the value specified
+     *
+     * @param specialisation  doctor specialisation to be assigned - null will be ignored
+     * Returns nothing; 'specialisation' attribute will be set to input
+     */
+    public abstract void setSpecialisationValue(Specialisation specialisation);
 
-    /* ******** Helper Methods ******** */
+    /**
+     * Gets the time that the doctor's details were last changed
+     * Assigning or unassigning pets doesn't count as a change.
+     *
+     * No inputs/preconditions
+     * @return  time in milliseconds since the epoch, or 0 if nothing has been set
+     */
+    public abstract long getLastModified();
+
+    /**
+     * Gets the modification version of the doctor's last change
+     * Assigning or unassigning pets doesn't count as a change.
+     *
+     * No inputs/preconditions
+     * @return  the version (see ModificationCounter), or 0 if nothing has been set
+     */
+    public abstract long getVersion();
+
+    /**
+     * Gets the pets which are currently assigned to the doctor
+     * Pets stored in a PetColumns aren't included (see PetColumns.petsOf()).
+     *
+     * No inputs/preconditions
+     * @return read-only view of the assigned pets, in order of assignment
+     */
+    public abstract Set<Pet> getPets();
+
+    /**
+     * Records that the specified pet has been assigned to this doctor
+     * Should only be called by BasicPet.setDoctor()
+     *
+     * @param pet  the pet which has been assigned
+     * Returns nothing; pet will be added to the doctor's pets
+     */
+    abstract void addPet(Pet pet);
+
+    /**
+     * Records that the specified pet is no longer assigned to this doctor
+     * Should only be called by BasicPet.setDoctor()
+     *
+     * @param pet  the pet which has been unassigned
+     * Returns nothing; pet will be removed from the doctor's pets
+     */
+    abstract void removePet(Pet pet);
 
     /**
      * Returns a string representation of the doctor
@@ -120,6 +156,6 @@ public class Doctor {
      */
     public boolean equals(Doctor otherDoctor) {
         return (getName().equalsIgnoreCase(otherDoctor.getName()) &&
-                getSpecialisation().equalsIgnoreCase(otherDoctor.getSpecialisation()));
+                getSpecialisationValue() == otherDoctor.getSpecialisationValue());
     }
 }
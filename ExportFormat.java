@@ -0,0 +1,48 @@
+/*
+ * Enum Name and Description:
+ *    ExportFormat.java lists the formats which pets can be exported in
+ *    for analysis by other programs (see HospitalFileWriter.export()).
+ *
+ *    Both formats have one line per pet, with the columns:
+ *        name, type, size, age, weight, doctor
+ *    A pet with no doctor has an empty doctor (CSV) or null (JSON Lines).
+ */
+
+public enum ExportFormat {
+    CSV("csv"),          // Comma-separated values with a header line, quoted as in RFC 4180
+    JSON_LINES("jsonl"); // One JSON object per line
+
+    private final String label;
+
+    /**
+     * @param label  name of the format, as typed at the prompt, and its file extension
+     */
+    ExportFormat(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Converts an input string into an export format (ignoring case)
+     *
+     * @param input  string to be converted, e.g. "CSV"
+     * @return  the matching format, or null if the input isn't valid
+     */
+    public static ExportFormat parse(String input) {
+        for (ExportFormat format : values()) {
+            if (format.label.equalsIgnoreCase(input)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the format
+     *
+     * No inputs/preconditions
+     * @return  'csv' or 'jsonl'
+     */
+    public String toString() {
+        return label;
+    }
+}
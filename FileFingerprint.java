@@ -0,0 +1,276 @@
+/*
+ * Class Name and Description:
+ *    FileFingerprint.java records the state of a data file when it was
+ *    imported (its size, last modified time and a CRC32C checksum of its
+ *    contents), so that the next import can tell whether the file has
+ *    changed since.
+ *
+ *    If the size and modified time are both the same, the file is
+ *    assumed to be unchanged without reading it. Otherwise the checksum
+ *    of the bytes which were imported is compared: if it still matches,
+ *    the file is either unchanged or has only had lines added to the end,
+ *    which can be imported on their own.
+ *
+ *    The fingerprint is taken before the file is read, from the same open
+ *    file, and only that many bytes are read. Lines added while the file
+ *    is being imported are then found as new lines by the next import.
+ *
+ *    Fingerprints can be saved to a small text file, one per line:
+ *        <size> <modified time> <checksum> <resumable> <end section> <file name>
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class FileFingerprint {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * How a file has changed since its fingerprint was taken
+     */
+    public enum Change {
+        UNCHANGED, // Same contents as before
+        APPENDED,  // Same contents as before, followed by new lines
+        REPLACED   // Anything else
+    }
+
+    private final long size;
+    private final long lastModified;
+    private final long checksum;
+    private final boolean resumable; // Whether the file ended at the end of a line, so lines can be added after it
+    private final int endSection;    // Section of the file which the parser finished in (see ImportBatch)
+
+    /**
+     * Creates a fingerprint from its parts
+     *
+     * @param size  file size in bytes
+     * @param lastModified  time the file was last modified (ms since the epoch)
+     * @param checksum  CRC32C of the whole file
+     * @param resumable  whether the file was empty or ended with a line ending
+     * @param endSection  section of the file which the parser finished in
+     */
+    private FileFingerprint(long size, long lastModified, long checksum, boolean resumable, int endSection) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.checksum = checksum;
+        this.resumable = resumable;
+        this.endSection = endSection;
+    }
+
+    /**
+     * Takes the fingerprint of a file which is about to be imported. Only the
+     * first getSize() bytes of the file should then be read. The end section
+     * is 0 until it is set with withEndSection().
+     *
+     * @param file  the open file - will not be closed
+     * @param lastModified  time the file was last modified, read before it was opened
+     * @return  the fingerprint
+     * @throws IOException  if the file can't be read
+     */
+    public static FileFingerprint take(FileChannel file, long lastModified) throws IOException {
+        return take(file, lastModified, null);
+    }
+
+    /**
+     * Takes the fingerprint of a file which is about to be imported, checking
+     * that it still starts with the bytes which an earlier fingerprint was
+     * taken of (e.g. before reading only the lines which have been added)
+     *
+     * @param file  the open file - will not be closed
+     * @param lastModified  time the file was last modified, read before it was opened
+     * @param previous  earlier fingerprint of the file, or null if there isn't one
+     * @return  the fingerprint, or null if the file no longer starts with the same bytes as before
+     * @throws IOException  if the file can't be read
+     */
+    public static FileFingerprint take(FileChannel file, long lastModified, FileFingerprint previous)
+            throws IOException {
+        long size = file.size();
+        CRC32C crc = new CRC32C();
+        long checked = 0;
+        if (previous != null) {
+            if (size < previous.size) {
+                return null;
+            }
+            checksum(file, 0, previous.size, crc);
+            if (crc.getValue() != previous.checksum) {
+                return null;
+            }
+            checked = previous.size;
+        }
+        checksum(file, checked, size, crc);
+
+        boolean resumable = size == 0;
+        if (size > 0) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            file.read(lastByte, size - 1);
+            resumable = lastByte.get(0) == '\n';
+        }
+        return new FileFingerprint(size, lastModified, crc.getValue(), resumable, 0);
+    }
+
+    /**
+     * Copies this fingerprint with the section which the parser finished in
+     *
+     * @param endSection  section of the file which the parser finished in, from ImportBatch.getEndSection()
+     * @return  the new fingerprint
+     */
+    public FileFingerprint withEndSection(int endSection) {
+        return new FileFingerprint(size, lastModified, checksum, resumable, endSection);
+    }
+
+    /**
+     * Works out how a file has changed since this fingerprint was taken
+     *
+     * @param filename  name of the file
+     * @return  how the file has changed
+     * @throws IOException  if the file can't be read (e.g. it has been deleted)
+     */
+    public Change compare(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        long currentModified = Files.getLastModifiedTime(path).toMillis();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long currentSize = file.size();
+            if (currentSize == size && currentModified == lastModified) {
+                return Change.UNCHANGED;
+            }
+            else if (currentSize < size || (currentSize > size && !resumable)) {
+                return Change.REPLACED;
+            }
+
+            CRC32C crc = new CRC32C();
+            checksum(file, 0, size, crc);
+            if (crc.getValue() != checksum) {
+                return Change.REPLACED;
+            }
+            return currentSize == size ? Change.UNCHANGED : Change.APPENDED;
+        }
+    }
+
+    /**
+     * Gets the size of the file when the fingerprint was taken, which is
+     * where any added lines start
+     *
+     * No inputs/preconditions
+     * @return  size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the time the file was last modified when the fingerprint was taken
+     *
+     * No inputs/preconditions
+     * @return  ms since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the section of the file which the parser finished in
+     *
+     * No inputs/preconditions
+     * @return  the parser's section, for HospitalFileParser.parseFrom()
+     */
+    public int getEndSection() {
+        return endSection;
+    }
+
+    /**
+     * Reads fingerprints which were saved by save()
+     *
+     * @param filename  name of the file of fingerprints
+     * @return  data file name -> fingerprint (empty if the file doesn't exist)
+     * @throws IOException  if the file can't be read, or isn't valid
+     */
+    public static Map<String, FileFingerprint> load(String filename) throws IOException {
+        Map<String, FileFingerprint> fingerprints = new HashMap<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(filename), StandardCharsets.UTF_8);
+        }
+        catch (NoSuchFileException e) {
+            return fingerprints;
+        }
+
+        for (String line : lines) {
+            String[] parts = line.split(" ", 6);
+            if (parts.length != 6) {
+                throw new IOException("Invalid fingerprint: " + line);
+            }
+            try {
+                fingerprints.put(parts[5], new FileFingerprint(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                                                               Long.parseLong(parts[2]), Boolean.parseBoolean(parts[3]),
+                                                               Integer.parseInt(parts[4])));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Invalid fingerprint: " + line, e);
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Saves fingerprints, replacing the file in a single step
+     *
+     * @param filename  name of the file of fingerprints
+     * @param fingerprints  data file name -> fingerprint
+     * @throws IOException  if the file can't be written
+     */
+    public static void save(String filename, Map<String, FileFingerprint> fingerprints) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                Writer output = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8));
+                for (Map.Entry<String, FileFingerprint> entry : fingerprints.entrySet()) {
+                    FileFingerprint fingerprint = entry.getValue();
+                    output.write(fingerprint.size + " " + fingerprint.lastModified + " " + fingerprint.checksum + " " +
+                                 fingerprint.resumable + " " + fingerprint.endSection + " " + entry.getKey() + "\n");
+                }
+                output.flush();
+                file.getFD().sync();
+            }
+            HospitalFileWriter.replace(temp, target);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Adds part of a file to a checksum
+     *
+     * @param file  the file
+     * @param start  offset of the first byte to be included
+     * @param end  offset after the last byte to be included
+     * @param crc  checksum to be updated
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static void checksum(FileChannel file, long start, long end, Checksum crc) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // CRC32C is fastest on direct buffers
+        long position = start;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+            int count = file.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("The file is shorter than expected");
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += count;
+        }
+    }
+}
@@ -1,37 +1,128 @@
 /*
  * Class Name and Description:
  *     Hospital.java is the interface for the vet hospital management
- *     software. It manages user interaction and data storage, while
- *     Doctor and Pet manage the getting/setting of data.
+ *     software. It manages user interaction, while HospitalService holds
+ *     the data and makes every change to it, and Doctor and Pet manage
+ *     the getting/setting of data. The console is just one client of the
+ *     service, which is safe for several clients to use at once.
  *
  *     Any number of doctors and pets are supported.
- *     Data may be imported/exported via HospitalManagement.txt
+ *     Data may be imported/exported via HospitalManagement.txt, or a
+ *     GZIP compressed copy of it (HospitalManagement.txt.gz)
  *
  *     Compile the program, run it, and follow the prompts.
  *     Press the 'enter' key once you have entered your input.
+ *
+ *     Run with the '--columnar' argument to store pets in PetColumns,
+ *     which uses much less memory when there are a large number of pets.
+ *
+ *     Run with the '--lazy' argument to read pets from a large data file
+ *     only when they are needed (see LazyPetFile). '--lazy-cache=<n>' sets
+ *     how many of the file's pets are kept in memory at once.
+ *
+ *     Run with the '--journal' argument to keep data between sessions.
+ *     Every change is recorded in HospitalManagement.journal as it is
+ *     made, and the data is rebuilt from HospitalManagement.snapshot and
+ *     the journal when the program starts. The journal is regularly
+ *     folded into a new snapshot in the background.
+ *
+ *     Run with the '--http' argument to also serve the data to other
+ *     programs over HTTP (see HospitalHttpServer), on port 8080 or the
+ *     port given by '--http=<port>'. The console carries on as normal.
+ *
+ *     Run with the '--batch=<file>' argument to run the one-line commands
+ *     in a script instead of prompting (see HospitalBatch), or '--batch'
+ *     to read them from standard input. The program exits at the end of
+ *     the script, with status 1 if any command failed.
  */
 
 import java.util.*;
 import java.io.*;
 
 public class Hospital {
-    private Doctor[] doctors = new Doctor[3]; // A list of all the doctors in the system
-                                              // Initialise as null rather than a blank object
-                                              // as it is more semantically correct
-    private int numDoctors = 0; // No doctors currently in system
+    private static final String CHANGES_FILE = "HospitalChanges.txt";
+    private static final String DATA_FILE = "HospitalManagement.txt";
+    private static final String COMPRESSED_DATA_FILE = "HospitalManagement.txt.gz";
+    private static final String EXPORT_FILE = "HospitalPets"; // Followed by the format's extension, e.g. '.csv'
 
-    private Pet[] pets = new Pet[3]; // A list of all the pets in the system
-                                     // Initialise as null rather than a blank object
-                                     // as it is more semantically correct
-    private int numPets = 0; // No pets currently in system
+    private final HospitalService service; // Holds the doctors and pets
+    private long lastCheckpoint = 0; // Checkpoint returned by the last export of changes
+    private HospitalHttpServer httpServer = null; // Serves the data over HTTP, if it has been started
 
     private Scanner console = new Scanner(System.in);
 
+    // Asks the user at the console, while a data file is being read
+    private final HospitalService.Prompter prompter = new HospitalService.Prompter() {
+        public boolean confirm(String question) {
+            System.out.print(question);
+            return getConfirmation();
+        }
+
+        public void inform(String message) {
+            System.out.println(message);
+        }
+    };
+
     public static void main(String[] args) {
-        Hospital hospital = new Hospital();
+        List<String> arguments = Arrays.asList(args);
+        HospitalService service = new HospitalService(arguments.contains("--columnar"));
+        for (String argument : arguments) {
+            if (argument.equals("--lazy")) {
+                service.enableLazyLoading(LazyPetFile.DEFAULT_CACHE_SIZE);
+            }
+            else if (argument.startsWith("--lazy-cache=")) {
+                service.enableLazyLoading(Integer.parseInt(argument.substring("--lazy-cache=".length())));
+            }
+            else if (argument.equals("--autosave")) {
+                service.enableAutosave(DATA_FILE, AutosaveScheduler.DEFAULT_QUIET_PERIOD);
+            }
+            else if (argument.startsWith("--autosave=")) {
+                service.enableAutosave(DATA_FILE, Long.parseLong(argument.substring("--autosave=".length())));
+            }
+        }
+
+        Hospital hospital = new Hospital(service);
+        if (arguments.contains("--journal")) {
+            hospital.recoverData();
+        }
+        for (String argument : arguments) {
+            if (argument.equals("--http")) {
+                hospital.startHttpServer(HospitalHttpServer.DEFAULT_PORT);
+            }
+            else if (argument.startsWith("--http=")) {
+                hospital.startHttpServer(Integer.parseInt(argument.substring("--http=".length())));
+            }
+        }
+        for (String argument : arguments) {
+            if (argument.equals("--batch")) {
+                hospital.runBatch(null);
+            }
+            else if (argument.startsWith("--batch=")) {
+                hospital.runBatch(argument.substring("--batch=".length()));
+            }
+        }
         hospital.run();
     }
 
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * Each pet will be stored as a separate Pet object
+     */
+    public Hospital() {
+        this(new HospitalService());
+    }
+
+    /**
+     * Service constructor
+     *
+     * @param service  the service which holds the doctors and pets - may be shared with other clients
+     */
+    public Hospital(HospitalService service) {
+        this.service = service;
+    }
+
     /**
      * Main program flow. Each command is delegated into a separate method.
      *
@@ -47,6 +138,10 @@ public class Hospital {
             option = console.nextLine();
             switch (option) {
                 case "-1":
+                    stopHttpServer();
+                    service.closeJournal();
+                    reportErrors();
+                    closeAutosave();
                     System.out.println("Thankyou for choosing to use Acme Vetinary Hospital Management Suite.");
                     System.exit(0);
                 case "0":
@@ -83,14 +178,42 @@ public class Hospital {
                     listPetsByDoctor();
                     break;
                 case "11":
-                    readData();
+                    readData(DATA_FILE);
                     break;
                 case "12":
-                    saveData();
+                    saveData(DATA_FILE);
+                    break;
+                case "13":
+                    analyseAllPets();
+                    break;
+                case "14":
+                    importDataWithPolicy(DATA_FILE);
+                    break;
+                case "15":
+                    saveSnapshot();
+                    break;
+                case "16":
+                    loadSnapshot();
+                    break;
+                case "17":
+                    exportChanges();
+                    break;
+                case "18":
+                    importDataWithPolicy(CHANGES_FILE);
+                    break;
+                case "19":
+                    readData(COMPRESSED_DATA_FILE);
+                    break;
+                case "20":
+                    saveData(COMPRESSED_DATA_FILE);
+                    break;
+                case "21":
+                    exportPets();
                     break;
                 default:
                     System.out.println("That doesn't look like a valid input.\n");
             }
+            reportErrors();
         } while (true); // Program will exit on -1, no need to end loop using a condition
     }
 
@@ -118,10 +241,22 @@ public class Hospital {
         System.out.println("   (8)  Delete pet\n");
 
         System.out.println("   (9)  Assign pet to doctor");
-        System.out.println("  (10)  List pets assigned to doctor\n");
+        System.out.println("  (10)  List pets assigned to doctor");
+        System.out.println("        A doctor's pets are listed in name order, unless run with --columnar or --lazy.\n");
 
         System.out.println("  (11)  Read data from file");
-        System.out.println("  (12)  Save data to file\n");
+        System.out.println("  (12)  Save data to file");
+        System.out.println("  (13)  Analyse all pets");
+        System.out.println("  (14)  Read data from file without prompts\n");
+
+        System.out.println("  (15)  Save snapshot");
+        System.out.println("  (16)  Load snapshot");
+        System.out.println("  (17)  Save changes since a checkpoint to file");
+        System.out.println("  (18)  Read changes from file without prompts\n");
+
+        System.out.println("  (19)  Read data from compressed file");
+        System.out.println("  (20)  Save data to compressed file");
+        System.out.println("  (21)  Export pets as CSV or JSON Lines\n");
     }
 
     /**
@@ -139,22 +274,22 @@ public class Hospital {
             System.out.print("Invalid input. Please re-enter name (must not be empty):  ");
             name = console.nextLine();
         }
-        if (doctorExists(name)) {
+        if (service.doctorExists(name)) {
             System.out.println("There is already a doctor with that name.\n");
             return;
         }
 
         System.out.print("Specialisation (dog or cat):  ");
         String specialisation = console.nextLine();
-        while (!(specialisation.equalsIgnoreCase("dog") ||
-                 specialisation.equalsIgnoreCase("cat"))) {
+        while (Specialisation.parse(specialisation) == null) {
             System.out.print("Invalid input. Please re-enter specialisation (dog or cat):  ");
             specialisation = console.nextLine();
         }
 
-        Doctor newDoctor = new Doctor(name, specialisation);
-        addDoctorToList(newDoctor);
-
+        if (service.addDoctor(name, specialisation) == null) { // Another client added them meanwhile
+            System.out.println("There is already a doctor with that name.\n");
+            return;
+        }
         System.out.println("New doctor successfully added to system.\n");
     }
 
@@ -163,21 +298,19 @@ public class Hospital {
      */
     private void listDoctors() {
         // Default response if there are no doctors
-        if (numDoctors == 0) {
+        if (service.getDoctorCount() == 0) {
             System.out.println("No doctors currently in the system.\n");
             return;
         }
 
         System.out.print("Would you like the list to be sorted (y/n)?  ");
-        Doctor[] viewingList = getConfirmation() ? sortDoctors(doctors, numDoctors) : doctors;
+        boolean sorted = getConfirmation();
 
-        System.out.println(numDoctors + pluralise(" doctor", numDoctors) + " currently in the system:");
-
-        for (Doctor doctor : viewingList) {
-            if (doctor != null) {
-                doctor.printDetails();
-            }
-        }
+        service.read(() -> { // So that the count matches the list
+            int count = service.getDoctorCount();
+            System.out.println(count + pluralise(" doctor", count) + " currently in the system:");
+            service.forEachDoctor(sorted, Doctor::printDetails);
+        });
     }
 
     /**
@@ -187,25 +320,18 @@ public class Hospital {
      */
     private void removeDoctor() {
         // More helpful response if there are no doctors
-        if (numDoctors == 0) {
+        if (service.getDoctorCount() == 0) {
             System.out.println("No doctors currently in the system.\n");
             return;
         }
 
         System.out.print("Enter doctor name:  ");
         String name = console.nextLine();
-        if (!doctorExists(name)) {
+        if (!service.removeDoctor(name)) {
             System.out.println("There are no doctors named '" + name + "'\n");
         }
         else {
-            for (int i = 0; i < doctors.length; i++) {
-                if (doctors[i] != null && doctors[i].getName().equalsIgnoreCase(name)) {
-                    unassignPetsByDoctor(doctors[i]);
-                    doctors[i] = null;
-                    numDoctors--;
-                    System.out.println("Doctor successfully deleted from system.\n");
-                }
-            }
+            System.out.println("Doctor successfully deleted from system.\n");
         }
     }
 
@@ -224,24 +350,21 @@ public class Hospital {
             System.out.print("Invalid input. Please re-enter name (must not be empty):  ");
             name = console.nextLine();
         }
-        if (petExists(name)) {
+        if (service.petExists(name)) {
             System.out.println("There is already a pet with that name.\n");
             return;
         }
 
         System.out.print("Size (small, medium, large):  ");
         String size = console.nextLine();
-        while (!(size.equalsIgnoreCase("small") ||
-                 size.equalsIgnoreCase("medium") ||
-                 size.equalsIgnoreCase("large"))) {
+        while (PetSize.parse(size) == null) {
             System.out.print("Invalid input. Please re-enter size (small, medium, large):  ");
             size = console.nextLine();
         }
 
         System.out.print("Type (dog or cat):  ");
         String type = console.nextLine();
-        while (!(type.equalsIgnoreCase("dog") ||
-                 type.equalsIgnoreCase("cat"))) {
+        while (PetType.parse(type) == null) {
             System.out.print("Invalid input. Please re-enter type (dog or cat):  ");
             type = console.nextLine();
         }
@@ -262,9 +385,10 @@ public class Hospital {
         }
         console.nextLine(); // Get rid of leftover newline
 
-        Pet newPet = new Pet(name, size, type, age, weight, null);
-        addPetToList(newPet);
-
+        if (service.addPet(name, size, type, age, weight) == null) { // Another client added it meanwhile
+            System.out.println("There is already a pet with that name.\n");
+            return;
+        }
         System.out.println("New pet successfully added to system.\n");
     }
 
@@ -273,42 +397,58 @@ public class Hospital {
      */
     private void analysePet() {
         // More helpful response if there are no pets
-        if (numPets == 0) {
+        if (service.getPetCount() == 0) {
             System.out.println("No pets currently in the system.\n");
             return;
         }
 
         System.out.print("Enter pet name:  ");
         String name = console.nextLine();
-        if (!petExists(name)) {
+        Pet pet = service.getPet(name);
+        if (pet == null) {
             System.out.println("There are no pets named '" + name + "'\n");
             return;
         }
 
-        Pet pet = getPetByName(name);
         pet.printDetails();
         System.out.println(pet.getName() + " is " + (pet.isOverweight() ? "overweight." : "not overweight.") + "\n");
     }
 
+    /**
+     * Prints how many pets are overweight, grouped by type, size and doctor
+     */
+    private void analyseAllPets() {
+        // More helpful response if there are no pets
+        if (service.getPetCount() == 0) {
+            System.out.println("No pets currently in the system.\n");
+            return;
+        }
+
+        service.getObesityReport(true).printDetails();
+    }
+
     /**
      * Walks the user through the pet editing process
      *
      * Users may leave certain attributes at their original value by leaving the input blank
+     * The new values are collected first, then made in a single change. No lock is held
+     * while the user types; if someone else changes the pet meanwhile, the edit is refused.
      */
     private void editPet() {
         // Default response if there are no pets
-        if (numPets == 0) {
+        if (service.getPetCount() == 0) {
             System.out.println("No pets currently in the system.\n");
             return;
         }
 
         System.out.print("Enter pet name:  ");
         String name = console.nextLine();
-        if (!petExists(name)) {
+        Pet pet = service.getPet(name);
+        if (pet == null) {
             System.out.println("There are no pets named '" + name + "'\n");
             return;
         }
-        Pet pet = getPetByName(name);
+        long version = pet.getVersion(); // The version the user's changes are based on
 
         System.out.println("For each of the inputs below, type in the new value and press enter.");
         System.out.println("Leave the field blank to use the previous value.");
@@ -316,69 +456,75 @@ public class Hospital {
         System.out.print("Size (previously " + pet.getSize() + "):  ");
         String size = console.nextLine();
         if (!isBlank(size)) {
-            while (!(size.equalsIgnoreCase("small") ||
-                    size.equalsIgnoreCase("medium") ||
-                    size.equalsIgnoreCase("large"))) {
+            while (PetSize.parse(size) == null) {
                 System.out.print("Invalid input. Please re-enter size (small, medium, large):  ");
                 size = console.nextLine();
             }
-            pet.setSize(size);
+        }
+        else {
+            size = null;
         }
 
         System.out.print("Type (previously " + pet.getType() + "):  ");
         String type = console.nextLine();
         if (!isBlank(type)) {
-            while (!(type.equalsIgnoreCase("dog") ||
-                    type.equalsIgnoreCase("cat"))) {
+            while (PetType.parse(type) == null) {
                 System.out.print("Invalid input. Please re-enter type (dog or cat):  ");
                 type = console.nextLine();
             }
-            pet.setType(type);
+        }
+        else {
+            type = null;
         }
 
         System.out.print("Age (previously " + pet.getAge() + "):  ");
         String ageInput = console.nextLine();
+        Integer age = null;
         if (!isBlank(ageInput)) {
-            int age = Integer.parseInt(ageInput);
+            age = Integer.parseInt(ageInput);
             while (age < 0) { // A pet can't have a negative age (it can be +ve or 0)
                 System.out.print("Invalid input. Please re-enter age (must be a positive no. of years):  ");
                 age = console.nextInt();
                 console.nextLine(); // Remove leftover newline
             }
-            pet.setAge(age);
         }
 
         System.out.print("Weight (previously " + pet.getWeight() + "):  ");
         String weightInput = console.nextLine();
+        Double weight = null;
         if (!isBlank(weightInput)) {
-            double weight = Double.parseDouble(weightInput);
+            weight = Double.parseDouble(weightInput);
             while (weight <= 0) { // A pet can only be a non-zero positive weight
                 System.out.print("Invalid input. Please re-enter weight in kilograms (must not be zero or negative):  ");
                 weight = console.nextDouble();
                 console.nextLine(); // Remove leftover newline
             }
-            pet.setWeight(weight);
         }
 
-        if (numDoctors == 0) {
-            System.out.println("Doctor cannot be edited as no doctors exist.\n");
+        if (service.getDoctorCount() == 0) {
+            if (saveEdit(name, version, size, type, age, weight, null)) {
+                System.out.println("Doctor cannot be edited as no doctors exist.\n");
+            }
             return;
         }
         System.out.print("Doctor (previously " + (pet.hasDoctor() ? pet.getDoctor().getName() : "none") + "):  ");
         String doctorName = console.nextLine();
+        String newDoctorName = null;
         if (!isBlank(doctorName)) {
-            Doctor doctor = getDoctorByName(doctorName);
+            Doctor doctor = service.getDoctor(doctorName);
             while (doctor == null) { // Doctor does not exist
                 System.out.print("Invalid input. Please re-enter the name of a doctor who exists:  ");
-                doctor = getDoctorByName(console.nextLine());
+                doctor = service.getDoctor(console.nextLine());
             }
 
-            if (getDoctorReassignmentConfirmation(pet) && getIncorrectSpecialisationConfirmation(pet, doctor)) {
-                pet.setDoctor(doctor);
+            PetType newType = type == null ? pet.getPetType() : PetType.parse(type);
+            if (getDoctorReassignmentConfirmation(pet) && getIncorrectSpecialisationConfirmation(newType, doctor)) {
+                newDoctorName = doctor.getName();
             }
         }
-
-        System.out.println("\nPet properties have been updated to their new values.\n");
+        if (saveEdit(name, version, size, type, age, weight, newDoctorName)) {
+            System.out.println("\nPet properties have been updated to their new values.\n");
+        }
     }
 
     /**
@@ -386,21 +532,19 @@ public class Hospital {
      */
     private void listPets() {
         // Default response if there are no pets
-        if (numPets == 0) {
+        if (service.getPetCount() == 0) {
             System.out.println("No pets currently in the system.\n");
             return;
         }
 
         System.out.print("Would you like the list to be sorted (y/n)?  ");
-        Pet[] viewingList = getConfirmation() ? sortPets(pets, numPets) : pets;
+        boolean sorted = getConfirmation();
 
-        System.out.println(numPets + pluralise(" pet", numPets) + " currently in the system:");
-
-        for (Pet pet : viewingList) {
-            if (pet != null) {
-                pet.printDetails();
-            }
-        }
+        service.read(() -> { // So that the count matches the list
+            int count = service.getPetCount();
+            System.out.println(count + pluralise(" pet", count) + " currently in the system:");
+            service.forEachPet(sorted, Pet::printDetails);
+        });
     }
 
     /**
@@ -410,24 +554,18 @@ public class Hospital {
      */
     private void removePet() {
         // More helpful response if there are no pets
-        if (numPets == 0) {
+        if (service.getPetCount() == 0) {
             System.out.println("No pets currently in the system.\n");
             return;
         }
 
         System.out.print("Enter pet name:  ");
         String name = console.nextLine();
-        if (!petExists(name)) {
+        if (!service.removePet(name)) {
             System.out.println("There are no pets named '" + name + "'\n");
         }
         else {
-            for (int i = 0; i < pets.length; i++) {
-                if (pets[i] != null && pets[i].getName().equalsIgnoreCase(name)) {
-                    pets[i] = null;
-                    numPets--;
-                    System.out.println("Pet successfully deleted from system.\n");
-                }
-            }
+            System.out.println("Pet successfully deleted from system.\n");
         }
     }
 
@@ -440,22 +578,22 @@ public class Hospital {
      */
     private void assignPet() {
         // More helpful response if there are no pets
-        if (numPets == 0) {
+        if (service.getPetCount() == 0) {
             System.out.println("No pets currently in the system.\n");
             return;
         }
-        else if (numDoctors == 0) {
+        else if (service.getDoctorCount() == 0) {
             System.out.println("There are no doctors for you to assign a pet to.\n");
             return;
         }
 
         System.out.print("Enter pet name:  ");
         String petName = console.nextLine();
-        if (!petExists(petName)) {
+        Pet pet = service.getPet(petName);
+        if (pet == null) {
             System.out.println("There are no pets named '" + petName + "'\n");
             return;
         }
-        Pet pet = getPetByName(petName);
 
         if (!getDoctorReassignmentConfirmation(pet)) {
             return;
@@ -463,14 +601,17 @@ public class Hospital {
 
         System.out.print("Enter doctor name:  ");
         String doctorName = console.nextLine();
-        if (!doctorExists(doctorName)) {
+        Doctor doctor = service.getDoctor(doctorName);
+        if (doctor == null) {
             System.out.println("There are no doctors named '" + doctorName + "'\n");
             return;
         }
-        Doctor doctor = getDoctorByName(doctorName);
 
-        if (getIncorrectSpecialisationConfirmation(pet, doctor)) {
-            pet.setDoctor(doctor);
+        if (getIncorrectSpecialisationConfirmation(pet.getPetType(), doctor)) {
+            if (!service.assignPet(petName, doctorName)) { // Removed by another client meanwhile
+                System.out.println("The pet or doctor is no longer in the system.\n");
+                return;
+            }
             System.out.println("Successfully assigned pet to new doctor.\n");
         }
     }
@@ -479,86 +620,249 @@ public class Hospital {
      * Lists all pets which are assigned to a specific doctor
      */
     private void listPetsByDoctor() {
-        if (numDoctors == 0) {
+        if (service.getDoctorCount() == 0) {
             System.out.println("No doctors currently in the system.\n");
             return;
         }
-        else if (numPets == 0) {
+        else if (service.getPetCount() == 0) {
             System.out.println("There are no pets currently in the system.\n");
             return;
         }
 
         System.out.print("Enter doctor name:  ");
         String name = console.nextLine();
-        if (!doctorExists(name)) {
+        int[] numPrinted = new int[1];
+        boolean exists = service.forEachPetOf(name, pet -> {
+            pet.printDetails();
+            numPrinted[0]++;
+        });
+        if (!exists) {
             System.out.println("There are no doctors named '" + name + "'\n");
+        }
+        // Default response if no pets are otherwise printed
+        else if (numPrinted[0] == 0) {
+            System.out.println(name + " currently has no pets assigned.\n");
+        }
+    }
+
+    /**
+     * Writes pets to HospitalPets.csv or HospitalPets.jsonl, for analysis by other programs
+     * Either every pet, or only the pets assigned to one doctor, can be exported.
+     *
+     * Will prompt the user before overwriting an existing export
+     */
+    private void exportPets() {
+        if (service.getPetCount() == 0) {
+            System.out.println("There are no pets currently in the system.\n");
             return;
         }
 
-        boolean anythingPrinted = false;
-        for (Pet pet : pets) {
-            if (pet != null && pet.hasDoctor() && pet.getDoctor().getName().equalsIgnoreCase(name)) {
-                pet.printDetails();
-                anythingPrinted = true;
+        System.out.print("Which format should the pets be exported in (csv/jsonl)?  ");
+        ExportFormat format = ExportFormat.parse(console.nextLine().trim());
+        while (format == null) {
+            System.out.print("Invalid input. Please re-enter (csv or jsonl):  ");
+            format = ExportFormat.parse(console.nextLine().trim());
+        }
+
+        System.out.print("Export only the pets assigned to which doctor (press enter for every pet)?  ");
+        String name = console.nextLine();
+        String doctorName = isBlank(name) ? null : name;
+        if (doctorName != null && !service.doctorExists(doctorName)) {
+            System.out.println("There are no doctors named '" + name + "'\n");
+            return;
+        }
+
+        String filename = EXPORT_FILE + "." + format;
+        if (new File(filename).exists()) {
+            System.out.print("The export already in " + filename + " will be overwritten. " +
+                             "Would you like to proceed (y/n)?  ");
+            if (!getConfirmation()) {
+                System.out.println();
+                return;
             }
         }
-        // Default response if no pets are otherwise printed
-        if (!anythingPrinted) {
-            System.out.println(name + " currently has no pets assigned.\n");
+
+        int exported;
+        try {
+            exported = service.exportPets(filename, format, doctorName);
         }
+        catch (IOException e) {
+            System.out.println("An error occurred while writing data to the file.\n");
+            return;
+        }
+        if (exported < 0) { // Removed by another client meanwhile
+            System.out.println("There are no doctors named '" + name + "'\n");
+            return;
+        }
+        System.out.println(exported + pluralise(" pet", exported) + (exported == 1 ? " was" : " were") +
+                           " exported to " + filename + ".\n");
     }
 
     /**
-     * Reads doctor/pet data from HospitalManagement.txt
+     * Reads doctor/pet data from HospitalManagement.txt (or a compressed copy of it)
      *
      * All file inputs are assumed to be valid
      * Will alert the user if the file is blank/missing
+     * If the file hasn't changed since it was last read, nothing is read.
+     * If lines have only been added to the end of it, only those lines are read.
+     * If lazy loading is on and there are no pets, the file's pets are only indexed.
      * The 'Pets'/'Doctors' headings must be present
      * Will prompt user if a pet/doctor already exists in the system,
      * and will let them either merge or ignore the input.
+     * @param filename  name of file which data should be read from
      */
-    private void readData() {
-        if (isBlankFile("HospitalManagement.txt")) {
-            System.out.println("There isn't anything in HospitalManagement.txt. Please add valid data before retrying.\n");
+    private void readData(String filename) {
+        HospitalService.ReadResult result;
+        try {
+            result = service.readData(filename, prompter);
+        }
+        catch (IOException | UncheckedIOException e) {
+            System.out.println("An error occurred while reading data from the file.\n");
             return;
         }
 
-        int doctorsRead, petsRead;
+        ImportSummary summary = result.getSummary();
+        switch (result.getStatus()) {
+            case UNCHANGED:
+                System.out.println(filename + " hasn't changed since it was last read, so there is nothing new to import.\n");
+                break;
+            case NOTHING_ADDED:
+                System.out.println("Only blank lines have been added to " + filename + " since it was last read, " +
+                                   "so there is nothing new to import.\n");
+                break;
+            case EMPTY:
+                System.out.println("There isn't anything in " + filename + ". Please add valid data before retrying.\n");
+                break;
+            case INDEXED:
+                int petsIndexed = result.getPetsIndexed();
+                int doctorsIndexed = summary.getDoctorsImported();
+                System.out.println("Data successfully indexed.");
+                System.out.println(petsIndexed + pluralise(" pet", petsIndexed) + " will be read from " + filename +
+                                   " when needed, and " + doctorsIndexed + pluralise(" doctor", doctorsIndexed) +
+                                   " were imported.\n");
+                printRejected(summary);
+                break;
+            default: // IMPORTED
+                int doctorsRead = summary.getDoctorsImported();
+                int petsRead = summary.getPetsImported();
+                if (doctorsRead == 0 && petsRead == 0) {
+                    System.out.println("No doctors or pets were imported from " + filename + "\n");
+                }
+                else {
+                    System.out.println("Data successfully imported into system.");
+                    System.out.println(petsRead + pluralise(" pet", petsRead) + " and " +
+                                       doctorsRead + pluralise(" doctor", doctorsRead) + " were imported.\n");
+                }
+                printRejected(summary);
+        }
+    }
+
+    /**
+     * Tells the user how many of a file's records were rejected as invalid, if any
+     *
+     * @param summary  summary of the import
+     */
+    private void printRejected(ImportSummary summary) {
+        int rejected = summary.getRecordsRejected();
+        if (rejected > 0) {
+            System.out.println(rejected + pluralise(" record", rejected) + " had an unknown type, size or " +
+                               "specialisation, so " + (rejected == 1 ? "was" : "were") + " not imported.\n");
+        }
+    }
+
+    /**
+     * Reads doctor/pet data from a file without any prompts
+     *
+     * The user chooses up front what should happen to pets/doctors which are
+     * already in the system. A single summary is printed at the end.
+     * @param filename  name of file which data should be read from
+     */
+    private void importDataWithPolicy(String filename) {
+        System.out.print("If a pet or doctor is already in the system, should the details in the file " +
+                         "overwrite it, be skipped, or be used only if newer (overwrite/skip/newest)?  ");
+        ConflictPolicy policy = ConflictPolicy.parse(console.nextLine());
+        while (policy == null || policy == ConflictPolicy.ASK) {
+            System.out.print("Invalid input. Please re-enter (overwrite, skip or newest):  ");
+            policy = ConflictPolicy.parse(console.nextLine());
+        }
+
+        ImportSummary summary;
         try {
-            // We have to read doctors before pets, otherwise when importing pets we may
-            // run into a NullPointerException since some doctors may not be in the system yet
-            doctorsRead = readDoctorsFromFile("HospitalManagement.txt");
-            petsRead = readPetsFromFile("HospitalManagement.txt");
+            summary = service.importFile(filename, policy);
         }
-        catch (FileNotFoundException e) {
-            System.out.println("'HospitalManagement.txt' was not found. Please create the file and ensure that the input " +
-                    "is valid before proceeding.\n");
+        catch (IOException e) {
+            System.out.println("An error occurred while reading data from the file.\n");
             return;
         }
+        if (summary == null) {
+            System.out.println("There isn't anything in " + filename + ". Please add valid data before retrying.\n");
+            return;
+        }
+
+        System.out.println("Finished importing " + filename + ".");
+        summary.printDetails();
+    }
 
-        if (doctorsRead == 0 && petsRead == 0) {
-            System.out.println("No doctors or pets were imported from HospitalManagement.txt\n");
+    /**
+     * Writes the doctors/pets which have been added, changed or removed since
+     * a checkpoint to HospitalChanges.txt, which can then be read into
+     * another copy of the system with command 18
+     *
+     * Prints the checkpoint to use for the next export. Leaving the checkpoint
+     * blank uses the one from the last export (or exports everything, if
+     * there hasn't been one).
+     */
+    private void exportChanges() {
+        System.out.print("Export changes made since which checkpoint (press enter for " + lastCheckpoint + ")?  ");
+        long checkpoint = -1;
+        while (checkpoint < 0) {
+            String input = console.nextLine().trim();
+            try {
+                checkpoint = input.isEmpty() ? lastCheckpoint : Long.parseLong(input);
+            }
+            catch (NumberFormatException e) {
+                // Handled below
+            }
+            if (checkpoint < 0) {
+                System.out.print("Invalid input. Please re-enter (a checkpoint number, or nothing):  ");
+            }
         }
-        else {
-            System.out.println("Data successfully imported into system.");
-            System.out.println(petsRead + pluralise(" pet", petsRead) + " and " +
-                               doctorsRead + pluralise(" doctor", doctorsRead) + " were imported.\n");
+
+        HospitalService.ChangeExport export;
+        try {
+            export = service.exportChanges(CHANGES_FILE, checkpoint);
         }
+        catch (IOException e) {
+            System.out.println("An error occurred while writing changes to the file.\n");
+            return;
+        }
+
+        lastCheckpoint = export.getNextCheckpoint();
+        int numPets = export.getPetsExported();
+        int numDoctors = export.getDoctorsExported();
+        int numRemoved = export.getRemovalsExported();
+        System.out.println("Changes successfully written to " + CHANGES_FILE + ".");
+        System.out.println(numPets + pluralise(" pet", numPets) + " and " +
+                           numDoctors + pluralise(" doctor", numDoctors) + " were exported, along with " +
+                           numRemoved + pluralise(" removal", numRemoved) + ".");
+        System.out.println("Checkpoint for the next export: " + export.getNextCheckpoint() + "\n");
     }
 
     /**
      * Writes the doctor/pet data currently in the system to HospitalManagement.txt
+     * (or a compressed copy of it)
      *
      * Any data already in the file will be overwritten. Will prompt the user
      * before attempting to write any data to a non-empty file.
+     * @param filename  name of file which data should be written to
      */
-    private void saveData() {
-        if (numDoctors == 0 && numPets == 0) {
+    private void saveData(String filename) {
+        if (service.getDoctorCount() == 0 && service.getPetCount() == 0) {
             System.out.println("There isn't any data which can be written to file.\n");
             return;
         }
-        else if (!isBlankFile("HospitalManagement.txt")) {
-            System.out.print("Any data already in HospitalManagement.txt will be overwritten. " +
+        else if (!isBlankFile(filename)) {
+            System.out.print("Any data already in " + filename + " will be overwritten. " +
                              "Would you like to proceed (y/n)?  ");
             if (!getConfirmation()) {
                 System.out.println();
@@ -567,7 +871,7 @@ public class Hospital {
         }
 
         try {
-            writeDataToFile("HospitalManagement.txt");
+            service.saveData(filename);
         }
         catch (Exception e) {
             System.out.println("An error occurred while writing data to the file.\n");
@@ -575,316 +879,262 @@ public class Hospital {
         }
 
         System.out.println("Data successfully written to file.");
-        System.out.println(numPets + pluralise(" pet", numPets) + " and " +
-                           numDoctors + pluralise(" doctor", numDoctors) + " were exported.\n");
+        printCounts("were exported");
     }
 
-
-    /* ******** Doctor/Pet management methods ******** */
-
-
     /**
-     * Adds a new doctor to the list of all doctors
-     * Will resize the doctors array if needed
+     * Saves every doctor/pet in the system to HospitalManagement.snapshot
+     * Snapshots are binary, and are much quicker to load than HospitalManagement.txt
      *
-     * @param doctor  the doctor to be added
-     * Returns nothing; the specified doctor will be added
+     * Will prompt the user before overwriting an existing snapshot
      */
-    private void addDoctorToList(Doctor doctor) {
-        if (numDoctors < doctors.length) {
-            for (int i = 0; i < doctors.length; i++) {
-                if (doctors[i] == null) {
-                    doctors[i] = doctor;
-                    break;
-                }
+    private void saveSnapshot() {
+        if (service.getDoctorCount() == 0 && service.getPetCount() == 0) {
+            System.out.println("There isn't any data which can be saved.\n");
+            return;
+        }
+        else if (new File(HospitalService.SNAPSHOT_FILE).exists()) {
+            System.out.print("The snapshot already in " + HospitalService.SNAPSHOT_FILE + " will be overwritten. " +
+                             "Would you like to proceed (y/n)?  ");
+            if (!getConfirmation()) {
+                System.out.println();
+                return;
             }
         }
-        else {
-            doctors = resizeList(doctors, 1);
-            doctors[doctors.length - 1] = doctor;
+
+        try {
+            service.saveSnapshot();
+        }
+        catch (IOException e) {
+            System.out.println("An error occurred while saving the snapshot.\n");
+            return;
         }
-        numDoctors++;
+
+        System.out.println("Snapshot successfully saved.");
+        printCounts("were saved");
     }
 
     /**
-     * Adds a new pet to the list of all pets
-     * Will resize the pets array if needed
+     * Replaces every doctor/pet in the system with those in HospitalManagement.snapshot
      *
-     * @param pet  the pet to be added
-     * Returns nothing; the specified pet will be added
+     * Will prompt the user before replacing any data which is already in the system
      */
-    private void addPetToList(Pet pet) {
-        if (numPets < pets.length) {
-            for (int i = 0; i < pets.length; i++) {
-                if (pets[i] == null) {
-                    pets[i] = pet;
-                    break;
-                }
+    private void loadSnapshot() {
+        if (service.getDoctorCount() > 0 || service.getPetCount() > 0) {
+            System.out.print("Any data currently in the system will be replaced by the snapshot. " +
+                             "Would you like to proceed (y/n)?  ");
+            if (!getConfirmation()) {
+                System.out.println();
+                return;
             }
         }
-        else {
-            pets = resizeList(pets, 1);
-            pets[pets.length - 1] = pet;
+
+        try {
+            service.loadSnapshot();
+        }
+        catch (FileNotFoundException e) {
+            System.out.println("There isn't a snapshot to load. Please save one (command 15) first.\n");
+            return;
+        }
+        catch (IOException e) {
+            System.out.println("An error occurred while loading the snapshot.\n");
+            return;
         }
-        numPets++;
+
+        System.out.println("Snapshot successfully loaded.");
+        printCounts("were loaded");
     }
 
+
+    /* ******** Session management methods ******** */
+
+
     /**
-     * Determines whether a doctor with the specified name exists
-     * Returns true if they do exist, false if they don't
+     * Rebuilds the data from the last session and turns on journalling
      *
-     * @param name  doctor name to be searched for
-     * @return whether a doctor with that name exists (boolean value)
+     * Will alert the user if the snapshot/journal can't be read
      */
-    private boolean doctorExists(String name) {
-        for (Doctor doctor : doctors) {
-            if (doctor != null && doctor.getName().equalsIgnoreCase(name)) {
-                return true;
-            }
+    private void recoverData() {
+        int entriesReplayed;
+        try {
+            entriesReplayed = service.enableJournal();
+        }
+        catch (IOException e) {
+            System.out.println("The journal could not be read, so changes will not be recorded.\n");
+            return;
         }
-        return false;
+
+        int numPets = service.getPetCount();
+        int numDoctors = service.getDoctorCount();
+        System.out.println("Recovered " + numPets + pluralise(" pet", numPets) + " and " +
+                           numDoctors + pluralise(" doctor", numDoctors) + " from the last session (" +
+                           entriesReplayed + " journal " + (entriesReplayed == 1 ? "entry" : "entries") +
+                           " replayed).\n");
     }
 
     /**
-     * Determines whether a pet with the specified name exists
-     * Returns true if they do exist, false if they don't
+     * Starts serving the data over HTTP, alongside the console
      *
-     * @param name  pet name to be searched for
-     * @return whether a pet with that name exists (boolean value)
+     * @param port  port to listen on
+     * Will alert the user if the server can't be started (e.g. the port is in use)
      */
-    private boolean petExists(String name) {
-        for (Pet pet : pets) {
-            if (pet != null && pet.getName().equalsIgnoreCase(name)) {
-                return true;
-            }
+    private void startHttpServer(int port) {
+        try {
+            httpServer = new HospitalHttpServer(service, port);
         }
-        return false;
+        catch (IOException e) {
+            System.out.println("The HTTP API could not be started on port " + port + ".\n");
+            return;
+        }
+        httpServer.start();
+        System.out.println("The HTTP API is listening on port " + httpServer.getPort() + ".\n");
     }
 
     /**
-     * Returns the doctor with the specified name, if they exist
+     * Stops serving the data over HTTP, so that no more changes are made
      *
-     * @param name  doctor name to be searched for
-     * @return doctor object, or 'none' if they don't exist
+     * No inputs/preconditions, returns nothing
      */
-    private Doctor getDoctorByName(String name) {
-        for (Doctor doctor : doctors) {
-            if (doctor != null && doctor.getName().equalsIgnoreCase(name)) {
-                return doctor;
-            }
+    private void stopHttpServer() {
+        if (httpServer != null) {
+            httpServer.stop();
+            httpServer = null;
         }
-
-        return null; // Doctor does not exist
     }
 
     /**
-     * Returns the pet with the specified name, if they exist
+     * Runs the commands in a script instead of prompting the user (see HospitalBatch),
+     * then ends the session and exits
      *
-     * @param name  pet name to be searched for
-     * @return pet object, or 'none' if they don't exist
+     * Output is buffered rather than written a line at a time, which would otherwise
+     * take most of the time for a large script. A summary is printed at the end.
+     * @param filename  name of the script, or null to read it from standard input
      */
-    private Pet getPetByName(String name) {
-        for (Pet pet : pets) {
-            if (pet != null && pet.getName().equalsIgnoreCase(name)) {
-                return pet;
-            }
-        }
-
-        return null; // Pet does not exist
+    private void runBatch(String filename) {
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+        PrintStream err = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.err), 1 << 16));
+        System.setOut(out);
+        System.setErr(err);
+
+        HospitalBatch batch = new HospitalBatch(service);
+        boolean scriptRead = true;
+        try (BufferedReader script = new BufferedReader(filename == null ? new InputStreamReader(System.in)
+                                                                         : new FileReader(filename))) {
+            batch.run(script);
+        }
+        catch (IOException e) {
+            System.err.println("An error occurred while reading the script" +
+                               (filename == null ? "." : " from " + filename + "."));
+            scriptRead = false;
+        }
+
+        stopHttpServer();
+        service.closeJournal();
+        reportErrors();
+        closeAutosave();
+        int numRun = batch.getCommandsRun();
+        int numFailed = batch.getCommandsFailed();
+        System.err.println(numRun + pluralise(" command", numRun) + " run, " + numFailed + " failed.");
+        out.flush();
+        err.flush();
+        System.exit(numFailed == 0 && scriptRead ? 0 : 1);
     }
 
     /**
-     * Updates the pet's details to the specified values. Invalid inputs will be ignored.
+     * Saves any changes which autosave hasn't saved yet, and stops autosave
      *
-     * Will prompt user if pet already has assigned doctor/wrong specialisation
-     * @param pet  the pet whose details should be updated
-     * @param size  new size
-     * @param type  new type
-     * @param age  new age
-     * @param weight  new weight
-     * @param doctor  new doctor to be assigned
+     * No inputs/preconditions, returns nothing
      */
-    private void updatePetDetails(Pet pet, String size, String type, int age, double weight, Doctor doctor) {
-        pet.setSize(size);
-        pet.setType(type);
-        pet.setAge(age);
-        pet.setWeight(weight);
-        if (doctor != null &&
-            getDoctorReassignmentConfirmation(pet) &&
-            getIncorrectSpecialisationConfirmation(pet, doctor)) {
-            pet.setDoctor(doctor);
+    private void closeAutosave() {
+        String filename = service.getAutosaveFile();
+        if (filename == null) {
+            return;
         }
-    }
 
-    /**
-     * Unassigns the doctor from every pet which is assigned to them
-     *
-     * @param doctor  A doctor object
-     * Returns nothing; pet 'doctor' attributes may be set to none
-     */
-    private void unassignPetsByDoctor(Doctor doctor) {
-        for (Pet pet : pets) {
-            // If we use == it compares references, which is appropriate for this usecase
-            if (pet != null && pet.getDoctor() == doctor) {
-                pet.setDoctor(null);
+        try {
+            if (service.closeAutosave()) {
+                System.out.println("Unsaved changes have been saved to " + filename + ".");
             }
         }
+        catch (IOException e) {
+            System.out.println("An error occurred while saving changes to " + filename +
+                               "; recent changes may not be kept.");
+        }
     }
 
     /**
-     * Reads doctors from the input file and imports them into the program
+     * Tells the user about any errors from journalling, compaction or autosave,
+     * which may have happened in the background
      *
-     * @param filename  name of file which data should be read from
-     * @return  number of doctors imported.
-     * @throws FileNotFoundException  if the specified file is missing
+     * No inputs/preconditions, returns nothing
      */
-    private int readDoctorsFromFile(String filename) throws FileNotFoundException {
-        Scanner input = new Scanner(new File(filename));
-
-        boolean doctorsFound = false;
-        int numDoctorsFound = 0;
-        while (input.hasNextLine()) {
-            // If the loop doesn't exit, this variable will hold either the doctor name input, or the next line
-            String nextLine = input.nextLine();
-            if (nextLine.trim().equals("")) {
-                // Don't crash on blank lines at the end of the file
-                break;
-            }
-            else if (nextLine.equals("Doctors")) {
-                doctorsFound = true;
-            }
-            else if (doctorsFound) {
-                String specialisationInput = input.nextLine();
-
-                String doctorName = nextLine.substring(5, nextLine.length());
-                String specialisation = specialisationInput.substring(15, specialisationInput.length());
-                if (doctorExists(doctorName)) {
-                    System.out.print("Doctor '" + doctorName + "' is already in the system; would you like to " +
-                            "update their details to match the information in HospitalManagement.txt (y/n)?  ");
-                    if (!getConfirmation()) {
-                        System.out.println("Information for '" + doctorName + "' was ignored. ");
-                        continue;
-                    }
-                    else {
-                        getDoctorByName(doctorName).setSpecialisation(specialisationInput);
-                        numDoctorsFound++;
-                    }
-                }
-                else {
-                    Doctor doctor = new Doctor(doctorName, specialisation);
-                    addDoctorToList(doctor);
-                    numDoctorsFound++;
-                }
-            }
+    private void reportErrors() {
+        if (service.takeJournalError() != null) {
+            System.out.println("An error occurred while writing to the journal; recent changes may not be kept.\n");
+        }
+        if (service.takeCompactionError() != null) {
+            System.out.println("An error occurred while compacting the journal. " +
+                               "The journal has been kept, so no changes were lost.\n");
         }
+        if (service.takeAutosaveError() != null) {
+            System.out.println("An error occurred while saving changes to " + service.getAutosaveFile() +
+                               ". It will be tried again after the next change, and on exit.\n");
+        }
+    }
 
-        input.close();
 
-        return numDoctorsFound;
-    }
+    /* *************** Helper Methods **************** */
+
 
     /**
-     * Reads pets from the input file and imports them into the program
+     * Makes the changes collected by editPet(), unless the pet has changed since they were started
+     * Tells the user if the pet has been removed or changed by someone else meanwhile.
      *
-     * @param filename  name of file which data should be read from
-     * @return  number of pets imported
-     * @throws FileNotFoundException  if the specified file is missing
+     * @param name  pet name
+     * @param version  version of the pet when the user started editing it
+     * @param size  new size, or null
+     * @param type  new type, or null
+     * @param age  new age, or null
+     * @param weight  new weight, or null
+     * @param doctorName  name of the new doctor, or null
+     * @return  whether the pet was edited (boolean value)
      */
-    private int readPetsFromFile(String filename) throws FileNotFoundException {
-        Scanner input = new Scanner(new File(filename));
-
-        boolean petsFound = false;
-        int numPetsFound = 0;
-        while (input.hasNextLine()) {
-            if (petsFound) {
-                String firstInput = input.nextLine();
-                if (firstInput.equals("Doctors")) {
-                    break; // Reached end of pets; stop
-                } // Else continue, using firstInput as the pet type
-
-                // We need to read each line into a variable before slicing it, because calling
-                // .length() on a .nextline() would read an extra line
-                // Also so that we can check for existing pets before creation
-                String sizeInput = input.nextLine();
-                String nameInput = input.nextLine();
-                String weightInput = input.nextLine();
-                String ageInput = input.nextLine();
-                String doctorInput = input.nextLine();
-
-                String petName = nameInput.substring(5, nameInput.length());
-                String doctorName = doctorInput.substring(7, doctorInput.length());
-                if (petExists(petName)) {
-                    System.out.print("The pet '" + petName + "' is already in the system; would you like to update" +
-                                       "it's details to match the information in HospitalManagement.txt (y/n)?  ");
-                    if (!getConfirmation()) {
-                        System.out.println("Information for '" + petName + "' was ignored. ");
-                        continue;
-                    }
-                    else {
-                        updatePetDetails(
-                                getPetByName(petName),
-                                sizeInput.substring(5, sizeInput.length()),
-                                firstInput.substring(5, firstInput.length()),
-                                Integer.parseInt(ageInput.substring(4, ageInput.length())),
-                                Double.parseDouble(weightInput.substring(7, weightInput.length())),
-                                doctorName.equalsIgnoreCase("no doctor assigned") ? null : getDoctorByName(doctorName)
-                        );
-                        numPetsFound++;
-                    }
+    private boolean saveEdit(String name, long version, String size, String type, Integer age, Double weight,
+                             String doctorName) {
+        switch (service.editPetIfUnchanged(name, version, size, type, age, weight, doctorName)) {
+            case NOT_FOUND: // Removed by another client meanwhile
+                System.out.println("There are no pets named '" + name + "'\n");
+                return false;
+            case CONFLICT:
+                System.out.println("\n'" + name + "' was changed by someone else while you were editing it, " +
+                                   "so your changes have not been made. Its details are now:");
+                Pet pet = service.getPet(name);
+                if (pet != null) {
+                    pet.printDetails();
                 }
                 else {
-                    Pet pet = new Pet(
-                            petName,
-                            sizeInput.substring(5, sizeInput.length()),
-                            firstInput.substring(5, firstInput.length()),
-                            Integer.parseInt(ageInput.substring(4, ageInput.length())),
-                            Double.parseDouble(weightInput.substring(7, weightInput.length())),
-                            doctorName.equalsIgnoreCase("no doctor assigned") ? null : getDoctorByName(doctorName)
-                    );
-                    addPetToList(pet);
-                    numPetsFound++;
+                    System.out.println("(It has since been deleted.)\n");
                 }
-            }
-            else if (input.nextLine().equals("Pets")) {
-                petsFound = true;
-            }
+                return false;
+            default: // EDITED
+                return true;
         }
-
-        input.close();
-
-        return numPetsFound;
     }
 
     /**
-     * Writes all the program data (pets and doctors) to the specified file
+     * Prints how many pets and doctors are in the system, after a save or load
      *
-     * @param filename  name of file which data should be written to
-     * @throws Exception  if a random error occurs while opening/writing to the file
+     * @param action  what happened to them, e.g. 'were saved'
      */
-    private void writeDataToFile(String filename) throws Exception {
-        PrintWriter output = new PrintWriter(new File(filename));
-
-        output.println("Pets");
-        for (Pet pet : pets) {
-            if (pet != null) {
-                output.println(pet.toString());
-            }
-        }
-
-        output.println("Doctors");
-        for (Doctor doctor : doctors) {
-            if (doctor != null) {
-                output.println(doctor.toString());
-            }
-        }
-
-        output.close();
+    private void printCounts(String action) {
+        service.read(() -> {
+            int numPets = service.getPetCount();
+            int numDoctors = service.getDoctorCount();
+            System.out.println(numPets + pluralise(" pet", numPets) + " and " +
+                               numDoctors + pluralise(" doctor", numDoctors) + " " + action + ".\n");
+        });
     }
 
-
-    /* *************** Helper Methods **************** */
-
-
     /**
      * Adds an 's' to the given string if the value is not 1
      *
@@ -922,137 +1172,27 @@ public class Hospital {
     private boolean isBlankFile(String filename) {
         Scanner input;
         try {
-            input = new Scanner(new File(filename));
+            InputStream file = new FileInputStream(filename);
+            input = new Scanner(HospitalFileWriter.isCompressed(filename) ? new PipelinedGzipInputStream(file) : file);
         }
         catch (FileNotFoundException e) {
             // A nonexistent file is a blank file
             return true;
         }
 
-        while (input.hasNextLine()) {
-            // If there is a line that has any non-whitespace characters on it, the file isn't blank
-            if (input.nextLine().trim().length() != 0) {
-                return false;
-            }
-        }
-        // If we make it through, the file must be blank
-        return true;
-    }
-
-    /**
-     * Resizes a doctor list by copying it to a new array with
-     * the specified number of new items
-     *
-     * @param list  doctor list to be transformed
-     * @param newItems  number of new items to be added. Should be positive.
-     * @return  the new list of doctors
-     */
-    private Doctor[] resizeList(Doctor[] list, int newItems) {
-        if (newItems < 0) {
-            return null; // Do not attempt to shorten the array
-        }
-
-        Doctor[] newList = new Doctor[list.length + newItems];
-        for (int i = 0; i < list.length; i++) {
-            newList[i] = list[i];
-        }
-        return newList;
-    }
-
-    /**
-     * Resizes a pet list by copying it to a new array with
-     * the specified number of new items
-     *
-     * @param list  pet list to be transformed
-     * @param newItems  number of new items to be added. Should be positive.
-     * @return  the new list of pets
-     */
-    private Pet[] resizeList(Pet[] list, int newItems) {
-        if (newItems < 0) {
-            return null; // Do not attempt to shorten the array
-        }
-
-        Pet[] newList = new Pet[list.length + newItems];
-        for (int i = 0; i < list.length; i++) {
-            newList[i] = list[i];
-        }
-        return newList;
-    }
-
-    /**
-     * Sorts a list of doctors alphabetically by name (A-Z).
-     * Nulls entries will be ignored. Note: the output list may not have the
-     * same physical size as the input, but it will have the same logical size.
-     *
-     * @param doctors  the list of doctors to be sorted. Original will not be modified.
-     * @param logicalSize  the number of actual doctors in the input list
-     * @return  the sorted list of doctors
-     */
-    private Doctor[] sortDoctors(Doctor[] doctors, int logicalSize) {
-        String[] doctorNames = new String[logicalSize];
-        for (int index = 0, name = 0; index < doctors.length; index++) {
-            if (doctors[index] != null) {
-                doctorNames[name] = doctors[index].getName().toLowerCase();
-                name++;
-            }
-        }
-
-        doctorNames = sortList(doctorNames);
-        Doctor[] sortedDoctors = new Doctor[doctorNames.length];
-        for (int i = 0; i < doctorNames.length; i++) {
-            sortedDoctors[i] = getDoctorByName(doctorNames[i]);
-        }
-
-        return sortedDoctors;
-    }
-
-    /**
-     * Sorts a list of pets alphabetically by name (A-Z).
-     * Nulls entries will be ignored. Note: the output list may not have the
-     * same physical size as the input, but it will have the same logical size.
-     *
-     * @param pets  the list of pets to be sorted. Original will not be modified.
-     * @param logicalSize  the number of actual pets in the input list
-     * @return  the sorted list of pets
-     */
-    private Pet[] sortPets(Pet[] pets, int logicalSize) {
-        String[] petNames = new String[logicalSize];
-        for (int index = 0, name = 0; index < pets.length; index++) {
-            if (pets[index] != null) {
-                petNames[name] = pets[index].getName().toLowerCase();
-                name++;
-            }
-        }
-
-        petNames = sortList(petNames);
-        Pet[] sortedPets = new Pet[petNames.length];
-        for (int i = 0; i < petNames.length; i++) {
-            sortedPets[i] = getPetByName(petNames[i]);
-        }
-
-        return sortedPets;
-    }
-
-    /**
-     * Sorts a list of strings in lexographic order using the
-     * bubble sort algorithm
-     *
-     * @param list  list of strings to be sorted. This **will** be modified
-     * @return  the sorted list of strings
-     */
-    private String[] sortList(String[] list) {
-        String temp;
-        for (int round = list.length - 1; round > 0; round--) {
-            for (int i = 0; i < round; i++) {
-                if (list[i].compareTo(list[i + 1]) > 0) {
-                    temp = list[i + 1];
-                    list[i + 1] = list[i];
-                    list[i] = temp;
+        try {
+            while (input.hasNextLine()) {
+                // If there is a line that has any non-whitespace characters on it, the file isn't blank
+                if (input.nextLine().trim().length() != 0) {
+                    return false;
                 }
             }
+            // If we make it through, the file must be blank
+            return true;
+        }
+        finally {
+            input.close(); // Also stops the decompressor thread of a compressed file
         }
-
-        return list;
     }
 
     /**
@@ -1105,13 +1245,13 @@ public class Hospital {
      * have a matching specialisation
      * Will immediately return true if the pet/doctor have matching specialisation
      *
-     * @param pet  pet for comparison
+     * @param type  type of the pet, for comparison
      * @param doctor  doctor for comparison
      * @return  whether the user wishes to proceed with the doctor reassignment
      */
-    private boolean getIncorrectSpecialisationConfirmation(Pet pet, Doctor doctor) {
-        if (!doctor.getSpecialisation().equalsIgnoreCase(pet.getType())) {
-            System.out.println("Doctor " + doctor.getName() + " does not specialise in " + pet.getType() + "s.");
+    private boolean getIncorrectSpecialisationConfirmation(PetType type, Doctor doctor) {
+        if (!doctor.getSpecialisationValue().treats(type)) {
+            System.out.println("Doctor " + doctor.getName() + " does not specialise in " + type + "s.");
             System.out.print("Are you sure that you want to switch to this doctor (y/n)?  ");
             if (!getConfirmation()) {
                 System.out.println();
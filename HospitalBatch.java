@@ -0,0 +1,587 @@
+/*
+ * Class Name and Description:
+ *    HospitalBatch.java runs one-line commands from a script (a file or
+ *    standard input) without any prompts, so that the system can be
+ *    driven by other programs and large workloads can be replayed quickly.
+ *    It is another client of HospitalService, alongside the console.
+ *
+ *    Each line is one command, with its arguments separated by spaces.
+ *    An argument containing spaces can be put in double quotes, e.g.
+ *    "Rex Junior". Inside quotes, \" stands for a double quote and \\ for
+ *    a backslash; any other backslash is kept as it is, so "C:\data\pets.txt"
+ *    needs no escaping. Blank lines and lines starting with '#' are ignored.
+ *
+ *        adddoctor <name> <specialisation>
+ *        listdoctors [sorted]
+ *        removedoctor <name>
+ *        addpet <name> <size> <type> <age> <weight> [<doctor> [force]]
+ *        analysepet <name>
+ *        editpet <name> [size=<size>] [type=<type>] [age=<age>] [weight=<weight>] [doctor=<doctor>] [force]
+ *        listpets [sorted]
+ *        removepet <name>
+ *        assignpet <pet> <doctor> [force]
+ *        listpetsof <doctor>
+ *        analyseall
+ *        read <file> <overwrite|skip|newest>
+ *        save <file>
+ *        export <file> <csv|jsonl> [<doctor>]
+ *
+ *    Changes print nothing when they succeed. Listings and analyses print
+ *    the same details as the console. A pet is only assigned to a doctor
+ *    with a different specialisation if the command ends with 'force', in
+ *    place of the console's confirmation.
+ *
+ *    A command which fails is reported on System.err with its line number,
+ *    and the rest of the script carries on.
+ */
+
+import java.util.*;
+import java.io.*;
+
+public class HospitalBatch {
+    private final HospitalService service; // Holds the doctors and pets
+    private int commandsRun = 0;
+    private int commandsFailed = 0;
+
+    /**
+     * Creates a batch runner for a service
+     *
+     * @param service  the service which holds the doctors and pets - may be shared with other clients
+     */
+    public HospitalBatch(HospitalService service) {
+        this.service = service;
+    }
+
+    /**
+     * Runs every command in a script, reporting any which fail
+     *
+     * @param script  the commands, one per line
+     * @return  number of commands which failed
+     * @throws IOException  if the script can't be read
+     */
+    public int run(BufferedReader script) throws IOException {
+        int lineNumber = 0;
+        int failedBefore = commandsFailed;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            commandsRun++;
+            try {
+                execute(trimmed);
+            }
+            catch (IllegalArgumentException e) {
+                commandsFailed++;
+                System.err.println("Line " + lineNumber + ": " + e.getMessage());
+            }
+            catch (IOException | UncheckedIOException e) {
+                commandsFailed++;
+                System.err.println("Line " + lineNumber + ": An error occurred while reading or writing a file.");
+            }
+        }
+        return commandsFailed - failedBefore;
+    }
+
+    /**
+     * Runs a single command
+     *
+     * @param line  the command and its arguments, e.g. 'addpet Rex large dog 3 20.5 Maria'
+     * @throws IllegalArgumentException  if the command is invalid or can't be carried out
+     * @throws IOException  if a file can't be read/written
+     */
+    public void execute(String line) throws IOException {
+        List<String> words = split(line);
+        String command = words.get(0).toLowerCase();
+        List<String> arguments = words.subList(1, words.size());
+        switch (command) {
+            case "adddoctor":
+                checkArguments(command, arguments, 2, 2, "<name> <specialisation>");
+                addDoctor(arguments.get(0), arguments.get(1));
+                break;
+            case "listdoctors":
+                checkArguments(command, arguments, 0, 1, "[sorted]");
+                listDoctors(isSorted(command, arguments));
+                break;
+            case "removedoctor":
+                checkArguments(command, arguments, 1, 1, "<name>");
+                if (!service.removeDoctor(arguments.get(0))) {
+                    throw new IllegalArgumentException("There are no doctors named '" + arguments.get(0) + "'");
+                }
+                break;
+            case "addpet":
+                checkArguments(command, arguments, 5, 7, "<name> <size> <type> <age> <weight> [<doctor> [force]]");
+                addPet(arguments);
+                break;
+            case "analysepet":
+                checkArguments(command, arguments, 1, 1, "<name>");
+                analysePet(arguments.get(0));
+                break;
+            case "editpet":
+                checkArguments(command, arguments, 1, 7, "<name> [<field>=<value>...] [force]");
+                editPet(arguments);
+                break;
+            case "listpets":
+                checkArguments(command, arguments, 0, 1, "[sorted]");
+                listPets(isSorted(command, arguments));
+                break;
+            case "removepet":
+                checkArguments(command, arguments, 1, 1, "<name>");
+                if (!service.removePet(arguments.get(0))) {
+                    throw new IllegalArgumentException("There are no pets named '" + arguments.get(0) + "'");
+                }
+                break;
+            case "assignpet":
+                checkArguments(command, arguments, 2, 3, "<pet> <doctor> [force]");
+                assignPet(arguments.get(0), arguments.get(1), isForced(command, arguments, 2));
+                break;
+            case "listpetsof":
+                checkArguments(command, arguments, 1, 1, "<doctor>");
+                listPetsByDoctor(arguments.get(0));
+                break;
+            case "analyseall":
+                checkArguments(command, arguments, 0, 0, "");
+                service.getObesityReport(true).printDetails();
+                break;
+            case "read":
+                checkArguments(command, arguments, 2, 2, "<file> <overwrite|skip|newest>");
+                readData(arguments.get(0), arguments.get(1));
+                break;
+            case "save":
+                checkArguments(command, arguments, 1, 1, "<file>");
+                service.saveData(arguments.get(0));
+                break;
+            case "export":
+                checkArguments(command, arguments, 2, 3, "<file> <csv|jsonl> [<doctor>]");
+                exportPets(arguments);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command '" + words.get(0) + "'");
+        }
+    }
+
+    /**
+     * Gets the number of commands which have been run (excluding blank lines and comments)
+     *
+     * No inputs/preconditions
+     * @return  number of commands run
+     */
+    public int getCommandsRun() {
+        return commandsRun;
+    }
+
+    /**
+     * Gets the number of commands which have failed
+     *
+     * No inputs/preconditions
+     * @return  number of commands failed
+     */
+    public int getCommandsFailed() {
+        return commandsFailed;
+    }
+
+
+    /* ******** Commands ******** */
+
+
+    /**
+     * Adds a new doctor
+     *
+     * @param name  doctor name
+     * @param specialisation  dog or cat
+     */
+    private void addDoctor(String name, String specialisation) {
+        if (Specialisation.parse(specialisation) == null) {
+            throw new IllegalArgumentException("Invalid specialisation '" + specialisation + "' (must be dog or cat)");
+        }
+        if (service.addDoctor(name, specialisation) == null) {
+            throw new IllegalArgumentException("There is already a doctor named '" + name + "'");
+        }
+    }
+
+    /**
+     * Prints all of the doctors in the system
+     *
+     * @param sorted  whether the doctors should be sorted by name
+     */
+    private void listDoctors(boolean sorted) {
+        service.read(() -> { // So that the count matches the list
+            int count = service.getDoctorCount();
+            System.out.println(count + (count == 1 ? " doctor" : " doctors") + " currently in the system:");
+            service.forEachDoctor(sorted, Doctor::printDetails);
+        });
+    }
+
+    /**
+     * Adds a new pet, and assigns it to a doctor if one is given
+     * If the doctor doesn't exist, or has the wrong specialisation (without 'force'), the pet isn't added.
+     *
+     * @param arguments  name, size, type, age, weight [, doctor [, force]]
+     */
+    private void addPet(List<String> arguments) {
+        String name = arguments.get(0);
+        String size = parseSize(arguments.get(1));
+        String type = parseType(arguments.get(2));
+        int age = parseAge(arguments.get(3));
+        double weight = parseWeight(arguments.get(4));
+        String doctorName = arguments.size() > 5 ? arguments.get(5) : null;
+        if (doctorName != null) {
+            checkDoctor(doctorName, PetType.parse(type), isForced("addpet", arguments, 6));
+        }
+
+        if (service.addPet(name, size, type, age, weight) == null) {
+            throw new IllegalArgumentException("There is already a pet named '" + name + "'");
+        }
+        if (doctorName != null && !service.assignPet(name, doctorName)) {
+            throw new IllegalArgumentException("The pet was added, but doctor '" + doctorName +
+                                               "' is no longer in the system");
+        }
+    }
+
+    /**
+     * Prints a pet's details and whether or not they are overweight
+     *
+     * @param name  pet name
+     */
+    private void analysePet(String name) {
+        boolean[] exists = new boolean[1];
+        service.read(() -> { // So that the pet can't change part-way through
+            Pet pet = service.getPet(name);
+            if (pet != null) {
+                exists[0] = true;
+                pet.printDetails();
+                System.out.println(pet.getName() + " is " + (pet.isOverweight() ? "overweight." : "not overweight.") + "\n");
+            }
+        });
+        if (!exists[0]) {
+            throw new IllegalArgumentException("There are no pets named '" + name + "'");
+        }
+    }
+
+    /**
+     * Changes some of a pet's details. Fields which aren't given are left as they are.
+     *
+     * @param arguments  name, then any of size=, type=, age=, weight= and doctor=, and optionally force
+     */
+    private void editPet(List<String> arguments) {
+        String name = arguments.get(0);
+        String size = null;
+        String type = null;
+        Integer age = null;
+        Double weight = null;
+        String doctorName = null;
+        boolean force = false;
+        for (String argument : arguments.subList(1, arguments.size())) {
+            int equals = argument.indexOf('=');
+            String field = equals < 0 ? argument : argument.substring(0, equals).toLowerCase();
+            String value = equals < 0 ? null : argument.substring(equals + 1);
+            switch (equals < 0 ? "" : field) {
+                case "size":
+                    size = parseSize(value);
+                    break;
+                case "type":
+                    type = parseType(value);
+                    break;
+                case "age":
+                    age = parseAge(value);
+                    break;
+                case "weight":
+                    weight = parseWeight(value);
+                    break;
+                case "doctor":
+                    doctorName = value;
+                    break;
+                default:
+                    if (!argument.equalsIgnoreCase("force")) {
+                        throw new IllegalArgumentException("Invalid field '" + argument + "' for editpet " +
+                                                           "(must be size=, type=, age=, weight=, doctor= or force)");
+                    }
+                    force = true;
+            }
+        }
+
+        Pet pet = service.getPet(name);
+        if (pet == null) {
+            throw new IllegalArgumentException("There are no pets named '" + name + "'");
+        }
+        if (doctorName != null) {
+            checkDoctor(doctorName, type == null ? pet.getPetType() : PetType.parse(type), force);
+        }
+        if (!service.editPet(name, size, type, age, weight, doctorName)) {
+            throw new IllegalArgumentException("There are no pets named '" + name + "'");
+        }
+    }
+
+    /**
+     * Prints all of the pets in the system
+     *
+     * @param sorted  whether the pets should be sorted by name
+     */
+    private void listPets(boolean sorted) {
+        service.read(() -> { // So that the count matches the list
+            int count = service.getPetCount();
+            System.out.println(count + (count == 1 ? " pet" : " pets") + " currently in the system:");
+            service.forEachPet(sorted, Pet::printDetails);
+        });
+    }
+
+    /**
+     * Assigns a pet to a doctor
+     *
+     * @param petName  pet name
+     * @param doctorName  doctor name
+     * @param force  whether a doctor with the wrong specialisation may be used
+     */
+    private void assignPet(String petName, String doctorName, boolean force) {
+        Pet pet = service.getPet(petName);
+        if (pet == null) {
+            throw new IllegalArgumentException("There are no pets named '" + petName + "'");
+        }
+        checkDoctor(doctorName, pet.getPetType(), force);
+        if (!service.assignPet(petName, doctorName)) { // Removed by another client meanwhile
+            throw new IllegalArgumentException("The pet or doctor is no longer in the system");
+        }
+    }
+
+    /**
+     * Prints the pets which are assigned to a doctor
+     *
+     * @param name  doctor name
+     */
+    private void listPetsByDoctor(String name) {
+        int[] numPrinted = new int[1];
+        boolean exists = service.forEachPetOf(name, pet -> {
+            pet.printDetails();
+            numPrinted[0]++;
+        });
+        if (!exists) {
+            throw new IllegalArgumentException("There are no doctors named '" + name + "'");
+        }
+        // Default response if no pets are otherwise printed
+        if (numPrinted[0] == 0) {
+            System.out.println(name + " currently has no pets assigned.\n");
+        }
+    }
+
+    /**
+     * Reads doctor/pet data from a file, without any prompts
+     *
+     * @param filename  name of file which data should be read from
+     * @param policyName  what to do with pets/doctors which are already in the system
+     * @throws IOException  if the file can't be read
+     */
+    private void readData(String filename, String policyName) throws IOException {
+        ConflictPolicy policy = ConflictPolicy.parse(policyName);
+        if (policy == null || policy == ConflictPolicy.ASK) {
+            throw new IllegalArgumentException("Invalid policy '" + policyName + "' (must be overwrite, skip or newest)");
+        }
+
+        ImportSummary summary = service.importFile(filename, policy);
+        if (summary == null) {
+            throw new IllegalArgumentException("There isn't anything in " + filename);
+        }
+        System.out.println("Finished importing " + filename + ".");
+        summary.printDetails();
+    }
+
+    /**
+     * Writes pets to a file as CSV or JSON Lines, for analysis by other programs
+     *
+     * @param arguments  filename, format [, doctor]
+     * @throws IOException  if the file can't be written
+     */
+    private void exportPets(List<String> arguments) throws IOException {
+        ExportFormat format = ExportFormat.parse(arguments.get(1));
+        if (format == null) {
+            throw new IllegalArgumentException("Invalid format '" + arguments.get(1) + "' (must be csv or jsonl)");
+        }
+        String doctorName = arguments.size() > 2 ? arguments.get(2) : null;
+        if (service.exportPets(arguments.get(0), format, doctorName) < 0) {
+            throw new IllegalArgumentException("There are no doctors named '" + doctorName + "'");
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Splits a command into words. Words are separated by spaces/tabs, unless they are in double quotes.
+     * Inside quotes, \" is a double quote and \\ is a backslash.
+     *
+     * @param line  the command, which isn't blank
+     * @return  the words, without any quotes or escapes
+     * @throws IllegalArgumentException  if a quote isn't closed
+     */
+    private static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            char next = i + 1 < line.length() ? line.charAt(i + 1) : 0;
+            if (quoted && c == '\\' && (next == '"' || next == '\\')) {
+                word.append(next); // An escaped quote or backslash
+                i++;
+            }
+            else if (c == '"') {
+                quoted = !quoted;
+                inWord = true; // "" is an empty word
+            }
+            else if (!quoted && Character.isWhitespace(c)) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            }
+            else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Missing closing quote");
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Checks that a command has a valid number of arguments
+     *
+     * @param command  the command
+     * @param arguments  its arguments
+     * @param min  fewest arguments allowed
+     * @param max  most arguments allowed
+     * @param usage  description of the arguments, e.g. '<name> <specialisation>'
+     */
+    private static void checkArguments(String command, List<String> arguments, int min, int max, String usage) {
+        if (arguments.size() < min || arguments.size() > max) {
+            throw new IllegalArgumentException("Usage: " + command + (usage.isEmpty() ? "" : " " + usage));
+        }
+    }
+
+    /**
+     * Checks for a listing's optional 'sorted' argument
+     *
+     * @param command  the command
+     * @param arguments  its arguments (none, or 'sorted')
+     * @return  whether the listing should be sorted (boolean value)
+     */
+    private static boolean isSorted(String command, List<String> arguments) {
+        if (arguments.isEmpty()) {
+            return false;
+        }
+        if (!arguments.get(0).equalsIgnoreCase("sorted")) {
+            throw new IllegalArgumentException("Usage: " + command + " [sorted]");
+        }
+        return true;
+    }
+
+    /**
+     * Checks for an optional 'force' argument
+     *
+     * @param command  the command
+     * @param arguments  its arguments
+     * @param index  where 'force' may be
+     * @return  whether 'force' was given (boolean value)
+     */
+    private static boolean isForced(String command, List<String> arguments, int index) {
+        if (arguments.size() <= index) {
+            return false;
+        }
+        if (!arguments.get(index).equalsIgnoreCase("force")) {
+            throw new IllegalArgumentException("Expected 'force' but found '" + arguments.get(index) + "' in " + command);
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a doctor exists and treats a type of pet
+     *
+     * @param doctorName  doctor name
+     * @param type  type of the pet
+     * @param force  whether a doctor with the wrong specialisation is allowed
+     */
+    private void checkDoctor(String doctorName, PetType type, boolean force) {
+        Doctor doctor = service.getDoctor(doctorName);
+        if (doctor == null) {
+            throw new IllegalArgumentException("There are no doctors named '" + doctorName + "'");
+        }
+        if (!force && !doctor.getSpecialisationValue().treats(type)) {
+            throw new IllegalArgumentException("Doctor " + doctor.getName() + " does not specialise in " + type +
+                                               "s (add 'force' to assign them anyway)");
+        }
+    }
+
+    /**
+     * Checks a size argument
+     *
+     * @param size  small, medium or large
+     * @return  the size
+     */
+    private static String parseSize(String size) {
+        if (PetSize.parse(size) == null) {
+            throw new IllegalArgumentException("Invalid size '" + size + "' (must be small, medium or large)");
+        }
+        return size;
+    }
+
+    /**
+     * Checks a type argument
+     *
+     * @param type  dog or cat
+     * @return  the type
+     */
+    private static String parseType(String type) {
+        if (PetType.parse(type) == null) {
+            throw new IllegalArgumentException("Invalid type '" + type + "' (must be dog or cat)");
+        }
+        return type;
+    }
+
+    /**
+     * Converts an age argument. A pet can't have a negative age (it can be +ve or 0).
+     *
+     * @param age  age in years
+     * @return  the age
+     */
+    private static int parseAge(String age) {
+        try {
+            int value = Integer.parseInt(age);
+            if (value >= 0) {
+                return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("Invalid age '" + age + "' (must be a positive no. of years)");
+    }
+
+    /**
+     * Converts a weight argument. A pet can only be a non-zero positive weight.
+     *
+     * @param weight  weight in kilograms
+     * @return  the weight
+     */
+    private static double parseWeight(String weight) {
+        try {
+            double value = Double.parseDouble(weight);
+            if (value > 0) {
+                return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("Invalid weight '" + weight + "' (must not be zero or negative)");
+    }
+}
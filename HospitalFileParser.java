@@ -0,0 +1,907 @@
+/*
+ * Class Name and Description:
+ *    HospitalFileParser.java reads pet/doctor data in the format of
+ *    HospitalManagement.txt (see README.md) into an ImportBatch.
+ *
+ *    The file is read once, from start to finish, through a single
+ *    reusable byte buffer. Keys ('type', 'name', 'weight', ...) are
+ *    matched directly against the bytes of each line, numbers are parsed
+ *    straight from the bytes, and types/sizes/specialisations are mapped
+ *    straight to their enum. The only objects created per record are the
+ *    name strings.
+ *
+ *    Very large files can instead be memory-mapped with parseMapped(),
+ *    which scans the mapped bytes directly without copying them into
+ *    the parser's buffer. Files are mapped in windows, so files larger
+ *    than 2 GB are supported.
+ *
+ *    index() scans a file without creating any pets, recording where each
+ *    pet's record starts instead (see LazyPetFile). Single records can
+ *    then be read back with parseRange().
+ *
+ *    Each way of reading a file can also be given a file which is already
+ *    open, and the number of bytes to read from it (e.g. the size in its
+ *    FileFingerprint). Anything added to the file beyond that is left for
+ *    the next import.
+ *
+ *    Files of changes may end with a 'Removed' section, which lists the
+ *    pets ('pet <name>') and doctors ('doctor <name>') which have been
+ *    removed.
+ *
+ *    A pet with an unknown type or size, or a doctor with an unknown
+ *    specialisation, is rejected: it is left out of the batch (and out of
+ *    a LazyPetFile's index) and counted in ImportBatch.getRejectedCount().
+ *    Other file inputs are assumed to be valid. Lines before the 'Pets'
+ *    heading and blank lines are ignored.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+public class HospitalFileParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long MAP_WINDOW_SIZE = 1L << 30; // Bytes mapped at a time by parseMapped() (must be < 2 GB)
+    private static final int MIN_MAPPED_WINDOW = 1 << 20; // Smaller windows are read rather than mapped
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;   // Largest integer a double can hold exactly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    }; // Every power of ten which a double can hold exactly
+
+    // Sections of the file
+    private static final int BEFORE_PETS = 0;
+    private static final int PETS = 1;
+    private static final int DOCTORS = 2;
+    private static final int REMOVED = 3;
+
+    private static final byte[] PETS_HEADING = bytes("Pets");
+    private static final byte[] DOCTORS_HEADING = bytes("Doctors");
+    private static final byte[] REMOVED_HEADING = bytes("Removed");
+    private static final byte[] PET_KEY = bytes("pet");
+    private static final byte[] TYPE_KEY = bytes("type");
+    private static final byte[] SIZE_KEY = bytes("size");
+    private static final byte[] NAME_KEY = bytes("name");
+    private static final byte[] WEIGHT_KEY = bytes("weight");
+    private static final byte[] AGE_KEY = bytes("age");
+    private static final byte[] DOCTOR_KEY = bytes("doctor");
+    private static final byte[] SPECIALISATION_KEY = bytes("specialisation");
+    private static final byte[] NO_DOCTOR = bytes("no doctor assigned");
+
+    private InputStream input;
+    private Charset charset = Charset.defaultCharset(); // Same charset that PrintWriter uses when saving
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private ByteBuffer wrappedBuffer = ByteBuffer.wrap(buffer);
+    private int position = 0;   // Next unread byte in 'buffer'
+    private int limit = 0;      // Number of valid bytes in 'buffer'
+
+    private byte[] line = new byte[256]; // Holds lines which are split across two reads of 'buffer'
+    private ByteBuffer wrappedLine = ByteBuffer.wrap(line);
+    private int lineLength = 0;
+    private byte[] scratch = new byte[256]; // Used to decode names from memory-mapped files
+    private LazyPetFile index;              // Where pets are recorded instead of being read, or null
+
+    // The current line, without its line ending. Points into either 'buffer' or 'line'.
+    private ByteBuffer lineBytes;
+    private int lineStart;
+    private int lineEnd;
+
+    // The record currently being read
+    private int section = BEFORE_PETS;
+    private long lineOffset;   // Offset of the current line in the file (parseRange() only)
+    private long recordOffset; // Offset of the current pet's 'type' line (parseRange() only)
+    private PetType petType;
+    private PetSize petSize;
+    private String recordName;
+    private double petWeight;
+    private int petAge;
+
+    /**
+     * Creates a parser which reads from the specified stream
+     *
+     * @param input  stream to be read - will not be closed by the parser
+     */
+    public HospitalFileParser(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Reads all of the pets and doctors from the specified file
+     * Files whose names end in '.gz' are decompressed on a background
+     * thread while they are parsed (see PipelinedGzipInputStream).
+     *
+     * @param filename  name of file which data should be read from
+     * @return  the records which were read
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public static ImportBatch parse(String filename) throws IOException {
+        try (FileChannel file = openChannel(filename)) {
+            return parse(file, file.size(), HospitalFileWriter.isCompressed(filename));
+        }
+    }
+
+    /**
+     * Reads all of the pets and doctors in the first part of an open file, in the same way as parse()
+     *
+     * @param file  the file to be read - will not be closed
+     * @param size  number of bytes of the file to be read
+     * @param compressed  whether the file is compressed (see HospitalFileWriter.isCompressed())
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parse(FileChannel file, long size, boolean compressed) throws IOException {
+        InputStream range = new RangeInputStream(file, 0, size);
+        try (InputStream input = compressed ? new PipelinedGzipInputStream(range) : range) {
+            return new HospitalFileParser(input).parse();
+        }
+    }
+
+    /**
+     * Reads the pets and doctors in the part of an open file after the specified
+     * offset, such as lines which have been added since it was last read
+     *
+     * @param file  the file to be read (not compressed) - will not be closed
+     * @param offset  offset of the first byte to be read - must be the start of a line
+     * @param end  offset after the last byte to be read
+     * @param section  section of the file which the offset is in, from ImportBatch.getEndSection()
+     *                 of the batch which was read up to the offset
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parseFrom(FileChannel file, long offset, long end, int section) throws IOException {
+        HospitalFileParser parser = new HospitalFileParser(new RangeInputStream(file, offset, end));
+        parser.section = section;
+        return parser.parse();
+    }
+
+    /**
+     * Reads all of the pets and doctors from the specified file by mapping
+     * it into memory. Produces exactly the same records as parse().
+     *
+     * @param filename  name of file which data should be read from
+     * @return  the records which were read
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public static ImportBatch parseMapped(String filename) throws IOException {
+        return parseMapped(filename, MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads all of the pets and doctors from the specified file, mapping
+     * at most 'windowSize' bytes of it into memory at a time
+     *
+     * @param filename  name of file which data should be read from
+     * @param windowSize  maximum number of bytes to map at once - must be longer than any line
+     * @return  the records which were read
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parseMapped(String filename, long windowSize) throws IOException {
+        try (FileChannel file = openChannel(filename)) {
+            return parseRange(file, 0, file.size(), BEFORE_PETS, windowSize);
+        }
+    }
+
+    /**
+     * Reads all of the pets and doctors in the first part of an open file, in the same way as parseMapped()
+     *
+     * @param file  the file to be read - will not be closed
+     * @param size  number of bytes of the file to be read
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parseMapped(FileChannel file, long size) throws IOException {
+        return parseRange(file, 0, size, BEFORE_PETS, MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * Scans the first part of a file, recording the name and offset of each
+     * pet in the index rather than adding it to the batch. Everything else
+     * (doctors and removals) is read as normal.
+     *
+     * @param file  the file to be scanned
+     * @param size  number of bytes of the file to be scanned
+     * @param index  index which each pet should be recorded in
+     * @return  the doctors and removals which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch index(FileChannel file, long size, LazyPetFile index) throws IOException {
+        HospitalFileParser parser = new HospitalFileParser(null);
+        parser.index = index;
+        return parseRange(parser, file, 0, size, MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads the pets in part of a file, such as a single record found by index()
+     *
+     * @param file  the file to be read
+     * @param start  offset of the first byte to be read - must be the start of a pet record
+     * @param end  offset after the last byte to be read - must be the start of a line, or the end of the file
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parseRange(FileChannel file, long start, long end) throws IOException {
+        return parseRange(file, start, end, PETS, MAP_WINDOW_SIZE);
+    }
+
+    /**
+     * Reads all of the pets and doctors from the specified file, splitting
+     * the pets into chunks which are parsed at the same time on the common
+     * fork-join pool. Each chunk is memory-mapped, as in parseMapped().
+     *
+     * Each pet starts with a 'type' line, and no other line starts with
+     * 'type ', so the file can safely be split just before any 'type' line.
+     * Chunks are merged in file order, so the result is exactly the same as parse().
+     *
+     * @param filename  name of file which data should be read from
+     * @param numChunks  number of chunks to split the file into (e.g. one per core)
+     * @return  the records which were read
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public static ImportBatch parseParallel(String filename, int numChunks) throws IOException {
+        try (FileChannel file = openChannel(filename)) {
+            return parseParallel(file, file.size(), numChunks);
+        }
+    }
+
+    /**
+     * Reads all of the pets and doctors in the first part of an open file, in the same way as parseParallel()
+     *
+     * @param file  the file to be read - will not be closed
+     * @param size  number of bytes of the file to be read
+     * @param numChunks  number of chunks to split the file into (e.g. one per core)
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    static ImportBatch parseParallel(FileChannel file, long size, int numChunks) throws IOException {
+        numChunks = (int) Math.max(numChunks, (size + MAP_WINDOW_SIZE - 1) / MAP_WINDOW_SIZE);
+
+        // Move each evenly spaced split point forward to the start of the next pet
+        long[] boundaries = new long[numChunks + 1];
+        boundaries[numChunks] = size;
+        for (int i = 1; i < numChunks; i++) {
+            boundaries[i] = findNextPet(file, Math.max(boundaries[i - 1], size / numChunks * i), size);
+        }
+
+        List<ForkJoinTask<ImportBatch>> chunks = new ArrayList<>();
+        for (int i = 0; i < numChunks; i++) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            int section = i == 0 ? BEFORE_PETS : PETS; // Later chunks always start part-way through the pets
+            chunks.add(ForkJoinPool.commonPool().submit(() -> parseRange(file, start, end, section, MAP_WINDOW_SIZE)));
+        }
+
+        ImportBatch batch = new ImportBatch();
+        for (ForkJoinTask<ImportBatch> chunk : chunks) {
+            try {
+                batch.append(chunk.get());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("The import was interrupted");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("An error occurred while reading the file", e.getCause());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Reads the pets and doctors in part of a file, mapping at most
+     * 'windowSize' bytes into memory at a time
+     *
+     * @param file  the file to be read
+     * @param start  offset of the first byte to be read - must be the start of a line
+     * @param end  offset after the last byte to be read - must be the start of a line, or the end of the file
+     * @param section  section of the file which 'start' is in (BEFORE_PETS, PETS, DOCTORS or REMOVED)
+     * @param windowSize  maximum number of bytes to map at once - must be longer than any line
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static ImportBatch parseRange(FileChannel file, long start, long end, int section, long windowSize)
+            throws IOException {
+        HospitalFileParser parser = new HospitalFileParser(null);
+        parser.section = section;
+        return parseRange(parser, file, start, end, windowSize);
+    }
+
+    /**
+     * Reads part of a file using the specified parser, mapping at most
+     * 'windowSize' bytes into memory at a time. Small windows are read
+     * into memory instead, as mapping them would cost more than copying.
+     *
+     * @param parser  parser to be used, which already knows which section 'start' is in
+     * @param file  the file to be read
+     * @param start  offset of the first byte to be read - must be the start of a line
+     * @param end  offset after the last byte to be read - must be the start of a line, or the end of the file
+     * @param windowSize  maximum number of bytes to map at once - must be longer than any line
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static ImportBatch parseRange(HospitalFileParser parser, FileChannel file, long start, long end,
+                                          long windowSize) throws IOException {
+        ImportBatch batch = new ImportBatch();
+        long windowStart = start;
+        while (windowStart < end) {
+            int windowLength = (int) Math.min(windowSize, end - windowStart);
+            boolean lastWindow = windowStart + windowLength == end;
+            ByteBuffer window;
+            if (windowLength >= MIN_MAPPED_WINDOW) {
+                window = file.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            }
+            else {
+                window = ByteBuffer.allocate(windowLength);
+                while (window.hasRemaining()) {
+                    if (file.read(window, windowStart + window.position()) < 0) {
+                        throw new EOFException("The file is shorter than expected");
+                    }
+                }
+            }
+
+            int lineStart = 0;
+            for (int i = 0; i < windowLength; i++) {
+                if (window.get(i) == '\n') {
+                    parser.lineOffset = windowStart + lineStart;
+                    parser.setLine(window, lineStart, i);
+                    parser.parseLine(window, parser.lineStart, parser.lineEnd, batch);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lastWindow) {
+                if (lineStart < windowLength) { // Last line has no line ending
+                    parser.lineOffset = windowStart + lineStart;
+                    parser.setLine(window, lineStart, windowLength);
+                    parser.parseLine(window, parser.lineStart, parser.lineEnd, batch);
+                }
+                break;
+            }
+            else if (lineStart == 0) {
+                throw new IOException("A line is longer than " + windowSize + " bytes");
+            }
+            // The next window starts at the beginning of the incomplete line at the end of this one
+            windowStart += lineStart;
+        }
+        batch.setEndSection(parser.section);
+        return batch;
+    }
+
+    /**
+     * Opens a file for reading
+     *
+     * @param filename  name of file to be opened
+     * @return  a channel for reading the file
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while opening the file
+     */
+    private static FileChannel openChannel(String filename) throws IOException {
+        try {
+            return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
+        }
+    }
+
+    /**
+     * Finds the start of the first pet (a line starting with 'type ')
+     * at or after the specified offset
+     *
+     * @param file  the file to be searched
+     * @param from  offset to start searching from
+     * @param end  offset after the last byte to be searched
+     * @return  offset of the start of the 'type' line, or 'end' if there isn't one
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static long findNextPet(FileChannel file, long from, long end) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+        long chunkStart = from;
+        boolean atLineStart = from == 0; // Unknown, so skip to the next line first unless at the start of the file
+        while (chunkStart < end) {
+            chunk.clear();
+            chunk.limit((int) Math.min(BUFFER_SIZE, end - chunkStart));
+            int length = file.read(chunk, chunkStart);
+            if (length < 0) {
+                throw new EOFException("The file is shorter than expected");
+            }
+            for (int i = 0; i < length; i++) {
+                if (atLineStart && isPetStart(file, chunk, i, length, chunkStart + i)) {
+                    return chunkStart + i;
+                }
+                atLineStart = chunk.get(i) == '\n';
+            }
+            chunkStart += length;
+        }
+        return end;
+    }
+
+    /**
+     * Determines whether the line at the specified offset starts with 'type '
+     *
+     * @param file  the file being searched
+     * @param chunk  buffer holding the bytes around the offset
+     * @param index  index of the offset in 'chunk'
+     * @param length  number of valid bytes in 'chunk'
+     * @param offset  offset of the line in the file
+     * @return  whether the line is a 'type' line (boolean value)
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static boolean isPetStart(FileChannel file, ByteBuffer chunk, int index, int length, long offset)
+            throws IOException {
+        if (length - index <= TYPE_KEY.length) {
+            // The line crosses the end of the chunk, so read it separately
+            ByteBuffer start = ByteBuffer.allocate(TYPE_KEY.length + 1);
+            file.read(start, offset);
+            return start.position() == start.capacity() && hasKey(start, 0, start.capacity(), TYPE_KEY);
+        }
+        return hasKey(chunk, index, length, TYPE_KEY);
+    }
+
+    /**
+     * Reads all of the pets and doctors from the stream
+     *
+     * No inputs/preconditions
+     * @return  the records which were read
+     * @throws IOException  if an error occurs while reading the stream
+     */
+    public ImportBatch parse() throws IOException {
+        ImportBatch batch = new ImportBatch();
+        while (readLine()) {
+            parseLine(lineBytes, lineStart, lineEnd, batch);
+        }
+        batch.setEndSection(section);
+        return batch;
+    }
+
+
+    /* ******** Line Parsing ******** */
+
+
+    /**
+     * Parses a single line of the file, adding any completed record to the batch
+     *
+     * @param bytes  buffer containing the line
+     * @param start  index of the first byte of the line
+     * @param end  index after the last byte of the line (excluding the line ending)
+     * @param batch  batch which completed records should be added to
+     * Returns nothing; the parser's state will be updated
+     */
+    private void parseLine(ByteBuffer bytes, int start, int end, ImportBatch batch) {
+        if (isBlank(bytes, start, end)) {
+            return;
+        }
+        batch.markNotBlank();
+
+        if (matches(bytes, start, end, PETS_HEADING)) {
+            section = PETS;
+        }
+        else if (matches(bytes, start, end, DOCTORS_HEADING)) {
+            section = DOCTORS;
+            if (index != null) {
+                index.endPets(lineOffset);
+            }
+        }
+        else if (matches(bytes, start, end, REMOVED_HEADING)) {
+            section = REMOVED;
+        }
+        else if (section == PETS) {
+            if (hasKey(bytes, start, end, TYPE_KEY)) {
+                petType = parseEnum(PetType.values(), bytes, valueStart(start, TYPE_KEY), end);
+                recordOffset = lineOffset;
+            }
+            else if (hasKey(bytes, start, end, SIZE_KEY)) {
+                petSize = parseEnum(PetSize.values(), bytes, valueStart(start, SIZE_KEY), end);
+            }
+            else if (hasKey(bytes, start, end, NAME_KEY)) {
+                recordName = decode(bytes, valueStart(start, NAME_KEY), end);
+            }
+            else if (hasKey(bytes, start, end, WEIGHT_KEY)) {
+                petWeight = parseDouble(bytes, valueStart(start, WEIGHT_KEY), end);
+            }
+            else if (hasKey(bytes, start, end, AGE_KEY)) {
+                petAge = parseInt(bytes, valueStart(start, AGE_KEY), end);
+            }
+            else if (hasKey(bytes, start, end, DOCTOR_KEY)) {
+                // The doctor is the last field of each pet, so the record is now complete
+                if (petType == null || petSize == null) {
+                    batch.rejectRecord(); // Unknown type or size
+                    return;
+                }
+                if (index != null) {
+                    index.addPet(recordName, recordOffset);
+                    return;
+                }
+                int valueStart = valueStart(start, DOCTOR_KEY);
+                String doctorName = equalsIgnoreCase(bytes, valueStart, end, NO_DOCTOR) ? null : decode(bytes, valueStart, end);
+                batch.addPet(recordName, petType, petSize, petAge, petWeight, doctorName);
+            }
+        }
+        else if (section == DOCTORS) {
+            if (hasKey(bytes, start, end, NAME_KEY)) {
+                recordName = decode(bytes, valueStart(start, NAME_KEY), end);
+            }
+            else if (hasKey(bytes, start, end, SPECIALISATION_KEY)) {
+                // The specialisation is the last field of each doctor, so the record is now complete
+                Specialisation specialisation = parseEnum(Specialisation.values(), bytes,
+                                                          valueStart(start, SPECIALISATION_KEY), end);
+                if (specialisation == null) {
+                    batch.rejectRecord();
+                    return;
+                }
+                batch.addDoctor(recordName, specialisation);
+            }
+        }
+        else if (section == REMOVED) {
+            if (hasKey(bytes, start, end, PET_KEY)) {
+                batch.addRemovedPet(decode(bytes, valueStart(start, PET_KEY), end));
+            }
+            else if (hasKey(bytes, start, end, DOCTOR_KEY)) {
+                batch.addRemovedDoctor(decode(bytes, valueStart(start, DOCTOR_KEY), end));
+            }
+        }
+    }
+
+    /**
+     * A stream of part of an open file, which reads from its own offset
+     * without moving the file's position or closing it
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel file;
+        private long position;
+        private final long end;
+
+        /**
+         * Creates a stream of part of a file
+         *
+         * @param file  the file
+         * @param start  offset of the first byte to be read
+         * @param end  offset after the last byte to be read
+         */
+        RangeInputStream(FileChannel file, long start, long end) {
+            this.file = file;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int count = file.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (count < 0) {
+                throw new EOFException("The file is shorter than expected");
+            }
+            position += count;
+            return count;
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Finds the next line of the stream and points 'lineBytes', 'lineStart'
+     * and 'lineEnd' at it. Lines are only copied if they are split across
+     * two reads of the buffer. Both '\n' and '\r\n' line endings are accepted.
+     *
+     * No inputs/preconditions
+     * @return  whether a line was found (false at the end of the stream)
+     * @throws IOException  if an error occurs while reading the stream
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean anythingRead = false;
+        while (true) {
+            if (position == limit) {
+                limit = input.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    setLine(wrappedLine, 0, lineLength);
+                    return anythingRead;
+                }
+            }
+            anythingRead = true;
+
+            int newline = position;
+            while (newline < limit && buffer[newline] != '\n') {
+                newline++;
+            }
+            if (newline < limit) {
+                if (lineLength == 0) {
+                    setLine(wrappedBuffer, position, newline); // Whole line is in the buffer
+                }
+                else {
+                    appendToLine(buffer, position, newline);
+                    setLine(wrappedLine, 0, lineLength);
+                }
+                position = newline + 1; // Skip the '\n'
+                return true;
+            }
+
+            // Line continues past the end of the buffer; keep what we have so far
+            appendToLine(buffer, position, limit);
+            position = limit;
+        }
+    }
+
+    /**
+     * Points the current line at the specified bytes, removing any trailing '\r'
+     *
+     * @param bytes  buffer containing the line
+     * @param start  index of the first byte of the line
+     * @param end  index after the last byte of the line
+     */
+    private void setLine(ByteBuffer bytes, int start, int end) {
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        lineBytes = bytes;
+        lineStart = start;
+        lineEnd = end;
+    }
+
+    /**
+     * Appends bytes to the current line, growing the line buffer if needed
+     *
+     * @param bytes  source buffer
+     * @param from  first byte to be copied
+     * @param to  index after the last byte to be copied
+     */
+    private void appendToLine(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+            wrappedLine = ByteBuffer.wrap(line);
+        }
+        System.arraycopy(bytes, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Converts bytes into a string using the file's charset
+     *
+     * @param bytes  source buffer
+     * @param start  first byte of the string
+     * @param end  index after the last byte of the string
+     * @return  the decoded string
+     */
+    private String decode(ByteBuffer bytes, int start, int end) {
+        if (start >= end) {
+            return "";
+        }
+        else if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, end - start, charset);
+        }
+
+        // Memory-mapped buffers have no array, so copy the bytes out first
+        if (scratch.length < end - start) {
+            scratch = new byte[Math.max(scratch.length * 2, end - start)];
+        }
+        bytes.get(start, scratch, 0, end - start);
+        return new String(scratch, 0, end - start, charset);
+    }
+
+    /**
+     * Finds where the value starts on a 'key value' line
+     *
+     * @param start  index of the first byte of the line
+     * @param key  the line's key
+     * @return  index of the first byte of the value
+     */
+    private static int valueStart(int start, byte[] key) {
+        return start + key.length + 1;
+    }
+
+    /**
+     * Determines whether a line is the specified key followed by a space
+     *
+     * @param bytes  buffer containing the line
+     * @param start  index of the first byte of the line
+     * @param end  index after the last byte of the line
+     * @param key  key to be checked for
+     * @return  whether the line starts with the key and a space (boolean value)
+     */
+    private static boolean hasKey(ByteBuffer bytes, int start, int end, byte[] key) {
+        if (end - start <= key.length || bytes.get(start + key.length) != ' ') {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (bytes.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a line is exactly the specified text
+     *
+     * @param bytes  buffer containing the line
+     * @param start  index of the first byte of the line
+     * @param end  index after the last byte of the line
+     * @param text  text to be compared
+     * @return  whether the line matches (boolean value)
+     */
+    private static boolean matches(ByteBuffer bytes, int start, int end, byte[] text) {
+        if (end - start != text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (bytes.get(start + i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a range of bytes is the specified (ASCII) text, ignoring case
+     *
+     * @param bytes  source buffer
+     * @param start  first byte to be compared
+     * @param end  index after the last byte to be compared
+     * @param text  lowercase text to be compared
+     * @return  whether the bytes match (boolean value)
+     */
+    private static boolean equalsIgnoreCase(ByteBuffer bytes, int start, int end, byte[] text) {
+        if (end - start != text.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length; i++) {
+            int b = bytes.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != text[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a range of bytes contains only whitespace
+     *
+     * @param bytes  source buffer
+     * @param start  first byte to be checked
+     * @param end  index after the last byte to be checked
+     * @return  whether the range is blank (boolean value)
+     */
+    private static boolean isBlank(ByteBuffer bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the enum value whose label (toString()) matches a range of bytes, ignoring case
+     *
+     * @param values  all values of the enum
+     * @param bytes  source buffer
+     * @param start  first byte of the label
+     * @param end  index after the last byte of the label
+     * @return  the matching value, or null if none match
+     */
+    private static <E extends Enum<E>> E parseEnum(E[] values, ByteBuffer bytes, int start, int end) {
+        for (E value : values) {
+            String label = value.toString();
+            boolean match = end - start == label.length();
+            for (int i = 0; match && i < label.length(); i++) {
+                match = Character.toLowerCase((char) bytes.get(start + i)) == label.charAt(i);
+            }
+            if (match) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a (possibly negative) whole number from a range of bytes
+     *
+     * @param bytes  source buffer
+     * @param start  first byte of the number
+     * @param end  index after the last byte of the number
+     * @return  the number
+     */
+    private static int parseInt(ByteBuffer bytes, int start, int end) {
+        boolean negative = start < end && bytes.get(start) == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (bytes.get(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number (e.g. '4', '15.5' or '1.0E7') from a range of bytes
+     *
+     * Numbers with up to 15 significant digits and a small exponent are
+     * parsed directly from the bytes, which gives exactly the same result
+     * as Double.parseDouble(). Anything else falls back to Double.parseDouble().
+     *
+     * @param bytes  source buffer
+     * @param start  first byte of the number
+     * @param end  index after the last byte of the number
+     * @return  the number
+     */
+    private static double parseDouble(ByteBuffer bytes, int start, int end) {
+        int i = start;
+        boolean negative = i < end && bytes.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean valid = i < end;
+        for (; i < end && bytes.get(i) >= '0' && bytes.get(i) <= '9'; i++) {
+            mantissa = mantissa * 10 + (bytes.get(i) - '0');
+            digits++;
+        }
+        if (i < end && bytes.get(i) == '.') {
+            for (i++; i < end && bytes.get(i) >= '0' && bytes.get(i) <= '9'; i++) {
+                mantissa = mantissa * 10 + (bytes.get(i) - '0');
+                exponent--;
+                digits++;
+            }
+        }
+        if (i < end && (bytes.get(i) == 'E' || bytes.get(i) == 'e')) {
+            boolean negativeExponent = ++i < end && bytes.get(i) == '-';
+            if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+                i++;
+            }
+            valid = valid && i < end;
+            int explicitExponent = 0;
+            for (; i < end && bytes.get(i) >= '0' && bytes.get(i) <= '9' && explicitExponent < 1000; i++) {
+                explicitExponent = explicitExponent * 10 + (bytes.get(i) - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (valid && i == end && digits > 0 && digits <= 15 && mantissa < MAX_EXACT_MANTISSA &&
+            exponent >= -22 && exponent <= 22) {
+            // Both the mantissa and the power of ten are exact, so one multiplication/division
+            // rounds correctly
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        byte[] number = new byte[end - start];
+        bytes.get(start, number);
+        return Double.parseDouble(new String(number, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Converts an ASCII string into bytes
+     *
+     * @param text  text to be converted
+     * @return  the text's bytes
+     */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
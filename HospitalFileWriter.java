@@ -0,0 +1,711 @@
+/*
+ * Class Name and Description:
+ *    HospitalFileWriter.java writes pet/doctor data in the format of
+ *    HospitalManagement.txt (see README.md). It is the counterpart of
+ *    HospitalFileParser.
+ *
+ *    Each field is written straight into a single reusable byte buffer,
+ *    which is only passed on to the output stream when it is full.
+ *    Numbers are formatted directly into the buffer, so no strings are
+ *    built per record. The bytes written are exactly the same as those
+ *    produced by printing each Pet/Doctor's toString() with a PrintWriter.
+ *
+ *    A HospitalSnapshot can also be written, straight from its columns,
+ *    so that a copy of the data can be saved on another thread.
+ *
+ *    export() writes pets in a format for other programs (see
+ *    ExportFormat), in the same way: straight from the pets, a buffer at
+ *    a time, so any number of pets can be exported in constant memory.
+ *    The same JSON lines are used for the HTTP API's listings.
+ *
+ *    writeChanges() writes a file of changes: only the pets/doctors
+ *    which have changed, followed by a 'Removed' section listing the
+ *    names of any which have been removed.
+ *
+ *    Files whose names end in '.gz' are compressed in GZIP format as they
+ *    are written, on a background thread (see PipelinedGzipOutputStream).
+ *
+ *    write() never modifies the target file in place: the data is written
+ *    to a temporary file next to it, which is flushed to disk and then
+ *    renamed over the target. If the program stops part way through a
+ *    save, the old file is left untouched.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+public class HospitalFileWriter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000};
+    private static final double MIN_FAST_WEIGHT = 1e-3; // Double.toString() uses plain notation in [1e-3, 1e7)
+    private static final double MAX_FAST_WEIGHT = 1e7;
+
+    private static final byte NEWLINE = '\n';   // Used between the lines of a record, as toString() does
+    private static final byte[] LINE_SEPARATOR = bytes(System.lineSeparator()); // Used after each record, as println() does
+    private static final byte[] PETS_HEADING = bytes("Pets");
+    private static final byte[] DOCTORS_HEADING = bytes("Doctors");
+    private static final byte[] REMOVED_HEADING = bytes("Removed");
+    private static final byte[] PET_KEY = bytes("pet ");
+    private static final byte[] TYPE_KEY = bytes("type ");
+    private static final byte[] SIZE_KEY = bytes("size ");
+    private static final byte[] NAME_KEY = bytes("name ");
+    private static final byte[] WEIGHT_KEY = bytes("weight ");
+    private static final byte[] AGE_KEY = bytes("age ");
+    private static final byte[] DOCTOR_KEY = bytes("doctor ");
+    private static final byte[] SPECIALISATION_KEY = bytes("specialisation ");
+    private static final byte[] NO_DOCTOR = bytes("no doctor assigned");
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] CSV_HEADER = bytes("name,type,size,age,weight,doctor\n");
+    private static final byte[] JSON_NAME = bytes("{\"name\":");
+    private static final byte[] JSON_TYPE = bytes(",\"type\":");
+    private static final byte[] JSON_SIZE = bytes(",\"size\":");
+    private static final byte[] JSON_AGE = bytes(",\"age\":");
+    private static final byte[] JSON_WEIGHT = bytes(",\"weight\":");
+    private static final byte[] JSON_DOCTOR = bytes(",\"doctor\":");
+    private static final byte[] JSON_SPECIALISATION = bytes(",\"specialisation\":");
+    private static final byte[] JSON_OVERWEIGHT = bytes(",\"overweight\":");
+    private static final byte[] JSON_VERSION = bytes(",\"version\":");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] JSON_END = bytes("}\n");
+    private static final byte[] HEX_DIGITS = bytes("0123456789abcdef");
+
+    private OutputStream output;
+    private Charset charset = Charset.defaultCharset(); // Same charset that PrintWriter uses
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;             // Next free byte in 'buffer'
+    private byte[] digits = new byte[20]; // Scratch space for formatting numbers
+    private int petsWritten = 0;
+
+    /**
+     * Creates a writer which writes to the specified stream
+     *
+     * @param output  stream to be written to - will not be closed by the writer
+     */
+    public HospitalFileWriter(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes all of the specified pets and doctors to a file, replacing
+     * anything which is already in it. The file is replaced in a single
+     * step, so it will contain either the old data or the new data.
+     *
+     * @param filename  name of file which data should be written to
+     * @param pets  pets to be written
+     * @param doctors  doctors to be written
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public static void write(String filename, Iterable<? extends Pet> pets, Iterable<? extends Doctor> doctors)
+            throws IOException {
+        writeChanges(filename, pets, doctors, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Writes every pet and doctor in a snapshot to a file, replacing
+     * anything which is already in it, in the same way as write()
+     *
+     * @param filename  name of file which data should be written to
+     * @param snapshot  the pets and doctors to be written
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public static void write(String filename, HospitalSnapshot snapshot) throws IOException {
+        writeFile(filename, writer -> writer.writeAll(snapshot));
+    }
+
+    /**
+     * Writes pets to a file in a format for other programs, replacing
+     * anything which is already in it. Text is written in UTF-8.
+     *
+     * @param filename  name of file which data should be written to
+     * @param format  format to write the pets in
+     * @param pets  pets to be written
+     * @return  number of pets written
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public static int export(String filename, ExportFormat format, Iterable<? extends Pet> pets) throws IOException {
+        HospitalFileWriter used = writeFile(filename, writer -> {
+            writer.charset = StandardCharsets.UTF_8; // Other programs can't be expected to know the local charset
+            if (format == ExportFormat.CSV) {
+                writer.writeBytes(CSV_HEADER);
+            }
+            for (Pet pet : pets) {
+                if (format == ExportFormat.CSV) {
+                    writer.writeCsvPet(pet);
+                }
+                else {
+                    writer.writeJsonPet(pet);
+                }
+            }
+        });
+        return used.petsWritten;
+    }
+
+    /**
+     * Writes a file of changes, replacing anything which is already in it.
+     * The 'Removed' section is left out if nothing has been removed, in
+     * which case the file is the same as one written by write().
+     *
+     * @param filename  name of file which data should be written to
+     * @param pets  pets which have been added/changed
+     * @param doctors  doctors which have been added/changed
+     * @param removedPets  names of pets which have been removed
+     * @param removedDoctors  names of doctors which have been removed
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public static void writeChanges(String filename, Iterable<? extends Pet> pets, Iterable<? extends Doctor> doctors,
+                                    Collection<String> removedPets, Collection<String> removedDoctors)
+            throws IOException {
+        writeFile(filename, writer -> {
+            writer.writeAll(pets, doctors);
+            if (!removedPets.isEmpty() || !removedDoctors.isEmpty()) {
+                writer.writeRemoved(removedPets, removedDoctors);
+            }
+        });
+    }
+
+    /**
+     * Writes the 'Pets' heading, every pet, the 'Doctors' heading and every doctor
+     *
+     * @param pets  pets to be written
+     * @param doctors  doctors to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeAll(Iterable<? extends Pet> pets, Iterable<? extends Doctor> doctors) throws IOException {
+        writeBytes(PETS_HEADING);
+        writeBytes(LINE_SEPARATOR);
+        for (Pet pet : pets) {
+            writePet(pet);
+        }
+
+        writeBytes(DOCTORS_HEADING);
+        writeBytes(LINE_SEPARATOR);
+        for (Doctor doctor : doctors) {
+            writeDoctor(doctor);
+        }
+    }
+
+    /**
+     * Writes every pet and doctor in a snapshot, in the same form as writeAll()
+     * The records are read straight from the snapshot's columns, so no
+     * Pet/Doctor objects are created.
+     *
+     * @param snapshot  the pets and doctors to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeAll(HospitalSnapshot snapshot) throws IOException {
+        writeBytes(PETS_HEADING);
+        writeBytes(LINE_SEPARATOR);
+        for (int i = 0; i < snapshot.getPetCount(); i++) {
+            writePet(toText(snapshot.getPetType(i)), toText(snapshot.getPetSize(i)), snapshot.getPetName(i),
+                     snapshot.getPetWeight(i), snapshot.getPetAge(i), snapshot.getPetDoctorName(i));
+        }
+
+        writeBytes(DOCTORS_HEADING);
+        writeBytes(LINE_SEPARATOR);
+        for (int i = 0; i < snapshot.getDoctorCount(); i++) {
+            writeDoctor(snapshot.getDoctorName(i), toText(snapshot.getDoctorSpecialisation(i)));
+        }
+    }
+
+    /**
+     * Writes the 'Removed' heading, followed by a line for each removed pet and doctor
+     *
+     * @param petNames  names of pets which have been removed
+     * @param doctorNames  names of doctors which have been removed
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeRemoved(Iterable<String> petNames, Iterable<String> doctorNames) throws IOException {
+        writeBytes(REMOVED_HEADING);
+        writeBytes(LINE_SEPARATOR);
+        for (String name : petNames) {
+            writeBytes(PET_KEY);
+            writeText(name);
+            writeBytes(LINE_SEPARATOR);
+        }
+        for (String name : doctorNames) {
+            writeBytes(DOCTOR_KEY);
+            writeText(name);
+            writeBytes(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Writes a single pet record, in the same form as Pet.toString()
+     *
+     * @param pet  the pet to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writePet(Pet pet) throws IOException {
+        writePet(pet.getType(), pet.getSize(), pet.getName(), pet.getWeight(), pet.getAge(),
+                 pet.hasDoctor() ? pet.getDoctor().getName() : null);
+    }
+
+    /**
+     * Writes a single pet as a line of CSV (see ExportFormat)
+     *
+     * @param pet  the pet to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeCsvPet(Pet pet) throws IOException {
+        writeCsvField(pet.getName());
+        writeByte((byte) ',');
+        writeCsvField(pet.getType());
+        writeByte((byte) ',');
+        writeCsvField(pet.getSize());
+        writeByte((byte) ',');
+        writeInt(pet.getAge());
+        writeByte((byte) ',');
+        writeDouble(pet.getWeight());
+        writeByte((byte) ',');
+        if (pet.hasDoctor()) {
+            writeCsvField(pet.getDoctor().getName());
+        }
+        writeByte(NEWLINE);
+        petsWritten++;
+    }
+
+    /**
+     * Writes a single pet as a line of JSON (see ExportFormat)
+     *
+     * @param pet  the pet to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeJsonPet(Pet pet) throws IOException {
+        writeJsonPetFields(pet);
+        writeBytes(JSON_END);
+        petsWritten++;
+    }
+
+    /**
+     * Writes a single pet as a line of JSON for the HTTP API: the fields of
+     * writeJsonPet(), and whether the pet is overweight and its version
+     *
+     * @param pet  the pet to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeJsonPetDetails(Pet pet) throws IOException {
+        writeJsonPetFields(pet);
+        writeBytes(JSON_OVERWEIGHT);
+        writeBytes(pet.isOverweight() ? TRUE : FALSE);
+        writeBytes(JSON_VERSION);
+        writeDigits(pet.getVersion(), 0);
+        writeBytes(JSON_END);
+        petsWritten++;
+    }
+
+    /**
+     * Writes a single doctor record, in the same form as Doctor.toString()
+     *
+     * @param doctor  the doctor to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeDoctor(Doctor doctor) throws IOException {
+        writeDoctor(doctor.getName(), doctor.getSpecialisation());
+    }
+
+    /**
+     * Writes a single doctor as a line of JSON, with the fields name and specialisation
+     *
+     * @param doctor  the doctor to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    public void writeJsonDoctor(Doctor doctor) throws IOException {
+        writeBytes(JSON_NAME);
+        writeJsonString(doctor.getName());
+        writeBytes(JSON_SPECIALISATION);
+        writeJsonString(doctor.getSpecialisation());
+        writeBytes(JSON_END);
+    }
+
+    /**
+     * Passes everything in the buffer on to the output stream, and flushes the stream
+     *
+     * No inputs/preconditions
+     * @throws IOException  if an error occurs while writing
+     */
+    public void flush() throws IOException {
+        drain();
+        output.flush();
+    }
+
+
+    /**
+     * Determines whether a file should be GZIP compressed, based on its name
+     *
+     * @param filename  name of the file
+     * @return  whether the name ends in '.gz' (boolean value)
+     */
+    static boolean isCompressed(String filename) {
+        return filename.endsWith(COMPRESSED_SUFFIX);
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Something which writes the contents of a file
+     */
+    private interface FileContents {
+        void writeTo(HospitalFileWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes a file, replacing anything which is already in it
+     * The contents go to a temporary file, which is flushed to disk and
+     * then renamed over the target.
+     *
+     * @param filename  name of file which data should be written to
+     * @param contents  writes the contents of the file
+     * @return  the writer which was used, e.g. to find out how much was written
+     * @throws IOException  if an error occurs while writing the file
+     */
+    private static HospitalFileWriter writeFile(String filename, FileContents contents) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            HospitalFileWriter writer;
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 PipelinedGzipOutputStream compressed = isCompressed(filename) ? new PipelinedGzipOutputStream(file) : null) {
+                writer = new HospitalFileWriter(compressed == null ? file : compressed);
+                contents.writeTo(writer);
+                writer.flush();
+                if (compressed != null) {
+                    compressed.finish();
+                }
+                file.getFD().sync();
+            }
+            replace(temp, target);
+            return writer;
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes a single pet record, in the same form as Pet.toString()
+     *
+     * @param type  pet type, or null
+     * @param size  pet size, or null
+     * @param name  pet name
+     * @param weight  weight of the pet
+     * @param age  age of the pet
+     * @param doctorName  name of the pet's doctor, or null if no doctor is assigned
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writePet(String type, String size, String name, double weight, int age, String doctorName)
+            throws IOException {
+        writeBytes(TYPE_KEY);
+        writeText(type);
+        writeByte(NEWLINE);
+        writeBytes(SIZE_KEY);
+        writeText(size);
+        writeByte(NEWLINE);
+        writeBytes(NAME_KEY);
+        writeText(name);
+        writeByte(NEWLINE);
+        writeBytes(WEIGHT_KEY);
+        writeDouble(weight);
+        writeByte(NEWLINE);
+        writeBytes(AGE_KEY);
+        writeInt(age);
+        writeByte(NEWLINE);
+        writeBytes(DOCTOR_KEY);
+        if (doctorName != null) {
+            writeText(doctorName);
+        }
+        else {
+            writeBytes(NO_DOCTOR);
+        }
+        writeBytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes a single doctor record, in the same form as Doctor.toString()
+     *
+     * @param name  doctor name
+     * @param specialisation  doctor specialisation, or null
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeDoctor(String name, String specialisation) throws IOException {
+        writeBytes(NAME_KEY);
+        writeText(name);
+        writeByte(NEWLINE);
+        writeBytes(SPECIALISATION_KEY);
+        writeText(specialisation);
+        writeBytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * Converts an attribute to the text which is written for it, in the same
+     * way as the Pet/Doctor getters do
+     *
+     * @param value  the attribute, or null if it hasn't been set
+     * @return  the attribute's text, or null
+     */
+    private static String toText(Enum<?> value) {
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Moves the temporary file over the target file, atomically if the
+     * file system supports it
+     *
+     * @param temp  the fully written temporary file
+     * @param target  the file to be replaced
+     * @throws IOException  if the file can't be moved
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a string, in the same way as string concatenation would
+     * (i.e. null is written as "null")
+     *
+     * @param text  string to be written, or null
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeText(String text) throws IOException {
+        if (text == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Rare; let the charset deal with anything which isn't ASCII
+                writeBytes(text.getBytes(charset));
+                return;
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (position == buffer.length) {
+                drain();
+            }
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a CSV field, quoting it if it contains a comma, quote or line ending
+     * Nothing is written for null.
+     *
+     * @param text  the field, or null
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeCsvField(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+
+        boolean needsQuotes = false;
+        for (int i = 0; i < text.length() && !needsQuotes; i++) {
+            char c = text.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            writeText(text);
+            return;
+        }
+
+        // Rare; quotes inside the field are doubled
+        writeByte((byte) '"');
+        writeText(text.replace("\"", "\"\""));
+        writeByte((byte) '"');
+    }
+
+    /**
+     * Writes the fields of a pet's JSON object which both writeJsonPet() and
+     * writeJsonPetDetails() have, without closing the object
+     *
+     * @param pet  the pet to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeJsonPetFields(Pet pet) throws IOException {
+        writeBytes(JSON_NAME);
+        writeJsonString(pet.getName());
+        writeBytes(JSON_TYPE);
+        writeJsonString(pet.getType());
+        writeBytes(JSON_SIZE);
+        writeJsonString(pet.getSize());
+        writeBytes(JSON_AGE);
+        writeInt(pet.getAge());
+        writeBytes(JSON_WEIGHT);
+        if (Double.isFinite(pet.getWeight())) {
+            writeDouble(pet.getWeight());
+        }
+        else {
+            writeBytes(NULL); // JSON has no NaN or Infinity
+        }
+        writeBytes(JSON_DOCTOR);
+        writeJsonString(pet.hasDoctor() ? pet.getDoctor().getName() : null);
+    }
+
+    /**
+     * Writes a JSON string, escaping anything which isn't printable ASCII,
+     * so the output is valid whatever charset it is read with
+     *
+     * @param text  string to be written, or null (written as null)
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeJsonString(String text) throws IOException {
+        if (text == null) {
+            writeBytes(NULL);
+            return;
+        }
+
+        writeByte((byte) '"');
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte((byte) '\\');
+                writeByte((byte) c);
+            }
+            else if (c < 0x20 || c >= 0x7F) {
+                writeByte((byte) '\\');
+                writeByte((byte) 'u');
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    writeByte(HEX_DIGITS[(c >> shift) & 0xF]);
+                }
+            }
+            else {
+                writeByte((byte) c);
+            }
+        }
+        writeByte((byte) '"');
+    }
+
+    /**
+     * Writes an int in decimal, in the same way as Integer.toString()
+     *
+     * @param value  number to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeInt(int value) throws IOException {
+        if (value < 0) {
+            writeText(Integer.toString(value)); // Ages are never negative
+            return;
+        }
+        writeDigits(value, 0);
+    }
+
+    /**
+     * Writes a double in the same way as Double.toString()
+     * Weights are normally recorded to a few decimal places, so these are
+     * written directly; any other value falls back to Double.toString().
+     *
+     * @param value  number to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeDouble(double value) throws IOException {
+        if (value >= MIN_FAST_WEIGHT && value < MAX_FAST_WEIGHT) {
+            for (int decimals = 0; decimals < POWERS_OF_TEN.length; decimals++) {
+                long scaled = Math.round(value * POWERS_OF_TEN[decimals]);
+                if (scaled / (double) POWERS_OF_TEN[decimals] == value) {
+                    // 'decimals' is the fewest decimal places which give back the same value,
+                    // which is exactly what Double.toString() prints
+                    writeDigits(scaled, decimals);
+                    if (decimals == 0) {
+                        writeByte((byte) '.');
+                        writeByte((byte) '0');
+                    }
+                    return;
+                }
+            }
+        }
+        writeText(Double.toString(value));
+    }
+
+    /**
+     * Writes a non-negative number in decimal, with a decimal point before
+     * the last 'decimals' digits
+     *
+     * @param value  number to be written - must not be negative
+     * @param decimals  number of digits after the decimal point (0 for none)
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeDigits(long value, int decimals) throws IOException {
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0 || digits.length - start <= decimals);
+
+        int pointAt = digits.length - decimals;
+        for (int i = start; i < digits.length; i++) {
+            if (i == pointAt) {
+                writeByte((byte) '.');
+            }
+            writeByte(digits[i]);
+        }
+    }
+
+    /**
+     * Writes a single byte
+     *
+     * @param b  byte to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeByte(byte b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = b;
+    }
+
+    /**
+     * Writes an array of bytes
+     *
+     * @param bytes  bytes to be written
+     * @throws IOException  if an error occurs while writing
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            drain();
+            if (bytes.length > buffer.length) {
+                output.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * Passes everything in the buffer on to the output stream, emptying the buffer
+     *
+     * No inputs/preconditions
+     * @throws IOException  if an error occurs while writing
+     */
+    private void drain() throws IOException {
+        if (position > 0) {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Converts an ASCII string into bytes
+     *
+     * @param text  text to be converted
+     * @return  the text's bytes
+     */
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,824 @@
+/*
+ * Class Name and Description:
+ *    HospitalHttpServer.java lets other programs (reception desks,
+ *    kennels, billing) use the pet and doctor data over HTTP. It is
+ *    another client of HospitalService, alongside the console.
+ *
+ *    Requests and responses are JSON. A single pet/doctor is returned as
+ *    one JSON object; listings are returned as JSON Lines (one object per
+ *    line, as in ExportFormat.JSON_LINES), streamed straight from the
+ *    service so that a listing of any size is sent in constant memory.
+ *
+ *        GET    /pets[?sorted=true]      List pets
+ *        POST   /pets                    Add pet: {"name", "size", "type", "age", "weight"}
+ *        GET    /pets/<name>             Analyse pet (its details, and whether it is overweight)
+ *        PATCH  /pets/<name>             Edit pet: any of {"size", "type", "age", "weight", "doctor", "version"}
+ *        DELETE /pets/<name>             Delete pet
+ *        PUT    /pets/<name>/doctor      Assign pet to doctor: {"doctor"}
+ *        GET    /doctors[?sorted=true]   List doctors
+ *        POST   /doctors                 Add doctor: {"name", "specialisation"}
+ *        GET    /doctors/<name>          Get doctor
+ *        DELETE /doctors/<name>          Delete doctor
+ *        GET    /doctors/<name>/pets     List pets assigned to doctor
+ *        GET    /report                  Analyse all pets
+ *
+ *    Listings are in name order when 'sorted' is true, and otherwise in
+ *    the order the service holds them in. A doctor's list of pets is in
+ *    name order unless the service runs with --columnar or --lazy; see
+ *    HospitalService.forEachPetOf().
+ *
+ *    Assigning a pet to a doctor who doesn't specialise in its type is
+ *    refused (409) unless the request also has "force": true, in place of
+ *    the console's confirmation. Errors are returned as {"error": "..."}.
+ *
+ *    A pet's JSON, in listings as well as from GET /pets/<name>, includes
+ *    whether it is "overweight" and its "version", which changes whenever
+ *    the pet does. An edit which includes the version that was read is
+ *    refused (409) if the pet has changed since, instead of overwriting
+ *    someone else's change.
+ *
+ *    Each request runs on its own thread: a virtual thread on Java 21 and
+ *    later (found by reflection, so the program still builds and runs on
+ *    older JDKs), otherwise a thread from a cached pool.
+ *
+ *    Creating a server sets two JVM-wide system properties for the JDK's
+ *    HTTP server, unless they are already set: sun.net.httpserver.nodelay
+ *    (true) and sun.net.httpserver.maxIdleConnections (1024). Nothing is
+ *    set unless a server is created.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import com.sun.net.httpserver.*;
+
+public class HospitalHttpServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;          // Connections which may wait to be accepted
+    private static final int MAX_BODY_SIZE = 64 << 10; // Request bodies are single small objects (64 KB)
+    private static final String JSON_TYPE = "application/json";
+    private static final String JSON_LINES_TYPE = "application/x-ndjson";
+
+    private final HospitalService service;
+    private final HttpServer server;
+    private final ExecutorService executor; // Runs each request
+
+    /**
+     * Creates a server for a service. Nothing is served until start() is called.
+     * The JDK's HTTP server is tuned first (see configureJdkServer()).
+     *
+     * @param service  the service which holds the doctors and pets
+     * @param port  port to listen on (0 for any free port)
+     * @throws IOException  if the port can't be listened on (e.g. it is in use)
+     */
+    public HospitalHttpServer(HospitalService service, int port) throws IOException {
+        this.service = service;
+        configureJdkServer();
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts serving requests, on background threads
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Gets the port which the server is listening on
+     *
+     * No inputs/preconditions
+     * @return  the port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving requests. Requests which are still running are interrupted.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+
+    /* ******** Requests ******** */
+
+
+    /**
+     * Handles one request, sending an error response if it fails
+     *
+     * @param exchange  the request and its response
+     */
+    private void handle(HttpExchange exchange) {
+        try {
+            route(exchange);
+        }
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage()); // Invalid JSON, or an invalid field
+        }
+        catch (IOException | UncheckedIOException e) {
+            // The client has gone away, so there is no-one to tell
+        }
+        catch (RuntimeException e) {
+            sendError(exchange, 500, "An internal error occurred.");
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Passes a request on to the method for its path and HTTP method
+     *
+     * @param exchange  the request and its response
+     * @throws IOException  if the response can't be sent
+     */
+    private void route(HttpExchange exchange) throws IOException {
+        List<String> path = splitPath(exchange.getRequestURI().getRawPath());
+        if (path.size() > 3) {
+            sendError(exchange, 404, "There is nothing at " + exchange.getRequestURI().getPath());
+            return;
+        }
+        String name = path.size() > 1 ? path.get(1) : null;
+        String route = (path.isEmpty() ? "" : path.get(0)) + (name == null ? "" : "/*") +
+                       (path.size() > 2 ? "/" + path.get(2) : "");
+        boolean sorted = "true".equalsIgnoreCase(getQueryParameter(exchange, "sorted"));
+
+        switch (exchange.getRequestMethod() + " " + route) {
+            case "GET pets":
+                sendLines(exchange, writer -> service.forEachPet(sorted, pet -> writeJson(writer, pet)));
+                break;
+            case "POST pets":
+                addPet(exchange, readObject(exchange));
+                break;
+            case "GET pets/*":
+                analysePet(exchange, name);
+                break;
+            case "PATCH pets/*":
+                editPet(exchange, name, readObject(exchange));
+                break;
+            case "DELETE pets/*":
+                if (service.removePet(name)) {
+                    sendNoContent(exchange);
+                }
+                else {
+                    sendError(exchange, 404, "There are no pets named '" + name + "'");
+                }
+                break;
+            case "PUT pets/*/doctor":
+                assignPet(exchange, name, readObject(exchange));
+                break;
+            case "GET doctors":
+                sendLines(exchange, writer -> service.forEachDoctor(sorted, doctor -> writeJson(writer, doctor)));
+                break;
+            case "POST doctors":
+                addDoctor(exchange, readObject(exchange));
+                break;
+            case "GET doctors/*":
+                getDoctor(exchange, name);
+                break;
+            case "DELETE doctors/*":
+                if (service.removeDoctor(name)) {
+                    sendNoContent(exchange);
+                }
+                else {
+                    sendError(exchange, 404, "There are no doctors named '" + name + "'");
+                }
+                break;
+            case "GET doctors/*/pets":
+                if (!service.doctorExists(name)) {
+                    sendError(exchange, 404, "There are no doctors named '" + name + "'");
+                    break;
+                }
+                sendLines(exchange, writer -> service.forEachPetOf(name, pet -> writeJson(writer, pet)));
+                break;
+            case "GET report":
+                analyseAllPets(exchange);
+                break;
+            default:
+                if (Arrays.asList("pets", "pets/*", "pets/*/doctor", "doctors", "doctors/*", "doctors/*/pets",
+                                  "report").contains(route)) {
+                    sendError(exchange, 405, exchange.getRequestMethod() + " can't be used on " +
+                                             exchange.getRequestURI().getPath());
+                }
+                else {
+                    sendError(exchange, 404, "There is nothing at " + exchange.getRequestURI().getPath());
+                }
+        }
+    }
+
+    /**
+     * Adds a new pet, with no doctor
+     *
+     * @param exchange  the request and its response
+     * @param fields  the request body: name, size, type, age and weight
+     * @throws IOException  if the response can't be sent
+     */
+    private void addPet(HttpExchange exchange, Map<String, String> fields) throws IOException {
+        String name = getName(fields);
+        String size = getSize(fields);
+        String type = getType(fields);
+        Integer age = getAge(fields);
+        Double weight = getWeight(fields);
+        if (size == null || type == null || age == null || weight == null) {
+            throw new IllegalArgumentException("'size', 'type', 'age' and 'weight' are all needed.");
+        }
+
+        Pet pet = service.addPet(name, size, type, age, weight);
+        if (pet == null) {
+            sendError(exchange, 409, "There is already a pet with that name.");
+            return;
+        }
+        sendJson(exchange, 201, readPet(name));
+    }
+
+    /**
+     * Sends a pet's details, and whether or not they are overweight
+     *
+     * @param exchange  the request and its response
+     * @param name  pet name
+     * @throws IOException  if the response can't be sent
+     */
+    private void analysePet(HttpExchange exchange, String name) throws IOException {
+        String json = readPet(name);
+        if (json == null) {
+            sendError(exchange, 404, "There are no pets named '" + name + "'");
+            return;
+        }
+        sendJson(exchange, 200, json);
+    }
+
+    /**
+     * Changes some of a pet's details. Fields which aren't in the request are left as they are.
+     *
+     * @param exchange  the request and its response
+     * @param name  pet name
+     * @param fields  the request body: any of size, type, age, weight and doctor (and force and version)
+     * @throws IOException  if the response can't be sent
+     */
+    private void editPet(HttpExchange exchange, String name, Map<String, String> fields) throws IOException {
+        String size = getSize(fields);
+        String type = getType(fields);
+        Integer age = getAge(fields);
+        Double weight = getWeight(fields);
+        String doctorName = fields.get("doctor");
+        long expectedVersion = getVersion(fields);
+
+        Pet pet = service.getPet(name);
+        if (pet == null) {
+            sendError(exchange, 404, "There are no pets named '" + name + "'");
+            return;
+        }
+        if (doctorName != null) {
+            PetType newType = type == null ? pet.getPetType() : PetType.parse(type);
+            if (!checkDoctor(exchange, doctorName, newType, fields)) {
+                return;
+            }
+        }
+
+        switch (service.editPetIfUnchanged(name, expectedVersion, size, type, age, weight, doctorName)) {
+            case NOT_FOUND:
+                sendError(exchange, 404, "There are no pets named '" + name + "'");
+                return;
+            case CONFLICT:
+                sendError(exchange, 409, "The pet has been changed since version " + expectedVersion +
+                                         ". Read it again, then retry the edit.");
+                return;
+            default: // EDITED
+                sendJson(exchange, 200, readPet(name));
+        }
+    }
+
+    /**
+     * Assigns a pet to a doctor
+     *
+     * @param exchange  the request and its response
+     * @param name  pet name
+     * @param fields  the request body: doctor (and force)
+     * @throws IOException  if the response can't be sent
+     */
+    private void assignPet(HttpExchange exchange, String name, Map<String, String> fields) throws IOException {
+        String doctorName = fields.get("doctor");
+        if (doctorName == null) {
+            throw new IllegalArgumentException("'doctor' is needed.");
+        }
+
+        Pet pet = service.getPet(name);
+        if (pet == null) {
+            sendError(exchange, 404, "There are no pets named '" + name + "'");
+            return;
+        }
+        if (!checkDoctor(exchange, doctorName, pet.getPetType(), fields)) {
+            return;
+        }
+
+        if (!service.assignPet(name, doctorName)) {
+            sendError(exchange, 404, "The pet or doctor is no longer in the system.");
+            return;
+        }
+        sendJson(exchange, 200, readPet(name));
+    }
+
+    /**
+     * Adds a new doctor
+     *
+     * @param exchange  the request and its response
+     * @param fields  the request body: name and specialisation
+     * @throws IOException  if the response can't be sent
+     */
+    private void addDoctor(HttpExchange exchange, Map<String, String> fields) throws IOException {
+        String name = getName(fields);
+        String specialisation = fields.get("specialisation");
+        if (Specialisation.parse(specialisation) == null) {
+            throw new IllegalArgumentException("'specialisation' must be dog or cat.");
+        }
+
+        Doctor doctor = service.addDoctor(name, specialisation);
+        if (doctor == null) {
+            sendError(exchange, 409, "There is already a doctor with that name.");
+            return;
+        }
+        sendJson(exchange, 201, toJson(doctor));
+    }
+
+    /**
+     * Sends a doctor's details
+     *
+     * @param exchange  the request and its response
+     * @param name  doctor name
+     * @throws IOException  if the response can't be sent
+     */
+    private void getDoctor(HttpExchange exchange, String name) throws IOException {
+        Doctor doctor = service.getDoctor(name);
+        if (doctor == null) {
+            sendError(exchange, 404, "There are no doctors named '" + name + "'");
+            return;
+        }
+        sendJson(exchange, 200, toJson(doctor));
+    }
+
+    /**
+     * Sends how many pets are overweight, grouped by type, size and doctor
+     *
+     * @param exchange  the request and its response
+     * @throws IOException  if the response can't be sent
+     */
+    private void analyseAllPets(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder();
+        service.read(() -> { // So that the doctors match the report
+            ObesityReport report = service.getObesityReport(true);
+            json.append("{\"pets\":").append(report.getPetCount())
+                .append(",\"overweight\":").append(report.getOverweightCount())
+                .append(",\"byType\":{");
+            for (PetType type : PetType.values()) {
+                json.append(type.ordinal() == 0 ? "" : ",").append(quote(type.toString())).append(':');
+                appendCounts(json, report.getPetCount(type, null), report.getOverweightCount(type, null));
+            }
+            json.append("},\"bySize\":{");
+            for (PetSize size : PetSize.values()) {
+                json.append(size.ordinal() == 0 ? "" : ",").append(quote(size.toString())).append(':');
+                appendCounts(json, report.getPetCount(null, size), report.getOverweightCount(null, size));
+            }
+            json.append("},\"byDoctor\":{");
+            service.forEachDoctor(true, doctor -> {
+                if (report.getPetCount(doctor) > 0) {
+                    json.append(json.charAt(json.length() - 1) == '{' ? "" : ",").append(quote(doctor.getName())).append(':');
+                    appendCounts(json, report.getPetCount(doctor), report.getOverweightCount(doctor));
+                }
+            });
+            json.append("},\"noDoctor\":");
+            appendCounts(json, report.getPetCount(null), report.getOverweightCount(null));
+            json.append('}');
+        });
+        sendJson(exchange, 200, json.toString());
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Tunes the JDK's HTTP server for many kept-alive clients, by setting the
+     * system properties it reads. Any which have already been set (e.g. with -D)
+     * are left as they are.
+     *
+     * The properties apply to the whole JVM, and the JDK only reads them when the
+     * first HttpServer is created, so this is only called when a HospitalHttpServer
+     * is created (i.e. when the program is run with --http), just beforehand. Any
+     * other com.sun.net.httpserver server created later in the same JVM gets them too.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private static void configureJdkServer() {
+        // The JDK's server writes a response's headers and body separately, so without this every
+        // response on a kept-alive connection waits for the client's delayed ACK (around 40 ms)
+        setDefaultProperty("sun.net.httpserver.nodelay", "true");
+        // By default only 200 idle kept-alive connections are kept, so busy clients are disconnected
+        setDefaultProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(BACKLOG));
+    }
+
+    /**
+     * Sets a system property, unless it has already been set (e.g. with -D)
+     *
+     * @param name  property name
+     * @param value  value to use if it isn't set
+     */
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Creates the executor which runs each request: one virtual thread per
+     * request if the JDK has them (Java 21 and later), otherwise a cached pool
+     *
+     * No inputs/preconditions
+     * @return  the executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Checks that a doctor exists and treats a type of pet, sending an error if not
+     * A doctor with the wrong specialisation is allowed if the request has "force": true.
+     *
+     * @param exchange  the request and its response
+     * @param doctorName  name of the doctor
+     * @param type  type of the pet
+     * @param fields  the request body
+     * @return  whether the pet may be assigned to the doctor (boolean value)
+     * @throws IOException  if the response can't be sent
+     */
+    private boolean checkDoctor(HttpExchange exchange, String doctorName, PetType type, Map<String, String> fields)
+            throws IOException {
+        Doctor doctor = service.getDoctor(doctorName);
+        if (doctor == null) {
+            sendError(exchange, 404, "There are no doctors named '" + doctorName + "'");
+            return false;
+        }
+        if (!doctor.getSpecialisationValue().treats(type) && !"true".equals(fields.get("force"))) {
+            sendError(exchange, 409, "Doctor " + doctor.getName() + " does not specialise in " + type + "s. " +
+                                     "Send \"force\": true to assign them anyway.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the JSON for a pet, including whether it is overweight and its version
+     * It is written in the same way as each pet of a listing (see writeJson()).
+     *
+     * @param name  pet name
+     * @return  the JSON object, or null if there is no such pet
+     */
+    private String readPet(String name) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        boolean[] found = new boolean[1];
+        service.read(() -> { // So that the pet can't change part-way through
+            Pet pet = service.getPet(name);
+            if (pet != null) {
+                HospitalFileWriter writer = new HospitalFileWriter(json);
+                try {
+                    writer.writeJsonPetDetails(pet);
+                    writer.flush();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e); // Not thrown by a ByteArrayOutputStream
+                }
+                found[0] = true;
+            }
+        });
+        if (!found[0]) {
+            return null;
+        }
+        return new String(json.toByteArray(), 0, json.size() - 1, StandardCharsets.UTF_8); // Without the line's newline
+    }
+
+    /**
+     * Gets the JSON for a doctor
+     *
+     * @param doctor  the doctor
+     * @return  the JSON object
+     */
+    private static String toJson(Doctor doctor) {
+        return "{\"name\":" + quote(doctor.getName()) + ",\"specialisation\":" + quote(doctor.getSpecialisation()) + "}";
+    }
+
+    /**
+     * Adds a pair of counts to a JSON report
+     *
+     * @param json  the report so far
+     * @param pets  number of pets
+     * @param overweight  number of overweight pets
+     */
+    private static void appendCounts(StringBuilder json, int pets, int overweight) {
+        json.append("{\"pets\":").append(pets).append(",\"overweight\":").append(overweight).append('}');
+    }
+
+    /**
+     * Gets the 'name' field of a request, which must not be blank
+     *
+     * @param fields  the request body
+     * @return  the name
+     */
+    private static String getName(Map<String, String> fields) {
+        String name = fields.get("name");
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("'name' must not be empty.");
+        }
+        return name;
+    }
+
+    /**
+     * Gets the 'size' field of a request
+     *
+     * @param fields  the request body
+     * @return  the size, or null if it isn't in the request
+     */
+    private static String getSize(Map<String, String> fields) {
+        String size = fields.get("size");
+        if (size != null && PetSize.parse(size) == null) {
+            throw new IllegalArgumentException("'size' must be small, medium or large.");
+        }
+        return size;
+    }
+
+    /**
+     * Gets the 'type' field of a request
+     *
+     * @param fields  the request body
+     * @return  the type, or null if it isn't in the request
+     */
+    private static String getType(Map<String, String> fields) {
+        String type = fields.get("type");
+        if (type != null && PetType.parse(type) == null) {
+            throw new IllegalArgumentException("'type' must be dog or cat.");
+        }
+        return type;
+    }
+
+    /**
+     * Gets the 'age' field of a request. A pet can't have a negative age.
+     *
+     * @param fields  the request body
+     * @return  the age, or null if it isn't in the request
+     */
+    private static Integer getAge(Map<String, String> fields) {
+        String age = fields.get("age");
+        try {
+            if (age == null || Integer.parseInt(age) >= 0) {
+                return age == null ? null : Integer.valueOf(age);
+            }
+        }
+        catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("'age' must be a whole number of years, 0 or more.");
+    }
+
+    /**
+     * Gets the 'version' field of a request: the version of the pet which the edit is based on
+     *
+     * @param fields  the request body
+     * @return  the version, or HospitalService.ANY_VERSION if it isn't in the request
+     */
+    private static long getVersion(Map<String, String> fields) {
+        String version = fields.get("version");
+        try {
+            if (version == null || Long.parseLong(version) >= 0) {
+                return version == null ? HospitalService.ANY_VERSION : Long.parseLong(version);
+            }
+        }
+        catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("'version' must be a whole number, 0 or more.");
+    }
+
+    /**
+     * Gets the 'weight' field of a request. A pet can only be a non-zero positive weight.
+     *
+     * @param fields  the request body
+     * @return  the weight, or null if it isn't in the request
+     */
+    private static Double getWeight(Map<String, String> fields) {
+        String weight = fields.get("weight");
+        try {
+            if (weight == null || Double.parseDouble(weight) > 0) {
+                return weight == null ? null : Double.valueOf(weight);
+            }
+        }
+        catch (NumberFormatException e) {
+            // Handled below
+        }
+        throw new IllegalArgumentException("'weight' must be a number of kilograms, more than zero.");
+    }
+
+    /**
+     * Reads a request body, which must be a single JSON object
+     *
+     * @param exchange  the request
+     * @return  field name -> value, as in JsonObjectParser.parse()
+     * @throws IOException  if the body can't be read
+     */
+    private static Map<String, String> readObject(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new IllegalArgumentException("The request body is too large.");
+        }
+        return JsonObjectParser.parse(new String(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Splits a request path into its decoded parts, e.g. '/pets/Rex' -> [pets, Rex]
+     *
+     * @param rawPath  the path, still URL-encoded
+     * @return  the non-empty parts of the path
+     */
+    private static List<String> splitPath(String rawPath) {
+        List<String> parts = new ArrayList<>();
+        for (String part : rawPath.split("/")) {
+            if (!part.isEmpty()) {
+                // '+' only means a space in a query
+                parts.add(URLDecoder.decode(part.replace("+", "%2B"), StandardCharsets.UTF_8));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Gets a parameter from a request's query string
+     *
+     * @param exchange  the request
+     * @param name  parameter name
+     * @return  the parameter's decoded value, or null if it isn't there
+     */
+    private static String getQueryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Something which writes the lines of a listing
+     * IOExceptions are thrown as UncheckedIOException, so that it can be used in a callback.
+     */
+    private interface Listing {
+        void writeTo(HospitalFileWriter writer);
+    }
+
+    /**
+     * Sends a listing as JSON Lines. The response is sent in chunks as it is
+     * written, so it is never held in memory all at once.
+     *
+     * @param exchange  the request and its response
+     * @param listing  writes the lines
+     * @throws IOException  if the response can't be sent
+     */
+    private static void sendLines(HttpExchange exchange, Listing listing) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_LINES_TYPE);
+        exchange.sendResponseHeaders(200, 0); // The length isn't known until the end
+        HospitalFileWriter writer = new HospitalFileWriter(exchange.getResponseBody());
+        try {
+            listing.writeTo(writer);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes a pet as a line of JSON, for a listing, with the same fields as GET /pets/<name>
+     *
+     * @param writer  the listing's writer
+     * @param pet  the pet
+     * @throws UncheckedIOException  if the pet can't be written
+     */
+    private static void writeJson(HospitalFileWriter writer, Pet pet) {
+        try {
+            writer.writeJsonPetDetails(pet);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a doctor as a line of JSON, for a listing
+     *
+     * @param writer  the listing's writer
+     * @param doctor  the doctor
+     * @throws UncheckedIOException  if the doctor can't be written
+     */
+    private static void writeJson(HospitalFileWriter writer, Doctor doctor) {
+        try {
+            writer.writeJsonDoctor(doctor);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends a JSON response
+     *
+     * @param exchange  the request and its response
+     * @param status  HTTP status code
+     * @param json  the response body
+     * @throws IOException  if the response can't be sent
+     */
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Sends an empty response, e.g. after a deletion
+     *
+     * @param exchange  the request and its response
+     * @throws IOException  if the response can't be sent
+     */
+    private static void sendNoContent(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /**
+     * Sends an error response, unless a response has already been started
+     *
+     * @param exchange  the request and its response
+     * @param status  HTTP status code
+     * @param message  what went wrong
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return; // Too late: part of the response has already been sent
+        }
+        try {
+            sendJson(exchange, status, "{\"error\":" + quote(message) + "}");
+        }
+        catch (IOException e) {
+            // The client has gone away
+        }
+    }
+
+    /**
+     * Converts a string into a JSON string, escaping anything which isn't
+     * printable ASCII, in the same way as HospitalFileWriter
+     *
+     * @param text  the string, or null
+     * @return  the quoted string, or null
+     */
+    private static String quote(String text) {
+        if (text == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20 || c >= 0x7F) {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Class Name and Description:
+ *    HospitalJournal.java is an append-only log of every change made to
+ *    the pets and doctors in the system. Each change is written as it
+ *    happens, so only the change itself needs to reach the disk rather
+ *    than the whole data set.
+ *
+ *    Together with a HospitalSnapshot, the journal lets the system be
+ *    rebuilt after a restart (or a crash): load the snapshot, then
+ *    replay every journal entry made after it.
+ *
+ *    Every entry has a sequence number, which increases by one per entry.
+ *    A snapshot records the last sequence number it includes, so replay
+ *    can skip entries which are already in the snapshot.
+ *
+ *    When the journal gets long it is rotated: the current file is
+ *    renamed to '<journal>.<last sequence number>' and a new, empty
+ *    journal is started. Once a snapshot including those entries has
+ *    been saved, the rotated file can be deleted.
+ *
+ *    Entries are written in two steps: flush() hands them to the operating
+ *    system, by the thread which adds them, and sync() then waits until
+ *    they are on the disk. sync() can be called by any number of threads
+ *    at once, without the lock which guards adding entries; one sync of
+ *    the file covers every entry flushed before it, so threads which are
+ *    waiting at the same time share it.
+ *
+ *    Entry layout (big-endian, strings in modified UTF-8):
+ *        int     length of the body
+ *        body:   long sequence number, byte operation, string name,
+ *                then the operation's fields (see Entry)
+ *        int     CRC-32 of the body
+ *    A crash while an entry is being written leaves a partial entry at
+ *    the end of the file. Reading stops at the first entry which is
+ *    incomplete or fails its checksum.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class HospitalJournal {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_ENTRY_LENGTH = 1 << 20; // Longer entries can only be the result of corruption
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final PetType[] TYPES = PetType.values();
+    private static final PetSize[] SIZES = PetSize.values();
+    private static final Specialisation[] SPECIALISATIONS = Specialisation.values();
+
+    /**
+     * The changes which can be recorded in the journal
+     */
+    public enum Operation {
+        ADD_PET,        // name, size, type, age, weight, doctor name (added, or replaced if it exists)
+        EDIT_PET,       // name, size, type, age, weight, doctor name (all of the pet's new values)
+        REMOVE_PET,     // name
+        ASSIGN_PET,     // name, doctor name (or none, to unassign the pet)
+        ADD_DOCTOR,     // name, specialisation (added, or updated if they exist)
+        REMOVE_DOCTOR   // name
+    }
+
+    private String filename;
+    private FileOutputStream file;
+    private DataOutputStream output;
+    private long lastSequence;             // Sequence number of the last entry written
+    private long length;                   // Bytes in the journal file, including buffered entries
+
+    private ByteArrayOutputStream body = new ByteArrayOutputStream(); // Reused for each entry
+    private DataOutputStream bodyOutput = new DataOutputStream(body);
+    private CRC32 checksum = new CRC32();
+    private IOException error;             // First error since the last flush(), if there was one
+
+    private final Object syncing = new Object(); // Held while the file is synced, or replaced by rotate()
+    private volatile long writtenSequence; // Sequence number of the last entry flushed
+    private long syncedSequence;           // Sequence number of the last entry on the disk (guarded by 'syncing')
+    private FileOutputStream rotatedFile;  // Last file rotated away, if it hasn't been synced yet (guarded by 'syncing')
+
+    /**
+     * Opens a journal file so that entries can be added to the end of it
+     * Any partial entry at the end of the file (left by a crash) is removed first.
+     *
+     * @param filename  name of the journal file - will be created if it doesn't exist
+     * @param lastSequence  sequence number of the last entry already applied to the system
+     * @return  the journal
+     * @throws IOException  if the file can't be opened
+     */
+    public static HospitalJournal open(String filename, long lastSequence) throws IOException {
+        long validLength = new File(filename).exists() ? scan(filename, null) : 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+        }
+
+        HospitalJournal journal = new HospitalJournal();
+        journal.filename = filename;
+        journal.lastSequence = lastSequence;
+        journal.writtenSequence = lastSequence;
+        journal.syncedSequence = lastSequence;
+        journal.openFile(validLength);
+        return journal;
+    }
+
+    /**
+     * Reads every complete entry from a journal file, in the order they were written
+     *
+     * @param filename  name of the journal file
+     * @return  the entries, or an empty list if the file doesn't exist
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public static List<Entry> read(String filename) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (new File(filename).exists()) {
+            scan(filename, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the journal files which have been rotated out, oldest first
+     *
+     * @param filename  name of the current journal file
+     * @return  names of the rotated files
+     */
+    public static List<String> getRotatedFiles(String filename) {
+        File journal = new File(filename).getAbsoluteFile();
+        String prefix = journal.getName() + ".";
+        TreeMap<Long, String> rotated = new TreeMap<>();
+        String[] names = journal.getParentFile().list();
+        for (String name : names == null ? new String[0] : names) {
+            if (name.startsWith(prefix)) {
+                try {
+                    long sequence = Long.parseLong(name.substring(prefix.length()));
+                    rotated.put(sequence, new File(journal.getParentFile(), name).getPath());
+                }
+                catch (NumberFormatException e) {
+                    // Not a rotated journal (e.g. a temporary file)
+                }
+            }
+        }
+        return new ArrayList<>(rotated.values());
+    }
+
+    /**
+     * Deletes the rotated journal files whose entries are all included in a snapshot
+     *
+     * @param filename  name of the current journal file
+     * @param sequence  sequence number of the last entry included in the snapshot
+     * @throws IOException  if a file can't be deleted
+     */
+    public static void deleteRotatedFiles(String filename, long sequence) throws IOException {
+        for (String rotated : getRotatedFiles(filename)) {
+            long lastInFile = Long.parseLong(rotated.substring(rotated.lastIndexOf('.') + 1));
+            if (lastInFile <= sequence) {
+                Files.deleteIfExists(Paths.get(rotated));
+            }
+        }
+    }
+
+    // Each method below adds one entry to the end of the journal.
+    // Entries are buffered; use commit() to make sure they have reached the disk.
+    // Errors are remembered and reported by the next commit(), in the same way as PrintWriter.
+
+    public void addPet(Pet pet) {
+        writePet(Operation.ADD_PET, pet);
+    }
+
+    public void editPet(Pet pet) {
+        writePet(Operation.EDIT_PET, pet);
+    }
+
+    public void removePet(String name) {
+        try {
+            startEntry(Operation.REMOVE_PET, name);
+            finishEntry();
+        }
+        catch (IOException e) {
+            recordError(e);
+        }
+    }
+
+    public void assignPet(Pet pet) {
+        try {
+            startEntry(Operation.ASSIGN_PET, pet.getName());
+            writeDoctorName(pet.getDoctor());
+            finishEntry();
+        }
+        catch (IOException e) {
+            recordError(e);
+        }
+    }
+
+    public void addDoctor(Doctor doctor) {
+        try {
+            startEntry(Operation.ADD_DOCTOR, doctor.getName());
+            bodyOutput.writeByte(ordinal(doctor.getSpecialisationValue()));
+            finishEntry();
+        }
+        catch (IOException e) {
+            recordError(e);
+        }
+    }
+
+    public void removeDoctor(String name) {
+        try {
+            startEntry(Operation.REMOVE_DOCTOR, name);
+            finishEntry();
+        }
+        catch (IOException e) {
+            recordError(e);
+        }
+    }
+
+    /**
+     * Hands every entry added so far to the operating system, without
+     * waiting for them to reach the disk (see sync())
+     * Must be called by the thread adding entries (e.g. with the write lock held).
+     *
+     * No inputs/preconditions
+     * @return  sequence number of the last entry, to be passed to sync()
+     * @throws IOException  if an entry couldn't be written (since the last flush)
+     */
+    public long flush() throws IOException {
+        try {
+            if (error != null) {
+                throw error;
+            }
+            output.flush();
+            writtenSequence = lastSequence;
+            return lastSequence;
+        }
+        finally {
+            error = null;
+        }
+    }
+
+    /**
+     * Waits until every entry up to a sequence number has reached the disk
+     * Doesn't need the lock which guards adding entries. If another thread is
+     * already syncing, this waits for it, and then only syncs again if its
+     * sync didn't include the entries.
+     *
+     * @param sequence  sequence number of the last entry which must be on the disk, from flush()
+     * @throws IOException  if the file can't be synced
+     */
+    public void sync(long sequence) throws IOException {
+        synchronized (syncing) {
+            if (syncedSequence >= sequence) {
+                return; // Included in a sync which another thread made
+            }
+            long flushed = writtenSequence; // Everything up to here has already been written to the file
+            syncRotatedFile();
+            file.getFD().sync();
+            syncedSequence = flushed;
+        }
+    }
+
+    /**
+     * Makes sure every entry added so far has reached the disk
+     * Must be called by the thread adding entries.
+     *
+     * No inputs/preconditions
+     * @throws IOException  if an entry couldn't be written (since the last flush)
+     */
+    public void commit() throws IOException {
+        sync(flush());
+    }
+
+    /**
+     * Renames the current journal file to '<journal>.<last sequence number>'
+     * and starts a new, empty journal. Entries are flushed first; the old
+     * file is synced by the next sync(), so this doesn't wait for the disk.
+     * Does nothing if the journal is empty.
+     * Must be called by the thread adding entries.
+     *
+     * No inputs/preconditions
+     * @throws IOException  if the journal can't be rotated
+     */
+    public void rotate() throws IOException {
+        flush();
+        if (length == 0) {
+            return; // Nothing to rotate
+        }
+        synchronized (syncing) {
+            syncRotatedFile(); // Only if nothing has synced since the last rotation
+            Files.move(Paths.get(filename), Paths.get(filename + "." + lastSequence),
+                       StandardCopyOption.REPLACE_EXISTING);
+            rotatedFile = file;
+            openFile(0);
+        }
+    }
+
+    /**
+     * Commits any remaining entries and closes the journal file
+     *
+     * No inputs/preconditions
+     * @throws IOException  if the remaining entries can't be written
+     */
+    public void close() throws IOException {
+        try {
+            commit();
+        }
+        finally {
+            synchronized (syncing) {
+                file.close();
+                if (rotatedFile != null) {
+                    rotatedFile.close();
+                    rotatedFile = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last entry added
+     *
+     * No inputs/preconditions
+     * @return  the sequence number
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Gets the size of the current journal file, including entries which haven't been committed
+     *
+     * No inputs/preconditions
+     * @return  size in bytes
+     */
+    public long length() {
+        return length;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Opens the journal file for appending
+     *
+     * @param existingLength  number of bytes already in the file
+     * @throws IOException  if the file can't be opened
+     */
+    private void openFile(long existingLength) throws IOException {
+        file = new FileOutputStream(filename, true);
+        output = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+        length = existingLength;
+    }
+
+    /**
+     * Syncs and closes the file which was last rotated away, if it hasn't been synced yet
+     * Must be called with 'syncing' held.
+     *
+     * No inputs/preconditions
+     * @throws IOException  if the file can't be synced
+     */
+    private void syncRotatedFile() throws IOException {
+        if (rotatedFile != null) {
+            rotatedFile.getFD().sync();
+            rotatedFile.close();
+            rotatedFile = null;
+        }
+    }
+
+    /**
+     * Writes an ADD_PET or EDIT_PET entry holding all of the pet's values
+     *
+     * @param operation  ADD_PET or EDIT_PET
+     * @param pet  the pet which was added/edited
+     */
+    private void writePet(Operation operation, Pet pet) {
+        try {
+            startEntry(operation, pet.getName());
+            bodyOutput.writeByte(ordinal(pet.getPetSize()));
+            bodyOutput.writeByte(ordinal(pet.getPetType()));
+            bodyOutput.writeInt(pet.getAge());
+            bodyOutput.writeDouble(pet.getWeight());
+            writeDoctorName(pet.getDoctor());
+            finishEntry();
+        }
+        catch (IOException e) {
+            recordError(e);
+        }
+    }
+
+    /**
+     * Starts a new entry in the reusable body buffer
+     *
+     * @param operation  the change being recorded
+     * @param name  name of the pet/doctor which was changed
+     * @throws IOException  if the entry can't be written to the buffer
+     */
+    private void startEntry(Operation operation, String name) throws IOException {
+        body.reset();
+        bodyOutput.writeLong(lastSequence + 1);
+        bodyOutput.writeByte(operation.ordinal());
+        bodyOutput.writeUTF(name);
+    }
+
+    /**
+     * Writes a doctor's name, or a marker if there is no doctor
+     *
+     * @param doctor  the doctor, or null
+     * @throws IOException  if the name can't be written to the buffer
+     */
+    private void writeDoctorName(Doctor doctor) throws IOException {
+        bodyOutput.writeBoolean(doctor != null);
+        if (doctor != null) {
+            bodyOutput.writeUTF(doctor.getName());
+        }
+    }
+
+    /**
+     * Adds the entry in the body buffer to the journal, with its length and checksum
+     *
+     * @throws IOException  if the entry can't be written
+     */
+    private void finishEntry() throws IOException {
+        checksum.reset();
+        checksum.update(body.toByteArray(), 0, body.size());
+        output.writeInt(body.size());
+        body.writeTo(output);
+        output.writeInt((int) checksum.getValue());
+        length += body.size() + 8;
+        lastSequence++;
+    }
+
+    /**
+     * Remembers the first error, so that it can be reported by commit()
+     *
+     * @param e  the error
+     */
+    private void recordError(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /**
+     * Reads every complete entry from a journal file
+     *
+     * @param filename  name of the journal file
+     * @param entries  list which the entries should be added to, or null if they aren't needed
+     * @return  number of bytes taken up by the complete entries
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static long scan(String filename, List<Entry> entries) throws IOException {
+        long validLength = 0;
+        CRC32 checksum = new CRC32();
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE))) {
+            while (true) {
+                byte[] body;
+                try {
+                    int bodyLength = input.readInt();
+                    if (bodyLength <= 0 || bodyLength > MAX_ENTRY_LENGTH) {
+                        break;
+                    }
+                    body = new byte[bodyLength];
+                    input.readFully(body);
+                    checksum.reset();
+                    checksum.update(body, 0, body.length);
+                    if (input.readInt() != (int) checksum.getValue()) {
+                        break;
+                    }
+                }
+                catch (EOFException e) {
+                    break; // Partial entry left by a crash
+                }
+
+                if (entries != null) {
+                    entries.add(Entry.decode(body));
+                }
+                validLength += body.length + 8;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Converts an enum value into the byte stored in the journal
+     *
+     * @param value  value to be converted, or null
+     * @return  the value's ordinal, or -1 if the value is null
+     */
+    private static int ordinal(Enum<?> value) {
+        return value == null ? -1 : value.ordinal();
+    }
+
+    /**
+     * Converts a byte stored in the journal back into an enum value
+     *
+     * @param values  every value of the enum
+     * @param ordinal  the stored ordinal, or -1 for null
+     * @return  the enum value, or null
+     * @throws IOException  if the ordinal is out of range
+     */
+    private static <E extends Enum<E>> E decode(E[] values, byte ordinal) throws IOException {
+        if (ordinal < -1 || ordinal >= values.length) {
+            throw new IOException("Corrupt journal: unknown value " + ordinal);
+        }
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+
+    /* ******** Journal Entry ******** */
+
+
+    /**
+     * A single change read back from the journal. Only the fields used by
+     * the entry's operation are set (see Operation); the rest are left empty.
+     */
+    public static class Entry {
+        private long sequence;
+        private Operation operation;
+        private String name;
+        private PetSize size;
+        private PetType type;
+        private int age;
+        private double weight;
+        private String doctorName;              // null if no doctor is assigned
+        private Specialisation specialisation;
+
+        /**
+         * Reads an entry from its body bytes
+         *
+         * @param body  the entry's body (which has already passed its checksum)
+         * @return  the entry
+         * @throws IOException  if the body is corrupt
+         */
+        private static Entry decode(byte[] body) throws IOException {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+            Entry entry = new Entry();
+            entry.sequence = input.readLong();
+            entry.operation = HospitalJournal.decode(OPERATIONS, input.readByte());
+            entry.name = input.readUTF();
+            switch (entry.operation) {
+                case ADD_PET:
+                case EDIT_PET:
+                    entry.size = HospitalJournal.decode(SIZES, input.readByte());
+                    entry.type = HospitalJournal.decode(TYPES, input.readByte());
+                    entry.age = input.readInt();
+                    entry.weight = input.readDouble();
+                    entry.doctorName = input.readBoolean() ? input.readUTF() : null;
+                    break;
+                case ASSIGN_PET:
+                    entry.doctorName = input.readBoolean() ? input.readUTF() : null;
+                    break;
+                case ADD_DOCTOR:
+                    entry.specialisation = HospitalJournal.decode(SPECIALISATIONS, input.readByte());
+                    break;
+                default: // REMOVE_PET and REMOVE_DOCTOR only have a name
+                    break;
+            }
+            return entry;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PetSize getSize() {
+            return size;
+        }
+
+        public PetType getType() {
+            return type;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public String getDoctorName() {
+            return doctorName;
+        }
+
+        public Specialisation getSpecialisation() {
+            return specialisation;
+        }
+    }
+}
@@ -0,0 +1,2790 @@
+/*
+ * Class Name and Description:
+ *    HospitalService.java holds every doctor and pet in the system, and
+ *    makes every change to them. Hospital (the console) is one client of
+ *    it; several clients, each on its own thread, can use one service at
+ *    the same time.
+ *
+ *    A read/write lock guards the data. Changes take the write lock. Each
+ *    change is written to the journal (if it is on), and autosave is told
+ *    about it, before the write lock is released. The journal is synced to
+ *    the disk after that, so changes on other threads can go ahead (and
+ *    share the same sync) while a change waits for the disk.
+ *
+ *    Once a change is finished, a new HospitalView of the data is made
+ *    from the last one, copying only what changed. Anything which only
+ *    looks at the data (lookups, listings, analysis, saving and
+ *    exporting) reads the latest view without taking any lock, so a long
+ *    listing or export never holds up changes, and always sees the data
+ *    as it was when it started. Views are only kept when every pet is a
+ *    separate Pet object in memory: with PetColumns or lazy loading,
+ *    copying the pets would undo the memory savings, so reads take the
+ *    read lock instead.
+ *
+ *    Nothing is printed or read from the console here. Where reading a
+ *    file needs the user to decide something, the service asks the
+ *    client's Prompter, and errors from background work (journalling,
+ *    compaction and autosave) are kept until the client takes them.
+ *
+ *    Pets and doctors returned by lookups must only be read. They are
+ *    frozen copies from a view, or the live objects if views aren't kept.
+ *    Use read() to make several reads which see the same data.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+public class HospitalService {
+    public static final String SNAPSHOT_FILE = "HospitalManagement.snapshot";
+    private static final String JOURNAL_FILE = "HospitalManagement.journal";
+    private static final String IMPORTS_FILE = "HospitalManagement.imports"; // Fingerprints of imported files,
+                                                                           // kept alongside the journal
+    private static final long MAPPED_IMPORT_THRESHOLD = 64L << 20;   // Files at least this big (64 MB) are
+                                                                   // memory-mapped rather than streamed
+    private static final long PARALLEL_IMPORT_THRESHOLD = 16L << 20; // Files at least this big (16 MB) are
+                                                                   // parsed on every core, if there is more than one
+    private static final long COMPACTION_THRESHOLD = 4L << 20; // Journals at least this big (4 MB) are
+                                                               // folded into a new snapshot
+    private static final int VIEW_REBUILD_FRACTION = 8; // A view is rebuilt, rather than updated, once more
+                                                        // than 1/8 of the pets and doctors have changed
+
+    /**
+     * Asks the user of a client to decide something, and tells them what happened
+     * Only used while a file is being read with ConflictPolicy.ASK, and never
+     * with a lock held, so other clients don't wait while the user decides.
+     */
+    public interface Prompter {
+        /**
+         * Asks a yes/no question
+         *
+         * @param question  the question, ending in '(y/n)?  ' (it may start with a line of explanation)
+         * @return  whether the user answered yes (boolean value)
+         */
+        boolean confirm(String question);
+
+        /**
+         * Tells the user something
+         *
+         * @param message  a line of text, or "" for a blank line
+         */
+        void inform(String message);
+    }
+
+    /**
+     * What happened when a data file was read (see readData())
+     */
+    public enum ReadStatus {
+        UNCHANGED,     // The file hasn't changed since it was last read, so nothing was read
+        NOTHING_ADDED, // Only blank lines have been added to the file since it was last read
+        EMPTY,         // The file is blank or missing
+        INDEXED,       // The file's pets will be read from it when they are needed
+        IMPORTED       // The file's pets and doctors were imported
+    }
+
+    /**
+     * What happened when a pet was to be edited only if it was unchanged (see editPetIfUnchanged())
+     */
+    public enum EditStatus {
+        EDITED,    // The pet's details were changed
+        NOT_FOUND, // There is no pet with that name
+        CONFLICT   // The pet has been changed since the expected version, so it was left as it was
+    }
+
+    public static final long ANY_VERSION = -1; // Passed to editPetIfUnchanged() to edit a pet whatever its version
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The following are guarded by 'lock'
+    private Registry<Doctor> doctors = new Registry<>(); // A list of all the doctors in the system
+    private Registry<Pet> pets = new Registry<>();       // A list of all the pets in the system
+                                                         // (empty if they are in 'petColumns')
+    private PetColumns petColumns; // Compact storage for the pets, in place of 'pets',
+                                   // or null if each pet is a separate Pet object
+    private LazyPetFile lazyPets;  // Pets which are still only in the data file, or null
+    private HashSet<String> changedPetNames = new HashSet<>();    // Normalised names of pets and doctors which
+    private HashSet<String> changedDoctorNames = new HashSet<>(); // have changed since the view was last updated
+    private boolean viewRebuildNeeded = false; // Whether so much has changed that the next view will be
+                                               // rebuilt, so changes aren't being recorded one by one
+    private int lazyCacheSize = 0; // Number of the data file's pets to keep in memory,
+                                   // or 0 if pets should be read from the data file straight away
+
+    // Names of removed doctors/pets, and the modification version at which each was removed
+    private TreeMap<String, Long> removedDoctors = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private TreeMap<String, Long> removedPets = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    // Fingerprint of each data file as it was when it was last read, so unchanged files aren't read again
+    private HashMap<String, FileFingerprint> importedFiles = new HashMap<>();
+    private boolean importedFilesChanged = false; // Whether 'importedFiles' needs saving with the journal
+
+    private HospitalJournal journal;  // Record of every change, or null if journalling is off
+    private ExecutorService compactor; // Saves snapshots of the journal in the background
+    private Future<?> compaction;      // The latest background compaction, or null
+    private boolean compactionRequested = false; // Whether to compact when the current change finishes
+
+    private AutosaveScheduler autosave; // Saves changes to a data file in the background, or null
+
+    private volatile HospitalView view = HospitalView.EMPTY; // The data as of the last finished change,
+                                                             // or null if views aren't being kept
+    private final ThreadLocal<HospitalView> pinnedView = new ThreadLocal<>(); // View used by read(), if any
+
+    private volatile IOException journalError;    // Last error while writing to the journal, or null
+    private volatile IOException compactionError; // Last error while compacting the journal, or null
+
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * Each pet will be stored as a separate Pet object
+     */
+    public HospitalService() {
+        this(false);
+    }
+
+    /**
+     * Storage selecting constructor
+     *
+     * @param columnarPets  whether pets should be stored in PetColumns rather
+     *                      than as separate Pet objects
+     */
+    public HospitalService(boolean columnarPets) {
+        if (columnarPets) {
+            petColumns = new PetColumns();
+            view = null;
+        }
+    }
+
+    /**
+     * Turns on lazy loading: the next data file read into an empty system
+     * is only scanned, and its pets are read from it when they are needed
+     *
+     * @param cacheSize  maximum number of the file's pets to keep in memory at once
+     * Returns nothing
+     */
+    public void enableLazyLoading(int cacheSize) {
+        long version = startChange();
+        try {
+            lazyCacheSize = Math.max(cacheSize, 1);
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Turns on autosave: changes are saved to a data file in the
+     * background, once no more changes have been made for the quiet period
+     *
+     * @param filename  name of file which data should be saved to
+     * @param quietPeriod  time to wait after the last change before saving (ms)
+     * Returns nothing
+     */
+    public void enableAutosave(String filename, long quietPeriod) {
+        long version = startChange();
+        try {
+            autosave = new AutosaveScheduler(filename, quietPeriod, this::captureForAutosave);
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+
+    /* ******** Reading the data ******** */
+
+
+    /**
+     * Runs an action so that every read it makes sees the same data (e.g. a
+     * count, and then the list it counted). The reads use the latest view,
+     * so changes can carry on while the action runs; if views aren't kept,
+     * the read lock is held instead. The action must not make any changes.
+     *
+     * @param action  the reads to be made
+     * Returns nothing
+     */
+    public void read(Runnable action) {
+        HospitalView current = view;
+        if (current != null) {
+            if (pinnedView.get() != null) { // Already inside read()
+                action.run();
+                return;
+            }
+            pinnedView.set(current);
+            try {
+                action.run();
+            }
+            finally {
+                pinnedView.remove();
+            }
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            action.run();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of doctors in the system
+     *
+     * No inputs/preconditions
+     * @return  number of doctors
+     */
+    public int getDoctorCount() {
+        HospitalView view = currentView();
+        if (view != null) {
+            return view.getDoctorCount();
+        }
+        lock.readLock().lock();
+        try {
+            return doctors.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of pets in the system, including any still in the data file
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int getPetCount() {
+        HospitalView view = currentView();
+        if (view != null) {
+            return view.getPetCount();
+        }
+        lock.readLock().lock();
+        try {
+            return petCount();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Determines whether a doctor with the specified name exists
+     *
+     * @param name  doctor name to be searched for
+     * @return  whether a doctor with that name exists (boolean value)
+     */
+    public boolean doctorExists(String name) {
+        return getDoctor(name) != null;
+    }
+
+    /**
+     * Determines whether a pet with the specified name exists
+     *
+     * @param name  pet name to be searched for
+     * @return  whether a pet with that name exists (boolean value)
+     */
+    public boolean petExists(String name) {
+        return getPet(name) != null;
+    }
+
+    /**
+     * Returns the doctor with the specified name, if they exist
+     * The doctor must only be read.
+     *
+     * @param name  doctor name to be searched for
+     * @return  doctor object, or null if they don't exist
+     */
+    public Doctor getDoctor(String name) {
+        HospitalView view = currentView();
+        if (view != null) {
+            return view.getDoctor(name);
+        }
+        lock.readLock().lock();
+        try {
+            return getDoctorByName(name);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the pet with the specified name, if they exist
+     * The pet must only be read.
+     *
+     * @param name  pet name to be searched for
+     * @return  pet object, or null if they don't exist
+     */
+    public Pet getPet(String name) {
+        HospitalView view = currentView();
+        if (view != null) {
+            return view.getPet(name);
+        }
+        lock.readLock().lock();
+        try {
+            return detach(getPetByName(name));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every doctor in the system to an action
+     *
+     * @param sorted  whether the doctors should be in name order
+     * @param action  called for each doctor - must not make any changes
+     * Returns nothing
+     */
+    public void forEachDoctor(boolean sorted, Consumer<? super Doctor> action) {
+        HospitalView view = currentView();
+        if (view != null) {
+            (sorted ? view.getSortedDoctors() : view.getDoctors()).forEach(action);
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            for (Doctor doctor : sorted ? doctors.sorted() : doctors) {
+                action.accept(doctor);
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every pet in the system to an action
+     * Pets which are still in the data file are read from it as they are reached.
+     *
+     * @param sorted  whether the pets should be in name order
+     * @param action  called for each pet - must not make any changes
+     * Returns nothing
+     */
+    public void forEachPet(boolean sorted, Consumer<? super Pet> action) {
+        HospitalView view = currentView();
+        if (view != null) {
+            (sorted ? view.getSortedPets() : view.getPets()).forEach(action);
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            for (Pet pet : sorted ? getSortedPets() : allPets()) {
+                action.accept(pet);
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every pet assigned to a doctor to an action
+     * Pets in a view are in name order, otherwise in order of assignment.
+     *
+     * @param doctorName  name of the doctor
+     * @param action  called for each of the doctor's pets - must not make any changes
+     * @return  whether the doctor exists (boolean value)
+     */
+    public boolean forEachPetOf(String doctorName, Consumer<? super Pet> action) {
+        HospitalView view = currentView();
+        if (view != null) {
+            Doctor doctor = view.getDoctor(doctorName);
+            if (doctor == null) {
+                return false;
+            }
+            view.getPetsOf(doctor).forEach(action);
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            Doctor doctor = getDoctorByName(doctorName);
+            if (doctor == null) {
+                return false;
+            }
+            for (Pet pet : petsOf(doctor)) {
+                action.accept(pet);
+            }
+            return true;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Classifies every pet in the system as overweight or not
+     *
+     * @param parallel  whether a large number of pets may be classified on multiple cores
+     * @return  counts of overweight pets grouped by type, size and doctor
+     */
+    public ObesityReport getObesityReport(boolean parallel) {
+        HospitalView view = currentView();
+        if (view != null) {
+            return ObesityReport.of(view.getPets(), view.getPetCount(), parallel);
+        }
+        lock.readLock().lock();
+        try {
+            if (petColumns != null && lazyPets == null) {
+                return petColumns.analyse(parallel);
+            }
+            return ObesityReport.of(allPets(), petCount(), parallel);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies every pet and doctor in the system
+     *
+     * No inputs/preconditions
+     * @return  the copy, which won't change when the system does
+     */
+    public HospitalSnapshot snapshot() {
+        HospitalView view = currentView();
+        if (view != null) {
+            return HospitalSnapshot.of(view.getPets(), view.getPetCount(), view.getDoctors(), view.getDoctorCount(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            return HospitalSnapshot.of(allPets(), petCount(), doctors, doctors.size(), 0);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all the program data (pets and doctors) to the specified file
+     * The file is replaced in one step, so a failed save leaves the old file intact.
+     * If autosave is saving to the same file, the save is made through it, so
+     * that this save and an autosave are never written at the same time.
+     *
+     * @param filename  name of file which data should be written to
+     * @throws IOException  if an error occurs while writing to the file
+     */
+    public void saveData(String filename) throws IOException {
+        if (autosave != null && autosave.getFilename().equals(filename)) {
+            autosave.saveNow();
+            return;
+        }
+
+        HospitalView view = currentView();
+        if (view != null) {
+            HospitalFileWriter.write(filename, view.getPets(), view.getDoctors());
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            HospitalFileWriter.write(filename, allPets(), doctors);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes pets to a file, for analysis by other programs
+     *
+     * @param filename  name of file which the pets should be written to
+     * @param format  the file's format
+     * @param doctorName  only export the pets assigned to this doctor, or null for every pet
+     * @return  number of pets exported, or -1 if the doctor doesn't exist
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public int exportPets(String filename, ExportFormat format, String doctorName) throws IOException {
+        HospitalView view = currentView();
+        if (view != null) {
+            Iterable<Pet> selected = view.getPets();
+            if (doctorName != null) {
+                Doctor doctor = view.getDoctor(doctorName);
+                if (doctor == null) {
+                    return -1;
+                }
+                selected = view.getPetsOf(doctor);
+            }
+            return HospitalFileWriter.export(filename, format, selected);
+        }
+        lock.readLock().lock();
+        try {
+            Iterable<Pet> selected = allPets();
+            if (doctorName != null) {
+                Doctor doctor = getDoctorByName(doctorName);
+                if (doctor == null) {
+                    return -1;
+                }
+                selected = petsOf(doctor);
+            }
+            return HospitalFileWriter.export(filename, format, selected);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the doctors/pets which have been added, changed or removed since
+     * a checkpoint to a file, which can then be read into another copy of the system
+     *
+     * @param filename  name of file which the changes should be written to
+     * @param checkpoint  modification version of the checkpoint (0 for everything)
+     * @return  what was exported, and the checkpoint to use for the next export
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public ChangeExport exportChanges(String filename, long checkpoint) throws IOException {
+        lock.readLock().lock();
+        try {
+            // Anything changed after this point will have a later version, so will be in the next export
+            long nextCheckpoint = ModificationCounter.current();
+            List<Doctor> changedDoctors = new ArrayList<>();
+            for (Doctor doctor : doctors) {
+                if (doctor.getVersion() > checkpoint) {
+                    changedDoctors.add(doctor);
+                }
+            }
+            List<Pet> changedPets = new ArrayList<>();
+            for (Pet pet : storedPets()) {
+                if (pet.getVersion() > checkpoint) {
+                    changedPets.add(pet);
+                }
+            }
+            List<String> removedDoctorNames = getRemovedSince(removedDoctors, checkpoint);
+            List<String> removedPetNames = getRemovedSince(removedPets, checkpoint);
+
+            HospitalFileWriter.writeChanges(filename, changedPets, changedDoctors, removedPetNames, removedDoctorNames);
+            return new ChangeExport(changedPets.size(), changedDoctors.size(),
+                                    removedPetNames.size() + removedDoctorNames.size(), nextCheckpoint);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /* ******** Changing the data ******** */
+
+
+    /**
+     * Adds a new doctor
+     *
+     * @param name  doctor name
+     * @param specialisation  doctor specialisation (dog or cat)
+     * @return  the new doctor, or null if there is already a doctor with that name
+     */
+    public Doctor addDoctor(String name, String specialisation) {
+        long version = startChange();
+        try {
+            if (getDoctorByName(name) != null) {
+                return null;
+            }
+            Doctor doctor = new BasicDoctor(name, specialisation);
+            addDoctorToList(doctor);
+            if (journal != null) {
+                journal.addDoctor(doctor);
+            }
+            return doctor;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Removes a doctor. Their pets will be unassigned.
+     *
+     * @param name  doctor name
+     * @return  whether the doctor existed (boolean value)
+     */
+    public boolean removeDoctor(String name) {
+        long version = startChange();
+        try {
+            Doctor doctor = getDoctorByName(name);
+            if (doctor == null) {
+                return false;
+            }
+            removeDoctorFromList(doctor);
+            if (journal != null) {
+                journal.removeDoctor(doctor.getName());
+            }
+            return true;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Adds a new pet, with no doctor
+     *
+     * @param name  pet name
+     * @param size  pet size (small, medium or large)
+     * @param type  pet type (dog or cat)
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @return  the new pet, or null if there is already a pet with that name
+     */
+    public Pet addPet(String name, String size, String type, int age, double weight) {
+        long version = startChange();
+        try {
+            if (getPetByName(name) != null) {
+                return null;
+            }
+            Pet pet = createPet(name, size, type, age, weight, null);
+            addPetToList(pet);
+            if (journal != null) {
+                journal.addPet(pet);
+            }
+            return detach(pet);
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Removes a pet
+     *
+     * @param name  pet name
+     * @return  whether the pet existed (boolean value)
+     */
+    public boolean removePet(String name) {
+        long version = startChange();
+        try {
+            Pet pet = getPetByName(name);
+            if (pet == null) {
+                return false;
+            }
+            String petName = pet.getName(); // Removing a pet from PetColumns clears its name
+            removePetFromList(pet);
+            if (journal != null) {
+                journal.removePet(petName);
+            }
+            return true;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Changes some of a pet's details. Null inputs are left at their previous values.
+     *
+     * @param name  pet name
+     * @param size  new size, or null
+     * @param type  new type, or null
+     * @param age  new age, or null
+     * @param weight  new weight, or null
+     * @param doctorName  name of the new doctor, or null (ignored if the doctor doesn't exist)
+     * @return  whether the pet existed (boolean value)
+     */
+    public boolean editPet(String name, String size, String type, Integer age, Double weight, String doctorName) {
+        return editPetIfUnchanged(name, ANY_VERSION, size, type, age, weight, doctorName) != EditStatus.NOT_FOUND;
+    }
+
+    /**
+     * Changes some of a pet's details, but only if nobody has changed the pet since it
+     * was read. Null inputs are left at their previous values.
+     *
+     * A client can read a pet, take as long as it likes deciding on its new details
+     * (e.g. prompting a user), and then pass the version it read (Pet.getVersion()).
+     * No lock is held meanwhile; if anyone else has changed the pet by then, the edit
+     * is refused rather than overwriting their change.
+     *
+     * @param name  pet name
+     * @param expectedVersion  the pet's version when it was read, or ANY_VERSION
+     * @param size  new size, or null
+     * @param type  new type, or null
+     * @param age  new age, or null
+     * @param weight  new weight, or null
+     * @param doctorName  name of the new doctor, or null (ignored if the doctor doesn't exist)
+     * @return  whether the pet was edited, didn't exist, or had changed
+     */
+    public EditStatus editPetIfUnchanged(String name, long expectedVersion, String size, String type, Integer age,
+                                         Double weight, String doctorName) {
+        long version = startChange();
+        try {
+            Pet pet = getPetByName(name);
+            if (pet == null) {
+                return EditStatus.NOT_FOUND;
+            }
+            if (expectedVersion != ANY_VERSION && pet.getVersion() != expectedVersion) {
+                return EditStatus.CONFLICT;
+            }
+            pet = keepPet(pet);
+            changed(pet);
+            if (size != null) {
+                pet.setSize(size);
+            }
+            if (type != null) {
+                pet.setType(type);
+            }
+            if (age != null) {
+                pet.setAge(age);
+            }
+            if (weight != null) {
+                pet.setWeight(weight);
+            }
+            Doctor doctor = doctorName == null ? null : getDoctorByName(doctorName);
+            if (doctor != null) {
+                pet.setDoctor(doctor);
+            }
+            if (journal != null) {
+                journal.editPet(pet);
+            }
+            return EditStatus.EDITED;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Assigns a pet to a doctor
+     *
+     * @param petName  pet name
+     * @param doctorName  doctor name
+     * @return  whether both the pet and the doctor existed (boolean value)
+     */
+    public boolean assignPet(String petName, String doctorName) {
+        long version = startChange();
+        try {
+            Pet pet = getPetByName(petName);
+            Doctor doctor = getDoctorByName(doctorName);
+            if (pet == null || doctor == null) {
+                return false;
+            }
+            pet = keepPet(pet);
+            pet.setDoctor(doctor);
+            changed(pet);
+            if (journal != null) {
+                journal.assignPet(pet);
+            }
+            return true;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Merges pets/doctors which have been read from a file into the program
+     *
+     * @param batch  records read from the file
+     * @param filename  name of the file, which the user's questions refer to
+     * @param policy  what to do with pets/doctors which are already in the system
+     * @param fileModified  time the file was last modified (ms since the epoch), used by KEEP_NEWEST
+     * @param prompter  asks the user what to do, if the policy is ASK (may be null otherwise)
+     * @return  counts of inserted, updated, removed and skipped pets/doctors
+     */
+    public ImportSummary importBatch(ImportBatch batch, String filename, ConflictPolicy policy, long fileModified,
+                                     Prompter prompter) {
+        ImportAnswers answers = null;
+        if (policy == ConflictPolicy.ASK) {
+            answers = askAboutConflicts(batch, filename, fileModified, prompter);
+        }
+        ImportSummary summary;
+        long version = startChange();
+        try {
+            summary = importRecords(batch, filename, policy, fileModified, answers);
+        }
+        finally {
+            finishChange(version);
+        }
+        if (answers != null) {
+            importChangedRecords(answers, filename, fileModified, prompter, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Reads doctor/pet data from a data file, such as HospitalManagement.txt
+     * (or a compressed copy of it)
+     *
+     * If the file hasn't changed since it was last read, nothing is read.
+     * If lines have only been added to the end of it, only those lines are read.
+     * If lazy loading is on and there are no pets in the system, the file's
+     * pets are only indexed, to be read when they are needed.
+     * The file is read without holding any lock, so other clients carry on
+     * meanwhile; the lock is only taken to merge in what was read. The user
+     * is asked about pets/doctors which are already in the system before the
+     * lock is taken, so other clients don't wait for their answers either.
+     *
+     * @param filename  name of file which data should be read from
+     * @param prompter  asks the user whether existing pets/doctors should be updated
+     * @return  what happened, and how many pets/doctors were imported
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public ReadResult readData(String filename, Prompter prompter) throws IOException {
+        while (true) {
+            FileFingerprint previous;
+            boolean index;
+            int cacheSize;
+            lock.readLock().lock();
+            try {
+                previous = importedFiles.get(filename);
+                index = canIndex(filename);
+                cacheSize = lazyCacheSize;
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+
+            FileFingerprint.Change change = getChange(previous, filename);
+            if (change == FileFingerprint.Change.UNCHANGED) {
+                return new ReadResult(ReadStatus.UNCHANGED, null, 0);
+            }
+
+            ImportBatch batch = null;
+            LazyPetFile file = null;
+            if (change == FileFingerprint.Change.APPENDED && !HospitalFileWriter.isCompressed(filename)) {
+                batch = readAddedLines(filename, previous);
+                if (batch == null) {
+                    continue; // The file was replaced since it was compared, so compare it again
+                }
+            }
+            else if (index) {
+                try {
+                    file = LazyPetFile.open(filename, cacheSize, this::getDoctorByName);
+                }
+                catch (FileNotFoundException e) {
+                    return new ReadResult(ReadStatus.EMPTY, null, 0);
+                }
+            }
+            else {
+                batch = readImportFile(filename);
+            }
+
+            ImportBatch records = file != null ? file.getOtherRecords() : batch;
+            long fileModified = records.getFingerprint() != null ? records.getFingerprint().getLastModified()
+                                                                 : new File(filename).lastModified();
+            ImportAnswers answers = askAboutConflicts(records, filename, fileModified, prompter);
+            ReadResult result;
+            long version = startChange();
+            try {
+                if (importedFiles.get(filename) != previous || (file != null && !canIndex(filename))) {
+                    // Another client read the file, or added pets, while it was being read, so start again
+                    closeLazyPets(file);
+                    continue;
+                }
+
+                if (file != null) {
+                    result = indexData(filename, file, fileModified, answers);
+                }
+                else if (change == FileFingerprint.Change.APPENDED && batch.isBlank()) {
+                    rememberImport(filename, batch.getFingerprint());
+                    return new ReadResult(ReadStatus.NOTHING_ADDED, null, 0);
+                }
+                else if (batch.isBlank()) {
+                    return new ReadResult(ReadStatus.EMPTY, null, 0);
+                }
+                else {
+                    rememberImport(filename, batch.getFingerprint());
+                    ImportSummary summary = importRecords(batch, filename, ConflictPolicy.ASK, fileModified, answers);
+                    result = new ReadResult(ReadStatus.IMPORTED, summary, 0);
+                }
+            }
+            finally {
+                finishChange(version);
+            }
+
+            if (result.getSummary() != null) {
+                importChangedRecords(answers, filename, fileModified, prompter, result.getSummary());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reads doctor/pet data from a file without any prompts
+     * The file is read without holding any lock; the lock is only taken to merge in what was read.
+     *
+     * @param filename  name of file which data should be read from
+     * @param policy  what to do with pets/doctors which are already in the system (not ASK)
+     * @return  counts of inserted, updated, removed and skipped pets/doctors,
+     *          or null if the file is blank or missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public ImportSummary importFile(String filename, ConflictPolicy policy) throws IOException {
+        ImportBatch batch = readImportFile(filename);
+        if (batch.isBlank()) {
+            return null;
+        }
+        return importBatch(batch, filename, policy, batch.getFingerprint().getLastModified(), null);
+    }
+
+    /**
+     * Saves every doctor/pet in the system to HospitalManagement.snapshot
+     * If journalling is on, the journal is folded into the snapshot.
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if an error occurs while saving the snapshot
+     */
+    public void saveSnapshot() throws IOException {
+        if (journal == null) {
+            snapshot().save(SNAPSHOT_FILE);
+            return;
+        }
+
+        long version = startChange();
+        Future<?> compacted;
+        try {
+            compactionRequested = true; // The snapshot must include the journal's sequence number
+        }
+        finally {
+            compacted = finishChange(version);
+        }
+        waitForCompaction(compacted);
+    }
+
+    /**
+     * Replaces every doctor/pet in the system with those in HospitalManagement.snapshot
+     * If the journal can't be updated to match, the error is kept for takeJournalError().
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws FileNotFoundException  if there isn't a snapshot
+     * @throws IOException  if an error occurs while loading the snapshot
+     */
+    public void loadSnapshot() throws IOException {
+        HospitalSnapshot snapshot = HospitalSnapshot.load(SNAPSHOT_FILE);
+
+        long version = startChange();
+        Future<?> compacted;
+        try {
+            restoreSnapshot(snapshot);
+            // Otherwise the journal's later entries would be replayed over the snapshot on the next start
+            compactionRequested = journal != null;
+        }
+        finally {
+            compacted = finishChange(version);
+        }
+        if (compacted != null) {
+            try {
+                waitForCompaction(compacted);
+            }
+            catch (IOException e) {
+                journalError = e;
+            }
+        }
+    }
+
+    /**
+     * Replaces every doctor/pet in the system with those in the snapshot
+     * The registries are built in one step, in the snapshot's order, so they
+     * never need to grow and their name indexes are built from one sort.
+     *
+     * @param snapshot  the snapshot which has been loaded
+     * Returns nothing; the system will contain exactly the snapshot's doctors and pets
+     * @throws IOException  if two of the snapshot's doctors or pets have the same name
+     */
+    public void restoreSnapshot(HospitalSnapshot snapshot) throws IOException {
+        long version = startChange();
+        try {
+            List<Doctor> snapshotDoctors = new ArrayList<>(snapshot.getDoctorCount());
+            for (int i = 0; i < snapshot.getDoctorCount(); i++) {
+                snapshotDoctors.add(snapshot.getDoctor(i));
+            }
+            PetColumns snapshotColumns = petColumns == null ? null : new PetColumns(snapshot.getPetCount());
+            List<Pet> snapshotPets = new ArrayList<>(snapshotColumns == null ? snapshot.getPetCount() : 0);
+            for (int i = 0; i < snapshot.getPetCount(); i++) {
+                if (snapshotColumns != null) {
+                    snapshotColumns.add(snapshot.getPetName(i), snapshot.getPetSize(i), snapshot.getPetType(i),
+                                        snapshot.getPetAge(i), snapshot.getPetWeight(i), snapshot.getPetDoctor(i));
+                }
+                else {
+                    snapshotPets.add(new BasicPet(snapshot.getPetName(i), snapshot.getPetSize(i), snapshot.getPetType(i),
+                                                  snapshot.getPetAge(i), snapshot.getPetWeight(i), snapshot.getPetDoctor(i)));
+                }
+            }
+            try { // Nothing is replaced until both are built, so a corrupt snapshot leaves the system as it was
+                Registry<Doctor> snapshotDoctorRegistry = Registry.of(snapshotDoctors);
+                pets = Registry.of(snapshotPets);
+                doctors = snapshotDoctorRegistry;
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot: " + e.getMessage());
+            }
+            petColumns = snapshotColumns;
+            removedDoctors.clear(); // Removals from the replaced data no longer mean anything
+            removedPets.clear();
+            importedFiles.clear();  // Nor do the files which were read into it
+            importedFilesChanged = true;
+            closeLazyPets(lazyPets);
+            lazyPets = null;
+            rebuildView(); // Everything has changed, so a new view is quicker than updating the old one
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Turns on journalling. The system is first rebuilt from the last
+     * snapshot (if there is one) and every journal entry made after it.
+     *
+     * No inputs/preconditions
+     * @return  number of journal entries which were replayed
+     * @throws IOException  if the snapshot or journal can't be read
+     */
+    public int enableJournal() throws IOException {
+        long version = startChange();
+        try {
+            long sequence = 0;
+            if (new File(SNAPSHOT_FILE).exists()) {
+                HospitalSnapshot snapshot = HospitalSnapshot.load(SNAPSHOT_FILE);
+                restoreSnapshot(snapshot);
+                sequence = snapshot.getSequence();
+            }
+
+            List<String> journalFiles = HospitalJournal.getRotatedFiles(JOURNAL_FILE);
+            journalFiles.add(JOURNAL_FILE);
+            int entriesReplayed = 0;
+            for (String journalFile : journalFiles) {
+                for (HospitalJournal.Entry entry : HospitalJournal.read(journalFile)) {
+                    if (entry.getSequence() > sequence) { // Earlier entries are already in the snapshot
+                        applyJournalEntry(entry);
+                        sequence = entry.getSequence();
+                        entriesReplayed++;
+                    }
+                }
+            }
+            importedFiles = new HashMap<>(FileFingerprint.load(IMPORTS_FILE));
+            importedFilesChanged = false;
+
+            journal = HospitalJournal.open(JOURNAL_FILE, sequence);
+            compactor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            return entriesReplayed;
+        }
+        finally {
+            finishChange(version);
+        }
+    }
+
+    /**
+     * Writes any remaining journal entries and waits for background compaction to finish
+     * Errors are kept for takeJournalError() and takeCompactionError().
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void closeJournal() {
+        lock.writeLock().lock();
+        try {
+            if (journal == null) {
+                return;
+            }
+
+            compactor.shutdown(); // Errors are kept by each compaction
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                journal.close();
+            }
+            catch (IOException e) {
+                journalError = e;
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the name of the file which autosave saves to
+     *
+     * No inputs/preconditions
+     * @return  the file name, or null if autosave is off
+     */
+    public String getAutosaveFile() {
+        return autosave == null ? null : autosave.getFilename();
+    }
+
+    /**
+     * Saves any changes which autosave hasn't saved yet, and stops autosave
+     *
+     * No inputs/preconditions
+     * @return  whether anything needed saving (boolean value)
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public boolean closeAutosave() throws IOException {
+        if (autosave == null) {
+            return false;
+        }
+        try {
+            return autosave.flush();
+        }
+        finally {
+            autosave.close();
+        }
+    }
+
+    /**
+     * Gets the error from the last background autosave, and clears it, so
+     * that it is only reported once
+     *
+     * No inputs/preconditions
+     * @return  the error, or null if there wasn't one (or autosave is off)
+     */
+    public IOException takeAutosaveError() {
+        return autosave == null ? null : autosave.takeError();
+    }
+
+    /**
+     * Gets the last error while writing to the journal, and clears it
+     *
+     * No inputs/preconditions
+     * @return  the error, or null if there wasn't one
+     */
+    public IOException takeJournalError() {
+        IOException error = journalError;
+        journalError = null;
+        return error;
+    }
+
+    /**
+     * Gets the last error while compacting the journal, and clears it
+     * The journal is kept when compaction fails, so no changes are lost.
+     *
+     * No inputs/preconditions
+     * @return  the error, or null if there wasn't one
+     */
+    public IOException takeCompactionError() {
+        IOException error = compactionError;
+        compactionError = null;
+        return error;
+    }
+
+
+    /* ******** Results ******** */
+
+
+    /**
+     * What happened when a data file was read
+     */
+    public static class ReadResult {
+        private final ReadStatus status;
+        private final ImportSummary summary;
+        private final int petsIndexed;
+
+        /**
+         * @param status  what happened
+         * @param summary  counts of imported pets/doctors, or null if nothing was imported
+         * @param petsIndexed  number of pets which will be read from the file when needed
+         */
+        private ReadResult(ReadStatus status, ImportSummary summary, int petsIndexed) {
+            this.status = status;
+            this.summary = summary;
+            this.petsIndexed = petsIndexed;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  what happened
+         */
+        public ReadStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  counts of imported pets/doctors, or null unless the status is INDEXED or IMPORTED
+         */
+        public ImportSummary getSummary() {
+            return summary;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  number of pets which will be read from the file when needed (INDEXED only)
+         */
+        public int getPetsIndexed() {
+            return petsIndexed;
+        }
+    }
+
+    /**
+     * What was written by exportChanges()
+     */
+    public static class ChangeExport {
+        private final int petsExported;
+        private final int doctorsExported;
+        private final int removalsExported;
+        private final long nextCheckpoint;
+
+        /**
+         * @param petsExported  number of added/changed pets
+         * @param doctorsExported  number of added/changed doctors
+         * @param removalsExported  number of removed pets and doctors
+         * @param nextCheckpoint  checkpoint to use for the next export
+         */
+        private ChangeExport(int petsExported, int doctorsExported, int removalsExported, long nextCheckpoint) {
+            this.petsExported = petsExported;
+            this.doctorsExported = doctorsExported;
+            this.removalsExported = removalsExported;
+            this.nextCheckpoint = nextCheckpoint;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  number of added/changed pets
+         */
+        public int getPetsExported() {
+            return petsExported;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  number of added/changed doctors
+         */
+        public int getDoctorsExported() {
+            return doctorsExported;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  number of removed pets and doctors
+         */
+        public int getRemovalsExported() {
+            return removalsExported;
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  checkpoint to use for the next export
+         */
+        public long getNextCheckpoint() {
+            return nextCheckpoint;
+        }
+    }
+
+    /**
+     * The user's answers to the questions asked about one import (ConflictPolicy.ASK)
+     *
+     * Answers are first collected by asking the user, with no lock held (see
+     * askAboutConflicts()), and kept against the record and question they were
+     * for. The import into the system then replays them. Each record's answers
+     * are only used if the pets/doctors it is about still have the versions they
+     * had when the user was asked; other records are kept in a batch of their own,
+     * so that the user can be asked about them again.
+     */
+    private static final class ImportAnswers implements Prompter {
+        static final int DOCTOR = 0;         // Kinds of record, for startRecord()
+        static final int PET = 1;
+        static final int REMOVED_PET = 2;
+        static final int REMOVED_DOCTOR = 3;
+
+        private final ImportBatch batch;
+        private final long[] versions;    // Versions the records were asked about with (see recordVersions())
+        private long[] currentVersions;   // Versions as the import started, or null while asking
+        private Prompter prompter;        // Asks the user, or null once the answers are being replayed
+        private final HashMap<String, Boolean> answers = new HashMap<>(); // "<kind> <record>#<question>" -> answer
+        private String record;            // "<kind> <record>" of the record being imported
+        private int question;             // Number of questions already asked about that record
+        private final ImportBatch changedRecords = new ImportBatch(); // Records which need asking about again
+
+        /**
+         * @param batch  records read from the file
+         * @param versions  versions of the pets/doctors which each record is about
+         * @param prompter  asks the user
+         */
+        ImportAnswers(ImportBatch batch, long[] versions, Prompter prompter) {
+            this.batch = batch;
+            this.versions = versions;
+            this.prompter = prompter;
+        }
+
+        /**
+         * Determines whether the user is still being asked (rather than the answers replayed)
+         *
+         * No inputs/preconditions
+         * @return  whether the user is being asked (boolean value)
+         */
+        boolean isAsking() {
+            return prompter != null;
+        }
+
+        /**
+         * Stops asking the user; from now on, the answers they gave are replayed
+         *
+         * No inputs/preconditions, returns nothing
+         */
+        void stopAsking() {
+            prompter = null;
+        }
+
+        /**
+         * Records the versions of the pets/doctors as the import into the system starts
+         *
+         * @param currentVersions  versions, as returned by recordVersions()
+         * Returns nothing
+         */
+        void checkVersions(long[] currentVersions) {
+            this.currentVersions = currentVersions;
+        }
+
+        /**
+         * Starts asking about, or replaying the answers for, the next record
+         * If the record's pets/doctors have changed since the user was asked about
+         * it, it is kept to be asked about again instead.
+         *
+         * @param kind  DOCTOR, PET, REMOVED_PET or REMOVED_DOCTOR
+         * @param index  index of the record in the batch, among records of that kind
+         * @return  whether the record should be imported now (boolean value)
+         */
+        boolean startRecord(int kind, int index) {
+            record = kind + " " + index;
+            question = 0;
+            if (currentVersions == null) {
+                return true;
+            }
+
+            int from = versionIndex(kind, index);
+            int to = from + (kind == PET ? 3 : 1);
+            if (Arrays.equals(versions, from, to, currentVersions, from, to)) {
+                return true;
+            }
+            switch (kind) {
+                case DOCTOR:
+                    changedRecords.addDoctor(batch.getDoctorName(index), batch.getSpecialisation(index));
+                    break;
+                case PET:
+                    changedRecords.addPet(batch.getPetName(index), batch.getPetType(index), batch.getPetSize(index),
+                                          batch.getPetAge(index), batch.getPetWeight(index),
+                                          batch.getPetDoctorName(index));
+                    break;
+                case REMOVED_PET:
+                    changedRecords.addRemovedPet(batch.getRemovedPetName(index));
+                    break;
+                default:
+                    changedRecords.addRemovedDoctor(batch.getRemovedDoctorName(index));
+            }
+            return false;
+        }
+
+        /**
+         * Asks the user a question about the current record, or replays their answer
+         * A question which wasn't asked before (which the version checks should
+         * prevent) is answered 'no', so nothing is changed without the user's say.
+         *
+         * @param question  the question
+         * @return  whether the user answered yes (boolean value)
+         */
+        public boolean confirm(String question) {
+            String key = record + "#" + this.question++;
+            if (prompter != null) {
+                boolean answer = prompter.confirm(question);
+                answers.put(key, answer);
+                return answer;
+            }
+            return answers.getOrDefault(key, false);
+        }
+
+        /**
+         * Tells the user something, while they are being asked
+         * Nothing is repeated while the answers are replayed.
+         *
+         * @param message  a line of text, or "" for a blank line
+         */
+        public void inform(String message) {
+            if (prompter != null) {
+                prompter.inform(message);
+            }
+        }
+
+        /**
+         * Determines whether any records were left out of the import, as they had changed
+         *
+         * No inputs/preconditions
+         * @return  whether there are records to ask about again (boolean value)
+         */
+        boolean hasChangedRecords() {
+            return !changedRecords.isBlank();
+        }
+
+        /**
+         * No inputs/preconditions
+         * @return  the records which were left out of the import, in their original order
+         */
+        ImportBatch getChangedRecords() {
+            return changedRecords;
+        }
+
+        /**
+         * Gets the index of a record's first version (see recordVersions())
+         *
+         * @param kind  kind of record
+         * @param index  index of the record among records of that kind
+         * @return  index into 'versions'
+         */
+        private int versionIndex(int kind, int index) {
+            int pets = batch.getDoctorCount();
+            int removedPets = pets + 3 * batch.getPetCount();
+            int removedDoctors = removedPets + batch.getRemovedPetCount();
+            switch (kind) {
+                case DOCTOR:
+                    return index;
+                case PET:
+                    return pets + 3 * index;
+                case REMOVED_PET:
+                    return removedPets + index;
+                default:
+                    return removedDoctors + index;
+            }
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Takes the write lock, before making a change
+     *
+     * No inputs/preconditions
+     * @return  the modification version before the change, for finishChange()
+     */
+    private long startChange() {
+        lock.writeLock().lock();
+        return ModificationCounter.current();
+    }
+
+    /**
+     * Gets the view which reads should use: the one pinned by read(), or the latest
+     *
+     * No inputs/preconditions
+     * @return  the view, or null if views aren't kept (so the read lock must be taken)
+     */
+    private HospitalView currentView() {
+        HospitalView pinned = pinnedView.get();
+        return pinned != null ? pinned : view;
+    }
+
+    /**
+     * Copies every pet and doctor for an autosave, as they were after the latest finished change
+     * The latest view is copied without any lock (never a view pinned by read(), which
+     * may be older than the changes autosave has counted). If views aren't kept, the
+     * read lock is held while the data is copied.
+     *
+     * No inputs/preconditions
+     * @return  the copy
+     */
+    private HospitalSnapshot captureForAutosave() {
+        HospitalView latest = view;
+        if (latest != null) {
+            return HospitalSnapshot.of(latest.getPets(), latest.getPetCount(), latest.getDoctors(),
+                                       latest.getDoctorCount(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            return HospitalSnapshot.of(allPets(), petCount(), doctors, doctors.size(), 0);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a pet has been added, changed or removed, so that the next view includes it
+     * Must be called with the write lock held.
+     *
+     * @param pet  the pet (called before a PetColumns pet is removed, which clears its name)
+     * Returns nothing
+     */
+    private void changed(Pet pet) {
+        if (view != null && !viewRebuildNeeded) {
+            changedPetNames.add(Registry.normaliseName(pet.getName()));
+        }
+    }
+
+    /**
+     * Records that a doctor has been added, changed or removed, so that the next view includes them
+     * Must be called with the write lock held.
+     *
+     * @param doctor  the doctor
+     * Returns nothing
+     */
+    private void changed(Doctor doctor) {
+        if (view != null && !viewRebuildNeeded) {
+            changedDoctorNames.add(Registry.normaliseName(doctor.getName()));
+        }
+    }
+
+    /**
+     * Publishes a new view with everything which has changed since the last one
+     * If most of the data has changed (e.g. after a large import), the view is rebuilt instead.
+     * Must be called with the write lock held.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void updateView() {
+        if (view == null || (!viewRebuildNeeded && changedPetNames.isEmpty() && changedDoctorNames.isEmpty())) {
+            return;
+        }
+        if (viewRebuildNeeded ||
+            changedPetNames.size() + changedDoctorNames.size() > (pets.size() + doctors.size()) / VIEW_REBUILD_FRACTION) {
+            rebuildView();
+            return;
+        }
+        view = view.update(changedPetNames, changedDoctorNames, pets, doctors);
+        changedPetNames.clear();
+        changedDoctorNames.clear();
+    }
+
+    /**
+     * Publishes a new view of all of the data, or stops keeping views if pets
+     * are in PetColumns or the data file. Must be called with the write lock held.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void rebuildView() {
+        view = petColumns == null && lazyPets == null ? HospitalView.of(pets, doctors) : null;
+        changedPetNames.clear();
+        changedDoctorNames.clear();
+        viewRebuildNeeded = false;
+    }
+
+    /**
+     * Publishes a change, tells autosave about it and writes its journal
+     * entries, then releases the write lock and waits until the entries are
+     * on the disk. If the journal needs compacting, it is rotated with the
+     * lock held, and the snapshot is copied once the write lock is released
+     * (from the view, or with only the read lock held if views aren't kept).
+     *
+     * @param version  the modification version returned by startChange()
+     * @return  the compaction which the change started, or null if it didn't start one
+     */
+    private Future<?> finishChange(long version) {
+        HospitalJournal written = null;  // Journal whose entries must reach the disk once the lock is released
+        long sequence = -1;              // Sequence number of its last entry
+        CompletableFuture<Void> compacted = null;
+        boolean compacting = false;      // Whether the journal was rotated, so a snapshot must be copied and saved
+        HospitalView compactionView = null;
+        boolean reportErrors = false;
+        try {
+            if (lock.getWriteHoldCount() == 1) { // Only once the outermost change is finished
+                updateView();
+                if (autosave != null && ModificationCounter.current() != version) {
+                    autosave.changed();
+                }
+                if (journal != null) {
+                    written = journal;
+                    sequence = writeJournal();
+                }
+                if (compactionRequested || (sequence >= 0 && journal.length() >= COMPACTION_THRESHOLD &&
+                                            (compaction == null || compaction.isDone()))) {
+                    reportErrors = !compactionRequested; // Otherwise the client which asked for it is waiting
+                    compactionRequested = false;
+                    try {
+                        if (sequence < 0) {
+                            throw new IOException("The journal couldn't be written", journalError);
+                        }
+                        compacted = rotateJournal();
+                        compacting = true;
+                        compactionView = view;
+                        if (compactionView == null) {
+                            // Taken before the write lock is released, so nothing can change before the copy
+                            lock.readLock().lock();
+                        }
+                    }
+                    catch (IOException e) {
+                        compacted = CompletableFuture.failedFuture(e);
+                        if (reportErrors) {
+                            compactionError = e;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        if (compacting) {
+            try {
+                compactJournal(compacted, compactionView, sequence, reportErrors);
+            }
+            finally {
+                if (compactionView == null) {
+                    lock.readLock().unlock();
+                }
+            }
+        }
+        if (sequence >= 0) {
+            try {
+                written.sync(sequence); // Changes by other threads meanwhile can share the same sync
+            }
+            catch (IOException e) {
+                journalError = e;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Makes one change which was read back from the journal
+     *
+     * @param entry  the journal entry
+     * Returns nothing; the change will be made without being journalled again
+     */
+    private void applyJournalEntry(HospitalJournal.Entry entry) {
+        String name = entry.getName();
+        Doctor entryDoctor = entry.getDoctorName() == null ? null : getDoctorByName(entry.getDoctorName());
+        Pet pet;
+        Doctor doctor;
+        switch (entry.getOperation()) {
+            case ADD_PET:
+            case EDIT_PET:
+                pet = getPetByName(name);
+                if (pet == null) {
+                    addPetToList(createPet(name, entry.getSize(), entry.getType(),
+                                           entry.getAge(), entry.getWeight(), entryDoctor));
+                }
+                else {
+                    pet.setPetSize(entry.getSize());
+                    pet.setPetType(entry.getType());
+                    pet.setAge(entry.getAge());
+                    pet.setWeight(entry.getWeight());
+                    pet.setDoctor(entryDoctor);
+                    changed(pet);
+                }
+                break;
+            case REMOVE_PET:
+                pet = getPetByName(name);
+                if (pet != null) {
+                    removePetFromList(pet);
+                }
+                break;
+            case ASSIGN_PET:
+                pet = getPetByName(name);
+                if (pet != null) {
+                    pet.setDoctor(entryDoctor);
+                    changed(pet);
+                }
+                break;
+            case ADD_DOCTOR:
+                doctor = getDoctorByName(name);
+                if (doctor == null) {
+                    doctor = new BasicDoctor();
+                    doctor.setName(name);
+                    addDoctorToList(doctor);
+                }
+                doctor.setSpecialisationValue(entry.getSpecialisation());
+                changed(doctor);
+                break;
+            case REMOVE_DOCTOR:
+                doctor = getDoctorByName(name);
+                if (doctor != null) {
+                    removeDoctorFromList(doctor);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Hands a finished change's journal entries to the operating system
+     * Must be called with the write lock held; the entries are synced to the
+     * disk once it has been released (see finishChange()). If the imported
+     * files have changed, their fingerprints are saved in the background,
+     * once the entries which imported them are on the disk.
+     * Errors are kept for takeJournalError().
+     *
+     * No inputs/preconditions
+     * @return  sequence number of the last entry, or -1 if the entries couldn't be written
+     */
+    private long writeJournal() {
+        long sequence;
+        try {
+            sequence = journal.flush();
+        }
+        catch (IOException e) {
+            journalError = e;
+            return -1;
+        }
+
+        if (importedFilesChanged) { // Only saved once the imported data is safely in the journal
+            HashMap<String, FileFingerprint> imports = new HashMap<>(importedFiles);
+            HospitalJournal written = journal;
+            importedFilesChanged = false;
+            compactor.execute(() -> {
+                try {
+                    written.sync(sequence);
+                    FileFingerprint.save(IMPORTS_FILE, imports);
+                }
+                catch (IOException e) {
+                    // Not fatal: the files will just be read in full next time
+                }
+            });
+        }
+        return sequence;
+    }
+
+    /**
+     * Rotates the journal, so that it can be folded into a new snapshot
+     * Must be called with the write lock held, at the end of a change. The
+     * snapshot is copied and saved once the lock has been released (see
+     * finishChange()), and the rotated files are deleted once it is saved.
+     *
+     * No inputs/preconditions
+     * @return  completed once the snapshot has been saved
+     * @throws IOException  if the journal can't be rotated
+     */
+    private CompletableFuture<Void> rotateJournal() throws IOException {
+        journal.rotate();
+        CompletableFuture<Void> compacted = new CompletableFuture<>();
+        compaction = compacted;
+        return compacted;
+    }
+
+    /**
+     * Copies the data into a snapshot and saves it on the compactor thread, in
+     * place of the journal which has just been rotated
+     * The copy is made from a view on the compactor thread, or straight away
+     * with the read lock held (see finishChange()) if views aren't kept.
+     *
+     * @param compacted  from rotateJournal(), completed once the snapshot has been saved
+     * @param fromView  view as of the rotation, or null to copy the data (read lock held)
+     * @param sequence  sequence number of the journal's last entry when it was rotated (the
+     *                  journal is flushed before rotating, so this is the change's last entry)
+     * @param reportErrors  whether errors should be kept for takeCompactionError(), rather
+     *                      than only by 'compacted' (for a client which is waiting for it)
+     * Returns nothing
+     */
+    private void compactJournal(CompletableFuture<Void> compacted, HospitalView fromView, long sequence,
+                                boolean reportErrors) {
+        HospitalSnapshot copy;
+        try {
+            copy = fromView == null ? HospitalSnapshot.of(allPets(), petCount(), doctors, doctors.size(), sequence) : null;
+        }
+        catch (RuntimeException e) { // e.g. a lazily loaded pet couldn't be read
+            compacted.completeExceptionally(e);
+            throw e;
+        }
+        compactor.execute(() -> {
+            try {
+                HospitalSnapshot snapshot = copy != null ? copy
+                        : HospitalSnapshot.of(fromView.getPets(), fromView.getPetCount(), fromView.getDoctors(),
+                                              fromView.getDoctorCount(), sequence);
+                snapshot.save(SNAPSHOT_FILE);
+                HospitalJournal.deleteRotatedFiles(JOURNAL_FILE, sequence);
+                compacted.complete(null);
+            }
+            catch (IOException | RuntimeException e) {
+                if (reportErrors) {
+                    compactionError = e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                compacted.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Waits for a compaction to finish
+     *
+     * @param compacted  the compaction, from finishChange()
+     * @throws IOException  if the compaction failed
+     */
+    private static void waitForCompaction(Future<?> compacted) throws IOException {
+        try {
+            compacted.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Adds a new doctor to the list of all doctors
+     * The doctors registry will grow if needed
+     *
+     * @param doctor  the doctor to be added
+     * Returns nothing; the specified doctor will be added
+     */
+    private void addDoctorToList(Doctor doctor) {
+        doctors.add(doctor);
+        changed(doctor);
+        if (!removedDoctors.isEmpty()) {
+            removedDoctors.remove(doctor.getName()); // The doctor is back, so is no longer removed
+        }
+    }
+
+    /**
+     * Adds a new pet to the list of all pets
+     * The pets registry will grow if needed
+     *
+     * @param pet  the pet to be added
+     * Returns nothing; the specified pet will be added
+     */
+    private void addPetToList(Pet pet) {
+        if (petColumns == null) { // Otherwise createPet() has already put it in the columns
+            pets.add(pet);
+        }
+        changed(pet);
+        if (lazyPets != null) {
+            lazyPets.detach(pet.getName()); // This copy replaces any in the data file
+        }
+        if (!removedPets.isEmpty()) {
+            removedPets.remove(pet.getName()); // The pet is back, so is no longer removed
+        }
+    }
+
+    /**
+     * Adds several new pets to the list of all pets at once
+     * Quicker than addPetToList() for each one: the registry sorts them together, and if
+     * there are so many that the next view will be rebuilt anyway, they aren't recorded
+     * for it one by one.
+     *
+     * @param newPets  the pets to be added - none may have the same name as another pet
+     * Returns nothing; the specified pets will be added
+     */
+    private void addPetsToList(List<Pet> newPets) {
+        if (petColumns == null) { // Otherwise createPet() has already put them in the columns
+            pets.addAll(newPets);
+        }
+        if (view != null && (long) newPets.size() * VIEW_REBUILD_FRACTION > pets.size() + doctors.size()) {
+            viewRebuildNeeded = true;
+        }
+        for (Pet pet : newPets) {
+            changed(pet);
+            if (lazyPets != null) {
+                lazyPets.detach(pet.getName()); // This copy replaces any in the data file
+            }
+            if (!removedPets.isEmpty()) {
+                removedPets.remove(pet.getName()); // The pet is back, so is no longer removed
+            }
+        }
+    }
+
+    /**
+     * Removes a doctor from the list of all doctors
+     * The doctor's pets will be unassigned, and the removal recorded for exportChanges()
+     *
+     * @param doctor  the doctor to be removed
+     * Returns nothing; the specified doctor will be removed
+     */
+    private void removeDoctorFromList(Doctor doctor) {
+        unassignPetsByDoctor(doctor);
+        if (lazyPets != null) {
+            lazyPets.unassignDoctor(doctor.getName());
+        }
+        doctors.remove(doctor);
+        changed(doctor);
+        removedDoctors.put(doctor.getName(), ModificationCounter.next());
+    }
+
+    /**
+     * Removes a pet from the list of all pets
+     * The pet will also be unassigned from its doctor, and the removal recorded for exportChanges()
+     *
+     * @param pet  the pet to be removed
+     * Returns nothing; the specified pet will be removed
+     */
+    private void removePetFromList(Pet pet) {
+        removedPets.put(pet.getName(), ModificationCounter.next()); // Before removal, which clears a PetColumns name
+        changed(pet);
+        if (lazyPets != null) {
+            lazyPets.detach(pet.getName());
+        }
+        pet.setDoctor(null); // Remove the pet from its doctor's list of pets
+        if (petColumns != null) {
+            petColumns.remove(pet);
+        }
+        else {
+            pets.remove(pet);
+        }
+    }
+
+    /**
+     * Creates a new pet, using whichever storage has been selected
+     * The pet is not added to the list of all pets.
+     *
+     * @param name  pet name
+     * @param size  pet size
+     * @param type  pet type
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned, or null
+     * @return  the new pet
+     */
+    private Pet createPet(String name, String size, String type, int age, double weight, Doctor doctor) {
+        if (petColumns != null) {
+            return petColumns.add(name, size, type, age, weight, doctor);
+        }
+        return new BasicPet(name, size, type, age, weight, doctor);
+    }
+
+    /**
+     * Creates a new pet, for a type and size which have already been parsed
+     * The pet is not added to the list of all pets.
+     *
+     * @param name  pet name
+     * @param size  pet size
+     * @param type  pet type
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned, or null
+     * @return  the new pet
+     */
+    private Pet createPet(String name, PetSize size, PetType type, int age, double weight, Doctor doctor) {
+        if (petColumns != null) {
+            return petColumns.add(name, size, type, age, weight, doctor);
+        }
+        return new BasicPet(name, size, type, age, weight, doctor);
+    }
+
+    /**
+     * Gets a pet which can still be read once the lock has been released
+     * A PetColumns view only reads its row while its pet is there, so a
+     * frozen copy is returned instead; other pets are returned as they are.
+     *
+     * @param pet  the pet, or null
+     * @return  the pet or its copy, or null if the input was null
+     */
+    private static Pet detach(Pet pet) {
+        return pet instanceof PetColumns.View ? HospitalView.freeze(pet) : pet;
+    }
+
+    /**
+     * Returns the doctor with the specified name, if they exist
+     * Must be called with the lock held.
+     *
+     * @param name  doctor name to be searched for
+     * @return doctor object, or null if they don't exist
+     */
+    private Doctor getDoctorByName(String name) {
+        return doctors.getByName(name);
+    }
+
+    /**
+     * Returns the pet with the specified name, if they exist
+     * Pets which are still in the data file are read-only; use keepPet() before changing them.
+     * Must be called with the lock held.
+     *
+     * @param name  pet name to be searched for
+     * @return pet object, or null if they don't exist
+     */
+    private Pet getPetByName(String name) {
+        Pet pet = petColumns != null ? petColumns.find(name) : pets.getByName(name);
+        if (pet == null && lazyPets != null) {
+            pet = lazyPets.get(name);
+        }
+        return pet;
+    }
+
+    /**
+     * Makes sure that a pet can be changed. Pets which are still in the data
+     * file are copied into the list of all pets, and the copy is used from then on.
+     *
+     * @param pet  the pet, or null
+     * @return  the pet which should be changed (the input itself if it is already in the list)
+     */
+    private Pet keepPet(Pet pet) {
+        if (!LazyPetFile.isFromFile(pet)) {
+            return pet;
+        }
+        Pet copy = createPet(pet.getName(), pet.getPetSize(), pet.getPetType(), pet.getAge(), pet.getWeight(),
+                             pet.getDoctor());
+        addPetToList(copy);
+        return copy;
+    }
+
+    /**
+     * Gets the number of pets in the system, including any still in the data file
+     * Must be called with the lock held.
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    private int petCount() {
+        return (petColumns != null ? petColumns.size() : pets.size()) + (lazyPets == null ? 0 : lazyPets.size());
+    }
+
+    /**
+     * Gets every pet which is held in memory (i.e. not in the data file)
+     *
+     * No inputs/preconditions
+     * @return  the pets, in no particular order
+     */
+    private Iterable<Pet> storedPets() {
+        return petColumns != null ? petColumns : pets;
+    }
+
+    /**
+     * Gets every pet held in memory which is assigned to a doctor
+     * Pets in PetColumns aren't in their doctor's list, so the columns are searched instead.
+     *
+     * @param doctor  the doctor
+     * @return  the doctor's pets
+     */
+    private Iterable<Pet> assignedPets(Doctor doctor) {
+        return petColumns != null ? petColumns.petsOf(doctor) : doctor.getPets();
+    }
+
+    /**
+     * Gets every pet assigned to a doctor. Pets which are still in the data
+     * file aren't in the doctor's list, so the file is searched after the list.
+     *
+     * @param doctor  the doctor
+     * @return  the doctor's pets
+     */
+    private Iterable<Pet> petsOf(Doctor doctor) {
+        if (lazyPets == null) {
+            return assignedPets(doctor);
+        }
+        return () -> new Iterator<Pet>() {
+            private Iterator<Pet> assigned = assignedPets(doctor).iterator();
+            private Iterator<Pet> file = lazyPets.iterator();
+            private Pet nextFromFile; // Next pet in the file with this doctor, once it has been found
+
+            public boolean hasNext() {
+                if (assigned.hasNext()) {
+                    return true;
+                }
+                while (nextFromFile == null && file.hasNext()) {
+                    Pet pet = file.next();
+                    if (pet.getDoctor() == doctor) {
+                        nextFromFile = pet;
+                    }
+                }
+                return nextFromFile != null;
+            }
+
+            public Pet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (assigned.hasNext()) {
+                    return assigned.next();
+                }
+                Pet pet = nextFromFile;
+                nextFromFile = null;
+                return pet;
+            }
+        };
+    }
+
+    /**
+     * Gets every pet in the system. Pets which are still in the data file
+     * are read from it as they are reached, after all of the other pets.
+     *
+     * No inputs/preconditions
+     * @return  the pets, in no particular order
+     */
+    private Iterable<Pet> allPets() {
+        if (lazyPets == null) {
+            return storedPets();
+        }
+        return () -> new Iterator<Pet>() {
+            private Iterator<Pet> current = storedPets().iterator();
+            private boolean readingFile = false;
+
+            public boolean hasNext() {
+                if (!current.hasNext() && !readingFile) {
+                    current = lazyPets.iterator();
+                    readingFile = true;
+                }
+                return current.hasNext();
+            }
+
+            public Pet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Gets every pet in the system, sorted by name
+     * Sorting needs every pet at once, so pets in the data file are all read into memory.
+     *
+     * No inputs/preconditions
+     * @return  the sorted pets
+     */
+    private Collection<Pet> getSortedPets() {
+        if (lazyPets == null) {
+            return petColumns != null ? petColumns.sorted() : pets.sorted();
+        }
+        List<Pet> sorted = new ArrayList<>(petCount());
+        for (Pet pet : allPets()) {
+            sorted.add(pet);
+        }
+        sorted.sort(Comparator.comparing(pet -> Registry.normaliseName(pet.getName())));
+        return sorted;
+    }
+
+    /**
+     * Closes a data file which pets were being read from
+     *
+     * @param file  the file, or null
+     * Returns nothing; errors are ignored, as nothing more will be read from the file
+     */
+    private void closeLazyPets(LazyPetFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        }
+        catch (IOException e) {
+            // Nothing more will be read from the file, so it doesn't matter
+        }
+    }
+
+    /**
+     * Determines whether a data file would be indexed (rather than read in full)
+     * Must be called with the lock held.
+     *
+     * @param filename  name of the data file
+     * @return  whether lazy loading is on, the file isn't compressed, and there are no pets (boolean value)
+     */
+    private boolean canIndex(String filename) {
+        return lazyCacheSize > 0 && lazyPets == null && petCount() == 0 && journal == null &&
+               !HospitalFileWriter.isCompressed(filename);
+    }
+
+    /**
+     * Starts reading pets from a data file which has just been scanned
+     * The file's doctors are imported as usual. Must be called with the write lock held.
+     *
+     * @param filename  name of the data file
+     * @param file  the scanned file
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param answers  the user's answers about doctors who are already in the system
+     * @return  what happened
+     */
+    private ReadResult indexData(String filename, LazyPetFile file, long fileModified, ImportAnswers answers) {
+        if (file.size() == 0 && file.getOtherRecords().isBlank()) {
+            closeLazyPets(file);
+            return new ReadResult(ReadStatus.EMPTY, null, 0);
+        }
+
+        lazyPets = file;
+        rebuildView(); // Views aren't kept while pets are in the data file
+        rememberImport(filename, file.getOtherRecords().getFingerprint());
+        ImportSummary summary = importRecords(file.getOtherRecords(), filename, ConflictPolicy.ASK, fileModified,
+                                              answers);
+        return new ReadResult(ReadStatus.INDEXED, summary, file.size());
+    }
+
+    /**
+     * Updates the pet's details to the specified values. Invalid inputs will be ignored.
+     *
+     * Will ask the user if pet already has assigned doctor/wrong specialisation,
+     * unless 'confirm' is false
+     * @param pet  the pet whose details should be updated
+     * @param size  new size
+     * @param type  new type
+     * @param age  new age
+     * @param weight  new weight
+     * @param doctor  new doctor to be assigned
+     * @param confirm  whether the user should be asked before changing the pet's doctor
+     * @param prompter  asks the user (only used if 'confirm' is true)
+     */
+    private void updatePetDetails(Pet pet, PetSize size, PetType type, int age, double weight, Doctor doctor,
+                                  boolean confirm, Prompter prompter) {
+        pet.setPetSize(size);
+        pet.setPetType(type);
+        pet.setAge(age);
+        pet.setWeight(weight);
+        if (doctor != null &&
+            (!confirm || (confirmReassignment(pet, prompter) && confirmSpecialisation(pet, doctor, prompter)))) {
+            pet.setDoctor(doctor);
+        }
+        changed(pet);
+    }
+
+    /**
+     * Confirms whether the user wants to assign a pet to a new doctor if they
+     * already have one assigned.
+     * Will immediately return true if the pet has no assigned doctor.
+     *
+     * @param pet  the pet in question
+     * @param prompter  asks the user
+     * @return  whether the user wishes to proceed with doctor reassignment
+     */
+    private boolean confirmReassignment(Pet pet, Prompter prompter) {
+        if (pet.hasDoctor() && !prompter.confirm("'" + pet.getName() + "' is currently assigned to Doctor " +
+                                                 pet.getDoctor().getName() + "\n" +
+                                                 "Are you sure that you want to change doctors (y/n)?  ")) {
+            prompter.inform(""); // Blank line
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Confirms whether the user wants to assign a pet to a doctor which doesn't
+     * have a matching specialisation
+     * Will immediately return true if the pet/doctor have matching specialisation
+     *
+     * @param pet  pet for comparison
+     * @param doctor  doctor for comparison
+     * @param prompter  asks the user
+     * @return  whether the user wishes to proceed with the doctor reassignment
+     */
+    private boolean confirmSpecialisation(Pet pet, Doctor doctor, Prompter prompter) {
+        if (!doctor.getSpecialisationValue().treats(pet.getPetType()) &&
+            !prompter.confirm("Doctor " + doctor.getName() + " does not specialise in " + pet.getType() + "s.\n" +
+                              "Are you sure that you want to switch to this doctor (y/n)?  ")) {
+            prompter.inform("");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unassigns the doctor from every pet which is assigned to them
+     *
+     * @param doctor  A doctor object
+     * Returns nothing; pet 'doctor' attributes may be set to none
+     */
+    private void unassignPetsByDoctor(Doctor doctor) {
+        // Copy the doctor's pets first, as setDoctor() removes each pet from the original set
+        List<Pet> assigned = new ArrayList<>();
+        assignedPets(doctor).forEach(assigned::add);
+        for (Pet pet : assigned) {
+            pet.setDoctor(null);
+            changed(pet);
+        }
+    }
+
+    /**
+     * Merges pets/doctors which have been read from a file into the program
+     * Must be called with the write lock held.
+     *
+     * If the policy is ASK, the user's answers have already been given (see
+     * askAboutConflicts()). Records whose pets/doctors have changed since then
+     * are left out, and kept in 'answers' to be asked about again.
+     *
+     * @param batch  records read from the file
+     * @param filename  name of the file, which the user's questions refer to
+     * @param policy  what to do with pets/doctors which are already in the system
+     * @param fileModified  time the file was last modified (ms since the epoch), used by KEEP_NEWEST
+     * @param answers  the user's answers, if the policy is ASK
+     * @return  counts of inserted, updated, removed and skipped pets/doctors
+     */
+    private ImportSummary importRecords(ImportBatch batch, String filename, ConflictPolicy policy, long fileModified,
+                                        ImportAnswers answers) {
+        if (answers != null && !answers.isAsking()) {
+            answers.checkVersions(recordVersions(batch)); // Before anything is changed by the import itself
+        }
+
+        ImportSummary summary = new ImportSummary();
+        summary.recordsRejected(batch.getRejectedCount());
+        // We have to import doctors before pets, otherwise when importing pets we may
+        // run into a NullPointerException since some doctors may not be in the system yet
+        importDoctors(batch, filename, policy, fileModified, answers, summary);
+        importPets(batch, filename, policy, fileModified, answers, summary);
+        importRemovals(batch, policy, fileModified, answers, summary);
+        return summary;
+    }
+
+    /**
+     * Asks the user what to do with each record of an import (ConflictPolicy.ASK)
+     * which is about a pet/doctor already in the system. No lock may be held.
+     *
+     * The pets/doctors which the records are about are copied, with the read lock
+     * held, into a private service, and the records are imported into that. The
+     * user is therefore asked exactly what the real import would ask, in the same
+     * order, while other clients carry on. The versions of the pets/doctors are
+     * kept with the answers, so the real import can tell which are out of date.
+     *
+     * @param batch  records read from the file
+     * @param filename  name of the file, which the questions refer to
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param prompter  asks the user
+     * @return  the answers, ready to be passed to importRecords()
+     */
+    private ImportAnswers askAboutConflicts(ImportBatch batch, String filename, long fileModified, Prompter prompter) {
+        HospitalService copy = new HospitalService(true); // Columnar, as it has no need for views
+        long[] versions;
+        boolean anyQuestions;
+        lock.readLock().lock();
+        try {
+            versions = recordVersions(batch);
+            anyQuestions = copyConflicts(batch, copy);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        ImportAnswers answers = new ImportAnswers(batch, versions, prompter);
+        if (anyQuestions) { // Only this thread can see 'copy', so no lock is needed
+            copy.importRecords(batch, filename, ConflictPolicy.ASK, fileModified, answers);
+        }
+        answers.stopAsking();
+        return answers;
+    }
+
+    /**
+     * Imports the records which were left out of an import because their pets/doctors
+     * changed while the user was being asked about them, asking about them again
+     * No lock may be held.
+     *
+     * @param answers  the answers used by the import
+     * @param filename  name of the file, which the questions refer to
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param prompter  asks the user
+     * @param summary  summary of the import, which the records will be counted in
+     * Returns nothing
+     */
+    private void importChangedRecords(ImportAnswers answers, String filename, long fileModified, Prompter prompter,
+                                      ImportSummary summary) {
+        while (answers.hasChangedRecords()) {
+            ImportBatch batch = answers.getChangedRecords();
+            prompter.inform("Some of these pets/doctors were changed by someone else while you were answering, " +
+                            "so you will be asked about them again.");
+            answers = askAboutConflicts(batch, filename, fileModified, prompter);
+            long version = startChange();
+            try {
+                summary.add(importRecords(batch, filename, ConflictPolicy.ASK, fileModified, answers));
+            }
+            finally {
+                finishChange(version);
+            }
+        }
+    }
+
+    /**
+     * Gets the versions of the pets/doctors which each record of an import is about
+     * A pet's record is about the pet, the doctor it is assigned to, and the doctor
+     * named in the file. Must be called with the lock held.
+     *
+     * @param batch  records read from the file
+     * @return  the versions (-1 for any which aren't in the system): one for each doctor,
+     *          then three for each pet, then one for each removed pet and removed doctor
+     */
+    private long[] recordVersions(ImportBatch batch) {
+        long[] versions = new long[batch.getDoctorCount() + 3 * batch.getPetCount() +
+                                   batch.getRemovedPetCount() + batch.getRemovedDoctorCount()];
+        int n = 0;
+        for (int i = 0; i < batch.getDoctorCount(); i++) {
+            versions[n++] = versionOf(getDoctorByName(batch.getDoctorName(i)));
+        }
+        for (int i = 0; i < batch.getPetCount(); i++) {
+            Pet pet = getPetByName(batch.getPetName(i));
+            String doctorName = batch.getPetDoctorName(i);
+            versions[n++] = pet == null ? -1 : pet.getVersion();
+            versions[n++] = pet == null ? -1 : versionOf(pet.getDoctor());
+            versions[n++] = doctorName == null ? -1 : versionOf(getDoctorByName(doctorName));
+        }
+        for (int i = 0; i < batch.getRemovedPetCount(); i++) {
+            Pet pet = getPetByName(batch.getRemovedPetName(i));
+            versions[n++] = pet == null ? -1 : pet.getVersion();
+        }
+        for (int i = 0; i < batch.getRemovedDoctorCount(); i++) {
+            versions[n++] = versionOf(getDoctorByName(batch.getRemovedDoctorName(i)));
+        }
+        return versions;
+    }
+
+    /**
+     * Gets a doctor's version, for recordVersions()
+     *
+     * @param doctor  the doctor, or null
+     * @return  the doctor's version, or -1 if the input was null
+     */
+    private static long versionOf(Doctor doctor) {
+        return doctor == null ? -1 : doctor.getVersion();
+    }
+
+    /**
+     * Copies the pets/doctors which an import's records are about into another service
+     * Pets' doctors are copied too. Must be called with the lock held.
+     *
+     * @param batch  records read from the file
+     * @param copy  the service they should be copied into
+     * @return  whether importing the records could ask the user anything: whether any of
+     *          their pets/doctors is already in the system, or is in the batch more than once
+     */
+    private boolean copyConflicts(ImportBatch batch, HospitalService copy) {
+        boolean anyQuestions = false;
+        HashSet<String> petNames = new HashSet<>(2 * (batch.getPetCount() + batch.getRemovedPetCount()));
+        HashSet<String> doctorNames = new HashSet<>(2 * (batch.getDoctorCount() + batch.getRemovedDoctorCount()));
+        for (int i = 0; i < batch.getDoctorCount(); i++) {
+            anyQuestions |= copyDoctor(batch.getDoctorName(i), copy);
+            anyQuestions |= !doctorNames.add(Registry.normaliseName(batch.getDoctorName(i)));
+        }
+        for (int i = 0; i < batch.getPetCount(); i++) {
+            anyQuestions |= copyPet(batch.getPetName(i), copy);
+            anyQuestions |= !petNames.add(Registry.normaliseName(batch.getPetName(i)));
+            if (batch.getPetDoctorName(i) != null) {
+                copyDoctor(batch.getPetDoctorName(i), copy); // So the specialisation can be checked
+            }
+        }
+        for (int i = 0; i < batch.getRemovedPetCount(); i++) {
+            anyQuestions |= copyPet(batch.getRemovedPetName(i), copy);
+            anyQuestions |= !petNames.add(Registry.normaliseName(batch.getRemovedPetName(i)));
+        }
+        for (int i = 0; i < batch.getRemovedDoctorCount(); i++) {
+            anyQuestions |= copyDoctor(batch.getRemovedDoctorName(i), copy);
+            anyQuestions |= !doctorNames.add(Registry.normaliseName(batch.getRemovedDoctorName(i)));
+        }
+        return anyQuestions;
+    }
+
+    /**
+     * Copies a pet, and the doctor it is assigned to, into another service (see copyConflicts())
+     *
+     * @param name  pet name
+     * @param copy  the service it should be copied into
+     * @return  whether there is a pet with that name in the system (boolean value)
+     */
+    private boolean copyPet(String name, HospitalService copy) {
+        Pet pet = getPetByName(name);
+        if (pet == null) {
+            return false;
+        }
+        if (copy.getPetByName(name) == null) {
+            Doctor doctor = null;
+            if (pet.hasDoctor()) {
+                copyDoctor(pet.getDoctor().getName(), copy);
+                doctor = copy.getDoctorByName(pet.getDoctor().getName());
+            }
+            copy.addPetToList(copy.createPet(pet.getName(), pet.getPetSize(), pet.getPetType(), pet.getAge(),
+                                             pet.getWeight(), doctor));
+        }
+        return true;
+    }
+
+    /**
+     * Copies a doctor into another service (see copyConflicts())
+     *
+     * @param name  doctor name, or null
+     * @param copy  the service they should be copied into
+     * @return  whether there is a doctor with that name in the system (boolean value)
+     */
+    private boolean copyDoctor(String name, HospitalService copy) {
+        Doctor doctor = name == null ? null : getDoctorByName(name);
+        if (doctor == null) {
+            return false;
+        }
+        if (copy.getDoctorByName(name) == null) {
+            copy.addDoctorToList(new BasicDoctor(doctor.getName(), doctor.getSpecialisation()));
+        }
+        return true;
+    }
+
+    /**
+     * Removes the pets/doctors which a file of changes lists as removed
+     * Removing a pet/doctor who is already missing counts as skipping them.
+     *
+     * @param batch  records read from the file
+     * @param policy  whether pets/doctors which are still in the system should be removed
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param answers  the user's answers, if the policy is ASK
+     * @param summary  summary which each removal should be counted in
+     */
+    private void importRemovals(ImportBatch batch, ConflictPolicy policy, long fileModified, ImportAnswers answers,
+                                ImportSummary summary) {
+        for (int i = 0; i < batch.getRemovedPetCount(); i++) {
+            if (answers != null && !answers.startRecord(ImportAnswers.REMOVED_PET, i)) {
+                continue; // Changed since the user was asked, so they will be asked again
+            }
+            Pet pet = getPetByName(batch.getRemovedPetName(i));
+            if (pet != null && shouldOverwrite(policy, pet.getLastModified(), fileModified, answers,
+                    "The pet '" + pet.getName() + "' has been deleted elsewhere; would you like to " +
+                    "delete it from the system (y/n)?  ")) {
+                String petName = pet.getName(); // Removing a pet from PetColumns clears its name
+                removePetFromList(pet);
+                if (journal != null) {
+                    journal.removePet(petName);
+                }
+                summary.petRemoved();
+            }
+            else {
+                summary.petSkipped();
+            }
+        }
+
+        for (int i = 0; i < batch.getRemovedDoctorCount(); i++) {
+            if (answers != null && !answers.startRecord(ImportAnswers.REMOVED_DOCTOR, i)) {
+                continue;
+            }
+            Doctor doctor = getDoctorByName(batch.getRemovedDoctorName(i));
+            if (doctor != null && shouldOverwrite(policy, doctor.getLastModified(), fileModified, answers,
+                    "Doctor '" + doctor.getName() + "' has been deleted elsewhere; would you like to " +
+                    "delete them from the system (y/n)?  ")) {
+                removeDoctorFromList(doctor);
+                if (journal != null) {
+                    journal.removeDoctor(doctor.getName());
+                }
+                summary.doctorRemoved();
+            }
+            else {
+                summary.doctorSkipped();
+            }
+        }
+    }
+
+    /**
+     * Imports the doctors which have been read from a file into the program
+     *
+     * @param batch  records read from the file
+     * @param filename  name of the file, which the user's questions refer to
+     * @param policy  what to do with doctors who are already in the system
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param answers  the user's answers, if the policy is ASK
+     * @param summary  summary which each doctor should be counted in
+     */
+    private void importDoctors(ImportBatch batch, String filename, ConflictPolicy policy, long fileModified,
+                               ImportAnswers answers, ImportSummary summary) {
+        for (int i = 0; i < batch.getDoctorCount(); i++) {
+            if (answers != null && !answers.startRecord(ImportAnswers.DOCTOR, i)) {
+                continue; // Changed since the user was asked, so they will be asked again
+            }
+            String doctorName = batch.getDoctorName(i);
+            Doctor doctor = getDoctorByName(doctorName);
+            if (doctor == null) {
+                doctor = new BasicDoctor(doctorName, batch.getSpecialisation(i).toString());
+                addDoctorToList(doctor);
+                if (journal != null) {
+                    journal.addDoctor(doctor);
+                }
+                summary.doctorInserted();
+            }
+            else if (shouldOverwrite(policy, doctor.getLastModified(), fileModified, answers,
+                    "Doctor '" + doctorName + "' is already in the system; would you like to " +
+                    "update their details to match the information in " + filename + " (y/n)?  ")) {
+                doctor.setSpecialisationValue(batch.getSpecialisation(i));
+                changed(doctor);
+                if (journal != null) {
+                    journal.addDoctor(doctor);
+                }
+                summary.doctorUpdated();
+            }
+            else {
+                if (policy == ConflictPolicy.ASK) {
+                    answers.inform("Information for '" + doctorName + "' was ignored. ");
+                }
+                summary.doctorSkipped();
+            }
+        }
+    }
+
+    /**
+     * Imports the pets which have been read from a file into the program
+     * Doctors should be imported first, so that the pets' doctors can be found.
+     * New pets are added to the list together, once every record has been read.
+     *
+     * @param batch  records read from the file
+     * @param filename  name of the file, which the user's questions refer to
+     * @param policy  what to do with pets which are already in the system
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param answers  the user's answers, if the policy is ASK
+     * @param summary  summary which each pet should be counted in
+     */
+    private void importPets(ImportBatch batch, String filename, ConflictPolicy policy, long fileModified,
+                            ImportAnswers answers, ImportSummary summary) {
+        if (petColumns != null) {
+            petColumns.ensureCapacity(petColumns.size() + batch.getPetCount());
+        }
+        else {
+            pets.ensureCapacity(pets.size() + batch.getPetCount());
+        }
+
+        List<Pet> inserted = new ArrayList<>();                 // New pets, which are added at the end, and
+        HashMap<String, Pet> insertedByName = new HashMap<>(); // by normalised name (columns add them at once)
+        for (int i = 0; i < batch.getPetCount(); i++) {
+            if (answers != null && !answers.startRecord(ImportAnswers.PET, i)) {
+                continue; // Changed since the user was asked, so they will be asked again
+            }
+            String petName = batch.getPetName(i);
+            String doctorName = batch.getPetDoctorName(i);
+            Doctor doctor = doctorName == null ? null : getDoctorByName(doctorName);
+            Pet pet = getPetByName(petName);
+            if (pet == null && !insertedByName.isEmpty()) {
+                pet = insertedByName.get(Registry.normaliseName(petName)); // An earlier record of this import
+            }
+            if (pet == null) {
+                pet = createPet(petName, batch.getPetSize(i), batch.getPetType(i),
+                                batch.getPetAge(i), batch.getPetWeight(i), doctor);
+                if (petColumns == null) {
+                    inserted.add(pet);
+                    insertedByName.put(Registry.normaliseName(petName), pet);
+                }
+                else {
+                    addPetToList(pet);
+                }
+                if (journal != null) {
+                    journal.addPet(pet);
+                }
+                summary.petInserted();
+            }
+            else if (shouldOverwrite(policy, pet.getLastModified(), fileModified, answers,
+                    "The pet '" + petName + "' is already in the system; would you like to update" +
+                    "it's details to match the information in " + filename + " (y/n)?  ")) {
+                pet = keepPet(pet);
+                updatePetDetails(pet, batch.getPetSize(i), batch.getPetType(i), batch.getPetAge(i),
+                                 batch.getPetWeight(i), doctor, policy == ConflictPolicy.ASK, answers);
+                if (journal != null) {
+                    journal.editPet(pet);
+                }
+                summary.petUpdated();
+            }
+            else {
+                if (policy == ConflictPolicy.ASK) {
+                    answers.inform("Information for '" + petName + "' was ignored. ");
+                }
+                summary.petSkipped();
+            }
+        }
+        addPetsToList(inserted);
+    }
+
+    /**
+     * Decides whether an imported record should replace one already in the system
+     *
+     * @param policy  the import's conflict policy
+     * @param recordModified  time the existing record was last changed (ms since the epoch)
+     * @param fileModified  time the file was last modified (ms since the epoch)
+     * @param prompter  asks the user, if the policy is ASK
+     * @param prompt  question to ask the user if the policy is ASK
+     * @return  whether the existing record should be updated (boolean value)
+     */
+    private boolean shouldOverwrite(ConflictPolicy policy, long recordModified, long fileModified, Prompter prompter,
+                                    String prompt) {
+        switch (policy) {
+            case ASK:
+                return prompter.confirm(prompt);
+            case OVERWRITE:
+                return true;
+            case KEEP_NEWEST:
+                return fileModified > recordModified;
+            default: // SKIP
+                return false;
+        }
+    }
+
+    /**
+     * Works out how a data file has changed since it was last read
+     *
+     * @param previous  the file's fingerprint when it was last read, or null
+     * @param filename  name of the data file
+     * @return  how the file has changed (REPLACED if it hasn't been read before, or can't be checked)
+     */
+    private FileFingerprint.Change getChange(FileFingerprint previous, String filename) {
+        if (previous == null) {
+            return FileFingerprint.Change.REPLACED;
+        }
+        try {
+            return previous.compare(filename);
+        }
+        catch (IOException e) {
+            return FileFingerprint.Change.REPLACED; // e.g. the file has been deleted, which reading it will report
+        }
+    }
+
+    /**
+     * Records the fingerprint of a data file which has just been read
+     * The fingerprint was taken when the file was read, so this only stores it.
+     *
+     * @param filename  name of the data file
+     * @param fingerprint  fingerprint of the part of the file which was read, from ImportBatch.getFingerprint()
+     * Returns nothing
+     */
+    private void rememberImport(String filename, FileFingerprint fingerprint) {
+        importedFiles.put(filename, fingerprint);
+        importedFilesChanged = true;
+    }
+
+    /**
+     * Reads the pets/doctors in an import file, choosing the fastest way
+     * to read a file of that size
+     * The file's fingerprint is taken first and attached to the batch, and only
+     * the bytes it covers are read. Doesn't need the lock, as nothing in the system is used.
+     *
+     * @param filename  name of file which data should be read from
+     * @return  the records which were read (blank if the file is missing)
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static ImportBatch readImportFile(String filename) throws IOException {
+        long lastModified = new File(filename).lastModified(); // Before opening, so any later change is noticed
+        try (FileChannel file = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            FileFingerprint fingerprint = FileFingerprint.take(file, lastModified);
+            long fileSize = fingerprint.getSize();
+            int cores = Runtime.getRuntime().availableProcessors();
+            ImportBatch batch;
+            if (HospitalFileWriter.isCompressed(filename)) {
+                batch = HospitalFileParser.parse(file, fileSize, true); // Compressed files can only be read in order
+            }
+            else if (fileSize >= PARALLEL_IMPORT_THRESHOLD && cores > 1) {
+                batch = HospitalFileParser.parseParallel(file, fileSize, cores);
+            }
+            else if (fileSize >= MAPPED_IMPORT_THRESHOLD) {
+                batch = HospitalFileParser.parseMapped(file, fileSize);
+            }
+            else {
+                batch = HospitalFileParser.parse(file, fileSize, false);
+            }
+            batch.setFingerprint(fingerprint.withEndSection(batch.getEndSection()));
+            return batch;
+        }
+        catch (NoSuchFileException e) {
+            // A nonexistent file is a blank file
+            return new ImportBatch();
+        }
+    }
+
+    /**
+     * Reads the pets/doctors in the lines which have been added to the end of
+     * an import file since it was last read, attaching the file's new fingerprint
+     * Doesn't need the lock, as nothing in the system is used.
+     *
+     * @param filename  name of file which data should be read from (not compressed)
+     * @param previous  fingerprint of the file when it was last read
+     * @return  the records which were read, or null if the file no longer starts
+     *          with what was read before (or has been deleted)
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static ImportBatch readAddedLines(String filename, FileFingerprint previous) throws IOException {
+        long lastModified = new File(filename).lastModified(); // Before opening, so any later change is noticed
+        try (FileChannel file = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            FileFingerprint fingerprint = FileFingerprint.take(file, lastModified, previous);
+            if (fingerprint == null) {
+                return null;
+            }
+            ImportBatch batch = HospitalFileParser.parseFrom(file, previous.getSize(), fingerprint.getSize(),
+                                                             previous.getEndSection());
+            batch.setFingerprint(fingerprint.withEndSection(batch.getEndSection()));
+            return batch;
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the names of the pets/doctors which were removed after a checkpoint
+     *
+     * @param removed  removed names, and the version at which each was removed
+     * @param checkpoint  modification version of the checkpoint
+     * @return  names removed after the checkpoint, in alphabetical order
+     */
+    private static List<String> getRemovedSince(TreeMap<String, Long> removed, long checkpoint) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : removed.entrySet()) {
+            if (entry.getValue() > checkpoint) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+}
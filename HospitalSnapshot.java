@@ -0,0 +1,335 @@
+/*
+ * Class Name and Description:
+ *    HospitalSnapshot.java saves and loads every pet and doctor in the
+ *    system using a compact binary format, which is much quicker to read
+ *    than HospitalManagement.txt.
+ *
+ *    Layout (all numbers big-endian, strings in modified UTF-8 as written
+ *    by DataOutputStream.writeUTF()):
+ *        int     MAGIC ('HOSP')
+ *        int     format version (currently 2)
+ *        long    sequence number of the last journal entry included
+ *                (version 2 onwards; see HospitalJournal)
+ *        int     number of doctors
+ *        int     number of pets
+ *        doctors: name, specialisation (byte ordinal, -1 if not set)
+ *        pets:    name, type (byte ordinal, -1 if not set),
+ *                 size (byte ordinal, -1 if not set),
+ *                 age (int), weight (double),
+ *                 doctor id (int index into the doctors above, -1 for none)
+ *
+ *    Each doctor is written once, and pets refer to them by id. The
+ *    counts in the header let the loader size its arrays up front.
+ *
+ *    A snapshot holds the records in primitive columns (in the same way
+ *    as ImportBatch). of() copies the pets and doctors in the system into
+ *    a new snapshot, which can then be saved on another thread while the
+ *    pets and doctors carry on changing.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+
+public class HospitalSnapshot {
+    private static final int MAGIC = 0x484F5350; // 'HOSP'
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final PetType[] TYPES = PetType.values();
+    private static final PetSize[] SIZES = PetSize.values();
+    private static final Specialisation[] SPECIALISATIONS = Specialisation.values();
+
+    private long sequence;           // Last journal entry included, or 0 if none
+
+    private String[] doctorNames;
+    private byte[] specialisations;  // Specialisation ordinals, or -1 if not set
+    private Doctor[] doctors;        // Created by getDoctor() when first needed
+
+    private String[] petNames;
+    private byte[] petTypes;         // PetType ordinals, or -1 if not set
+    private byte[] petSizes;         // PetSize ordinals, or -1 if not set
+    private int[] petAges;
+    private double[] petWeights;
+    private int[] petDoctorIds;      // Index into the doctors, or -1 if no doctor is assigned
+
+    /**
+     * Creates an empty snapshot with room for the specified number of records
+     *
+     * @param numDoctors  number of doctors
+     * @param numPets  number of pets
+     * @param sequence  last journal entry included
+     */
+    private HospitalSnapshot(int numDoctors, int numPets, long sequence) {
+        this.sequence = sequence;
+        doctorNames = new String[numDoctors];
+        specialisations = new byte[numDoctors];
+        petNames = new String[numPets];
+        petTypes = new byte[numPets];
+        petSizes = new byte[numPets];
+        petAges = new int[numPets];
+        petWeights = new double[numPets];
+        petDoctorIds = new int[numPets];
+    }
+
+    /**
+     * Copies the specified pets and doctors into a new snapshot
+     *
+     * @param pets  pets to be copied
+     * @param numPets  number of pets
+     * @param doctors  doctors to be copied - must include every pet's doctor
+     * @param numDoctors  number of doctors
+     * @param sequence  last journal entry which the pets/doctors include, or 0 if there is no journal
+     * @return  the snapshot
+     */
+    public static HospitalSnapshot of(Iterable<? extends Pet> pets, int numPets,
+                                      Iterable<? extends Doctor> doctors, int numDoctors, long sequence) {
+        HospitalSnapshot snapshot = new HospitalSnapshot(numDoctors, numPets, sequence);
+
+        IdentityHashMap<Doctor, Integer> doctorIds = new IdentityHashMap<>(numDoctors);
+        for (Doctor doctor : doctors) {
+            int i = doctorIds.size();
+            doctorIds.put(doctor, i);
+            snapshot.doctorNames[i] = doctor.getName();
+            snapshot.specialisations[i] = ordinal(doctor.getSpecialisationValue());
+        }
+
+        int i = 0;
+        for (Pet pet : pets) {
+            Integer doctorId = pet.hasDoctor() ? doctorIds.get(pet.getDoctor()) : null;
+            snapshot.petNames[i] = pet.getName();
+            snapshot.petTypes[i] = ordinal(pet.getPetType());
+            snapshot.petSizes[i] = ordinal(pet.getPetSize());
+            snapshot.petAges[i] = pet.getAge();
+            snapshot.petWeights[i] = pet.getWeight();
+            snapshot.petDoctorIds[i] = doctorId == null ? -1 : doctorId;
+            i++;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes this snapshot to a file, replacing anything which is already
+     * in it. The file is replaced in a single step, so it will contain
+     * either the old snapshot or the new one.
+     *
+     * @param filename  name of file which the snapshot should be written to
+     * @throws IOException  if an error occurs while writing the file
+     */
+    public void save(String filename) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+                write(output);
+                output.flush();
+                file.getFD().sync();
+            }
+            HospitalFileWriter.replace(temp, target);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads every pet and doctor from a snapshot file
+     *
+     * @param filename  name of file which the snapshot should be read from
+     * @return  the records which were read
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if the file isn't a valid snapshot, or an error occurs while reading it
+     */
+    public static HospitalSnapshot load(String filename) throws IOException {
+        try (InputStream file = new FileInputStream(filename)) {
+            return read(new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE)));
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last journal entry included in the snapshot
+     *
+     * No inputs/preconditions
+     * @return  the sequence number, or 0 if the snapshot wasn't taken from a journal
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the number of doctors in the snapshot
+     *
+     * No inputs/preconditions
+     * @return  number of doctors
+     */
+    public int getDoctorCount() {
+        return doctorNames.length;
+    }
+
+    /**
+     * Gets the number of pets in the snapshot
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int getPetCount() {
+        return petNames.length;
+    }
+
+    // Getters for the individual records.
+    // 'i' is the record's position in the snapshot (0 is the first record).
+    // Each doctor is only created once, so pets with the same doctor get the same object.
+
+    public Doctor getDoctor(int i) {
+        if (doctors == null) {
+            doctors = new Doctor[doctorNames.length];
+            for (int id = 0; id < doctors.length; id++) {
+                doctors[id] = new BasicDoctor();
+                doctors[id].setName(doctorNames[id]);
+                if (specialisations[id] >= 0) {
+                    doctors[id].setSpecialisationValue(SPECIALISATIONS[specialisations[id]]);
+                }
+            }
+        }
+        return doctors[i];
+    }
+
+    public String getDoctorName(int i) {
+        return doctorNames[i];
+    }
+
+    public Specialisation getDoctorSpecialisation(int i) {
+        return specialisations[i] < 0 ? null : SPECIALISATIONS[specialisations[i]];
+    }
+
+    public String getPetName(int i) {
+        return petNames[i];
+    }
+
+    public PetType getPetType(int i) {
+        return petTypes[i] < 0 ? null : TYPES[petTypes[i]];
+    }
+
+    public PetSize getPetSize(int i) {
+        return petSizes[i] < 0 ? null : SIZES[petSizes[i]];
+    }
+
+    public int getPetAge(int i) {
+        return petAges[i];
+    }
+
+    public double getPetWeight(int i) {
+        return petWeights[i];
+    }
+
+    public Doctor getPetDoctor(int i) {
+        return petDoctorIds[i] < 0 ? null : getDoctor(petDoctorIds[i]);
+    }
+
+    public String getPetDoctorName(int i) {
+        return petDoctorIds[i] < 0 ? null : doctorNames[petDoctorIds[i]];
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Writes this snapshot to the specified stream
+     *
+     * @param output  stream to be written to
+     * @throws IOException  if an error occurs while writing
+     */
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(sequence);
+        output.writeInt(doctorNames.length);
+        output.writeInt(petNames.length);
+
+        for (int i = 0; i < doctorNames.length; i++) {
+            output.writeUTF(doctorNames[i]);
+            output.writeByte(specialisations[i]);
+        }
+
+        for (int i = 0; i < petNames.length; i++) {
+            output.writeUTF(petNames[i]);
+            output.writeByte(petTypes[i]);
+            output.writeByte(petSizes[i]);
+            output.writeInt(petAges[i]);
+            output.writeDouble(petWeights[i]);
+            output.writeInt(petDoctorIds[i]);
+        }
+    }
+
+    /**
+     * Reads a snapshot from the specified stream
+     * Snapshots written by older versions of the program can still be read.
+     *
+     * @param input  stream to be read
+     * @return  the records which were read
+     * @throws IOException  if the stream isn't a valid snapshot, or an error occurs while reading it
+     */
+    private static HospitalSnapshot read(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = input.readInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        long sequence = version >= 2 ? input.readLong() : 0; // Version 1 had no journal
+        int numDoctors = input.readInt();
+        int numPets = input.readInt();
+        if (numDoctors < 0 || numPets < 0) {
+            throw new IOException("Corrupt snapshot header");
+        }
+
+        HospitalSnapshot snapshot = new HospitalSnapshot(numDoctors, numPets, sequence);
+        for (int i = 0; i < numDoctors; i++) {
+            snapshot.doctorNames[i] = input.readUTF();
+            snapshot.specialisations[i] = checkOrdinal(SPECIALISATIONS, input.readByte());
+        }
+
+        for (int i = 0; i < numPets; i++) {
+            snapshot.petNames[i] = input.readUTF();
+            snapshot.petTypes[i] = checkOrdinal(TYPES, input.readByte());
+            snapshot.petSizes[i] = checkOrdinal(SIZES, input.readByte());
+            snapshot.petAges[i] = input.readInt();
+            snapshot.petWeights[i] = input.readDouble();
+            int doctorId = input.readInt();
+            if (doctorId < -1 || doctorId >= numDoctors) {
+                throw new IOException("Corrupt snapshot: unknown doctor id " + doctorId);
+            }
+            snapshot.petDoctorIds[i] = doctorId;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Converts an enum value into the byte stored in the snapshot
+     *
+     * @param value  value to be converted, or null
+     * @return  the value's ordinal, or -1 if the value is null
+     */
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    /**
+     * Checks that an ordinal stored in the snapshot refers to a value of the enum (or null)
+     *
+     * @param values  every value of the enum
+     * @param ordinal  the stored ordinal, or -1 for null
+     * @return  the ordinal
+     * @throws IOException  if the ordinal is out of range
+     */
+    private static byte checkOrdinal(Enum<?>[] values, byte ordinal) throws IOException {
+        if (ordinal < -1 || ordinal >= values.length) {
+            throw new IOException("Corrupt snapshot: unknown value " + ordinal);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Class Name and Description:
+ *    HospitalView.java is a read-only copy of every pet and doctor in the
+ *    system, as they were at one moment. A view never changes, so it can
+ *    be listed, exported or analysed for as long as that takes without
+ *    holding any lock, while changes carry on being made to the system.
+ *
+ *    The pets and doctors are kept in PersistentNameMaps, so a new view
+ *    is made from the last one by copying only the entries which have
+ *    changed (and the O(log n) tree nodes above them). Everything else
+ *    is shared, so a new view after each change costs very little.
+ *    Each is kept both by name and by the slot it has in its Registry,
+ *    so a view can be listed in name order or in the same order as the
+ *    system itself (which is the order data files are saved in).
+ *
+ *    The pets and doctors in a view are frozen copies: their getters
+ *    return the values the originals had, and their setters throw an
+ *    UnsupportedOperationException. A frozen pet's doctor is the frozen
+ *    doctor in the same view, so pets can be grouped by doctor (as in
+ *    ObesityReport) in the same way as the originals.
+ */
+
+import java.util.*;
+import java.util.function.*;
+
+public class HospitalView {
+    public static final HospitalView EMPTY = new HospitalView(PersistentNameMap.empty(), PersistentNameMap.empty(),
+                                                              PersistentNameMap.empty(), PersistentNameMap.empty(),
+                                                              PersistentNameMap.empty());
+
+    private final PersistentNameMap<Pet> pets;          // Normalised name -> frozen pet
+    private final PersistentNameMap<Pet> petsBySlot;    // Slot key (see slotKey()) -> frozen pet
+    private final PersistentNameMap<Doctor> doctors;    // Normalised name -> frozen doctor
+    private final PersistentNameMap<Doctor> doctorsBySlot; // Slot key -> frozen doctor
+    private final PersistentNameMap<Pet> petsByDoctor;  // Doctor's normalised name + '\0' + pet's -> frozen pet
+
+    /**
+     * @param pets  frozen pets, by name
+     * @param petsBySlot  frozen pets, by registry slot
+     * @param doctors  frozen doctors, by name
+     * @param doctorsBySlot  frozen doctors, by registry slot
+     * @param petsByDoctor  frozen pets which have a doctor, by doctor
+     */
+    private HospitalView(PersistentNameMap<Pet> pets, PersistentNameMap<Pet> petsBySlot,
+                         PersistentNameMap<Doctor> doctors, PersistentNameMap<Doctor> doctorsBySlot,
+                         PersistentNameMap<Pet> petsByDoctor) {
+        this.pets = pets;
+        this.petsBySlot = petsBySlot;
+        this.doctors = doctors;
+        this.doctorsBySlot = doctorsBySlot;
+        this.petsByDoctor = petsByDoctor;
+    }
+
+    /**
+     * Makes a frozen copy of one pet, which isn't part of any view
+     * Its doctor is the pet's own doctor, rather than a frozen copy.
+     *
+     * @param pet  the pet to be copied
+     * @return  the copy
+     */
+    public static Pet freeze(Pet pet) {
+        return new FrozenPet(pet, pet.getDoctor(), -1);
+    }
+
+    /**
+     * Creates a view of the pets and doctors in two registries, in O(n) time
+     * Every pet's doctor must be one of the doctors.
+     *
+     * @param petRegistry  the pets
+     * @param doctorRegistry  the doctors
+     * @return  the view
+     */
+    public static HospitalView of(Registry<? extends Pet> petRegistry, Registry<? extends Doctor> doctorRegistry) {
+        // The frozen copies are also put in arrays by slot, so the maps by slot can be built without looking them up again
+        int numDoctors = doctorRegistry.size();
+        List<String> doctorKeys = new ArrayList<>(numDoctors);
+        List<Doctor> frozenDoctors = new ArrayList<>(numDoctors);
+        Doctor[] doctorsInSlots = new Doctor[doctorRegistry.capacity()];
+        IdentityHashMap<Doctor, Integer> doctorIndexes = new IdentityHashMap<>(numDoctors); // Doctor -> index in name order
+        for (String key : doctorRegistry.sortedKeys()) {
+            int slot = doctorRegistry.slotOfKey(key);
+            Doctor doctor = doctorRegistry.get(slot);
+            Doctor frozen = new FrozenDoctor(doctor, slot);
+            doctorIndexes.put(doctor, frozenDoctors.size());
+            doctorKeys.add(key);
+            frozenDoctors.add(frozen);
+            doctorsInSlots[slot] = frozen;
+        }
+        PersistentNameMap<Doctor> doctors = PersistentNameMap.ofSorted(doctorKeys, frozenDoctors);
+
+        int numPets = petRegistry.size();
+        List<String> petKeys = new ArrayList<>(numPets);
+        List<Pet> frozenPets = new ArrayList<>(numPets);
+        Pet[] petsInSlots = new Pet[petRegistry.capacity()];
+        int[] petDoctors = new int[numPets];          // Index of each pet's doctor, or -1 if it has none
+        int[] starts = new int[numDoctors + 1];       // Index in 'byDoctor' at which each doctor's pets start
+        for (String key : petRegistry.sortedKeys()) {
+            int slot = petRegistry.slotOfKey(key);
+            Pet pet = petRegistry.get(slot);
+            int doctor = pet.hasDoctor() ? doctorIndexOf(pet.getDoctor(), doctorIndexes, doctorRegistry) : -1;
+            Pet frozen = new FrozenPet(pet, doctor < 0 ? null : frozenDoctors.get(doctor), slot);
+            petDoctors[frozenPets.size()] = doctor;
+            petKeys.add(key);
+            frozenPets.add(frozen);
+            petsInSlots[slot] = frozen;
+            starts[doctor + 1]++; // Counted one place along, so the sums below give the starts
+        }
+        PersistentNameMap<Pet> pets = PersistentNameMap.ofSorted(petKeys, frozenPets);
+
+        // Group the pets by doctor, keeping each doctor's pets in name order. Names can't contain
+        // '\0', so taking the doctors in name order puts the keys of 'petsByDoctor' in order too.
+        starts[0] = 0; // Pets without a doctor aren't included
+        for (int doctor = 0; doctor < numDoctors; doctor++) {
+            starts[doctor + 1] += starts[doctor];
+        }
+        int[] byDoctor = new int[starts[numDoctors]];
+        int[] next = Arrays.copyOf(starts, numDoctors);
+        for (int pet = 0; pet < numPets; pet++) {
+            if (petDoctors[pet] >= 0) {
+                byDoctor[next[petDoctors[pet]]++] = pet;
+            }
+        }
+        List<String> byDoctorKeys = new ArrayList<>(byDoctor.length);
+        List<Pet> byDoctorPets = new ArrayList<>(byDoctor.length);
+        for (int doctor = 0; doctor < numDoctors; doctor++) {
+            String prefix = doctorKeys.get(doctor) + '\0';
+            for (int i = starts[doctor]; i < starts[doctor + 1]; i++) {
+                byDoctorKeys.add(prefix + petKeys.get(byDoctor[i]));
+                byDoctorPets.add(frozenPets.get(byDoctor[i]));
+            }
+        }
+        return new HospitalView(pets, bySlot(petsInSlots, numPets), doctors, bySlot(doctorsInSlots, numDoctors),
+                                PersistentNameMap.ofSorted(byDoctorKeys, byDoctorPets));
+    }
+
+    /**
+     * Creates a view with some pets/doctors brought up to date, sharing everything else with this view
+     * A changed doctor's pets are also brought up to date, so that they refer to the doctor's new copy.
+     *
+     * @param petNames  normalised names of pets which have been added, changed or removed
+     * @param doctorNames  normalised names of doctors which have been added, changed or removed
+     * @param petRegistry  the pets in the system
+     * @param doctorRegistry  the doctors in the system
+     * @return  the new view
+     */
+    public HospitalView update(Collection<String> petNames, Collection<String> doctorNames,
+                               Registry<? extends Pet> petRegistry, Registry<? extends Doctor> doctorRegistry) {
+        PersistentNameMap<Doctor> newDoctors = doctors;
+        PersistentNameMap<Doctor> newDoctorsBySlot = doctorsBySlot;
+        Set<String> changedPets = new HashSet<>(petNames);
+        for (String key : doctorNames) {
+            newDoctorsBySlot = removeSlot(newDoctorsBySlot, (FrozenDoctor) newDoctors.get(key));
+            Doctor doctor = doctorRegistry.getByName(key);
+            if (doctor == null) {
+                newDoctors = newDoctors.remove(key); // Their pets have been unassigned, so are in 'petNames'
+                continue;
+            }
+            int slot = doctorRegistry.slotOf(key);
+            Doctor frozen = new FrozenDoctor(doctor, slot);
+            newDoctors = newDoctors.put(key, frozen);
+            newDoctorsBySlot = newDoctorsBySlot.put(slotKey(slot), frozen);
+            for (Pet pet : doctor.getPets()) {
+                changedPets.add(Registry.normaliseName(pet.getName()));
+            }
+        }
+
+        PersistentNameMap<Pet> newPets = pets;
+        PersistentNameMap<Pet> newPetsBySlot = petsBySlot;
+        PersistentNameMap<Pet> newPetsByDoctor = petsByDoctor;
+        for (String key : changedPets) {
+            Pet old = newPets.get(key);
+            newPetsBySlot = removeSlot(newPetsBySlot, (FrozenPet) old);
+            String oldByDoctorKey = old != null && old.hasDoctor() ? byDoctorKey(old.getDoctor(), key) : null;
+            Pet pet = petRegistry.getByName(key);
+            Doctor doctor = pet == null ? null : frozenDoctorOf(pet, newDoctors);
+            String byDoctorKey = doctor != null ? byDoctorKey(doctor, key) : null;
+            if (oldByDoctorKey != null && !oldByDoctorKey.equals(byDoctorKey)) { // Otherwise the put replaces it
+                newPetsByDoctor = newPetsByDoctor.remove(oldByDoctorKey);
+            }
+            if (pet == null) {
+                newPets = newPets.remove(key);
+                continue;
+            }
+            int slot = petRegistry.slotOf(key);
+            Pet frozen = new FrozenPet(pet, doctor, slot);
+            newPets = newPets.put(key, frozen);
+            newPetsBySlot = newPetsBySlot.put(slotKey(slot), frozen);
+            if (byDoctorKey != null) {
+                newPetsByDoctor = newPetsByDoctor.put(byDoctorKey, frozen);
+            }
+        }
+        return new HospitalView(newPets, newPetsBySlot, newDoctors, newDoctorsBySlot, newPetsByDoctor);
+    }
+
+    /**
+     * Gets the number of doctors in the view
+     *
+     * No inputs/preconditions
+     * @return  number of doctors
+     */
+    public int getDoctorCount() {
+        return doctors.size();
+    }
+
+    /**
+     * Gets the number of pets in the view
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int getPetCount() {
+        return pets.size();
+    }
+
+    /**
+     * Returns the doctor with the specified name, if they exist
+     *
+     * @param name  doctor name to be searched for (ignoring case)
+     * @return  frozen doctor, or null if they don't exist
+     */
+    public Doctor getDoctor(String name) {
+        return doctors.get(Registry.normaliseName(name));
+    }
+
+    /**
+     * Returns the pet with the specified name, if they exist
+     *
+     * @param name  pet name to be searched for (ignoring case)
+     * @return  frozen pet, or null if they don't exist
+     */
+    public Pet getPet(String name) {
+        return pets.get(Registry.normaliseName(name));
+    }
+
+    /**
+     * Gets every doctor in the view
+     *
+     * No inputs/preconditions
+     * @return  the frozen doctors, in the same order as the registry they were copied from
+     */
+    public Iterable<Doctor> getDoctors() {
+        return doctorsBySlot;
+    }
+
+    /**
+     * Gets every doctor in the view in name order
+     *
+     * No inputs/preconditions
+     * @return  the frozen doctors, in name order
+     */
+    public Iterable<Doctor> getSortedDoctors() {
+        return doctors;
+    }
+
+    /**
+     * Gets every pet in the view
+     *
+     * No inputs/preconditions
+     * @return  the frozen pets, in the same order as the registry they were copied from
+     */
+    public Iterable<Pet> getPets() {
+        return petsBySlot;
+    }
+
+    /**
+     * Gets every pet in the view in name order
+     *
+     * No inputs/preconditions
+     * @return  the frozen pets, in name order
+     */
+    public Iterable<Pet> getSortedPets() {
+        return pets;
+    }
+
+    /**
+     * Gets every pet assigned to a doctor
+     *
+     * @param doctor  a doctor in this view
+     * @return  the doctor's frozen pets, in name order
+     */
+    public Iterable<Pet> getPetsOf(Doctor doctor) {
+        String prefix = Registry.normaliseName(doctor.getName());
+        return petsByDoctor.range(prefix + '\0', prefix + '\1');
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Gets the frozen copy of a pet's doctor
+     *
+     * @param pet  the pet
+     * @param doctors  frozen doctors
+     * @return  the frozen doctor, or null if the pet has no doctor
+     */
+    private static Doctor frozenDoctorOf(Pet pet, PersistentNameMap<Doctor> doctors) {
+        return pet.hasDoctor() ? doctors.get(Registry.normaliseName(pet.getDoctor().getName())) : null;
+    }
+
+    /**
+     * Finds a pet's doctor among the doctors being copied into a new view
+     * The doctor is normally the registry's own object; otherwise it is found by name.
+     *
+     * @param doctor  the pet's doctor
+     * @param doctorIndexes  each doctor in the registry, and its index in name order - added to
+     * @param doctorRegistry  the doctors
+     * @return  the doctor's index in name order, or -1 if the doctor isn't in the registry
+     */
+    private static int doctorIndexOf(Doctor doctor, IdentityHashMap<Doctor, Integer> doctorIndexes,
+                                     Registry<? extends Doctor> doctorRegistry) {
+        Integer index = doctorIndexes.get(doctor);
+        if (index == null) {
+            Doctor inRegistry = doctorRegistry.getByName(doctor.getName());
+            index = inRegistry == null ? -1 : doctorIndexes.get(inRegistry);
+            doctorIndexes.put(doctor, index); // Quicker for the doctor's other pets
+        }
+        return index;
+    }
+
+    /**
+     * Indexes frozen pets/doctors by the slot which each was copied from, in O(n) time
+     *
+     * @param inSlots  the frozen pets/doctors, at the index of their slot (empty slots are null)
+     * @param size  number of pets/doctors
+     * @return  the same pets/doctors, by slot
+     */
+    private static <T> PersistentNameMap<T> bySlot(T[] inSlots, int size) {
+        List<String> keys = new ArrayList<>(size);
+        List<T> values = new ArrayList<>(size);
+        for (int slot = 0; slot < inSlots.length; slot++) { // In slot order, so the keys are in order
+            if (inSlots[slot] != null) {
+                keys.add(slotKey(slot));
+                values.add(inSlots[slot]);
+            }
+        }
+        return PersistentNameMap.ofSorted(keys, values);
+    }
+
+    /**
+     * Gets the key of a registry slot in 'petsBySlot' or 'doctorsBySlot'
+     * Two characters compare in the same order as the slots' numbers.
+     *
+     * @param slot  the slot
+     * @return  the key
+     */
+    private static String slotKey(int slot) {
+        return new String(new char[] {(char) (slot >>> 16), (char) slot});
+    }
+
+    /**
+     * Removes a frozen pet/doctor from a map by slot, unless another has already replaced it
+     *
+     * @param bySlot  the map by slot
+     * @param old  the frozen pet/doctor, or null
+     * @return  the new map
+     */
+    private static <T> PersistentNameMap<T> removeSlot(PersistentNameMap<T> bySlot, Slotted old) {
+        if (old == null) {
+            return bySlot;
+        }
+        String key = slotKey(old.getSlot());
+        return bySlot.get(key) == old ? bySlot.remove(key) : bySlot;
+    }
+
+    /**
+     * A frozen pet/doctor, which remembers the registry slot it was copied from
+     */
+    private interface Slotted {
+        /**
+         * No inputs/preconditions
+         * @return  the slot
+         */
+        int getSlot();
+    }
+
+    /**
+     * Gets the key of a pet in 'petsByDoctor'
+     *
+     * @param doctor  the pet's doctor
+     * @param petKey  the pet's normalised name
+     * @return  the key, which sorts the pets by doctor and then by name
+     */
+    private static String byDoctorKey(Doctor doctor, String petKey) {
+        return Registry.normaliseName(doctor.getName()) + '\0' + petKey;
+    }
+
+    /**
+     * A Pet whose details were copied from another pet, and can't be changed
+     */
+    private static final class FrozenPet extends Pet implements Slotted {
+        private final String name;
+        private final PetSize size;
+        private final PetType type;
+        private final int age;
+        private final double weight;
+        private final Doctor doctor;
+        private final long lastModified;
+        private final long version;
+        private final int slot;
+
+        /**
+         * @param pet  pet to be copied
+         * @param doctor  frozen copy of the pet's doctor, or null
+         * @param slot  the pet's slot in its registry, or -1 if it isn't in a view
+         */
+        FrozenPet(Pet pet, Doctor doctor, int slot) {
+            name = pet.getName();
+            size = pet.getPetSize();
+            type = pet.getPetType();
+            age = pet.getAge();
+            weight = pet.getWeight();
+            this.doctor = doctor;
+            lastModified = pet.getLastModified();
+            version = pet.getVersion();
+            this.slot = slot;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PetSize getPetSize() {
+            return size;
+        }
+
+        public PetType getPetType() {
+            return type;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public Doctor getDoctor() {
+            return doctor;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public void setName(String name) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+
+        public void setPetSize(PetSize size) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+
+        public void setPetType(PetType type) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+
+        public void setAge(int age) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+
+        public void setWeight(double weight) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+
+        public void setDoctor(Doctor doctor) {
+            throw new UnsupportedOperationException("Pets in a HospitalView can't be changed");
+        }
+    }
+
+    /**
+     * A Doctor whose details were copied from another doctor, and can't be changed
+     * Their pets are found with HospitalView.getPetsOf(); getPets() throws, as a frozen
+     * doctor has no list of pets of their own.
+     */
+    private static final class FrozenDoctor extends Doctor implements Slotted {
+        private final String name;
+        private final Specialisation specialisation;
+        private final long lastModified;
+        private final long version;
+        private final int slot;
+
+        /**
+         * @param doctor  doctor to be copied
+         * @param slot  the doctor's slot in its registry
+         */
+        FrozenDoctor(Doctor doctor, int slot) {
+            name = doctor.getName();
+            specialisation = doctor.getSpecialisationValue();
+            lastModified = doctor.getLastModified();
+            version = doctor.getVersion();
+            this.slot = slot;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSpecialisation() {
+            return specialisation == null ? null : specialisation.toString();
+        }
+
+        public Specialisation getSpecialisationValue() {
+            return specialisation;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Set<Pet> getPets() {
+            throw new UnsupportedOperationException("Use HospitalView.getPetsOf() for a doctor's pets in a view");
+        }
+
+        void addPet(Pet pet) {
+            throw new UnsupportedOperationException("Doctors in a HospitalView can't be changed");
+        }
+
+        void removePet(Pet pet) {
+            throw new UnsupportedOperationException("Doctors in a HospitalView can't be changed");
+        }
+
+        public void setName(String name) {
+            throw new UnsupportedOperationException("Doctors in a HospitalView can't be changed");
+        }
+
+        public void setSpecialisationValue(Specialisation specialisation) {
+            throw new UnsupportedOperationException("Doctors in a HospitalView can't be changed");
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Class Name and Description:
+ *    ImportBatch.java holds the pets and doctors which have been read
+ *    from an import file, before they are merged into the system.
+ *
+ *    Records are kept in primitive columns (in the same way as
+ *    PetColumns), in the order they appeared in the file. Pets refer to
+ *    their doctor by name; Hospital resolves the names once all of the
+ *    doctors have been imported.
+ *
+ *    A file of changes (see Hospital's delta export) may also list pets
+ *    and doctors which have been removed. Only their names are kept.
+ */
+
+import java.util.*;
+
+public class ImportBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] petNames = new String[DEFAULT_CAPACITY];
+    private byte[] petTypes = new byte[DEFAULT_CAPACITY];   // PetType ordinals
+    private byte[] petSizes = new byte[DEFAULT_CAPACITY];   // PetSize ordinals
+    private int[] petAges = new int[DEFAULT_CAPACITY];
+    private double[] petWeights = new double[DEFAULT_CAPACITY];
+    private String[] petDoctorNames = new String[DEFAULT_CAPACITY]; // null if no doctor is assigned
+    private int numPets = 0;
+
+    private String[] doctorNames = new String[DEFAULT_CAPACITY];
+    private byte[] specialisations = new byte[DEFAULT_CAPACITY]; // Specialisation ordinals
+    private int numDoctors = 0;
+
+    private ArrayList<String> removedPetNames = new ArrayList<>();
+    private ArrayList<String> removedDoctorNames = new ArrayList<>();
+
+    private int numRejected = 0;  // Records left out as invalid (see HospitalFileParser)
+    private boolean blank = true; // Whether the file had no non-blank lines
+    private int endSection = 0;   // Section of the file which the parser finished in (see HospitalFileParser)
+    private FileFingerprint fingerprint = null; // Fingerprint of the bytes which were read, if read from a file
+
+    /**
+     * Adds a pet record to the batch
+     *
+     * @param name  pet name
+     * @param type  pet type
+     * @param size  pet size
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctorName  name of the assigned doctor, or null if none is assigned
+     * Returns nothing; the record will be added after any existing pet records
+     */
+    public void addPet(String name, PetType type, PetSize size, int age, double weight, String doctorName) {
+        if (numPets == petNames.length) {
+            ensurePetCapacity(petNames.length * 2);
+        }
+
+        petNames[numPets] = name;
+        petTypes[numPets] = (byte) type.ordinal();
+        petSizes[numPets] = (byte) size.ordinal();
+        petAges[numPets] = age;
+        petWeights[numPets] = weight;
+        petDoctorNames[numPets] = doctorName;
+        numPets++;
+        blank = false;
+    }
+
+    /**
+     * Adds a doctor record to the batch
+     *
+     * @param name  doctor name
+     * @param specialisation  doctor specialisation
+     * Returns nothing; the record will be added after any existing doctor records
+     */
+    public void addDoctor(String name, Specialisation specialisation) {
+        if (numDoctors == doctorNames.length) {
+            ensureDoctorCapacity(doctorNames.length * 2);
+        }
+
+        doctorNames[numDoctors] = name;
+        specialisations[numDoctors] = (byte) specialisation.ordinal();
+        numDoctors++;
+        blank = false;
+    }
+
+    /**
+     * Records that a pet has been removed
+     *
+     * @param name  name of the removed pet
+     * Returns nothing; the name will be added after any other removed pets
+     */
+    public void addRemovedPet(String name) {
+        removedPetNames.add(name);
+        blank = false;
+    }
+
+    /**
+     * Records that a doctor has been removed
+     *
+     * @param name  name of the removed doctor
+     * Returns nothing; the name will be added after any other removed doctors
+     */
+    public void addRemovedDoctor(String name) {
+        removedDoctorNames.add(name);
+        blank = false;
+    }
+
+    /**
+     * Records that a pet/doctor record in the file was invalid, and has been left out
+     *
+     * No inputs/preconditions
+     * Returns nothing; the rejected count will go up by one
+     */
+    public void rejectRecord() {
+        numRejected++;
+    }
+
+    /**
+     * Adds all of the records in another batch after the records in this one
+     *
+     * @param other  batch to be appended
+     * Returns nothing; this batch will contain both sets of records
+     */
+    public void append(ImportBatch other) {
+        ensurePetCapacity(numPets + other.numPets);
+        ensureDoctorCapacity(numDoctors + other.numDoctors);
+        for (int i = 0; i < other.numPets; i++) {
+            addPet(other.getPetName(i), other.getPetType(i), other.getPetSize(i),
+                   other.getPetAge(i), other.getPetWeight(i), other.getPetDoctorName(i));
+        }
+        for (int i = 0; i < other.numDoctors; i++) {
+            addDoctor(other.getDoctorName(i), other.getSpecialisation(i));
+        }
+        removedPetNames.addAll(other.removedPetNames);
+        removedDoctorNames.addAll(other.removedDoctorNames);
+        numRejected += other.numRejected;
+        blank = blank && other.blank;
+        endSection = other.endSection;
+    }
+
+    /**
+     * Records that the file contained something other than blank lines
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void markNotBlank() {
+        blank = false;
+    }
+
+    /**
+     * Determines whether the file was blank (i.e. empty or whitespace only)
+     *
+     * No inputs/preconditions
+     * @return  whether the file was blank (boolean value)
+     */
+    public boolean isBlank() {
+        return blank;
+    }
+
+    /**
+     * Records which section of the file the parser finished in
+     *
+     * @param section  the parser's section
+     * Returns nothing
+     */
+    void setEndSection(int section) {
+        endSection = section;
+    }
+
+    /**
+     * Gets the section of the file which the parser finished in, so that
+     * anything added to the end of the file can be read later on
+     * (see HospitalFileParser.parseFrom())
+     *
+     * No inputs/preconditions
+     * @return  the parser's section
+     */
+    int getEndSection() {
+        return endSection;
+    }
+
+    /**
+     * Records the fingerprint of the part of the file which the batch was read from
+     *
+     * @param fingerprint  the fingerprint, taken before the file was read
+     * Returns nothing
+     */
+    void setFingerprint(FileFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Gets the fingerprint of the part of the file which the batch was read from,
+     * which is remembered once the batch has been imported
+     *
+     * No inputs/preconditions
+     * @return  the fingerprint, or null if the file wasn't found
+     */
+    FileFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the number of records which were left out as invalid
+     *
+     * No inputs/preconditions
+     * @return  number of rejected pets and doctors
+     */
+    public int getRejectedCount() {
+        return numRejected;
+    }
+
+    /**
+     * Gets the number of pet records
+     *
+     * No inputs/preconditions
+     * @return  number of pets in the batch
+     */
+    public int getPetCount() {
+        return numPets;
+    }
+
+    /**
+     * Gets the number of doctor records
+     *
+     * No inputs/preconditions
+     * @return  number of doctors in the batch
+     */
+    public int getDoctorCount() {
+        return numDoctors;
+    }
+
+    /**
+     * Gets the number of removed pets
+     *
+     * No inputs/preconditions
+     * @return  number of pets listed as removed
+     */
+    public int getRemovedPetCount() {
+        return removedPetNames.size();
+    }
+
+    /**
+     * Gets the number of removed doctors
+     *
+     * No inputs/preconditions
+     * @return  number of doctors listed as removed
+     */
+    public int getRemovedDoctorCount() {
+        return removedDoctorNames.size();
+    }
+
+    // Getters for the individual fields of each record.
+    // 'i' is the record's position in the batch (0 is the first record).
+
+    public String getPetName(int i) {
+        return petNames[i];
+    }
+
+    public PetType getPetType(int i) {
+        return PetType.values()[petTypes[i]];
+    }
+
+    public PetSize getPetSize(int i) {
+        return PetSize.values()[petSizes[i]];
+    }
+
+    public int getPetAge(int i) {
+        return petAges[i];
+    }
+
+    public double getPetWeight(int i) {
+        return petWeights[i];
+    }
+
+    public String getPetDoctorName(int i) {
+        return petDoctorNames[i];
+    }
+
+    public String getDoctorName(int i) {
+        return doctorNames[i];
+    }
+
+    public Specialisation getSpecialisation(int i) {
+        return Specialisation.values()[specialisations[i]];
+    }
+
+    public String getRemovedPetName(int i) {
+        return removedPetNames.get(i);
+    }
+
+    public String getRemovedDoctorName(int i) {
+        return removedDoctorNames.get(i);
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Grows the pet columns so that they can hold at least the specified number of pets
+     *
+     * @param capacity  number of pets required
+     */
+    private void ensurePetCapacity(int capacity) {
+        if (capacity > petNames.length) {
+            petNames = Arrays.copyOf(petNames, capacity);
+            petTypes = Arrays.copyOf(petTypes, capacity);
+            petSizes = Arrays.copyOf(petSizes, capacity);
+            petAges = Arrays.copyOf(petAges, capacity);
+            petWeights = Arrays.copyOf(petWeights, capacity);
+            petDoctorNames = Arrays.copyOf(petDoctorNames, capacity);
+        }
+    }
+
+    /**
+     * Grows the doctor columns so that they can hold at least the specified number of doctors
+     *
+     * @param capacity  number of doctors required
+     */
+    private void ensureDoctorCapacity(int capacity) {
+        if (capacity > doctorNames.length) {
+            doctorNames = Arrays.copyOf(doctorNames, capacity);
+            specialisations = Arrays.copyOf(specialisations, capacity);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Class Name and Description:
+ *    ImportSummary.java counts what happened to each pet and doctor
+ *    during an import: whether it was inserted as a new record, used to
+ *    update an existing record, or skipped. Files of changes can also
+ *    remove pets/doctors; removals which weren't made count as skipped.
+ *    Records which were invalid, and so never reached the importer, are
+ *    counted as rejected.
+ */
+
+public class ImportSummary {
+    private int petsInserted, petsUpdated, petsRemoved, petsSkipped;
+    private int doctorsInserted, doctorsUpdated, doctorsRemoved, doctorsSkipped;
+    private int recordsRejected;
+
+    // Counters, called by the importer once for each record
+
+    public void petInserted() {
+        petsInserted++;
+    }
+
+    public void petUpdated() {
+        petsUpdated++;
+    }
+
+    public void petRemoved() {
+        petsRemoved++;
+    }
+
+    public void petSkipped() {
+        petsSkipped++;
+    }
+
+    public void doctorInserted() {
+        doctorsInserted++;
+    }
+
+    public void doctorUpdated() {
+        doctorsUpdated++;
+    }
+
+    public void doctorRemoved() {
+        doctorsRemoved++;
+    }
+
+    public void doctorSkipped() {
+        doctorsSkipped++;
+    }
+
+    /**
+     * Records that some of the file's records were invalid (see ImportBatch.getRejectedCount())
+     *
+     * @param count  number of rejected records
+     * Returns nothing
+     */
+    public void recordsRejected(int count) {
+        recordsRejected += count;
+    }
+
+    /**
+     * Adds the counts from another part of the same import
+     *
+     * @param other  summary of the other part
+     * Returns nothing; each count will include the other summary's
+     */
+    public void add(ImportSummary other) {
+        petsInserted += other.petsInserted;
+        petsUpdated += other.petsUpdated;
+        petsRemoved += other.petsRemoved;
+        petsSkipped += other.petsSkipped;
+        doctorsInserted += other.doctorsInserted;
+        doctorsUpdated += other.doctorsUpdated;
+        doctorsRemoved += other.doctorsRemoved;
+        doctorsSkipped += other.doctorsSkipped;
+        recordsRejected += other.recordsRejected;
+    }
+
+    /**
+     * Gets the number of pets which were imported (inserted or updated)
+     *
+     * No inputs/preconditions
+     * @return  number of pets imported
+     */
+    public int getPetsImported() {
+        return petsInserted + petsUpdated;
+    }
+
+    /**
+     * Gets the number of doctors which were imported (inserted or updated)
+     *
+     * No inputs/preconditions
+     * @return  number of doctors imported
+     */
+    public int getDoctorsImported() {
+        return doctorsInserted + doctorsUpdated;
+    }
+
+    /**
+     * Gets the number of pets which were removed
+     *
+     * No inputs/preconditions
+     * @return  number of pets removed
+     */
+    public int getPetsRemoved() {
+        return petsRemoved;
+    }
+
+    /**
+     * Gets the number of doctors which were removed
+     *
+     * No inputs/preconditions
+     * @return  number of doctors removed
+     */
+    public int getDoctorsRemoved() {
+        return doctorsRemoved;
+    }
+
+    /**
+     * Gets the number of records which were rejected as invalid
+     *
+     * No inputs/preconditions
+     * @return  number of pets and doctors rejected
+     */
+    public int getRecordsRejected() {
+        return recordsRejected;
+    }
+
+    /**
+     * Prints the inserted/updated/removed/skipped counts for pets and doctors
+     * Removals and rejected records are only mentioned if there were any.
+     *
+     * No inputs/preconditions
+     * Returns nothing; summary will be printed to the screen
+     */
+    public void printDetails() {
+        boolean anyRemoved = petsRemoved > 0 || doctorsRemoved > 0;
+        System.out.println("   Pets: " + petsInserted + " inserted, " + petsUpdated + " updated, " +
+                           (anyRemoved ? petsRemoved + " removed, " : "") + petsSkipped + " skipped");
+        System.out.println("Doctors: " + doctorsInserted + " inserted, " + doctorsUpdated + " updated, " +
+                           (anyRemoved ? doctorsRemoved + " removed, " : "") + doctorsSkipped + " skipped");
+        if (recordsRejected > 0) {
+            System.out.println("Rejected: " + recordsRejected + " (unknown type, size or specialisation)");
+        }
+        System.out.println();
+    }
+}
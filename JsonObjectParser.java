@@ -0,0 +1,219 @@
+/*
+ * Class Name and Description:
+ *    JsonObjectParser.java reads the bodies of HTTP API requests, which
+ *    are single flat JSON objects, e.g.
+ *        {"name": "Rex", "size": "large", "type": "dog", "age": 3, "weight": 20.5}
+ *
+ *    Every value is returned as a string: strings are unescaped, numbers
+ *    and true/false are returned as written, and null is returned as
+ *    null. Nested objects and arrays aren't needed, so aren't accepted.
+ */
+
+import java.util.*;
+
+public class JsonObjectParser {
+    private final String text;
+    private int position = 0; // Index of the next character to be read
+
+    /**
+     * @param text  the JSON to be parsed
+     */
+    private JsonObjectParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON object
+     *
+     * @param text  the JSON
+     * @return  field name -> value (in the order given). A field which is
+     *          given more than once keeps its last value.
+     * @throws IllegalArgumentException  if the text isn't a flat JSON object
+     */
+    public static Map<String, String> parse(String text) {
+        JsonObjectParser parser = new JsonObjectParser(text);
+        Map<String, String> fields = parser.readObject();
+        parser.skipSpace();
+        if (parser.position != text.length()) {
+            throw parser.error("Unexpected text after the object");
+        }
+        return fields;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Reads an object, i.e. { "name": value, ... }
+     *
+     * No inputs/preconditions
+     * @return  field name -> value
+     */
+    private Map<String, String> readObject() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        expect('{');
+        skipSpace();
+        if (peek() == '}') {
+            position++;
+            return fields;
+        }
+        while (true) {
+            skipSpace();
+            expect('"');
+            String name = readString();
+            skipSpace();
+            expect(':');
+            skipSpace();
+            fields.put(name, readValue());
+            skipSpace();
+            char next = next();
+            if (next == '}') {
+                return fields;
+            }
+            if (next != ',') {
+                position--;
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    /**
+     * Reads a string, number, true, false or null
+     *
+     * No inputs/preconditions
+     * @return  the value as a string, or null
+     */
+    private String readValue() {
+        char first = peek();
+        if (first == '"') {
+            position++;
+            return readString();
+        }
+        if (first == '{' || first == '[') {
+            throw error("Objects and arrays can't be used as values");
+        }
+        for (String literal : new String[] {"true", "false", "null"}) {
+            if (text.startsWith(literal, position)) {
+                position += literal.length();
+                return literal.equals("null") ? null : literal;
+            }
+        }
+
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            Double.parseDouble(number); // JSON numbers are a subset of Java's
+        }
+        catch (NumberFormatException e) {
+            position = start;
+            throw error("Expected a value");
+        }
+        return number;
+    }
+
+    /**
+     * Reads the rest of a string, after its opening quote
+     *
+     * No inputs/preconditions
+     * @return  the unescaped string
+     */
+    private String readString() {
+        StringBuilder string = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return string.toString();
+            }
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            char escape = next();
+            switch (escape) {
+                case '"': case '\\': case '/': string.append(escape); break;
+                case 'b': string.append('\b'); break;
+                case 'f': string.append('\f'); break;
+                case 'n': string.append('\n'); break;
+                case 'r': string.append('\r'); break;
+                case 't': string.append('\t'); break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Incomplete \\u escape");
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    }
+                    catch (NumberFormatException e) {
+                        throw error("Invalid \\u escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    position--;
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    /**
+     * Moves past any whitespace
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void skipSpace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Reads one character, which must be a particular one
+     *
+     * @param expected  the character which should be next
+     */
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    /**
+     * Gets the next character without reading it
+     *
+     * No inputs/preconditions
+     * @return  the next character
+     */
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        return text.charAt(position);
+    }
+
+    /**
+     * Reads the next character
+     *
+     * No inputs/preconditions
+     * @return  the next character
+     */
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    /**
+     * Creates an exception for invalid JSON at the current position
+     *
+     * @param message  what is wrong
+     * @return  the exception, to be thrown
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON: " + message + " at character " + (position + 1) + ".");
+    }
+}
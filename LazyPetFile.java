@@ -0,0 +1,438 @@
+/*
+ * Class Name and Description:
+ *    LazyPetFile.java gives access to the pets in a (possibly very large)
+ *    data file without reading every pet into memory.
+ *
+ *    The file is scanned once when it is opened, recording the offset of
+ *    each pet's record by name. Names aren't kept: the index is an
+ *    open-addressing table of 64-bit name hashes, and the name in the file
+ *    is checked whenever a pet is read, so the index takes about 24 bytes
+ *    per pet. A pet is only read from the file when it is first looked
+ *    up, and is then kept in a cache of the most recently used pets,
+ *    which never grows beyond a fixed size. Iterating over the pets reads
+ *    them straight from the file in blocks, so listing every pet never
+ *    holds them all in memory at once.
+ *
+ *    Pets read from the file are read-only copies: they are not added to
+ *    their doctor's list of pets, so they can be dropped from the cache at
+ *    any time. Hospital copies a pet into its own list before changing it,
+ *    and calls detach() so that the file's copy is no longer used.
+ *
+ *    The file is kept open, so it can safely be replaced (e.g. by saving
+ *    over it) while it is in use.
+ *
+ *    Several threads may look pets up and iterate at the same time (e.g.
+ *    while holding HospitalService's read lock), as the cache is the only
+ *    thing lookups change, and it is synchronized. Methods which change
+ *    the file's state (detach(), unassignDoctor(), close()) must not run
+ *    at the same time as anything else.
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.function.*;
+
+public class LazyPetFile implements Iterable<Pet>, Closeable {
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final int BLOCK_SIZE = 4096; // Pets read at a time while iterating
+    private static final int INITIAL_TABLE_SIZE = 1 << 10; // Must be a power of two
+    private static final long EMPTY = 0;              // Hash stored in empty slots of the table
+
+    private final FileChannel file;
+    private final Function<String, Doctor> doctorLookup; // Finds a doctor by name
+    private final LinkedHashMap<Integer, Pet> cache;     // Pet id -> pet, least recently used first (guarded by itself)
+
+    private long[] nameHashes = new long[INITIAL_TABLE_SIZE]; // Table of name hashes (EMPTY if the slot is free)
+    private int[] slotIds = new int[INITIAL_TABLE_SIZE];       // Pet id for each slot of the table
+    private long[] offsets = new long[16];                  // Pet id -> offset of the pet's record
+    private int numPets = 0;
+    private long petsEnd;                                   // Offset after the last pet's record
+    private BitSet detached = new BitSet();                 // Ids of pets which are no longer read from the file
+    private int numDetached = 0;
+    private Set<String> unassignedDoctors = new HashSet<>(); // Normalised names of doctors removed since opening
+    private ImportBatch otherRecords;                       // Doctors and removals read while scanning
+    private long version = ModificationCounter.next();      // Version of every pet read from the file
+
+    /**
+     * Creates an empty index of the specified file
+     *
+     * @param file  the file, open for reading
+     * @param cacheSize  maximum number of pets to keep in memory
+     * @param doctorLookup  finds the doctor with a given name, or returns null
+     */
+    private LazyPetFile(FileChannel file, int cacheSize, Function<String, Doctor> doctorLookup) {
+        this.file = file;
+        this.doctorLookup = doctorLookup;
+        cache = new LinkedHashMap<Integer, Pet>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, Pet> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Opens a data file and scans it, recording where each pet is
+     *
+     * @param filename  name of the data file
+     * @param cacheSize  maximum number of pets to keep in memory (at least 1)
+     * @param doctorLookup  finds the doctor with a given name, or returns null
+     *                      Used each time a pet is read, so doctors may be added after opening.
+     * @return  the opened file
+     * @throws FileNotFoundException  if the specified file is missing
+     * @throws IOException  if an error occurs while reading the file
+     */
+    public static LazyPetFile open(String filename, int cacheSize, Function<String, Doctor> doctorLookup)
+            throws IOException {
+        long lastModified = new File(filename).lastModified(); // Before opening, so any later change is noticed
+        FileChannel file;
+        try {
+            file = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
+        }
+
+        try {
+            LazyPetFile lazyFile = new LazyPetFile(file, Math.max(cacheSize, 1), doctorLookup);
+            FileFingerprint fingerprint = FileFingerprint.take(file, lastModified);
+            lazyFile.petsEnd = fingerprint.getSize();
+            lazyFile.otherRecords = HospitalFileParser.index(file, fingerprint.getSize(), lazyFile);
+            lazyFile.otherRecords.setFingerprint(fingerprint.withEndSection(lazyFile.otherRecords.getEndSection()));
+            return lazyFile;
+        }
+        catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the records other than pets which were read while scanning the file
+     *
+     * No inputs/preconditions
+     * @return  the file's doctors (and any removals)
+     */
+    public ImportBatch getOtherRecords() {
+        return otherRecords;
+    }
+
+    /**
+     * Determines whether the file has a pet with the specified name which
+     * hasn't been detached
+     *
+     * @param name  pet name (any case)
+     * @return  whether the pet exists (boolean value)
+     */
+    public boolean contains(String name) {
+        return get(name) != null; // The pet has to be read to check its name
+    }
+
+    /**
+     * Gets the pet with the specified name, reading it from the file if it isn't cached
+     * The pet must not be changed; copy it first.
+     *
+     * @param name  pet name (any case)
+     * @return  the pet, or null if there isn't one (or it has been detached)
+     * @throws UncheckedIOException  if an error occurs while reading the file
+     */
+    public Pet get(String name) {
+        int id = findId(name);
+        if (id < 0 || detached.get(id)) {
+            return null;
+        }
+
+        Pet pet;
+        synchronized (cache) { // An access-ordered map changes on every get()
+            pet = cache.get(id);
+        }
+        if (pet == null) {
+            pet = readPets(id, id + 1).get(0); // Not while holding the cache, so other lookups aren't held up
+            synchronized (cache) {
+                cache.put(id, pet);
+            }
+        }
+        if (!Registry.normaliseName(pet.getName()).equals(Registry.normaliseName(name))) {
+            return null; // Another name with the same hash
+        }
+        return pet;
+    }
+
+    /**
+     * Determines whether a pet was read from a LazyPetFile
+     *
+     * @param pet  the pet, or null
+     * @return  whether the pet is a read-only copy from a file (boolean value)
+     */
+    public static boolean isFromFile(Pet pet) {
+        return pet instanceof FilePet;
+    }
+
+    /**
+     * Stops the pet with the specified name being read from the file
+     * Used once the pet has been copied somewhere else, or removed.
+     *
+     * @param name  pet name (any case)
+     * Returns nothing; the pet will no longer be found or iterated over
+     */
+    public void detach(String name) {
+        int id = findId(name);
+        if (id >= 0 && !detached.get(id) && get(name) != null) {
+            detached.set(id);
+            numDetached++;
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Unassigns a doctor from every pet in the file. The doctor's name is
+     * remembered, so a new doctor with the same name won't be assigned.
+     *
+     * @param doctorName  name of the doctor who has been removed
+     * Returns nothing; pets read from now on won't have the doctor
+     */
+    public void unassignDoctor(String doctorName) {
+        unassignedDoctors.add(Registry.normaliseName(doctorName));
+        cache.clear(); // Cached pets may have the doctor
+        version = ModificationCounter.next(); // So that edits of pets read before now are refused
+    }
+
+    /**
+     * Gets the number of pets in the file which haven't been detached
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int size() {
+        return numPets - numDetached;
+    }
+
+    /**
+     * Reads each pet which hasn't been detached from the file, in file
+     * order. Only one block of pets is held in memory at a time.
+     * The iterator throws UncheckedIOException if the file can't be read.
+     *
+     * No inputs/preconditions
+     * @return  an iterator over the pets
+     */
+    public Iterator<Pet> iterator() {
+        return new Iterator<Pet>() {
+            private List<Pet> block = Collections.emptyList();
+            private int blockStart = 0; // Id of the first pet in 'block'
+            private int nextId = 0;     // Id of the next pet to be returned
+
+            public boolean hasNext() {
+                nextId = detached.nextClearBit(nextId);
+                return nextId < numPets;
+            }
+
+            public Pet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (nextId >= blockStart + block.size()) {
+                    blockStart = nextId;
+                    block = readPets(blockStart, Math.min(blockStart + BLOCK_SIZE, numPets));
+                }
+                return block.get(nextId++ - blockStart);
+            }
+        };
+    }
+
+    /**
+     * Closes the file. Pets can no longer be read.
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if an error occurs while closing the file
+     */
+    public void close() throws IOException {
+        cache.clear();
+        file.close();
+    }
+
+    /**
+     * Records where a pet's record is. Called by HospitalFileParser.index().
+     * If a name appears more than once, the last record is used.
+     *
+     * @param name  pet name
+     * @param offset  offset of the pet's record in the file
+     * Returns nothing; the pet will be added to the index
+     */
+    void addPet(String name, long offset) {
+        if (numPets == offsets.length) {
+            offsets = Arrays.copyOf(offsets, numPets * 2);
+        }
+        if ((numPets + 1) * 2 > nameHashes.length) {
+            growTable(); // Keep the table at most half full
+        }
+        offsets[numPets] = offset;
+
+        long hash = hash(name);
+        int slot = findSlot(hash);
+        if (nameHashes[slot] == hash) {
+            detached.set(slotIds[slot]); // Assume the same name; 64-bit hashes almost never collide
+            numDetached++;
+        }
+        nameHashes[slot] = hash;
+        slotIds[slot] = numPets;
+        numPets++;
+    }
+
+    /**
+     * Records where the last pet's record ends. Called by HospitalFileParser.index().
+     *
+     * @param offset  offset of the first byte after the pets (i.e. the 'Doctors' heading)
+     * Returns nothing
+     */
+    void endPets(long offset) {
+        petsEnd = offset;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Finds the id of the pet which may have the specified name
+     *
+     * @param name  pet name (any case)
+     * @return  id of the pet whose name has the same hash, or -1 if there isn't one
+     */
+    private int findId(String name) {
+        int slot = findSlot(hash(name));
+        return nameHashes[slot] == EMPTY ? -1 : slotIds[slot];
+    }
+
+    /**
+     * Finds the slot of the table which holds a hash, using linear probing
+     *
+     * @param hash  the hash to be found
+     * @return  the slot holding the hash, or the empty slot where it should be added
+     */
+    private int findSlot(long hash) {
+        int mask = nameHashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (nameHashes[slot] != EMPTY && nameHashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the size of the table, moving every hash into its new slot
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void growTable() {
+        long[] oldHashes = nameHashes;
+        int[] oldIds = slotIds;
+        nameHashes = new long[oldHashes.length * 2];
+        slotIds = new int[oldHashes.length * 2];
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                int slot = findSlot(oldHashes[i]);
+                nameHashes[slot] = oldHashes[i];
+                slotIds[slot] = oldIds[i];
+            }
+        }
+    }
+
+    /**
+     * Calculates the 64-bit hash of a pet name (64-bit FNV-1a of the
+     * normalised name, followed by a final mix of the bits)
+     *
+     * @param name  pet name (any case)
+     * @return  the hash, which is never EMPTY
+     */
+    private static long hash(String name) {
+        String normalised = Registry.normaliseName(name);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalised.length(); i++) {
+            hash = (hash ^ normalised.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /**
+     * Reads a run of consecutive pets from the file
+     *
+     * @param firstId  id of the first pet to be read
+     * @param endId  id after the last pet to be read
+     * @return  the pets, in id order (detached pets are included)
+     * @throws UncheckedIOException  if an error occurs while reading the file
+     */
+    private List<Pet> readPets(int firstId, int endId) {
+        ImportBatch batch;
+        try {
+            batch = HospitalFileParser.parseRange(file, offsets[firstId], endId < numPets ? offsets[endId] : petsEnd);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Pet> pets = new ArrayList<>(batch.getPetCount());
+        for (int i = 0; i < batch.getPetCount(); i++) {
+            pets.add(new FilePet(batch.getPetName(i), batch.getPetSize(i), batch.getPetType(i),
+                                 batch.getPetAge(i), batch.getPetWeight(i), findDoctor(batch.getPetDoctorName(i)),
+                                 version));
+        }
+        return pets;
+    }
+
+    /**
+     * Finds the doctor a pet in the file is assigned to
+     *
+     * @param name  doctor name from the file, or null
+     * @return  the doctor, or null if they don't exist (or have been removed)
+     */
+    private Doctor findDoctor(String name) {
+        if (name == null || unassignedDoctors.contains(Registry.normaliseName(name))) {
+            return null;
+        }
+        return doctorLookup.apply(name);
+    }
+
+
+    /* ******** File Pet ******** */
+
+
+    /**
+     * A read-only copy of a pet in the file. Its doctor is kept separately
+     * so that the pet isn't added to the doctor's list of pets.
+     * Its version is the file's, so it stays the same if the pet is dropped
+     * from the cache and read again.
+     */
+    private static class FilePet extends BasicPet {
+        private final Doctor doctor;
+        private final long version;
+
+        /**
+         * Creates a copy of a pet in the file
+         *
+         * @param name  pet name
+         * @param size  pet size
+         * @param type  pet type
+         * @param age  age of the pet
+         * @param weight  weight of the pet
+         * @param doctor  assigned doctor, or null
+         * @param version  version of the file
+         */
+        private FilePet(String name, PetSize size, PetType type, int age, double weight, Doctor doctor, long version) {
+            super(name, size, type, age, weight, null);
+            this.doctor = doctor;
+            this.version = version;
+        }
+
+        public Doctor getDoctor() {
+            return doctor;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
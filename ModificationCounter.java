@@ -0,0 +1,56 @@
+/*
+ * Class Name and Description:
+ *    ModificationCounter.java hands out modification versions.
+ *
+ *    Every change to a pet or doctor takes the next version from a
+ *    single counter, so versions increase across the whole system.
+ *    A checkpoint is just the counter's value at some moment: every
+ *    record with a higher version has changed since that checkpoint.
+ *
+ *    A version also records when it was handed out: it is the time in
+ *    milliseconds, shifted left to leave room for the changes made within
+ *    that millisecond. So a record which keeps its version doesn't need
+ *    to keep its modification time as well (see timeOf()). If more
+ *    changes than that are made in one millisecond, the versions run
+ *    slightly ahead of the clock until it catches up.
+ */
+
+import java.util.concurrent.atomic.*;
+
+public class ModificationCounter {
+    private static final int TIME_SHIFT = 11; // Up to 2048 versions per millisecond; versions stay
+                                              // below 2^53 (exact in JSON) until the year 2109
+
+    private static final AtomicLong latest = new AtomicLong(); // Last version handed out
+
+    /**
+     * Takes the next version, for a change which is being made now
+     *
+     * No inputs/preconditions
+     * @return  a version higher than any handed out before
+     */
+    public static long next() {
+        long now = System.currentTimeMillis() << TIME_SHIFT;
+        return latest.accumulateAndGet(now, (last, time) -> Math.max(last + 1, time));
+    }
+
+    /**
+     * Gets the last version handed out, which can be used as a checkpoint
+     *
+     * No inputs/preconditions
+     * @return  the latest version, or 0 if nothing has changed yet
+     */
+    public static long current() {
+        return latest.get();
+    }
+
+    /**
+     * Gets the time at which a version was handed out
+     *
+     * @param version  a version returned by next(), or 0
+     * @return  the time in milliseconds since the epoch, or 0 if the version is 0
+     */
+    public static long timeOf(long version) {
+        return version >>> TIME_SHIFT;
+    }
+}
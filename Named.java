@@ -0,0 +1,27 @@
+/*
+ * Interface Name and Description:
+ *    Named.java is implemented by anything in the system which is
+ *    identified by a name (i.e. pets and doctors).
+ *
+ *    Names are unique within a Registry, ignoring case.
+ */
+
+public interface Named {
+    /**
+     * Gets the object's name
+     *
+     * No inputs/preconditions
+     * @return name (exactly as it was inputted into the system)
+     */
+    String getName();
+
+    /**
+     * Sets the object's name to the value specified
+     * If the object is held in a Registry, use Registry.rename() instead
+     * so that the name index is kept up to date.
+     *
+     * @param name  name to be assigned - must not be empty
+     * Returns nothing; the name will be set to the input
+     */
+    void setName(String name);
+}
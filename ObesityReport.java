@@ -0,0 +1,315 @@
+/*
+ * Class Name and Description:
+ *    ObesityReport.java classifies every pet in the system as overweight
+ *    or not in a single pass, and counts the results grouped by pet
+ *    type, pet size and assigned doctor.
+ *
+ *    The classification works on primitive arrays (type/size codes,
+ *    weights and doctor ids), using the same thresholds as
+ *    Pet.isOverweight(). Large inputs are split into blocks which are
+ *    classified in parallel and then merged.
+ */
+
+import java.util.*;
+import java.util.stream.*;
+
+public class ObesityReport {
+    private static final int BLOCK_SIZE = 1 << 16; // Rows classified by each parallel task
+    private static final int NUM_TYPES = PetType.values().length;
+    private static final int NUM_SIZES = PetSize.values().length;
+    private static final double[] THRESHOLDS = new double[NUM_TYPES * NUM_SIZES]; // Indexed by type * NUM_SIZES + size
+    static {
+        for (PetType type : PetType.values()) {
+            for (PetSize size : PetSize.values()) {
+                THRESHOLDS[type.ordinal() * NUM_SIZES + size.ordinal()] = Pet.getOverweightThreshold(type, size);
+            }
+        }
+    }
+
+    private Doctor[] doctors;      // Doctor id -> doctor
+    private int[] totals;          // Number of pets, indexed by type * NUM_SIZES + size
+    private int[] overweight;      // Number of overweight pets, indexed the same way
+    private int[] doctorTotals;    // Number of pets per doctor id; the last entry is for pets without a doctor
+    private int[] doctorOverweight;
+
+    /**
+     * Creates an empty report
+     *
+     * @param doctors  doctor table which the doctor ids refer to
+     */
+    private ObesityReport(Doctor[] doctors) {
+        this.doctors = doctors;
+        totals = new int[NUM_TYPES * NUM_SIZES];
+        overweight = new int[NUM_TYPES * NUM_SIZES];
+        doctorTotals = new int[doctors.length + 1];
+        doctorOverweight = new int[doctors.length + 1];
+    }
+
+    /**
+     * Classifies every pet in the specified list
+     *
+     * @param pets  pets to be classified
+     * @param numPets  number of pets in the list
+     * @param parallel  whether large inputs may be classified on multiple cores
+     * @return  the finished report
+     */
+    public static ObesityReport of(Iterable<Pet> pets, int numPets, boolean parallel) {
+        byte[] types = new byte[numPets];
+        byte[] sizes = new byte[numPets];
+        double[] weights = new double[numPets];
+        int[] doctorIds = new int[numPets];
+        ArrayList<Doctor> doctorTable = new ArrayList<>();
+        IdentityHashMap<Doctor, Integer> doctorIdsByDoctor = new IdentityHashMap<>();
+
+        int row = 0;
+        for (Pet pet : pets) {
+            types[row] = (byte) pet.getPetType().ordinal();
+            sizes[row] = (byte) pet.getPetSize().ordinal();
+            weights[row] = pet.getWeight();
+            if (pet.hasDoctor()) {
+                Integer id = doctorIdsByDoctor.get(pet.getDoctor());
+                if (id == null) {
+                    id = doctorTable.size();
+                    doctorTable.add(pet.getDoctor());
+                    doctorIdsByDoctor.put(pet.getDoctor(), id);
+                }
+                doctorIds[row] = id;
+            }
+            else {
+                doctorIds[row] = -1;
+            }
+            row++;
+        }
+
+        return of(types, sizes, weights, doctorIds, numPets, doctorTable.toArray(new Doctor[0]), parallel);
+    }
+
+    /**
+     * Classifies every row of the specified columns
+     * Rows with a negative type or size code are skipped (e.g. removed pets).
+     *
+     * @param types  PetType ordinal of each pet
+     * @param sizes  PetSize ordinal of each pet
+     * @param weights  weight of each pet
+     * @param doctorIds  index into 'doctors' of each pet's doctor, or -1 for none
+     * @param rows  number of rows to be classified
+     * @param doctors  doctor table
+     * @param parallel  whether large inputs may be classified on multiple cores
+     * @return  the finished report
+     */
+    public static ObesityReport of(byte[] types, byte[] sizes, double[] weights, int[] doctorIds,
+                                   int rows, Doctor[] doctors, boolean parallel) {
+        int numBlocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (!parallel || numBlocks < 2) {
+            ObesityReport report = new ObesityReport(doctors);
+            report.classify(types, sizes, weights, doctorIds, 0, rows);
+            return report;
+        }
+
+        return IntStream.range(0, numBlocks)
+                .parallel()
+                .mapToObj(block -> {
+                    ObesityReport partial = new ObesityReport(doctors);
+                    partial.classify(types, sizes, weights, doctorIds,
+                                     block * BLOCK_SIZE, Math.min(rows, (block + 1) * BLOCK_SIZE));
+                    return partial;
+                })
+                .reduce(ObesityReport::merge)
+                .orElse(new ObesityReport(doctors));
+    }
+
+    /**
+     * Prints the report: overall counts, followed by counts grouped by
+     * type, size and doctor
+     *
+     * No inputs/preconditions
+     * Returns nothing; report will be printed to the screen
+     */
+    public void printDetails() {
+        System.out.println(getOverweightCount() + " of " + getPetCount() + " pets are overweight.\n");
+
+        System.out.println("By type:");
+        for (PetType type : PetType.values()) {
+            printLine(type.toString(), getOverweightCount(type, null), getPetCount(type, null));
+        }
+
+        System.out.println("By size:");
+        for (PetSize size : PetSize.values()) {
+            printLine(size.toString(), getOverweightCount(null, size), getPetCount(null, size));
+        }
+
+        System.out.println("By doctor:");
+        for (int id = 0; id < doctors.length; id++) {
+            if (doctorTotals[id] > 0) {
+                printLine(doctors[id].getName(), doctorOverweight[id], doctorTotals[id]);
+            }
+        }
+        if (doctorTotals[doctors.length] > 0) {
+            printLine("no doctor assigned", doctorOverweight[doctors.length], doctorTotals[doctors.length]);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Gets the total number of pets which were classified
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int getPetCount() {
+        return getPetCount(null, null);
+    }
+
+    /**
+     * Gets the total number of overweight pets
+     *
+     * No inputs/preconditions
+     * @return  number of overweight pets
+     */
+    public int getOverweightCount() {
+        return getOverweightCount(null, null);
+    }
+
+    /**
+     * Gets the number of pets with the specified type and/or size
+     *
+     * @param type  pet type, or null for any type
+     * @param size  pet size, or null for any size
+     * @return  number of pets
+     */
+    public int getPetCount(PetType type, PetSize size) {
+        return sum(totals, type, size);
+    }
+
+    /**
+     * Gets the number of overweight pets with the specified type and/or size
+     *
+     * @param type  pet type, or null for any type
+     * @param size  pet size, or null for any size
+     * @return  number of overweight pets
+     */
+    public int getOverweightCount(PetType type, PetSize size) {
+        return sum(overweight, type, size);
+    }
+
+    /**
+     * Gets the number of overweight pets assigned to the specified doctor
+     *
+     * @param doctor  the doctor, or null for pets without a doctor
+     * @return  number of overweight pets
+     */
+    public int getOverweightCount(Doctor doctor) {
+        int id = getDoctorId(doctor);
+        return id < 0 ? 0 : doctorOverweight[id];
+    }
+
+    /**
+     * Gets the number of pets assigned to the specified doctor
+     *
+     * @param doctor  the doctor, or null for pets without a doctor
+     * @return  number of pets
+     */
+    public int getPetCount(Doctor doctor) {
+        int id = getDoctorId(doctor);
+        return id < 0 ? 0 : doctorTotals[id];
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Classifies a range of rows, adding the results to this report
+     * This is the hot loop, so it only uses array lookups and arithmetic.
+     *
+     * @param types  PetType ordinal of each pet
+     * @param sizes  PetSize ordinal of each pet
+     * @param weights  weight of each pet
+     * @param doctorIds  doctor id of each pet, or -1 for none
+     * @param from  first row (inclusive)
+     * @param to  last row (exclusive)
+     */
+    private void classify(byte[] types, byte[] sizes, double[] weights, int[] doctorIds, int from, int to) {
+        int noDoctor = doctors.length;
+        for (int row = from; row < to; row++) {
+            if (types[row] < 0 || sizes[row] < 0) {
+                continue;
+            }
+            int group = types[row] * NUM_SIZES + sizes[row];
+            int isOverweight = weights[row] > THRESHOLDS[group] ? 1 : 0;
+            int doctor = doctorIds[row] < 0 ? noDoctor : doctorIds[row];
+
+            totals[group]++;
+            overweight[group] += isOverweight;
+            doctorTotals[doctor]++;
+            doctorOverweight[doctor] += isOverweight;
+        }
+    }
+
+    /**
+     * Adds the counts of another report (over the same doctor table) to this one
+     *
+     * @param other  report to be merged in
+     * @return  this report
+     */
+    private ObesityReport merge(ObesityReport other) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += other.totals[i];
+            overweight[i] += other.overweight[i];
+        }
+        for (int i = 0; i < doctorTotals.length; i++) {
+            doctorTotals[i] += other.doctorTotals[i];
+            doctorOverweight[i] += other.doctorOverweight[i];
+        }
+        return this;
+    }
+
+    /**
+     * Adds up the counts matching the specified type and/or size
+     *
+     * @param counts  counts indexed by type * NUM_SIZES + size
+     * @param type  pet type, or null for any type
+     * @param size  pet size, or null for any size
+     * @return  the total
+     */
+    private int sum(int[] counts, PetType type, PetSize size) {
+        int total = 0;
+        for (int t = 0; t < NUM_TYPES; t++) {
+            for (int s = 0; s < NUM_SIZES; s++) {
+                if ((type == null || type.ordinal() == t) && (size == null || size.ordinal() == s)) {
+                    total += counts[t * NUM_SIZES + s];
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Finds the id of the specified doctor in this report's doctor table
+     *
+     * @param doctor  the doctor, or null for pets without a doctor
+     * @return  the doctor's id, or -1 if they aren't in the table
+     */
+    private int getDoctorId(Doctor doctor) {
+        if (doctor == null) {
+            return doctors.length;
+        }
+        for (int id = 0; id < doctors.length; id++) {
+            if (doctors[id] == doctor) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Prints a single line of the report
+     *
+     * @param label  group name
+     * @param numOverweight  number of overweight pets in the group
+     * @param numPets  number of pets in the group
+     */
+    private void printLine(String label, int numOverweight, int numPets) {
+        System.out.println("  " + label + ": " + numOverweight + " of " + numPets + " overweight");
+    }
+}
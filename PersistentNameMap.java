@@ -0,0 +1,343 @@
+/*
+ * Class Name and Description:
+ *    PersistentNameMap.java is an immutable map from names to values,
+ *    kept in name order. Adding or removing a name never changes the map
+ *    itself; it returns a new map, which shares every part of the old one
+ *    except the O(log n) nodes on the path to the changed name. Any number
+ *    of versions can therefore be kept cheaply, and each can be read by
+ *    any number of threads without locking.
+ *
+ *    The map is a treap: a binary search tree ordered by name, which is
+ *    also a heap ordered by a priority taken from a hash of each name.
+ *    The priorities keep the tree balanced (O(log n) deep on average)
+ *    without any rebalancing state, and the same names always give the
+ *    same tree, however they were added.
+ *
+ *    Names are compared with String.compareTo(), so callers should pass
+ *    names which have already been normalised (see Registry.normaliseName()).
+ */
+
+import java.util.*;
+
+public class PersistentNameMap<V> implements Iterable<V> {
+    private static final PersistentNameMap<?> EMPTY = new PersistentNameMap<>(null);
+
+    private final Node<V> root; // null if the map is empty
+
+    /**
+     * One entry of the map. Nodes are never changed once created.
+     */
+    private static final class Node<V> {
+        final String key;
+        final V value;
+        final int priority;
+        final Node<V> left;  // Entries with smaller keys
+        final Node<V> right; // Entries with larger keys
+        final int size;      // Number of entries in this subtree
+
+        Node(String key, V value, int priority, Node<V> left, Node<V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        /**
+         * Copies this node with different children
+         *
+         * @param left  new left child
+         * @param right  new right child
+         * @return  the copy
+         */
+        Node<V> withChildren(Node<V> left, Node<V> right) {
+            return new Node<>(key, value, priority, left, right);
+        }
+    }
+
+    /**
+     * @param root  root of the tree, or null
+     */
+    private PersistentNameMap(Node<V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the empty map
+     *
+     * No inputs/preconditions
+     * @return  a map with no entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentNameMap<V> empty() {
+        return (PersistentNameMap<V>) EMPTY;
+    }
+
+    /**
+     * Creates a map from entries which are already in name order, in O(n) time
+     *
+     * @param keys  the names, in increasing order with no duplicates
+     * @param values  the value for each name
+     * @return  the map
+     */
+    public static <V> PersistentNameMap<V> ofSorted(List<String> keys, List<? extends V> values) {
+        int n = keys.size();
+        if (n == 0) {
+            return empty();
+        }
+
+        // Build the shape of the tree first (the Cartesian tree of the priorities), using a
+        // stack of the entries on its right-hand edge, then create the nodes from the bottom up
+        int[] priorities = new int[n];
+        int[] left = new int[n];
+        int[] right = new int[n];
+        int[] stack = new int[n];
+        int height = 0;
+        for (int i = 0; i < n; i++) {
+            priorities[i] = priority(keys.get(i));
+            left[i] = -1;
+            right[i] = -1;
+            int last = -1;
+            while (height > 0 && priorities[stack[height - 1]] < priorities[i]) {
+                last = stack[--height];
+            }
+            left[i] = last;
+            if (height > 0) {
+                right[stack[height - 1]] = i;
+            }
+            stack[height++] = i;
+        }
+        return new PersistentNameMap<>(build(stack[0], keys, values, priorities, left, right));
+    }
+
+    /**
+     * Gets the number of entries in the map
+     *
+     * No inputs/preconditions
+     * @return  number of entries
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets the value for a name
+     *
+     * @param key  the name
+     * @return  its value, or null if the name isn't in the map
+     */
+    public V get(String key) {
+        Node<V> node = root;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a map which also has an entry for a name, replacing any which is already there
+     *
+     * @param key  the name
+     * @param value  its value
+     * @return  the new map (this map is unchanged)
+     */
+    public PersistentNameMap<V> put(String key, V value) {
+        return new PersistentNameMap<>(put(root, key, value, priority(key)));
+    }
+
+    /**
+     * Gets a map which doesn't have an entry for a name
+     *
+     * @param key  the name
+     * @return  the new map, or this map if the name isn't in it
+     */
+    public PersistentNameMap<V> remove(String key) {
+        Node<V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentNameMap<>(newRoot);
+    }
+
+    /**
+     * Iterates over every value in the map, in name order
+     *
+     * No inputs/preconditions
+     * @return  the iterator
+     */
+    public Iterator<V> iterator() {
+        return new RangeIterator<>(root, null, null);
+    }
+
+    /**
+     * Gets the values whose names are in a range, in name order
+     *
+     * @param from  smallest name to include
+     * @param to  name to stop before
+     * @return  the values, which can be iterated over any number of times
+     */
+    public Iterable<V> range(String from, String to) {
+        return () -> new RangeIterator<>(root, from, to);
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Iterates over the entries of a tree in name order, between two names
+     */
+    private static final class RangeIterator<V> implements Iterator<V> {
+        private final ArrayDeque<Node<V>> path = new ArrayDeque<>(); // Nodes still to be visited, nearest on top
+        private final String to; // Name to stop before, or null for the end of the map
+
+        /**
+         * @param root  root of the tree
+         * @param from  smallest name to include, or null for the start of the map
+         * @param to  name to stop before, or null for the end of the map
+         */
+        RangeIterator(Node<V> root, String from, String to) {
+            this.to = to;
+            Node<V> node = root;
+            while (node != null) {
+                if (from == null || node.key.compareTo(from) >= 0) {
+                    path.push(node);
+                    node = node.left;
+                }
+                else {
+                    node = node.right;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return !path.isEmpty() && (to == null || path.peek().key.compareTo(to) < 0);
+        }
+
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<V> node = path.pop();
+            for (Node<V> next = node.right; next != null; next = next.left) {
+                path.push(next);
+            }
+            return node.value;
+        }
+    }
+
+    /**
+     * Creates the nodes of a tree whose shape has already been worked out
+     *
+     * @param i  index of the subtree's root entry
+     * @return  the subtree
+     */
+    private static <V> Node<V> build(int i, List<String> keys, List<? extends V> values, int[] priorities,
+                                     int[] left, int[] right) {
+        Node<V> leftNode = left[i] < 0 ? null : build(left[i], keys, values, priorities, left, right);
+        Node<V> rightNode = right[i] < 0 ? null : build(right[i], keys, values, priorities, left, right);
+        return new Node<>(keys.get(i), values.get(i), priorities[i], leftNode, rightNode);
+    }
+
+    /**
+     * Adds or replaces an entry in a subtree, copying the nodes on the path to it
+     *
+     * @param node  root of the subtree, or null
+     * @param key  the name
+     * @param value  its value
+     * @param priority  the name's priority
+     * @return  the new subtree
+     */
+    private static <V> Node<V> put(Node<V> node, String key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+
+        int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<V> left = put(node.left, key, value, priority);
+            if (left.priority > node.priority) { // Rotate the new entry up, to keep the heap order
+                return left.withChildren(left.left, node.withChildren(left.right, node.right));
+            }
+            return node.withChildren(left, node.right);
+        }
+        Node<V> right = put(node.right, key, value, priority);
+        if (right.priority > node.priority) {
+            return right.withChildren(node.withChildren(node.left, right.left), right.right);
+        }
+        return node.withChildren(node.left, right);
+    }
+
+    /**
+     * Removes an entry from a subtree, copying the nodes on the path to it
+     *
+     * @param node  root of the subtree, or null
+     * @param key  the name
+     * @return  the new subtree, or the same subtree if the name isn't in it
+     */
+    private static <V> Node<V> remove(Node<V> node, String key) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return merge(node.left, node.right);
+        }
+        if (comparison < 0) {
+            Node<V> left = remove(node.left, key);
+            return left == node.left ? node : node.withChildren(left, node.right);
+        }
+        Node<V> right = remove(node.right, key);
+        return right == node.right ? node : node.withChildren(node.left, right);
+    }
+
+    /**
+     * Joins two subtrees, where every name in the first is smaller than every name in the second
+     *
+     * @param left  the subtree with smaller names, or null
+     * @param right  the subtree with larger names, or null
+     * @return  the joined subtree
+     */
+    private static <V> Node<V> merge(Node<V> left, Node<V> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    /**
+     * Gets the number of entries in a subtree
+     *
+     * @param node  root of the subtree, or null
+     * @return  number of entries
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Gets the priority of a name, which decides its depth in the tree
+     * The hash is mixed so that similar names (e.g. 'pet1', 'pet2') get unrelated priorities.
+     *
+     * @param key  the name
+     * @return  the priority
+     */
+    private static int priority(String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
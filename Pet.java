@@ -11,43 +11,24 @@
  *    Please note that bad inputs will simply be rejected if they
  *    are invalid. It is the responsibility of the primary class
  *    (e.g. Hospital) to ask for new inputs if invalid.
+ *
+ *    Pet only defines what a pet can do; it has no fields, so each way
+ *    of storing pets only holds what it needs. BasicPet keeps its own
+ *    copy of each attribute, PetColumns.View reads and writes one row of
+ *    a PetColumns, and the pets in a HospitalView or a LazyPetFile are
+ *    read-only copies.
  */
 
-public class Pet {
-    private String name, size, type;
-    private int age;
-    private double weight;
-    private Doctor doctor; // Define as class rather than simply a name so that doctor
-                           // name changes will not dissassociate pets from their assigned
-                           // doctors. Everything will point to a central memory location.
-
-    /**
-     * Default constructor
-     *
-     * No inputs/preconditions
-     * All instance variables will be initialised as null
-     */
-    public Pet() {} // Initialise as null rather than blank, as
-                    // that is more semantically correct
-
-    /**
-     * Detailed constructor
-     *
-     * @param name  pet name to be assigned
-     * @param size  pet size to be assigned
-     * @param type  pet type to be assigned
-     * @param age  age of the pet
-     * @param weight  weight of the pet
-     * @param doctor  doctor to be assigned as the pet's doctor
-     * All instance variables will be initialised to the specified values
-     */
-    public Pet(String name, String size, String type, int age, double weight, Doctor doctor) {
-        setName(name);     // Use setters rather than direct assignment
-        setSize(size);     // so that inputs are checked
-        setType(type);
-        setAge(age);
-        setWeight(weight);
-        setDoctor(doctor);
+public abstract class Pet implements Named {
+    // Weight (kg) above which a pet is overweight, indexed by [type][size]
+    private static final double[][] OVERWEIGHT_THRESHOLDS = new double[PetType.values().length][PetSize.values().length];
+    static {
+        OVERWEIGHT_THRESHOLDS[PetType.CAT.ordinal()][PetSize.SMALL.ordinal()] = 4;
+        OVERWEIGHT_THRESHOLDS[PetType.CAT.ordinal()][PetSize.MEDIUM.ordinal()] = 6;
+        OVERWEIGHT_THRESHOLDS[PetType.CAT.ordinal()][PetSize.LARGE.ordinal()] = 8;
+        OVERWEIGHT_THRESHOLDS[PetType.DOG.ordinal()][PetSize.SMALL.ordinal()] = 6;
+        OVERWEIGHT_THRESHOLDS[PetType.DOG.ordinal()][PetSize.MEDIUM.ordinal()] = 9;
+        OVERWEIGHT_THRESHOLDS[PetType.DOG.ordinal()][PetSize.LARGE.ordinal()] = 12;
     }
 
     /**
@@ -61,8 +42,8 @@ public class Pet {
         System.out.println("  Type: " + getType());
         System.out.println("   Age: " + getAge());
         System.out.println("Weight: " + getWeight() + "kg");
-        if (doctor != null) {
-            System.out.println("Doctor: " + doctor.getName());
+        if (hasDoctor()) {
+            System.out.println("Doctor: " + getDoctor().getName());
         }
         else {
             System.out.println("Doctor: none assigned");
@@ -74,58 +55,81 @@ public class Pet {
      * Gets the pet's type
      *
      * No inputs/preconditions
-     * @return pet type (dog or cat)
+     * @return pet type (dog or cat), in lowercase
      */
     public String getType() {
-        return type;
+        return getPetType() == null ? null : getPetType().toString();
     }
 
+    /**
+     * Gets the pet's type as a PetType
+     *
+     * No inputs/preconditions
+     * @return pet type, or null if it hasn't been set
+     */
+    public abstract PetType getPetType();
+
     /**
      * Sets the pet's type to the value specified
      *
-     * @param type  pet type to be assigned - should be either 'dog' or 'cat'
+     * @param type  pet type to be assigned - should be either 'dog' or 'cat' (any case)
      * Returns nothing; 'type' attribute will be set to input
      */
     public void setType(String type) {
-        if (type.equalsIgnoreCase("dog") ||
-            type.equalsIgnoreCase("cat")) {
-            this.type = type;
-        }
+        setPetType(PetType.parse(type));
     }
 
+    /**
+     * Sets the pet's type to the value specified
+     *
+     * @param type  pet type to be assigned - null will be ignored
+     * Returns nothing; 'type' attribute will be set to input
+     */
+    public abstract void setPetType(PetType type);
+
     /**
      * Gets the pet's size
      *
      * No inputs/preconditions
-     * @return pet size (small, medium or large)
+     * @return pet size (small, medium or large), in lowercase
      */
     public String getSize() {
-        return size;
+        return getPetSize() == null ? null : getPetSize().toString();
     }
 
+    /**
+     * Gets the pet's size as a PetSize
+     *
+     * No inputs/preconditions
+     * @return pet size, or null if it hasn't been set
+     */
+    public abstract PetSize getPetSize();
+
     /**
      * Sets the pet's size to the value specified
      *
-     * @param size  size value to be assigned - should be either 'small', 'medium' or 'large'
+     * @param size  size value to be assigned - should be either 'small', 'medium' or 'large' (any case)
      * Returns nothing; 'size' attribute will be set to input
      */
     public void setSize(String size) {
-        if (size.equalsIgnoreCase("small") ||
-            size.equalsIgnoreCase("medium") ||
-            size.equalsIgnoreCase("large")) {
-            this.size = size;
-        }
+        setPetSize(PetSize.parse(size));
     }
 
+    /**
+     * Sets the pet's size to the value specified
+     *
+     * @param size  size value to be assigned - null will be ignored
+     * Returns nothing; 'size' attribute will be set to input
+     */
+    public abstract void setPetSize(PetSize size);
+
     /**
      * Gets the pet's name
      *
      * No inputs/preconditions
      * @return pet name (exactly as it was inputted into the system)
      */
-    public String getName() {
-        return name;
-    }
+    public abstract String getName();
 
     /**
      * Sets the pet's name to the value specified
@@ -133,11 +137,7 @@ public class Pet {
      * @param name  pet name to be assigned - any format will be accepted - must not be empty
      * Returns nothing; 'name' attribute will be set to input
      */
-    public void setName(String name) {
-        if (name.trim().length() > 0) {
-            this.name = name;
-        }
-    }
+    public abstract void setName(String name);
 
     /**
      * Gets the pet's weight in kilograms
@@ -145,9 +145,7 @@ public class Pet {
      * No inputs/preconditions
      * @return pet weight (will be a positive double)
      */
-    public double getWeight() {
-        return weight;
-    }
+    public abstract double getWeight();
 
     /**
      * Sets the pet's weight to the value specified
@@ -155,11 +153,7 @@ public class Pet {
      * @param weight  weight value to be assigned - should be positive
      * Returns nothing; 'weight' attribute will be set to input
      */
-    public void setWeight(double weight) {
-        if (weight > 0) {
-            this.weight = weight;
-        }
-    }
+    public abstract void setWeight(double weight);
 
     /**
      * Gets the pet's age in years
@@ -167,9 +161,7 @@ public class Pet {
      * No inputs/preconditions
      * @return pet age (will be a positive integer)
      */
-    public int getAge() {
-        return age;
-    }
+    public abstract int getAge();
 
     /**
      * Sets the pet's age to the value specified
@@ -177,11 +169,7 @@ public class Pet {
      * @param age  age value to be assigned - should be positive
      * Returns nothing; 'age' attribute will be set to input
      */
-    public void setAge(int age) {
-        if (age >= 0) {
-            this.age = age;
-        }
-    }
+    public abstract void setAge(int age);
 
     /**
      * Gets the pet's doctor object
@@ -189,19 +177,33 @@ public class Pet {
      * No inputs/preconditions
      * @return doctor object, or 'none' if no doctor is assigned
      */
-    public Doctor getDoctor() {
-        return doctor;
-    }
+    public abstract Doctor getDoctor();
 
     /**
      * Assigns the specified doctor as the pet's doctor
+     * The previous doctor's (and the new doctor's) list of pets will be updated
      *
      * @param doctor  doctor object to be assigned, or null to reset
      * Returns nothing; 'doctor' attribute will be set to input
      */
-    public void setDoctor(Doctor doctor) {
-        this.doctor = doctor;
-    }
+    public abstract void setDoctor(Doctor doctor);
+
+    /**
+     * Gets the time that the pet's details were last changed
+     *
+     * No inputs/preconditions
+     * @return  time in milliseconds since the epoch, or 0 if nothing has been set
+     */
+    public abstract long getLastModified();
+
+    /**
+     * Gets the modification version of the pet's last change
+     * The pet has changed since a checkpoint if its version is higher.
+     *
+     * No inputs/preconditions
+     * @return  the version (see ModificationCounter), or 0 if nothing has been set
+     */
+    public abstract long getVersion();
 
 
     /* ******** Helper Methods ******** */
@@ -225,16 +227,18 @@ public class Pet {
      * @return whether this pet is overweight (boolean value)
      */
     public boolean isOverweight() {
-        if (getType().equals("cat")) {
-            return ((getSize().equals("small") && getWeight() > 4) ||
-                    (getSize().equals("medium") && getWeight() > 6) ||
-                    (getSize().equals("large") && getWeight() > 8));
-        }
-        else { // Dog
-            return ((getSize().equals("small") && getWeight() > 6) ||
-                    (getSize().equals("medium") && getWeight() > 9) ||
-                    (getSize().equals("large") && getWeight() > 12));
-        }
+        return getWeight() > getOverweightThreshold(getPetType(), getPetSize());
+    }
+
+    /**
+     * Gets the weight above which a pet of the specified type and size is overweight
+     *
+     * @param type  pet type
+     * @param size  pet size
+     * @return  threshold weight in kilograms
+     */
+    public static double getOverweightThreshold(PetType type, PetSize size) {
+        return OVERWEIGHT_THRESHOLDS[type.ordinal()][size.ordinal()];
     }
 
     /**
@@ -262,8 +266,8 @@ public class Pet {
      * @return whether this pet is equal to otherPet (boolean value)
      */
     public boolean equals(Pet otherPet) {
-        return (getType().equalsIgnoreCase(otherPet.getType()) &&
-                getSize().equalsIgnoreCase(otherPet.getSize()) &&
+        return (getPetType() == otherPet.getPetType() &&
+                getPetSize() == otherPet.getPetSize() &&
                 getName().equalsIgnoreCase(otherPet.getName()) &&
                 getWeight() == otherPet.getWeight() &&
                 getAge() == otherPet.getAge() &&
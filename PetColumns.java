@@ -0,0 +1,725 @@
+/*
+ * Class Name and Description:
+ *    PetColumns.java is an alternative, compact way of storing pets.
+ *
+ *    Rather than one Pet object per pet (each with its own type and
+ *    size strings), every attribute is held in its own primitive array:
+ *    ages in an int[], weights in a double[], type and size as byte
+ *    codes, and the assigned doctor as an int id into a doctor table.
+ *    Only the name is kept as an object.
+ *
+ *    get() returns a lightweight View, which is a Pet whose getters and
+ *    setters read/write these arrays. Views can be used anywhere a Pet
+ *    can, so the rest of the program doesn't need to know which storage
+ *    is in use. Two views of the same pet are equal (and have the same
+ *    hash code) even if they are different objects.
+ *
+ *    A view belongs to the pet which was in its row when it was created.
+ *    Each row has a generation, which goes up when its pet is removed, so
+ *    a view which outlives its pet can't read or change whichever pet
+ *    takes the row next: it throws an IllegalStateException instead.
+ *
+ *    Views are only created when a pet is asked for, and are never kept:
+ *    the store has its own name index (an open-addressing table of row
+ *    numbers), sorts its rows by name when a sorted list is needed (the
+ *    order is kept until a pet is added, removed or renamed), and finds a
+ *    doctor's pets by scanning the doctor ids. A View's doctor therefore
+ *    doesn't list it in Doctor.getPets(); use petsOf() instead. A pet's
+ *    modification time comes from its version (see ModificationCounter),
+ *    so only the version is stored. This keeps the store to about 50
+ *    bytes per pet, plus the name strings.
+ *
+ *    The doctor table counts the rows assigned to each doctor, and lets
+ *    go of a doctor (freeing their id for reuse) once none are left, so
+ *    deleted doctors aren't kept alive by the store.
+ */
+
+import java.util.*;
+
+public class PetColumns implements Iterable<Pet> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NO_DOCTOR = -1;
+    private static final int EMPTY = 0; // Entry of 'rowsByName' for a free slot (others hold row + 1)
+
+    private static final PetType[] TYPES = PetType.values(); // Type codes are PetType ordinals
+    private static final PetSize[] SIZES = PetSize.values(); // Size codes are PetSize ordinals
+
+    private String[] names;
+    private byte[] types;
+    private byte[] sizes;
+    private int[] ages;
+    private double[] weights;
+    private int[] doctorIds;     // Index into 'doctorTable', or NO_DOCTOR
+    private long[] versions;     // See Pet.getVersion(); also gives Pet.getLastModified()
+    private int[] generations;   // Number of pets which have been removed from each row (see View)
+    private int[] nameHashes;    // Hash code of each name, ignoring case (see hashName())
+
+    private int[] freeRows;      // Stack of removed rows which can be reused
+    private int numFreeRows = 0;
+    private int usedRows = 0;    // Rows at or above this index have never held a pet
+    private int numPets = 0;     // Number of pets currently stored
+
+    private int[] rowsByName;    // Name index: open-addressing table of row + 1, probed linearly
+                                 // from the name's hash. At most half full.
+    private volatile int[] sortedRows; // Rows in name order, or null if it needs to be worked out again
+                                      // (volatile, as readers holding a read lock may work it out)
+
+    private ArrayList<Doctor> doctorTable = new ArrayList<>();                          // Doctor id -> doctor, or null if the id is free
+    private IdentityHashMap<Doctor, Integer> doctorIdsByDoctor = new IdentityHashMap<>(); // Doctor -> doctor id
+    private int[] doctorRowCounts = new int[DEFAULT_CAPACITY]; // Doctor id -> number of rows with that id
+    private int[] freeDoctorIds = new int[DEFAULT_CAPACITY];   // Stack of released doctor ids which can be reused
+    private int numFreeDoctorIds = 0;
+
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * The store will start empty with a small default capacity
+     */
+    public PetColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Pre-sized constructor
+     *
+     * @param initialCapacity  number of pets which can be added before the arrays need to grow
+     * The store will start empty
+     */
+    public PetColumns(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        names = new String[capacity];
+        types = new byte[capacity];
+        sizes = new byte[capacity];
+        ages = new int[capacity];
+        weights = new double[capacity];
+        doctorIds = new int[capacity];
+        versions = new long[capacity];
+        generations = new int[capacity];
+        nameHashes = new int[capacity];
+        freeRows = new int[capacity];
+        rowsByName = new int[Integer.highestOneBit(capacity) * 4];
+    }
+
+    /**
+     * Adds a new pet to the store. Inputs are checked in the same way
+     * as the Pet constructor; invalid type/size inputs are rejected.
+     *
+     * @param name  pet name - must not be empty
+     * @param size  pet size (small, medium or large)
+     * @param type  pet type (dog or cat)
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned, or null
+     * @return  a view of the new pet
+     */
+    public View add(String name, String size, String type, int age, double weight, Doctor doctor) {
+        return add(name, PetSize.parse(size), PetType.parse(type), age, weight, doctor);
+    }
+
+    /**
+     * Adds a new pet to the store, for a type and size which have already been parsed
+     *
+     * @param name  pet name - must not be empty
+     * @param size  pet size
+     * @param type  pet type
+     * @param age  age of the pet
+     * @param weight  weight of the pet
+     * @param doctor  doctor to be assigned, or null
+     * @return  a view of the new pet
+     */
+    public View add(String name, PetSize size, PetType type, int age, double weight, Doctor doctor) {
+        int row;
+        if (numFreeRows > 0) {
+            row = freeRows[--numFreeRows];
+        }
+        else {
+            if (usedRows == names.length) {
+                ensureCapacity(names.length * 2);
+            }
+            row = usedRows++;
+        }
+
+        types[row] = -1;
+        sizes[row] = -1;
+        ages[row] = 0;
+        weights[row] = 0;
+        doctorIds[row] = NO_DOCTOR;
+        versions[row] = 0;
+        numPets++;
+
+        View pet = new View(row);
+        names[row] = name;  // Set directly, as a row with a null name is treated as removed
+        indexName(row);
+        pet.setPetSize(size);  // Use setters so that inputs are checked
+        pet.setPetType(type);
+        pet.setAge(age);
+        pet.setWeight(weight);
+        pet.setDoctor(doctor);
+        return pet;
+    }
+
+    /**
+     * Copies an existing pet into the store
+     *
+     * @param pet  the pet to be copied
+     * @return  a view of the new pet
+     */
+    public View add(Pet pet) {
+        return add(pet.getName(), pet.getPetSize(), pet.getPetType(), pet.getAge(), pet.getWeight(), pet.getDoctor());
+    }
+
+    /**
+     * Removes a pet from the store. The pet is unassigned from its doctor first.
+     *
+     * @param pet  view of the pet to be removed
+     * @return  whether the pet was found (and removed)
+     */
+    public boolean remove(Pet pet) {
+        if (!(pet instanceof View) || ((View) pet).owner() != this || !((View) pet).isCurrent()) {
+            return false;
+        }
+
+        int row = ((View) pet).row;
+        pet.setDoctor(null);
+        unindexName(row);
+        names[row] = null;
+        types[row] = -1; // Removed rows are skipped by analyse()
+        sizes[row] = -1;
+        generations[row]++; // Every view of the pet is now out of date
+        freeRows[numFreeRows++] = row;
+        numPets--;
+        return true;
+    }
+
+    /**
+     * Grows the store so that it can hold at least the specified number of
+     * pets without any further copying
+     *
+     * @param minCapacity  number of rows required
+     * Returns nothing; capacity will be at least minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > names.length) {
+            names = Arrays.copyOf(names, minCapacity);
+            types = Arrays.copyOf(types, minCapacity);
+            sizes = Arrays.copyOf(sizes, minCapacity);
+            ages = Arrays.copyOf(ages, minCapacity);
+            weights = Arrays.copyOf(weights, minCapacity);
+            doctorIds = Arrays.copyOf(doctorIds, minCapacity);
+            versions = Arrays.copyOf(versions, minCapacity);
+            generations = Arrays.copyOf(generations, minCapacity);
+            nameHashes = Arrays.copyOf(nameHashes, minCapacity);
+            freeRows = Arrays.copyOf(freeRows, minCapacity);
+        }
+    }
+
+    /**
+     * Gets a view of the pet in the specified row
+     *
+     * @param row  row index
+     * @return  a view of that pet, or null if the row is empty
+     */
+    public View get(int row) {
+        if (row < 0 || row >= usedRows || names[row] == null) {
+            return null;
+        }
+        return new View(row);
+    }
+
+    /**
+     * Gets a view of the pet with the specified name (ignoring case, as Registry does)
+     *
+     * @param name  name to be searched for
+     * @return  a view of that pet, or null if there is no pet with that name
+     */
+    public View find(String name) {
+        int hash = hashName(name);
+        int mask = rowsByName.length - 1;
+        for (int i = hash & mask; rowsByName[i] != EMPTY; i = (i + 1) & mask) {
+            int row = rowsByName[i] - 1;
+            if (nameHashes[row] == hash && names[row].equalsIgnoreCase(name)) {
+                return new View(row);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over every pet in the store, in row order
+     *
+     * No inputs/preconditions
+     * @return  an iterator which creates a view of each pet as it is reached
+     */
+    public Iterator<Pet> iterator() {
+        return rowIterator(null);
+    }
+
+    /**
+     * Gets every pet in the store in alphabetical order of name (A-Z, ignoring case)
+     * The order is worked out the first time it is needed after a change.
+     *
+     * No inputs/preconditions
+     * @return  the pets, whose iterators create a view of each pet as it is reached
+     */
+    public Collection<Pet> sorted() {
+        if (sortedRows == null) {
+            String[] keys = new String[usedRows];
+            List<Integer> rows = new ArrayList<>(numPets);
+            for (int row = 0; row < usedRows; row++) {
+                if (names[row] != null) {
+                    keys[row] = Registry.normaliseName(names[row]);
+                    rows.add(row);
+                }
+            }
+            rows.sort(Comparator.comparing(row -> keys[row]));
+            sortedRows = rows.stream().mapToInt(Integer::intValue).toArray();
+        }
+        int[] order = sortedRows;
+        return new AbstractCollection<Pet>() {
+            public Iterator<Pet> iterator() {
+                return rowIterator(order);
+            }
+
+            public int size() {
+                return order.length;
+            }
+        };
+    }
+
+    /**
+     * Gets every pet assigned to a doctor, by scanning the doctor ids
+     *
+     * @param doctor  the doctor
+     * @return  the doctor's pets, in row order
+     */
+    public Iterable<Pet> petsOf(Doctor doctor) {
+        Integer id = doctorIdsByDoctor.get(doctor);
+        if (id == null) {
+            return Collections.emptyList();
+        }
+        return () -> new Iterator<Pet>() {
+            private int next = findRow(0);
+
+            public boolean hasNext() {
+                return next < usedRows;
+            }
+
+            public Pet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                View pet = new View(next);
+                next = findRow(next + 1);
+                return pet;
+            }
+
+            /**
+             * Finds the next row assigned to the doctor
+             *
+             * @param from  row to start searching from
+             * @return  the row, or 'usedRows' if there are no more
+             */
+            private int findRow(int from) {
+                while (from < usedRows && (names[from] == null || doctorIds[from] != id)) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    /**
+     * Classifies every pet in the store as overweight or not, directly
+     * from the primitive arrays
+     *
+     * @param parallel  whether large stores may be classified on multiple cores
+     * @return  counts of overweight pets grouped by type, size and doctor
+     */
+    public ObesityReport analyse(boolean parallel) {
+        return ObesityReport.of(types, sizes, weights, doctorIds, usedRows,
+                                doctorTable.toArray(new Doctor[0]), parallel);
+    }
+
+    /**
+     * Gets the number of pets in the store
+     *
+     * No inputs/preconditions
+     * @return  number of pets
+     */
+    public int size() {
+        return numPets;
+    }
+
+    /**
+     * Gets the number of rows which have been used. Rows below this may be
+     * empty (if their pet was removed); use get() to check.
+     *
+     * No inputs/preconditions
+     * @return  number of used rows
+     */
+    public int rowCount() {
+        return usedRows;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Converts an enum value into a byte code
+     *
+     * @param value  value to be converted, or null
+     * @return  the value's ordinal, or -1 if the value is null
+     */
+    private static byte encode(Enum<?> value) {
+        return value == null ? -1 : (byte) value.ordinal();
+    }
+
+    /**
+     * Gets a name's hash code, ignoring case
+     *
+     * @param name  the name
+     * @return  hash code of the normalised name, mixed so that similar names are spread out
+     */
+    private static int hashName(String name) {
+        int hash = Registry.normaliseName(name).hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds a row to the name index, growing the index if it would be more than half full
+     *
+     * @param row  row whose name has just been set
+     * Returns nothing; find() will find the row by its name
+     */
+    private void indexName(int row) {
+        if ((numPets + 1) * 2 > rowsByName.length) {
+            int[] old = rowsByName;
+            rowsByName = new int[old.length * 2];
+            for (int entry : old) {
+                if (entry != EMPTY) {
+                    insertIntoIndex(entry - 1);
+                }
+            }
+        }
+        nameHashes[row] = hashName(names[row]);
+        insertIntoIndex(row);
+        sortedRows = null;
+    }
+
+    /**
+     * Puts a row into the first free slot of the name index after its hash
+     *
+     * @param row  the row, whose name hash has been set
+     * Returns nothing
+     */
+    private void insertIntoIndex(int row) {
+        int mask = rowsByName.length - 1;
+        int i = nameHashes[row] & mask;
+        while (rowsByName[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        rowsByName[i] = row + 1;
+    }
+
+    /**
+     * Removes a row from the name index, before its name is cleared or changed
+     * Later entries are moved back into the gap, so that lookups never stop early.
+     *
+     * @param row  row to be removed
+     * Returns nothing
+     */
+    private void unindexName(int row) {
+        int mask = rowsByName.length - 1;
+        int gap = nameHashes[row] & mask;
+        while (rowsByName[gap] != row + 1) {
+            gap = (gap + 1) & mask;
+        }
+        rowsByName[gap] = EMPTY;
+        for (int i = (gap + 1) & mask; rowsByName[i] != EMPTY; i = (i + 1) & mask) {
+            int home = nameHashes[rowsByName[i] - 1] & mask;
+            // The entry can fill the gap unless its home slot lies after the gap, up to the entry itself
+            boolean homeAfterGap = gap <= i ? (home > gap && home <= i) : (home > gap || home <= i);
+            if (!homeAfterGap) {
+                rowsByName[gap] = rowsByName[i];
+                rowsByName[i] = EMPTY;
+                gap = i;
+            }
+        }
+        sortedRows = null;
+    }
+
+    /**
+     * Iterates over rows of the store, creating a view of each pet as it is reached
+     *
+     * @param order  rows to be visited, or null for every row in order (skipping removed rows)
+     * @return  the iterator
+     */
+    private Iterator<Pet> rowIterator(int[] order) {
+        return new Iterator<Pet>() {
+            private int next = order == null ? findNextRow(0) : 0;
+
+            public boolean hasNext() {
+                return next < (order == null ? usedRows : order.length);
+            }
+
+            public Pet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (order != null) {
+                    return new View(order[next++]);
+                }
+                View pet = new View(next);
+                next = findNextRow(next + 1);
+                return pet;
+            }
+        };
+    }
+
+    /**
+     * Finds the first row at or after the specified index which holds a pet
+     *
+     * @param from  index to start searching from
+     * @return  index of the next pet, or 'usedRows' if there are no more pets
+     */
+    private int findNextRow(int from) {
+        while (from < usedRows && names[from] == null) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Gets the id of the specified doctor for one more row, adding them to
+     * the doctor table if needed (reusing a released id if there is one)
+     *
+     * @param doctor  the doctor, or null
+     * @return  the doctor's id, or NO_DOCTOR if the input was null
+     */
+    private int acquireDoctorId(Doctor doctor) {
+        if (doctor == null) {
+            return NO_DOCTOR;
+        }
+
+        Integer id = doctorIdsByDoctor.get(doctor);
+        if (id == null) {
+            if (numFreeDoctorIds > 0) {
+                id = freeDoctorIds[--numFreeDoctorIds];
+                doctorTable.set(id, doctor);
+            }
+            else {
+                id = doctorTable.size();
+                doctorTable.add(doctor);
+                if (id == doctorRowCounts.length) {
+                    doctorRowCounts = Arrays.copyOf(doctorRowCounts, id * 2);
+                    freeDoctorIds = Arrays.copyOf(freeDoctorIds, id * 2);
+                }
+            }
+            doctorIdsByDoctor.put(doctor, id);
+        }
+        doctorRowCounts[id]++;
+        return id;
+    }
+
+    /**
+     * Releases one row's use of a doctor id. When no rows are left with that
+     * id, the doctor is dropped from the doctor table and the id is freed.
+     *
+     * @param id  the doctor id, or NO_DOCTOR
+     * Returns nothing; the id's row count will be one lower
+     */
+    private void releaseDoctorId(int id) {
+        if (id == NO_DOCTOR || --doctorRowCounts[id] > 0) {
+            return;
+        }
+
+        doctorIdsByDoctor.remove(doctorTable.get(id));
+        doctorTable.set(id, null); // analyse() skips ids with no rows, so a gap is fine
+        freeDoctorIds[numFreeDoctorIds++] = id;
+    }
+
+
+    /* ******** Pet View ******** */
+
+
+    /**
+     * A Pet which reads and writes one row of the store, rather than
+     * keeping its own copy of each attribute. Views are cheap to create,
+     * so they are thrown away after use.
+     */
+    public class View extends Pet {
+        private final int row;
+        private final int generation; // The row's generation when the view was created
+
+        /**
+         * Creates a view of the pet which is in the specified row now
+         *
+         * @param row  row index
+         */
+        private View(int row) {
+            this.row = row;
+            generation = generations[row];
+        }
+
+        // The getters/setters below behave exactly the same as BasicPet's,
+        // including rejecting invalid inputs. Each one checks first that
+        // the view's pet is still in the store (see checkCurrent()).
+
+        public String getName() {
+            checkCurrent();
+            return names[row];
+        }
+
+        public void setName(String name) {
+            checkCurrent();
+            if (name.trim().length() > 0) {
+                unindexName(row);
+                names[row] = name;
+                indexName(row);
+                touch();
+            }
+        }
+
+        public PetType getPetType() {
+            checkCurrent();
+            return types[row] < 0 ? null : TYPES[types[row]];
+        }
+
+        public void setPetType(PetType type) {
+            checkCurrent();
+            if (type != null) {
+                types[row] = encode(type);
+                touch();
+            }
+        }
+
+        public PetSize getPetSize() {
+            checkCurrent();
+            return sizes[row] < 0 ? null : SIZES[sizes[row]];
+        }
+
+        public void setPetSize(PetSize size) {
+            checkCurrent();
+            if (size != null) {
+                sizes[row] = encode(size);
+                touch();
+            }
+        }
+
+        public int getAge() {
+            checkCurrent();
+            return ages[row];
+        }
+
+        public void setAge(int age) {
+            checkCurrent();
+            if (age >= 0) {
+                ages[row] = age;
+                touch();
+            }
+        }
+
+        public double getWeight() {
+            checkCurrent();
+            return weights[row];
+        }
+
+        public void setWeight(double weight) {
+            checkCurrent();
+            if (weight > 0) {
+                weights[row] = weight;
+                touch();
+            }
+        }
+
+        public Doctor getDoctor() {
+            checkCurrent();
+            return doctorIds[row] == NO_DOCTOR ? null : doctorTable.get(doctorIds[row]);
+        }
+
+        /**
+         * Assigns the specified doctor as the pet's doctor
+         * Unlike BasicPet, the doctor's list of pets isn't updated; see PetColumns.petsOf().
+         *
+         * @param doctor  doctor object to be assigned, or null to reset
+         * Returns nothing; the pet's doctor id will be set
+         */
+        public void setDoctor(Doctor doctor) {
+            checkCurrent();
+            int oldId = doctorIds[row];
+            doctorIds[row] = acquireDoctorId(doctor); // Acquire first, so reassigning the same
+            releaseDoctorId(oldId);                    // doctor doesn't free their id
+            touch();
+        }
+
+        public long getLastModified() {
+            return ModificationCounter.timeOf(getVersion());
+        }
+
+        public long getVersion() {
+            checkCurrent();
+            return versions[row];
+        }
+
+        /**
+         * Determines whether the view's pet is still in the store
+         *
+         * No inputs/preconditions
+         * @return  whether the pet hasn't been removed (boolean value)
+         */
+        boolean isCurrent() {
+            return generations[row] == generation;
+        }
+
+        /**
+         * Checks that the view's pet is still in the store, so that the view
+         * never reads or changes a later pet which has been given the same row
+         *
+         * No inputs/preconditions, returns nothing
+         * @throws IllegalStateException  if the pet has been removed
+         */
+        private void checkCurrent() {
+            if (!isCurrent()) {
+                throw new IllegalStateException("The pet has been removed");
+            }
+        }
+
+        /**
+         * Records that one of the pet's attributes has just been changed
+         *
+         * No inputs/preconditions, returns nothing
+         */
+        private void touch() {
+            versions[row] = ModificationCounter.next();
+        }
+
+        /**
+         * Views are equal if they refer to the same pet in the same store,
+         * even though a new view is created each time a pet is asked for.
+         *
+         * @param other  object to be compared
+         * @return  whether both views refer to the same pet (boolean value)
+         */
+        public boolean equals(Object other) {
+            return other instanceof View &&
+                   ((View) other).owner() == owner() &&
+                   ((View) other).row == row &&
+                   ((View) other).generation == generation;
+        }
+
+        public int hashCode() {
+            return row;
+        }
+
+        /**
+         * Gets the store which this view belongs to
+         *
+         * @return  the PetColumns object
+         */
+        private PetColumns owner() {
+            return PetColumns.this;
+        }
+    }
+}
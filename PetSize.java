@@ -0,0 +1,49 @@
+/*
+ * Enum Name and Description:
+ *    PetSize.java lists the sizes of pet which the vet hospital uses
+ *    to decide whether a pet is overweight.
+ *
+ *    Inputs (from the console or HospitalManagement.txt) should be
+ *    converted using parse(), which ignores case. toString() returns
+ *    the lowercase label used in HospitalManagement.txt.
+ */
+
+public enum PetSize {
+    SMALL("small"),
+    MEDIUM("medium"),
+    LARGE("large");
+
+    private final String label;
+
+    /**
+     * @param label  lowercase name of the size, as written in files/prompts
+     */
+    PetSize(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Converts an input string into a pet size (ignoring case)
+     *
+     * @param input  string to be converted, e.g. "Medium"
+     * @return  the matching pet size, or null if the input isn't valid
+     */
+    public static PetSize parse(String input) {
+        for (PetSize size : values()) {
+            if (size.label.equalsIgnoreCase(input)) {
+                return size;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the lowercase label of the pet size
+     *
+     * No inputs/preconditions
+     * @return  'small', 'medium' or 'large'
+     */
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Enum Name and Description:
+ *    PetType.java lists the types of pet which the vet hospital treats.
+ *
+ *    Inputs (from the console or HospitalManagement.txt) should be
+ *    converted using parse(), which ignores case. toString() returns
+ *    the lowercase label used in HospitalManagement.txt.
+ */
+
+public enum PetType {
+    DOG("dog"),
+    CAT("cat");
+
+    private final String label;
+
+    /**
+     * @param label  lowercase name of the type, as written in files/prompts
+     */
+    PetType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Converts an input string into a pet type (ignoring case)
+     *
+     * @param input  string to be converted, e.g. "Cat"
+     * @return  the matching pet type, or null if the input isn't valid
+     */
+    public static PetType parse(String input) {
+        for (PetType type : values()) {
+            if (type.label.equalsIgnoreCase(input)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the lowercase label of the pet type
+     *
+     * No inputs/preconditions
+     * @return  'dog' or 'cat'
+     */
+    public String toString() {
+        return label;
+    }
+}
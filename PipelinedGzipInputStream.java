@@ -0,0 +1,186 @@
+/*
+ * Class Name and Description:
+ *    PipelinedGzipInputStream.java decompresses a GZIP stream on a
+ *    separate background thread. It is the counterpart of
+ *    PipelinedGzipOutputStream.
+ *
+ *    The decompressor thread fills fixed-size chunks ahead of the reader,
+ *    so decompressing the file and parsing it happen at the same time.
+ *    A small fixed set of chunks is reused, so the decompressor waits
+ *    (rather than using more memory) if it gets too far ahead.
+ */
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+public class PipelinedGzipInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int NUM_CHUNKS = 3;
+    private static final int INFLATE_BUFFER_SIZE = 1 << 16;
+    private static final Chunk END = new Chunk(0); // Tells the reader that there is nothing more to read
+
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(NUM_CHUNKS + 1); // Waiting to be read
+    private final BlockingQueue<Chunk> empty = new ArrayBlockingQueue<>(NUM_CHUNKS);      // Ready to be refilled
+    private final InputStream input;
+    private final Thread decompressor;
+    private volatile IOException error; // Error hit by the decompressor, or null
+    private Chunk current;              // Chunk currently being read, or null
+    private int position = 0;           // Next unread byte in 'current'
+    private boolean finished = false;   // Whether END has been reached
+
+    /**
+     * Creates a stream which decompresses the specified stream, and starts
+     * its decompressor thread
+     *
+     * @param input  stream of compressed data
+     */
+    public PipelinedGzipInputStream(InputStream input) {
+        this.input = input;
+        for (int i = 0; i < NUM_CHUNKS; i++) {
+            empty.add(new Chunk(CHUNK_SIZE));
+        }
+
+        decompressor = new Thread(this::decompress, "gzip-decompressor");
+        decompressor.setDaemon(true);
+        decompressor.start();
+    }
+
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Stops the decompressor thread and closes the underlying stream
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if an error occurs while closing the stream
+     */
+    public void close() throws IOException {
+        decompressor.interrupt();
+        try {
+            decompressor.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            input.close();
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Makes sure there is at least one unread byte in 'current', waiting
+     * for the decompressor if needed
+     *
+     * No inputs/preconditions
+     * @return  whether there is anything left to read (boolean value)
+     * @throws IOException  if the decompressor failed, or the reader is interrupted
+     */
+    private boolean fill() throws IOException {
+        while (!finished && (current == null || position == current.length)) {
+            try {
+                if (current != null) {
+                    empty.put(current);
+                }
+                current = filled.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Decompression was interrupted");
+            }
+            position = 0;
+            if (current == END) {
+                finished = true;
+                current = null;
+            }
+        }
+
+        if (error != null) {
+            throw new IOException("An error occurred while decompressing", error);
+        }
+        return !finished;
+    }
+
+    /**
+     * Decompresses the whole stream into chunks, then hands over END.
+     * Runs on the decompressor thread. Any error is also followed by END,
+     * so that the reader never waits forever.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void decompress() {
+        try (GZIPInputStream gzip = new GZIPInputStream(input, INFLATE_BUFFER_SIZE)) {
+            boolean atEnd = false;
+            while (!atEnd) {
+                Chunk chunk = empty.take();
+                chunk.length = 0;
+                while (chunk.length < CHUNK_SIZE) {
+                    int count = gzip.read(chunk.data, chunk.length, CHUNK_SIZE - chunk.length);
+                    if (count < 0) {
+                        atEnd = true;
+                        break;
+                    }
+                    chunk.length += count;
+                }
+                if (chunk.length > 0) {
+                    filled.put(chunk);
+                }
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        catch (InterruptedException e) {
+            return; // The stream has been closed, so nothing is waiting for END
+        }
+
+        try {
+            filled.put(END);
+        }
+        catch (InterruptedException e) {
+            // The stream has been closed
+        }
+    }
+
+
+    /* ******** Chunk ******** */
+
+
+    /**
+     * A buffer of bytes which have been decompressed
+     */
+    private static class Chunk {
+        private final byte[] data;
+        private int length = 0;
+
+        /**
+         * Creates an empty chunk
+         *
+         * @param capacity  number of bytes the chunk can hold
+         */
+        private Chunk(int capacity) {
+            data = new byte[capacity];
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Class Name and Description:
+ *    PipelinedGzipOutputStream.java compresses everything written to it
+ *    in GZIP format, on a separate background thread.
+ *
+ *    Written bytes are collected into fixed-size chunks. Each full chunk
+ *    is handed to the compressor thread, and the writer carries on
+ *    filling the next one, so formatting records and compressing them
+ *    happen at the same time. A small fixed set of chunks is reused, so
+ *    the writer waits (rather than using more memory) if it gets too far
+ *    ahead of the compressor.
+ *
+ *    The fastest compression level is used: the text format repeats the
+ *    same keys on every record, so it still compresses very well.
+ */
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+public class PipelinedGzipOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int NUM_CHUNKS = 3;
+    private static final int DEFLATE_BUFFER_SIZE = 1 << 16;
+    private static final Chunk END = new Chunk(0); // Tells the compressor that there is nothing more to compress
+
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(NUM_CHUNKS + 1); // Waiting to be compressed
+    private final BlockingQueue<Chunk> empty = new ArrayBlockingQueue<>(NUM_CHUNKS);      // Ready to be reused
+    private final OutputStream output;
+    private final Thread compressor;
+    private volatile IOException error; // First error hit by the compressor, or null
+    private Chunk current;              // Chunk currently being filled, or null once finished
+
+    /**
+     * Creates a stream which compresses into the specified stream, and
+     * starts its compressor thread
+     *
+     * @param output  stream which the compressed data should be written to
+     */
+    public PipelinedGzipOutputStream(OutputStream output) {
+        this.output = output;
+        for (int i = 0; i < NUM_CHUNKS; i++) {
+            empty.add(new Chunk(CHUNK_SIZE));
+        }
+        current = empty.poll();
+
+        compressor = new Thread(this::compress, "gzip-compressor");
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    public void write(int b) throws IOException {
+        if (current.length == CHUNK_SIZE) {
+            handOff();
+        }
+        current.data[current.length++] = (byte) b;
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (current.length == CHUNK_SIZE) {
+                handOff();
+            }
+            int count = Math.min(length, CHUNK_SIZE - current.length);
+            System.arraycopy(bytes, offset, current.data, current.length, count);
+            current.length += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Compresses everything which has been written so far, and writes the
+     * GZIP trailer. The underlying stream is not closed, so it can still
+     * be flushed to disk.
+     *
+     * No inputs/preconditions
+     * Returns nothing; every byte will have been compressed once this returns
+     * @throws IOException  if an error occurs while compressing or writing
+     */
+    public void finish() throws IOException {
+        if (current == null) {
+            return;
+        }
+        if (current.length > 0) {
+            handOff();
+        }
+        current = null;
+        try {
+            filled.put(END);
+            compressor.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression was interrupted");
+        }
+        checkError();
+        output.flush();
+    }
+
+    /**
+     * Finishes compressing, then closes the underlying stream
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if an error occurs while compressing or writing
+     */
+    public void close() throws IOException {
+        try {
+            finish();
+        }
+        finally {
+            output.close();
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Passes the current chunk to the compressor and takes an empty one to fill
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  if the compressor has failed, or the writer is interrupted
+     */
+    private void handOff() throws IOException {
+        checkError();
+        try {
+            filled.put(current);
+            current = empty.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression was interrupted");
+        }
+    }
+
+    /**
+     * Throws the first error hit by the compressor, if there was one
+     *
+     * No inputs/preconditions, returns nothing
+     * @throws IOException  the compressor's error
+     */
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("An error occurred while compressing", error);
+        }
+    }
+
+    /**
+     * Compresses each chunk as it is handed off, until END is received.
+     * Runs on the compressor thread. After an error, chunks are still
+     * taken (and thrown away) so that the writer never waits forever.
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    private void compress() {
+        FastGzipOutputStream gzip = null;
+        try {
+            gzip = new FastGzipOutputStream(output);
+        }
+        catch (IOException e) {
+            error = e; // Writing the GZIP header failed
+        }
+
+        try {
+            Chunk chunk;
+            while ((chunk = filled.take()) != END) {
+                if (error == null) {
+                    try {
+                        gzip.write(chunk.data, 0, chunk.length);
+                    }
+                    catch (IOException e) {
+                        error = e;
+                    }
+                }
+                chunk.length = 0;
+                empty.put(chunk);
+            }
+
+            if (error == null) {
+                gzip.finish();
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        catch (InterruptedException e) {
+            error = new InterruptedIOException("Compression was interrupted");
+        }
+        finally {
+            if (gzip != null) {
+                gzip.release();
+            }
+        }
+    }
+
+
+    /* ******** Nested Classes ******** */
+
+
+    /**
+     * A GZIPOutputStream which uses the fastest compression level, and
+     * whose deflater can be freed without closing the underlying stream
+     */
+    private static class FastGzipOutputStream extends GZIPOutputStream {
+        /**
+         * Creates a stream which compresses into the specified stream
+         *
+         * @param output  stream which the compressed data should be written to
+         * @throws IOException  if an error occurs while writing the GZIP header
+         */
+        private FastGzipOutputStream(OutputStream output) throws IOException {
+            super(output, DEFLATE_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * Frees the deflater's native memory. GZIPOutputStream only does this
+         * when closed, which would also close the underlying stream.
+         *
+         * No inputs/preconditions, returns nothing
+         */
+        private void release() {
+            def.end();
+        }
+    }
+
+
+    /**
+     * A buffer of bytes which are waiting to be compressed
+     */
+    private static class Chunk {
+        private final byte[] data;
+        private int length = 0;
+
+        /**
+         * Creates an empty chunk
+         *
+         * @param capacity  number of bytes the chunk can hold
+         */
+        private Chunk(int capacity) {
+            data = new byte[capacity];
+        }
+    }
+}
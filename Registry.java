@@ -0,0 +1,499 @@
+/*
+ * Class Name and Description:
+ *    Registry.java is the container which holds all of the pets (or all
+ *    of the doctors) in the system.
+ *
+ *    Items are stored in a slot array which doubles in size whenever it
+ *    is full, so adding n items costs O(n) copying in total rather than
+ *    O(n^2). Slots freed by removals are remembered on a stack, so a new
+ *    item can be placed without searching for an empty slot.
+ *
+ *    Every item is also indexed by its name (ignoring case), so looking
+ *    an item up by name takes O(1) time rather than a scan of every slot.
+ *    Names are compared exactly as String.equalsIgnoreCase() would.
+ *    A second, sorted index is kept up to date as items are added and
+ *    removed, so listing items in name order never needs a sort. A
+ *    registry can also be built from a whole list of items at once (see
+ *    of()), which sorts the names once rather than inserting them one by
+ *    one.
+ *
+ *    Iterating over a registry skips empty slots, so it can be used in
+ *    a for-each loop in the same way as the old null-padded arrays.
+ */
+
+import java.util.*;
+
+public class Registry<T extends Named> implements Iterable<T> {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final int REBUILD_FACTOR = 16; // addAll() rebuilds the sorted index if it adds at least
+                                                  // 1/16 as many items as there were (about 1/log2(n))
+
+    private Object[] slots;       // Items in the registry; empty slots are null
+    private int[] freeSlots;      // Stack of empty slots below 'usedSlots' which can be reused
+    private int numFreeSlots = 0;
+    private int usedSlots = 0;    // Slots at or above this index have never held an item
+    private int size = 0;         // Number of items currently in the registry
+    private HashMap<String, Integer> slotsByName;                   // Normalised name -> slot
+    private TreeMap<String, T> itemsByName = new TreeMap<>();       // Normalised name -> item, in name order
+
+    /**
+     * Default constructor
+     *
+     * No inputs/preconditions
+     * The registry will start empty with a small default capacity
+     */
+    public Registry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Pre-sized constructor
+     *
+     * @param initialCapacity  number of items which can be added before the registry needs to grow
+     * The registry will start empty
+     */
+    public Registry(int initialCapacity) {
+        slots = new Object[Math.max(initialCapacity, 1)];
+        freeSlots = new int[slots.length];
+        slotsByName = new HashMap<>(slots.length * 4 / 3 + 1); // Big enough that it won't need to rehash
+    }
+
+    /**
+     * Creates a registry holding the specified items, in slots 0, 1, 2... in the order given
+     * Quicker than adding them one at a time: the names are sorted once, and the sorted
+     * index is built from them in O(n) time rather than by n separate insertions.
+     *
+     * @param items  items to be held - must not be null
+     * @return  the new registry, with no spare capacity
+     * @throws IllegalArgumentException  if two of the items have the same name (ignoring case)
+     */
+    public static <T extends Named> Registry<T> of(List<? extends T> items) {
+        Registry<T> registry = new Registry<>(items.size());
+        String[] keys = new String[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+            T item = items.get(i);
+            keys[i] = normaliseName(item.getName());
+            if (registry.slotsByName.put(keys[i], i) != null) {
+                throw new IllegalArgumentException("More than one item is named " + item.getName());
+            }
+            registry.slots[i] = item;
+        }
+        registry.usedSlots = keys.length;
+        registry.size = keys.length;
+
+        Arrays.sort(keys); // The same order as the TreeMap's
+        registry.itemsByName = new TreeMap<>(new SortedKeys<>(keys, registry));
+        return registry;
+    }
+
+    /**
+     * Adds an item to the registry, reusing a previously freed slot if there is one
+     * Will grow the registry (doubling its capacity) if needed
+     * The caller should check that no other item has the same name first.
+     *
+     * @param item  the item to be added - must not be null
+     * @return  the slot which the item was placed in
+     */
+    public int add(T item) {
+        int slot;
+        if (numFreeSlots > 0) {
+            slot = freeSlots[--numFreeSlots];
+        }
+        else {
+            if (usedSlots == slots.length) {
+                ensureCapacity(slots.length * 2);
+            }
+            slot = usedSlots++;
+        }
+
+        slots[slot] = item;
+        String key = normaliseName(item.getName());
+        slotsByName.put(key, slot);
+        itemsByName.put(key, item);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Adds several items to the registry, placing each one as add() would
+     * If there are many of them compared with the items already in the registry,
+     * the sorted index is rebuilt from one sort and a merge, in O(n) time, rather
+     * than by inserting each item into it.
+     * The caller should check that no two of the items, and no item already in the
+     * registry, have the same name.
+     *
+     * @param items  the items to be added - must not be null
+     * Returns nothing; the items will be in the registry
+     */
+    public void addAll(List<? extends T> items) {
+        ensureCapacity(Math.max(usedSlots + items.size() - numFreeSlots, slots.length));
+        boolean rebuild = items.size() * REBUILD_FACTOR >= size;
+        String[] keys = new String[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+            T item = items.get(i);
+            int slot = numFreeSlots > 0 ? freeSlots[--numFreeSlots] : usedSlots++;
+            slots[slot] = item;
+            keys[i] = normaliseName(item.getName());
+            slotsByName.put(keys[i], slot);
+            if (!rebuild) {
+                itemsByName.put(keys[i], item);
+            }
+        }
+        size += keys.length;
+        if (!rebuild) {
+            return;
+        }
+
+        Arrays.sort(keys);
+        String[] merged = new String[size];
+        int next = 0;
+        int added = 0;
+        for (String key : itemsByName.keySet()) {
+            while (added < keys.length && keys[added].compareTo(key) < 0) {
+                merged[next++] = keys[added++];
+            }
+            merged[next++] = key;
+        }
+        while (added < keys.length) {
+            merged[next++] = keys[added++];
+        }
+        itemsByName = new TreeMap<>(new SortedKeys<>(merged, this));
+    }
+
+    /**
+     * Removes the specified item from the registry
+     * Items are compared by reference, not by equals()
+     *
+     * @param item  the item to be removed
+     * @return  whether the item was found (and removed)
+     */
+    public boolean remove(T item) {
+        Integer slot = slotsByName.get(normaliseName(item.getName()));
+        if (slot == null || slots[slot] != item) {
+            return false;
+        }
+
+        String key = normaliseName(item.getName());
+        slotsByName.remove(key);
+        itemsByName.remove(key);
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Renames an item which is in the registry, keeping the name index up to date
+     * The caller should check that no other item has the new name first.
+     *
+     * @param item  the item to be renamed
+     * @param newName  name to be assigned - must not be empty
+     * @return  whether the item was found (and renamed)
+     */
+    public boolean rename(T item, String newName) {
+        Integer slot = slotsByName.get(normaliseName(item.getName()));
+        if (slot == null || slots[slot] != item) {
+            return false;
+        }
+
+        String oldKey = normaliseName(item.getName());
+        slotsByName.remove(oldKey);
+        itemsByName.remove(oldKey);
+        item.setName(newName);
+        String newKey = normaliseName(item.getName());
+        slotsByName.put(newKey, slot);
+        itemsByName.put(newKey, item);
+        return true;
+    }
+
+    /**
+     * Removes all items from the registry
+     * The current capacity is kept
+     *
+     * No inputs/preconditions, returns nothing
+     */
+    public void clear() {
+        Arrays.fill(slots, 0, usedSlots, null);
+        slotsByName.clear();
+        itemsByName.clear();
+        numFreeSlots = 0;
+        usedSlots = 0;
+        size = 0;
+    }
+
+    /**
+     * Grows the registry so that it can hold at least the specified number of
+     * items without any further copying. Useful before bulk imports.
+     *
+     * @param minCapacity  number of slots required
+     * Returns nothing; capacity will be at least minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > slots.length) {
+            slots = Arrays.copyOf(slots, minCapacity);
+            freeSlots = Arrays.copyOf(freeSlots, minCapacity);
+        }
+    }
+
+    /**
+     * Gets the item held in the specified slot
+     *
+     * @param slot  slot index
+     * @return  item in that slot, or null if the slot is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int slot) {
+        if (slot < 0 || slot >= usedSlots) {
+            return null;
+        }
+        return (T) slots[slot];
+    }
+
+    /**
+     * Gets the item with the specified name (ignoring case)
+     *
+     * @param name  name to be searched for
+     * @return  the item, or null if there is no item with that name
+     */
+    public T getByName(String name) {
+        Integer slot = slotsByName.get(normaliseName(name));
+        return slot == null ? null : get(slot);
+    }
+
+    /**
+     * Gets the slot which holds the item with the specified name (ignoring case)
+     *
+     * @param name  name to be searched for
+     * @return  the item's slot, or -1 if there is no item with that name
+     */
+    public int slotOf(String name) {
+        Integer slot = slotsByName.get(normaliseName(name));
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Gets the slot which holds the item with the specified key
+     * Quicker than slotOf(), as the key is already normalised.
+     *
+     * @param key  normalised name (see normaliseName()), e.g. from sortedKeys()
+     * @return  the item's slot, or -1 if there is no item with that key
+     */
+    public int slotOfKey(String key) {
+        Integer slot = slotsByName.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Determines whether an item with the specified name (ignoring case) exists
+     *
+     * @param name  name to be searched for
+     * @return  whether an item with that name exists (boolean value)
+     */
+    public boolean containsName(String name) {
+        return slotsByName.containsKey(normaliseName(name));
+    }
+
+    /**
+     * Gets every item in alphabetical order of name (A-Z, ignoring case)
+     *
+     * No inputs/preconditions
+     * @return  read-only view of the items, sorted by name
+     */
+    public Collection<T> sorted() {
+        return Collections.unmodifiableCollection(itemsByName.values());
+    }
+
+    /**
+     * Gets every item's normalised name (see normaliseName()) in alphabetical order
+     *
+     * No inputs/preconditions
+     * @return  read-only view of the keys, sorted
+     */
+    public SortedSet<String> sortedKeys() {
+        return Collections.unmodifiableSortedSet(itemsByName.navigableKeySet());
+    }
+
+    /**
+     * Gets the number of items in the registry
+     *
+     * No inputs/preconditions
+     * @return  number of items (not the number of slots)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots currently allocated
+     *
+     * No inputs/preconditions
+     * @return  the registry's capacity
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns an iterator over every item in slot order. Empty slots are skipped.
+     *
+     * No inputs/preconditions
+     * @return  an iterator over the items in the registry
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = findNextSlot(0);
+
+            public boolean hasNext() {
+                return next < usedSlots;
+            }
+
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = (T) slots[next];
+                next = findNextSlot(next + 1);
+                return item;
+            }
+        };
+    }
+
+    /**
+     * A registry's keys in name order, with their items, which a TreeMap can be built
+     * from in O(n) time (see of()). Only what TreeMap(SortedMap) uses is supported.
+     */
+    private static class SortedKeys<T extends Named> extends AbstractMap<String, T> implements SortedMap<String, T> {
+        private final String[] keys;        // Normalised names, sorted
+        private final Registry<T> registry; // Registry holding the items
+
+        /**
+         * @param keys  sorted keys of the items
+         * @param registry  registry holding the items, whose name index is complete
+         */
+        SortedKeys(String[] keys, Registry<T> registry) {
+            this.keys = keys;
+            this.registry = registry;
+        }
+
+        public Set<Map.Entry<String, T>> entrySet() {
+            return new AbstractSet<Map.Entry<String, T>>() {
+                public Iterator<Map.Entry<String, T>> iterator() {
+                    return new Iterator<Map.Entry<String, T>>() {
+                        private int next = 0;
+
+                        public boolean hasNext() {
+                            return next < keys.length;
+                        }
+
+                        public Map.Entry<String, T> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            String key = keys[next++];
+                            return Map.entry(key, registry.get(registry.slotOfKey(key)));
+                        }
+                    };
+                }
+
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+
+        public Comparator<? super String> comparator() {
+            return null; // Natural order, as in 'itemsByName'
+        }
+
+        public String firstKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[0];
+        }
+
+        public String lastKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[keys.length - 1];
+        }
+
+        public SortedMap<String, T> subMap(String fromKey, String toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedMap<String, T> headMap(String toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedMap<String, T> tailMap(String fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Converts a name into the key used by the name index
+     * Two names have the same key exactly when String.equalsIgnoreCase()
+     * considers them equal, as each character is case-folded the same way.
+     *
+     * @param name  name to be normalised
+     * @return  the normalised name
+     */
+    public static String normaliseName(String name) {
+        if (isAscii(name)) {
+            // Same result for ASCII, but returns 'name' itself if it has no uppercase
+            // letters, and avoids copying the characters twice if it does
+            return name.toLowerCase(Locale.ROOT);
+        }
+
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Determines whether a string only contains ASCII characters
+     *
+     * @param text  string to be checked
+     * @return  whether every character is ASCII (boolean value)
+     */
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Empties the specified slot and remembers it for reuse
+     *
+     * @param slot  slot to be emptied - must currently hold an item
+     * Returns nothing; the slot will be pushed onto the free slot stack
+     */
+    private void removeSlot(int slot) {
+        slots[slot] = null;
+        freeSlots[numFreeSlots++] = slot;
+        size--;
+    }
+
+    /**
+     * Finds the first non-empty slot at or after the specified index
+     *
+     * @param from  index to start searching from
+     * @return  index of the next item, or 'usedSlots' if there are no more items
+     */
+    private int findNextSlot(int from) {
+        while (from < usedSlots && slots[from] == null) {
+            from++;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Enum Name and Description:
+ *    Specialisation.java lists the specialisations which a doctor at
+ *    the vet hospital can have. Each specialisation matches one PetType.
+ *
+ *    Inputs (from the console or HospitalManagement.txt) should be
+ *    converted using parse(), which ignores case. toString() returns
+ *    the lowercase label used in HospitalManagement.txt.
+ */
+
+public enum Specialisation {
+    DOG("dog", PetType.DOG),
+    CAT("cat", PetType.CAT);
+
+    private final String label;
+    private final PetType petType;
+
+    /**
+     * @param label  lowercase name of the specialisation, as written in files/prompts
+     * @param petType  the type of pet which this specialisation treats
+     */
+    Specialisation(String label, PetType petType) {
+        this.label = label;
+        this.petType = petType;
+    }
+
+    /**
+     * Converts an input string into a specialisation (ignoring case)
+     *
+     * @param input  string to be converted, e.g. "Dog"
+     * @return  the matching specialisation, or null if the input isn't valid
+     */
+    public static Specialisation parse(String input) {
+        for (Specialisation specialisation : values()) {
+            if (specialisation.label.equalsIgnoreCase(input)) {
+                return specialisation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines whether this specialisation covers the specified type of pet
+     *
+     * @param type  pet type to be checked
+     * @return  whether a doctor with this specialisation treats that type (boolean value)
+     */
+    public boolean treats(PetType type) {
+        return petType == type;
+    }
+
+    /**
+     * Returns the lowercase label of the specialisation
+     *
+     * No inputs/preconditions
+     * @return  'dog' or 'cat'
+     */
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Class Name and Description:
+ *    ExportBench.java measures how fast the system is saved to a data
+ *    file (option 12), in records (pets and doctors) per second, and
+ *    how many bytes the saving thread allocates. It compares
+ *    HospitalService.saveData(), which includes writing a temporary file,
+ *    fsyncing it and renaming it over the target, with the PrintWriter and
+ *    toString() which Hospital.writeDataToFile() used to use (see
+ *    writeWithToString()), which does neither.
+ *
+ *    A quarter of the pets have full-precision random weights, which
+ *    can't be formatted without Double.toString(); the rest have one
+ *    decimal place. The files are written to a temporary directory and
+ *    deleted afterwards. Each rate is the best of several runs, after
+ *    one warm-up run.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/ExportBench.java
+ *        java -cp /tmp/bench -Xmx2g ExportBench [pets] [doctors]
+ */
+
+import java.util.*;
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+
+public class ExportBench {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        HospitalService service = createService(numPets, numDoctors);
+        Path directory = Files.createTempDirectory("ExportBench");
+        String filename = directory.resolve("HospitalManagement.txt").toString();
+        String oldFilename = directory.resolve("old.txt").toString();
+        try {
+            report("saveData", numPets + numDoctors, () -> service.saveData(filename));
+            report("toString (old)", numPets + numDoctors, () -> writeWithToString(service, oldFilename));
+
+            System.out.printf("%.1f MB, %s%n", Files.size(Paths.get(filename)) / 1e6,
+                              Arrays.equals(Files.readAllBytes(Paths.get(filename)), Files.readAllBytes(Paths.get(oldFilename)))
+                              ? "same bytes as the old format" : "DIFFERENT from the old format");
+        }
+        finally {
+            Files.deleteIfExists(Paths.get(filename));
+            Files.deleteIfExists(Paths.get(oldFilename));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * A way of saving the file, which can be timed
+     */
+    private interface Writer {
+        /**
+         * Saves the file
+         *
+         * No inputs/preconditions, returns nothing
+         * @throws IOException  if an error occurs while writing the file
+         */
+        void write() throws IOException;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Times a way of saving the file and prints its rate and how much it allocated
+     *
+     * @param method  name of the way of saving the file, for the output
+     * @param numRecords  number of pets and doctors which are saved
+     * @param writer  saves the file
+     * @throws IOException  if an error occurs while writing the file
+     */
+    private static void report(String method, int numRecords, Writer writer) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        writer.write(); // Warm up
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long startAllocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            writer.write();
+            best = Math.min(best, System.nanoTime() - start);
+            allocated = threads.getCurrentThreadAllocatedBytes() - startAllocated;
+        }
+        System.out.printf("%-15s %,8.1f ms %,12.0f records/s %,8.1f MB allocated%n", method + ":", best / 1e6,
+                          numRecords / (best / 1e9), allocated / 1e6);
+    }
+
+    /**
+     * Saves the system in the way Hospital.writeDataToFile() used to, before
+     * HospitalFileWriter: each pet and doctor's toString() through a PrintWriter,
+     * straight over the file
+     *
+     * @param service  the service holding the pets and doctors
+     * @param filename  name of file which data should be written to
+     * @throws FileNotFoundException  if the file can't be created
+     */
+    private static void writeWithToString(HospitalService service, String filename) throws FileNotFoundException {
+        try (PrintWriter output = new PrintWriter(new File(filename))) {
+            output.println("Pets");
+            service.forEachPet(false, pet -> output.println(pet.toString()));
+            output.println("Doctors");
+            service.forEachDoctor(false, doctor -> output.println(doctor.toString()));
+        }
+    }
+
+    /**
+     * Creates a service holding randomly generated pets and doctors
+     *
+     * @param numPets  number of pets to be added
+     * @param numDoctors  number of doctors to be added
+     * @return  the new service
+     */
+    private static HospitalService createService(int numPets, int numDoctors) {
+        Random random = new Random(1); // The same pets each time
+        String[] sizes = {"small", "medium", "large"};
+        HospitalService service = new HospitalService();
+        for (int i = 0; i < numDoctors; i++) {
+            service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+        }
+        for (int i = 0; i < numPets; i++) {
+            String name = "Pet " + i;
+            double weight = i % 4 == 0 ? 0.1 + random.nextDouble() * 40 : (random.nextInt(400) + 1) / 10.0;
+            service.addPet(name, sizes[random.nextInt(sizes.length)], random.nextBoolean() ? "dog" : "cat",
+                           random.nextInt(15), weight);
+            if (i % 5 != 0) { // Leave some pets without a doctor
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+        }
+        return service;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Class Name and Description:
+ *    GzipBench.java compares saving and reading the system as a plain
+ *    data file with a compressed '.gz' one (options 19 and 20): the
+ *    end-to-end time of each and the number of bytes written.
+ *
+ *    Compressed files are written and read through the pipelined
+ *    streams which the program uses, and for comparison by compressing
+ *    on the saving/reading thread itself, at the same level (1) and at
+ *    the default level (6). Every save is fsynced, as the program's are.
+ *    The compressed file is checked to hold exactly the plain file. The
+ *    files are written to a temporary directory and deleted afterwards.
+ *    Each time is the best of several runs, after one warm-up run.
+ *
+ *    The pipeline only overlaps compression with formatting when there
+ *    is more than one core.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/GzipBench.java
+ *        java -cp /tmp/bench -Xmx2g GzipBench [pets] [doctors]
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+public class GzipBench {
+    private static final int RUNS = 5;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void main(String[] args) throws IOException {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        System.out.printf("%,d pets, %,d doctors, %d cores%n", numPets, numDoctors,
+                          Runtime.getRuntime().availableProcessors());
+
+        HospitalSnapshot snapshot = createService(numPets, numDoctors).snapshot();
+        Path directory = Files.createTempDirectory("GzipBench");
+        String plain = directory.resolve("HospitalManagement.txt").toString();
+        String piped = plain + ".gz";
+        String inline = directory.resolve("inline.gz").toString();
+        String inlineDefault = directory.resolve("default.gz").toString();
+        try {
+            System.out.println("Save:");
+            report("plain", plain, () -> HospitalFileWriter.write(plain, snapshot));
+            report("gz (pipelined)", piped, () -> HospitalFileWriter.write(piped, snapshot));
+            report("gz level 1", inline, () -> writeInline(inline, snapshot, Deflater.BEST_SPEED));
+            report("gz level 6", inlineDefault, () -> writeInline(inlineDefault, snapshot, Deflater.DEFAULT_COMPRESSION));
+
+            System.out.println("Read:");
+            report("plain", plain, () -> HospitalFileParser.parse(plain));
+            report("gz (pipelined)", piped, () -> HospitalFileParser.parse(piped));
+            report("gz", inline, () -> {
+                try (InputStream input = new GZIPInputStream(new FileInputStream(inline), BUFFER_SIZE)) {
+                    new HospitalFileParser(input).parse();
+                }
+            });
+
+            try (InputStream input = new GZIPInputStream(new FileInputStream(piped))) {
+                System.out.println(Arrays.equals(input.readAllBytes(), Files.readAllBytes(Paths.get(plain)))
+                                   ? "The compressed file holds the same bytes as the plain one"
+                                   : "The compressed file DIFFERS from the plain one");
+            }
+        }
+        finally {
+            for (String filename : new String[] {plain, piped, inline, inlineDefault}) {
+                Files.deleteIfExists(Paths.get(filename));
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * A way of saving or reading a file, which can be timed
+     */
+    private interface Action {
+        /**
+         * Saves or reads the file
+         *
+         * No inputs/preconditions, returns nothing
+         * @throws IOException  if an error occurs while writing or reading the file
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * A GZIP stream which compresses at a specified level
+     */
+    private static class LevelGzipOutputStream extends GZIPOutputStream {
+        /**
+         * Creates a stream which compresses into the specified stream
+         *
+         * @param output  stream which the compressed data should be written to
+         * @param level  compression level, from 1 (fastest) to 9 (smallest)
+         * @throws IOException  if the GZIP header can't be written
+         */
+        LevelGzipOutputStream(OutputStream output, int level) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Times a way of saving or reading a file and prints the time and the file's size
+     *
+     * @param method  name of the way of saving or reading the file, for the output
+     * @param filename  name of the file which is saved or read
+     * @param action  saves or reads the file
+     * @throws IOException  if an error occurs while writing or reading the file
+     */
+    private static void report(String method, String filename, Action action) throws IOException {
+        action.run(); // Warm up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-15s %,8.1f ms %,8.1f MB%n", method + ":", best / 1e6, Files.size(Paths.get(filename)) / 1e6);
+    }
+
+    /**
+     * Saves a snapshot to a compressed file, compressing on this thread
+     *
+     * @param filename  name of file which data should be written to
+     * @param snapshot  the pets and doctors to be written
+     * @param level  compression level
+     * @throws IOException  if an error occurs while writing the file
+     */
+    private static void writeInline(String filename, HospitalSnapshot snapshot, int level) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(filename)) {
+            GZIPOutputStream output = new LevelGzipOutputStream(file, level);
+            HospitalFileWriter writer = new HospitalFileWriter(output);
+            writer.writeAll(snapshot);
+            writer.flush();
+            output.finish();
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * Creates a service holding randomly generated pets and doctors
+     *
+     * @param numPets  number of pets to be added
+     * @param numDoctors  number of doctors to be added
+     * @return  the new service
+     */
+    private static HospitalService createService(int numPets, int numDoctors) {
+        Random random = new Random(1); // The same pets each time
+        String[] sizes = {"small", "medium", "large"};
+        HospitalService service = new HospitalService();
+        for (int i = 0; i < numDoctors; i++) {
+            service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+        }
+        for (int i = 0; i < numPets; i++) {
+            String name = "Pet " + i;
+            service.addPet(name, sizes[random.nextInt(sizes.length)], random.nextBoolean() ? "dog" : "cat",
+                           random.nextInt(20), (random.nextInt(1000) + 1) / 10.0);
+            if (i % 5 != 0) { // Leave some pets without a doctor
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+        }
+        return service;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Class Name and Description:
+ *    HttpLoadTest.java measures the HTTP API (--http) under load: the
+ *    requests per second it serves and the median (p50), p99 and
+ *    maximum latency of its requests, with many concurrent clients.
+ *
+ *    Each client is a thread with its own kept-alive HTTP/1.1 connection,
+ *    which sends requests one after another for a fixed time: 60% get a
+ *    pet, 20% add a pet, 10% edit a pet's weight and 10% assign a pet to
+ *    a doctor. The pets and the doctor which these use are added first.
+ *    Any response with an error status, and any connection which fails
+ *    (it is reopened), is counted as an error.
+ *
+ *    By default the server runs in the same JVM, on a free port. To test
+ *    a separate process instead, start the program with the API in one
+ *    terminal and give its address to the load test in another:
+ *        java -cp /tmp/bench Hospital --http=8080
+ *        java -cp /tmp/bench HttpLoadTest 1000 30 http://localhost:8080
+ *    Then exit the program with -1.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/HttpLoadTest.java
+ *        java -cp /tmp/bench HttpLoadTest [clients] [seconds] [server URL]
+ */
+
+import java.util.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class HttpLoadTest {
+    private static final int NUM_SEED_PETS = 2000;
+    private static final String DOCTOR = "LoadTestDoctor";
+
+    public static void main(String[] args) throws Exception {
+        int numClients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        HospitalHttpServer server = null;
+        URI address;
+        if (args.length > 2) {
+            address = URI.create(args[2]);
+        }
+        else {
+            server = new HospitalHttpServer(new HospitalService(), 0);
+            server.start();
+            address = URI.create("http://localhost:" + server.getPort());
+        }
+
+        try {
+            Client seeder = new Client(address);
+            seeder.send("POST", "/doctors", "{\"name\":\"" + DOCTOR + "\",\"specialisation\":\"dog\"}");
+            for (int i = 0; i < NUM_SEED_PETS; i++) { // Already there (409) if the server has been tested before
+                seeder.send("POST", "/pets", "{\"name\":\"LoadTestPet" + i +
+                            "\",\"size\":\"large\",\"type\":\"dog\",\"age\":3,\"weight\":30}");
+            }
+            seeder.close();
+
+            run(address, numClients, seconds);
+        }
+        finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * A connection to the server, which sends one request at a time
+     */
+    private static class Client {
+        private final URI address;
+        private Socket socket;
+        private InputStream input;
+        private OutputStream output;
+
+        /**
+         * Creates a client for a server. The connection is opened by the first request.
+         *
+         * @param address  server's address (http://host:port)
+         */
+        Client(URI address) {
+            this.address = address;
+        }
+
+        /**
+         * Sends a request and reads the whole response
+         * If the request fails, the connection is closed, so the next request will open a new one.
+         *
+         * @param method  HTTP method
+         * @param path  path of the request, which must already be URL-encoded
+         * @param body  JSON body, or null if there isn't one
+         * @return  the response's status code
+         * @throws IOException  if the connection fails
+         */
+        int send(String method, String path, String body) throws IOException {
+            try {
+                if (socket == null) {
+                    socket = new Socket(address.getHost(), address.getPort());
+                    socket.setTcpNoDelay(true);
+                    input = new BufferedInputStream(socket.getInputStream());
+                    output = new BufferedOutputStream(socket.getOutputStream());
+                }
+                byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+                output.write((method + " " + path + " HTTP/1.1\r\nHost: " + address.getHost() +
+                              "\r\nContent-Type: application/json\r\nContent-Length: " + bytes.length +
+                              "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                output.write(bytes);
+                output.flush();
+
+                String status = readLine();
+                int contentLength = 0;
+                for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                    if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                        contentLength = Integer.parseInt(header.substring(15).trim());
+                    }
+                }
+                input.skipNBytes(contentLength);
+                return Integer.parseInt(status.split(" ")[1]);
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Closes the connection, if it is open
+         *
+         * No inputs/preconditions, returns nothing
+         */
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                }
+                catch (IOException e) {
+                    // Nothing more can be done with it
+                }
+                socket = null;
+            }
+        }
+
+        /**
+         * Reads a line of the response's status and headers
+         *
+         * No inputs/preconditions
+         * @return  the line, without its line ending
+         * @throws EOFException  if the server closed the connection
+         * @throws IOException  if the connection fails
+         */
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int c = input.read(); c != '\n'; c = input.read()) {
+                if (c < 0) {
+                    throw new EOFException("The server closed the connection");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Runs the clients for the specified time, then prints the results
+     *
+     * @param address  server's address (http://host:port)
+     * @param numClients  number of concurrent clients
+     * @param seconds  how long the clients should send requests for
+     * @throws InterruptedException  if interrupted while waiting for the clients
+     */
+    private static void run(URI address, int numClients, int seconds) throws InterruptedException {
+        String runId = Long.toString(System.currentTimeMillis(), 36); // New pets' names differ from earlier runs
+        CountDownLatch start = new CountDownLatch(1);
+        long[] end = new long[1];
+        long[][] latencies = new long[numClients][];
+        AtomicLong errors = new AtomicLong();
+
+        Thread[] threads = new Thread[numClients];
+        for (int i = 0; i < numClients; i++) {
+            int clientId = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    latencies[clientId] = new long[0];
+                    return;
+                }
+                latencies[clientId] = runClient(new Client(address), runId + "-" + clientId, end[0], errors);
+            });
+            threads[i].start();
+        }
+
+        long startTime = System.nanoTime();
+        end[0] = startTime + seconds * 1000000000L; // Published to the clients by the latch
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+
+        int total = 0;
+        for (long[] clientLatencies : latencies) {
+            total += clientLatencies.length;
+        }
+        long[] all = new long[total];
+        int next = 0;
+        for (long[] clientLatencies : latencies) {
+            System.arraycopy(clientLatencies, 0, all, next, clientLatencies.length);
+            next += clientLatencies.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%,d clients: %,d requests in %.1f s = %,.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, %,d errors%n",
+                          numClients, total, elapsed, total / elapsed, percentile(all, 0.5) / 1e6,
+                          percentile(all, 0.99) / 1e6, total == 0 ? 0 : all[total - 1] / 1e6, errors.get());
+    }
+
+    /**
+     * Sends requests from one client until the end time
+     *
+     * @param client  the client's connection
+     * @param clientName  unique name for the client, used to name the pets it adds
+     * @param end  System.nanoTime() at which to stop
+     * @param errors  count of failed requests, which is added to
+     * @return  the latency of each request, in nanoseconds
+     */
+    private static long[] runClient(Client client, String clientName, long end, AtomicLong errors) {
+        Random random = new Random(clientName.hashCode());
+        long[] latencies = new long[1024];
+        int numRequests = 0;
+        int numPetsAdded = 0;
+        while (System.nanoTime() < end) {
+            int operation = random.nextInt(10);
+            String seedPet = "/pets/LoadTestPet" + random.nextInt(NUM_SEED_PETS);
+            long start = System.nanoTime();
+            try {
+                int status;
+                if (operation < 6) {
+                    status = client.send("GET", seedPet, null);
+                }
+                else if (operation < 8) {
+                    status = client.send("POST", "/pets", "{\"name\":\"LoadTest-" + clientName + "-" + numPetsAdded++ +
+                                         "\",\"size\":\"small\",\"type\":\"dog\",\"age\":1,\"weight\":5}");
+                }
+                else if (operation < 9) {
+                    status = client.send("PATCH", seedPet, "{\"weight\":" + (10 + random.nextInt(30)) + "}");
+                }
+                else {
+                    status = client.send("PUT", seedPet + "/doctor", "{\"doctor\":\"" + DOCTOR + "\"}");
+                }
+                if (status >= 400) {
+                    errors.incrementAndGet();
+                }
+            }
+            catch (IOException e) {
+                errors.incrementAndGet();
+            }
+            if (numRequests == latencies.length) {
+                latencies = Arrays.copyOf(latencies, numRequests * 2);
+            }
+            latencies[numRequests++] = System.nanoTime() - start;
+        }
+        client.close();
+        return Arrays.copyOf(latencies, numRequests);
+    }
+
+    /**
+     * Gets a percentile of some sorted latencies
+     *
+     * @param sorted  latencies, in ascending order
+     * @param fraction  the percentile, as a fraction (e.g. 0.99 for p99)
+     * @return  the latency at that percentile, or 0 if there are none
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[Math.min((int) (sorted.length * fraction), sorted.length - 1)];
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Class Name and Description:
+ *    ImportBench.java measures how fast a data file is read, in MB/s:
+ *    with HospitalFileParser (streamed, memory-mapped and in parallel
+ *    chunks), through a whole import into an empty system (option 14),
+ *    and with the three java.util.Scanner passes which Hospital.readData()
+ *    used to make (see readWithScanner()).
+ *
+ *    The file is written to a temporary directory first, with random
+ *    pets and doctors, and deleted afterwards. Each rate is the best of
+ *    several runs, after one warm-up run.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/ImportBench.java
+ *        java -cp /tmp/bench -Xmx2g ImportBench [pets] [doctors]
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+
+public class ImportBench {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Path directory = Files.createTempDirectory("ImportBench");
+        String filename = directory.resolve("HospitalManagement.txt").toString();
+        try {
+            createService(numPets, numDoctors).saveData(filename);
+            long fileSize = Files.size(Paths.get(filename));
+            int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("%,d pets, %,d doctors, %.1f MB, %d cores%n", numPets, numDoctors, fileSize / 1e6, cores);
+
+            report("parse", fileSize, () -> HospitalFileParser.parse(filename).getPetCount());
+            report("parseMapped", fileSize, () -> HospitalFileParser.parseMapped(filename).getPetCount());
+            report("parseParallel", fileSize, () -> HospitalFileParser.parseParallel(filename, cores).getPetCount());
+            report("importFile", fileSize,
+                   () -> new HospitalService().importFile(filename, ConflictPolicy.OVERWRITE).getPetsImported());
+            report("Scanner (old)", fileSize, () -> readWithScanner(filename));
+        }
+        finally {
+            Files.deleteIfExists(Paths.get(filename));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * A way of reading the file, which can be timed
+     */
+    private interface Reader {
+        /**
+         * Reads the file
+         *
+         * No inputs/preconditions
+         * @return  number of pets read
+         * @throws IOException  if an error occurs while reading the file
+         */
+        int read() throws IOException;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Times a way of reading the file and prints its rate
+     *
+     * @param method  name of the way of reading the file, for the output
+     * @param fileSize  size of the file in bytes
+     * @param reader  reads the file
+     * @throws IOException  if an error occurs while reading the file
+     */
+    private static void report(String method, long fileSize, Reader reader) throws IOException {
+        int numPets = reader.read(); // Warm up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            reader.read();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-14s %,8.1f ms %,8.1f MB/s  (%,d pets)%n", method + ":", best / 1e6,
+                          fileSize / 1e6 / (best / 1e9), numPets);
+    }
+
+    /**
+     * Reads a file in the way Hospital.readData() used to, before HospitalFileParser:
+     * one Scanner pass to check the file isn't blank, one for the doctors and
+     * one for the pets, taking a substring of each line for its value.
+     * The old linear searches for existing pets and doctors are left out (a map is
+     * used instead), so only the reading is compared.
+     *
+     * @param filename  name of file which data should be read from
+     * @return  number of pets read
+     * @throws FileNotFoundException  if the specified file is missing
+     */
+    private static int readWithScanner(String filename) throws FileNotFoundException {
+        try (Scanner input = new Scanner(new File(filename))) {
+            boolean blank = true;
+            while (input.hasNextLine() && blank) {
+                blank = input.nextLine().trim().length() == 0;
+            }
+        }
+
+        HashMap<String, Doctor> doctors = new HashMap<>();
+        try (Scanner input = new Scanner(new File(filename))) {
+            boolean doctorsFound = false;
+            while (input.hasNextLine()) {
+                String nextLine = input.nextLine();
+                if (nextLine.trim().equals("")) {
+                    break;
+                }
+                else if (nextLine.equals("Doctors")) {
+                    doctorsFound = true;
+                }
+                else if (doctorsFound) {
+                    String specialisationInput = input.nextLine();
+                    String doctorName = nextLine.substring(5, nextLine.length());
+                    String specialisation = specialisationInput.substring(15, specialisationInput.length());
+                    doctors.put(doctorName, new BasicDoctor(doctorName, specialisation));
+                }
+            }
+        }
+
+        ArrayList<Pet> pets = new ArrayList<>();
+        try (Scanner input = new Scanner(new File(filename))) {
+            boolean petsFound = false;
+            while (input.hasNextLine()) {
+                if (petsFound) {
+                    String firstInput = input.nextLine();
+                    if (firstInput.equals("Doctors")) {
+                        break;
+                    }
+                    String sizeInput = input.nextLine();
+                    String nameInput = input.nextLine();
+                    String weightInput = input.nextLine();
+                    String ageInput = input.nextLine();
+                    String doctorInput = input.nextLine();
+
+                    String doctorName = doctorInput.substring(7, doctorInput.length());
+                    pets.add(new BasicPet(
+                            nameInput.substring(5, nameInput.length()),
+                            sizeInput.substring(5, sizeInput.length()),
+                            firstInput.substring(5, firstInput.length()),
+                            Integer.parseInt(ageInput.substring(4, ageInput.length())),
+                            Double.parseDouble(weightInput.substring(7, weightInput.length())),
+                            doctorName.equalsIgnoreCase("no doctor assigned") ? null : doctors.get(doctorName)));
+                }
+                else if (input.nextLine().equals("Pets")) {
+                    petsFound = true;
+                }
+            }
+        }
+        return pets.size();
+    }
+
+    /**
+     * Creates a service holding randomly generated pets and doctors
+     *
+     * @param numPets  number of pets to be added
+     * @param numDoctors  number of doctors to be added
+     * @return  the new service
+     */
+    private static HospitalService createService(int numPets, int numDoctors) {
+        Random random = new Random(1); // The same file each time
+        String[] sizes = {"small", "medium", "large"};
+        HospitalService service = new HospitalService();
+        for (int i = 0; i < numDoctors; i++) {
+            service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+        }
+        for (int i = 0; i < numPets; i++) {
+            String name = "Pet " + i;
+            service.addPet(name, sizes[random.nextInt(sizes.length)], random.nextBoolean() ? "dog" : "cat",
+                           random.nextInt(15), (random.nextInt(400) + 1) / 10.0);
+            if (i % 5 != 0) { // Leave some pets without a doctor
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+        }
+        return service;
+    }
+}
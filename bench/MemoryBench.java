@@ -0,0 +1,86 @@
+/*
+ * Class Name and Description:
+ *    MemoryBench.java measures how much heap HospitalService uses per pet,
+ *    with plain Pet objects and with columnar storage (--columnar).
+ *
+ *    Everything the service keeps is counted: the pets or columns, the
+ *    names, the Registry's indexes, each doctor's set of pets and (without
+ *    --columnar) the HospitalView. The heap is measured after a full GC,
+ *    before and after adding the pets. The pets' own storage is then
+ *    measured on its own, without names or indexes: BasicPet objects in
+ *    an array, against the arrays of a PetColumns.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/MemoryBench.java
+ *        java -cp /tmp/bench -Xmx2g MemoryBench [pets] [doctors]
+ */
+
+import java.util.*;
+import java.lang.ref.*;
+
+public class MemoryBench {
+    public static void main(String[] args) {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        for (boolean columnar : new boolean[] {false, true}) {
+            long before = usedHeap();
+            HospitalService service = new HospitalService(columnar);
+            for (int i = 0; i < numDoctors; i++) {
+                service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+            }
+            for (int i = 0; i < numPets; i++) {
+                String name = "Pet " + i;
+                service.addPet(name, i % 3 == 0 ? "large" : "small", i % 2 == 0 ? "dog" : "cat", i % 15, 1 + i % 20);
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+            long after = usedHeap();
+            System.out.printf("%-8s %,d pets: %,.1f MB, %.0f B per pet%n", columnar ? "columnar" : "objects",
+                              service.getPetCount(), (after - before) / 1e6, (double) (after - before) / numPets);
+            Reference.reachabilityFence(service);
+        }
+
+        String[] names = new String[numPets]; // Not counted, as both ways keep the same names
+        for (int i = 0; i < numPets; i++) {
+            names[i] = "Pet " + i;
+        }
+        for (boolean columnar : new boolean[] {false, true}) {
+            long before = usedHeap();
+            Pet[] pets = columnar ? null : new Pet[numPets];
+            PetColumns columns = columnar ? new PetColumns(numPets) : null;
+            for (int i = 0; i < numPets; i++) {
+                if (columnar) {
+                    columns.add(names[i], PetSize.SMALL, PetType.DOG, 3, 5, null); // The view isn't kept
+                }
+                else {
+                    pets[i] = new BasicPet(names[i], PetSize.SMALL, PetType.DOG, 3, 5, null);
+                }
+            }
+            long after = usedHeap();
+            System.out.printf("%-8s storage only: %.0f B per pet%n", columnar ? "columnar" : "objects",
+                              (double) (after - before) / numPets);
+            Reference.reachabilityFence(pets); // Otherwise they may be collected before they are measured
+            Reference.reachabilityFence(columns);
+        }
+    }
+
+    /**
+     * Gets the heap in use once everything unreachable has been collected
+     *
+     * No inputs/preconditions
+     * @return  bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // Repeat until a GC frees nothing more
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+}
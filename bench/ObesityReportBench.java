@@ -0,0 +1,121 @@
+/*
+ * Class Name and Description:
+ *    ObesityReportBench.java measures how long the "analyse all pets"
+ *    report (option 13) takes, classifying each pet sequentially and in
+ *    parallel, with plain Pet objects and with columnar storage
+ *    (--columnar). For comparison, it also times classifying every pet
+ *    one at a time with Pet.isOverweight(), as option 5 does, and
+ *    grouping the counts by type, size and doctor in the same loop.
+ *
+ *    The pets have random types, sizes and weights, and most of them
+ *    are assigned to a doctor. Each time is the best of several runs,
+ *    after the same number of warm-up runs. The parallel report can only
+ *    be faster with more than one core.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/ObesityReportBench.java
+ *        java -cp /tmp/bench -Xmx2g ObesityReportBench [pets] [doctors]
+ */
+
+import java.util.*;
+
+public class ObesityReportBench {
+    private static final int RUNS = 20;
+
+    public static void main(String[] args) {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        System.out.printf("%,d pets, %,d doctors, %d cores%n", numPets, numDoctors,
+                          Runtime.getRuntime().availableProcessors());
+
+        for (boolean columnar : new boolean[] {false, true}) {
+            HospitalService service = createService(columnar, numPets, numDoctors);
+            String mode = columnar ? "columnar" : "objects";
+
+            int[] overweight = new int[1];
+            long oneAtATime = time(() -> overweight[0] = countOneAtATime(service));
+            System.out.printf("%-8s %-13s %,8.1f ms, %,d overweight%n", mode, "one at a time:", oneAtATime / 1e6,
+                              overweight[0]);
+
+            for (boolean parallel : new boolean[] {false, true}) {
+                ObesityReport[] report = new ObesityReport[1];
+                long reportTime = time(() -> report[0] = service.getObesityReport(parallel));
+                System.out.printf("%-8s %-13s %,8.1f ms, %,d overweight%n", mode, parallel ? "parallel:" : "sequential:",
+                                  reportTime / 1e6, report[0].getOverweightCount());
+            }
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Creates a service holding randomly generated pets and doctors
+     *
+     * @param columnar  whether the service should store its pets in columns
+     * @param numPets  number of pets to be added
+     * @param numDoctors  number of doctors to be added
+     * @return  the new service
+     */
+    private static HospitalService createService(boolean columnar, int numPets, int numDoctors) {
+        Random random = new Random(1); // The same pets each time
+        String[] sizes = {"small", "medium", "large"};
+        HospitalService service = new HospitalService(columnar);
+        for (int i = 0; i < numDoctors; i++) {
+            service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+        }
+        for (int i = 0; i < numPets; i++) {
+            String name = "Pet " + i;
+            String type = random.nextBoolean() ? "dog" : "cat";
+            service.addPet(name, sizes[random.nextInt(sizes.length)], type, random.nextInt(15),
+                           0.1 + random.nextDouble() * 20);
+            if (i % 5 != 0) { // Leave some pets without a doctor
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Classifies each pet with Pet.isOverweight(), counting the overweight
+     * pets by type and size and by doctor, as a script would have to
+     *
+     * @param service  the service holding the pets
+     * @return  number of overweight pets
+     */
+    private static int countOneAtATime(HospitalService service) {
+        int[][] byTypeAndSize = new int[PetType.values().length][PetSize.values().length];
+        HashMap<Doctor, Integer> byDoctor = new HashMap<>();
+        int[] overweight = new int[1];
+        service.forEachPet(false, pet -> {
+            if (pet.isOverweight()) {
+                overweight[0]++;
+                byTypeAndSize[pet.getPetType().ordinal()][pet.getPetSize().ordinal()]++;
+                if (pet.hasDoctor()) {
+                    byDoctor.merge(pet.getDoctor(), 1, Integer::sum);
+                }
+            }
+        });
+        return overweight[0];
+    }
+
+    /**
+     * Times an action, as the best of several runs after warming up
+     *
+     * @param action  the action to be timed
+     * @return  the shortest time taken, in nanoseconds
+     */
+    private static long time(Runnable action) {
+        for (int i = 0; i < RUNS; i++) {
+            action.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Class Name and Description:
+ *    RegistryBench.java measures how long it takes to add pets to a
+ *    Registry as the number of pets grows, against the arrays which
+ *    Hospital used before, which grew by one slot (copying every pet)
+ *    on each insert.
+ *
+ *    The number of pets doubles each round, so if inserts take linear
+ *    time the time per insert stays about the same from round to round,
+ *    while for the old arrays it doubles. The registry is timed both
+ *    from its default capacity and pre-sized with ensureCapacity(). The
+ *    old arrays are only timed up to 100,000 pets, as they take minutes
+ *    beyond that. Each time is the best of several runs.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/RegistryBench.java
+ *        java -cp /tmp/bench -Xmx2g RegistryBench [max pets]
+ */
+
+import java.util.*;
+
+public class RegistryBench {
+    private static final int FIRST_ROUND = 12500;
+    private static final int MAX_GROW_BY_ONE = 100000; // Pets above which the old arrays aren't timed
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int maxPets = args.length > 0 ? Integer.parseInt(args[0]) : 1600000;
+
+        Pet[] pets = new Pet[maxPets]; // Created up front, so only the inserts are timed
+        for (int i = 0; i < maxPets; i++) {
+            pets[i] = new BasicPet("Pet " + i, PetSize.SMALL, PetType.DOG, 3, 5, null);
+        }
+
+        System.out.printf("%10s %22s %22s %22s%n", "pets", "registry", "registry (pre-sized)", "grow-by-one array");
+        for (int n = FIRST_ROUND; n <= maxPets; n *= 2) {
+            long registry = Long.MAX_VALUE;
+            long presized = Long.MAX_VALUE;
+            long growByOne = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                registry = Math.min(registry, timeRegistry(pets, n, false));
+                presized = Math.min(presized, timeRegistry(pets, n, true));
+                if (n <= MAX_GROW_BY_ONE) {
+                    growByOne = Math.min(growByOne, timeGrowByOne(pets, n));
+                }
+            }
+            System.out.printf("%,10d %22s %22s %22s%n", n, format(registry, n), format(presized, n),
+                              n <= MAX_GROW_BY_ONE ? format(growByOne, n) : "-");
+        }
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Times adding pets to a new registry
+     *
+     * @param pets  the pets to be added
+     * @param n  number of pets (from the start of the array) to be added
+     * @param presize  whether to pre-size the registry for all of the pets first
+     * @return  time taken, in nanoseconds
+     */
+    private static long timeRegistry(Pet[] pets, int n, boolean presize) {
+        long start = System.nanoTime();
+        Registry<Pet> registry = new Registry<>();
+        if (presize) {
+            registry.ensureCapacity(n);
+        }
+        for (int i = 0; i < n; i++) {
+            registry.add(pets[i]);
+        }
+        long time = System.nanoTime() - start;
+        if (registry.size() != n) {
+            throw new IllegalStateException("Registry holds " + registry.size() + " pets, expected " + n);
+        }
+        return time;
+    }
+
+    /**
+     * Times adding pets to an array in the way Hospital.addPetToList() used to:
+     * the array grows by one slot, copying every pet, whenever it is full
+     *
+     * @param pets  the pets to be added
+     * @param n  number of pets (from the start of the array) to be added
+     * @return  time taken, in nanoseconds
+     */
+    private static long timeGrowByOne(Pet[] pets, int n) {
+        long start = System.nanoTime();
+        Pet[] list = new Pet[0];
+        for (int i = 0; i < n; i++) {
+            Pet[] newList = new Pet[list.length + 1];
+            for (int j = 0; j < list.length; j++) {
+                newList[j] = list[j];
+            }
+            list = newList;
+            list[list.length - 1] = pets[i];
+        }
+        long time = System.nanoTime() - start;
+        if (list[n - 1] != pets[n - 1]) {
+            throw new IllegalStateException("Array doesn't hold the last pet");
+        }
+        return time;
+    }
+
+    /**
+     * Formats a time as the total and the time per insert
+     *
+     * @param nanos  time taken, in nanoseconds
+     * @param n  number of pets added in that time
+     * @return  the formatted time, e.g. "12.3 ms (98 ns/pet)"
+     */
+    private static String format(long nanos, int n) {
+        return String.format("%,.1f ms (%,d ns/pet)", nanos / 1e6, nanos / n);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Class Name and Description:
+ *    SnapshotBench.java measures how long a binary snapshot (options 15
+ *    and 16) takes to load into an empty system: reading the file with
+ *    HospitalSnapshot.load() alone, and together with restoreSnapshot()
+ *    (which builds the registries and the first view), which is what
+ *    loading the snapshot costs. The target for a million pets is well
+ *    under a second. For comparison, it also times saving the snapshot,
+ *    and loading it into a system which stores its pets in columns
+ *    (--columnar). Each run restores a newly loaded snapshot, as a
+ *    snapshot's doctors can only be given to one system.
+ *
+ *    The pets and doctors are random, and the snapshot is written to a
+ *    temporary directory and deleted afterwards. Each time is the best of
+ *    several runs, after one warm-up run. The garbage from one run is
+ *    collected before the next, so it isn't counted against it.
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/bench *.java bench/SnapshotBench.java
+ *        java -cp /tmp/bench -Xmx2g SnapshotBench [pets] [doctors]
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+
+public class SnapshotBench {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int numPets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numDoctors = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Path directory = Files.createTempDirectory("SnapshotBench");
+        String filename = directory.resolve("HospitalManagement.snapshot").toString();
+        try {
+            HospitalSnapshot created = createService(numPets, numDoctors).snapshot(); // The service itself isn't kept
+            created.save(filename);
+            System.out.printf("%,d pets, %,d doctors, %.1f MB, %d cores%n", numPets, numDoctors,
+                              Files.size(Paths.get(filename)) / 1e6, Runtime.getRuntime().availableProcessors());
+
+            report("save", () -> created.save(filename));
+            report("load", () -> HospitalSnapshot.load(filename));
+            report("load + restore", () -> new HospitalService().restoreSnapshot(HospitalSnapshot.load(filename)));
+            report("columnar", () -> new HospitalService(true).restoreSnapshot(HospitalSnapshot.load(filename)));
+        }
+        finally {
+            Files.deleteIfExists(Paths.get(filename));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * A step of saving or loading a snapshot, which can be timed
+     */
+    private interface Action {
+        /**
+         * Carries out the step
+         *
+         * No inputs/preconditions, returns nothing
+         * @throws IOException  if an error occurs while writing or reading the snapshot
+         */
+        void run() throws IOException;
+    }
+
+
+    /* ******** Helper Methods ******** */
+
+
+    /**
+     * Times a step of saving or loading a snapshot and prints the time
+     *
+     * @param step  name of the step, for the output
+     * @param action  carries out the step
+     * @throws IOException  if an error occurs while writing or reading the snapshot
+     */
+    private static void report(String step, Action action) throws IOException {
+        action.run(); // Warm up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            System.gc(); // Otherwise the last run's system would be collected during this one
+            long start = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-15s %,8.1f ms%n", step + ":", best / 1e6);
+    }
+
+    /**
+     * Creates a service holding randomly generated pets and doctors
+     *
+     * @param numPets  number of pets to be added
+     * @param numDoctors  number of doctors to be added
+     * @return  the new service
+     */
+    private static HospitalService createService(int numPets, int numDoctors) {
+        Random random = new Random(1); // The same pets each time
+        String[] sizes = {"small", "medium", "large"};
+        HospitalService service = new HospitalService();
+        for (int i = 0; i < numDoctors; i++) {
+            service.addDoctor("Doctor " + i, i % 2 == 0 ? "dog" : "cat");
+        }
+        for (int i = 0; i < numPets; i++) {
+            String name = "Pet " + i;
+            service.addPet(name, sizes[random.nextInt(sizes.length)], random.nextBoolean() ? "dog" : "cat",
+                           random.nextInt(20), (random.nextInt(1000) + 1) / 10.0);
+            if (i % 5 != 0) { // Leave some pets without a doctor
+                service.assignPet(name, "Doctor " + (i % numDoctors));
+            }
+        }
+        return service;
+    }
+}
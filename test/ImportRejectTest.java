@@ -0,0 +1,112 @@
+/*
+ * Class Name and Description:
+ *    ImportRejectTest.java checks that a data file with an unknown pet
+ *    type, pet size or doctor specialisation can still be imported: the
+ *    invalid records are rejected and counted, and the rest of the file
+ *    is imported as usual. It covers each way a file can be read (streamed,
+ *    memory-mapped, in parallel chunks, and indexed for lazy loading).
+ *
+ *    The project has no test framework, so this is a plain program which
+ *    exits with status 1 if any check fails. It is kept out of the main
+ *    build (the project directory is compiled with 'javac *.java').
+ *
+ *    Run from the project directory (JDK 17 or later):
+ *        javac -d /tmp/test *.java test/ImportRejectTest.java
+ *        (cd /tmp/test && java -cp . ImportRejectTest)
+ */
+
+import java.util.*;
+import java.io.*;
+import java.nio.file.*;
+
+public class ImportRejectTest {
+    private static final String FILE = "ImportRejectTest.txt";
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        Files.write(Paths.get(FILE), Arrays.asList(
+                "Pets",
+                "type cat", "size small", "name Lara", "weight 4", "age 5", "doctor Maria",
+                "type hamster", "size small", "name Fluffy", "weight 1", "age 2", "doctor no doctor assigned",
+                "type dog", "size huge", "name Rex", "weight 40", "age 3", "doctor Joao",
+                "type dog", "size large", "name Biro", "weight 15", "age 12", "doctor Joao",
+                "Doctors",
+                "name Maria", "specialisation cat",
+                "name Polly", "specialisation bird",
+                "name Joao", "specialisation dog"));
+        try {
+            checkBatch("parse", HospitalFileParser.parse(FILE));
+            checkBatch("parseMapped", HospitalFileParser.parseMapped(FILE));
+            checkBatch("parseParallel", HospitalFileParser.parseParallel(FILE, 3));
+            checkImport();
+            checkIndex();
+        }
+        finally {
+            Files.deleteIfExists(Paths.get(FILE));
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    /**
+     * Checks the records which were parsed from the file
+     *
+     * @param method  name of the parser method, for messages
+     * @param batch  the parsed records
+     */
+    private static void checkBatch(String method, ImportBatch batch) {
+        check(method + ": valid pets kept", batch.getPetCount() == 2);
+        check(method + ": valid doctors kept", batch.getDoctorCount() == 2);
+        check(method + ": invalid records counted", batch.getRejectedCount() == 3);
+        check(method + ": pets in order", batch.getPetCount() == 2 &&
+              batch.getPetName(0).equals("Lara") && batch.getPetName(1).equals("Biro"));
+    }
+
+    /**
+     * Checks that importing the file (which used to throw a NullPointerException)
+     * imports the valid records and reports the rejected ones
+     */
+    private static void checkImport() throws IOException {
+        HospitalService service = new HospitalService();
+        ImportSummary summary = service.importFile(FILE, ConflictPolicy.OVERWRITE);
+        check("import: valid pets imported", summary.getPetsImported() == 2);
+        check("import: valid doctors imported", summary.getDoctorsImported() == 2);
+        check("import: rejected records reported", summary.getRecordsRejected() == 3);
+        check("import: invalid pet left out", service.getPet("Fluffy") == null && service.getPet("Rex") == null);
+        check("import: pet assigned to its doctor", service.getPet("Biro") != null &&
+              service.getPet("Biro").hasDoctor() && service.getPet("Biro").getDoctor().getName().equals("Joao"));
+    }
+
+    /**
+     * Checks that an indexed file skips the invalid pets, so the pets after
+     * them are still read back correctly
+     */
+    private static void checkIndex() throws IOException {
+        HospitalService service = new HospitalService();
+        service.enableLazyLoading(1);
+        HospitalService.ReadResult result = service.readData(FILE, null);
+        check("index: file indexed", result.getStatus() == HospitalService.ReadStatus.INDEXED);
+        check("index: valid pets indexed", result.getPetsIndexed() == 2);
+        check("index: rejected records reported", result.getSummary().getRecordsRejected() == 3);
+        check("index: pet after invalid ones read back", service.getPet("Biro") != null &&
+              service.getPet("Biro").getPetSize() == PetSize.LARGE);
+        check("index: invalid pet left out", service.getPet("Rex") == null);
+    }
+
+    /**
+     * Records the result of a check
+     *
+     * @param description  what was checked
+     * @param passed  whether the check passed
+     */
+    private static void check(String description, boolean passed) {
+        if (!passed) {
+            System.out.println("FAILED: " + description);
+            failures++;
+        }
+    }
+}